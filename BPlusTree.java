@@ -0,0 +1,659 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores a sorted map from long keys to int values in a file of fixed-size pages, as a B+-tree.
+ * The first page is a header holding a magic number, the format version, the root page, the
+ * height of the tree, the number of pages and entries, a stamp the owner can use to tell which
+ * data the tree was built from, and a flag telling whether the file was closed cleanly. Every
+ * other page is a node: leaves hold up to 340 sorted entries and a link to the next leaf, inner
+ * nodes hold up to 340 separator keys between 341 child pages. A lookup reads one page per level,
+ * so a tree of a million entries answers in three page reads, and a range query descends once
+ * and then follows the leaf links, reading only the pages that hold the range.
+ * A tree is built bottom-up from sorted entries by bulkLoad, with its pages written in one
+ * sequential pass and filled to 90% so later inserts rarely split. Inserts split full pages on
+ * the way back up; removals leave pages underfull rather than merging them, which keeps every
+ * lookup correct, and the space is recovered the next time the tree is bulk-loaded.
+ * Recently used pages are cached in memory and changed pages are written through at once. The
+ * header is marked unclean before the first change and clean again by close, so a tree that was
+ * not closed cleanly can be detected and rebuilt. The tree is not thread-safe.
+ */
+public final class BPlusTree implements Closeable {
+    /**
+     * The value returned by get when the key is not in the tree.
+     */
+    public static final int MISSING = Integer.MIN_VALUE;
+    /**
+     * The size in bytes of every page of the file.
+     */
+    public static final int PAGESIZE = 4096;
+    private static final int MAGIC = 0x534D5342;
+    private static final short VERSION = 1;
+    private static final int MAGICOFFSET = 0;
+    private static final int VERSIONOFFSET = 4;
+    private static final int PAGESIZEOFFSET = 8;
+    private static final int ROOTOFFSET = 12;
+    private static final int HEIGHTOFFSET = 16;
+    private static final int PAGECOUNTOFFSET = 20;
+    private static final int ENTRYCOUNTOFFSET = 24;
+    private static final int STAMPOFFSET = 32;
+    private static final int CLEANOFFSET = 40;
+    private static final int TYPEFIELD = 0;
+    private static final int COUNTFIELD = 2;
+    private static final int NEXTFIELD = 4;
+    private static final int NODEHEADERSIZE = 8;
+    private static final int ENTRYSIZE = Long.BYTES + Integer.BYTES;
+    private static final byte LEAF = 1;
+    private static final byte INNER = 2;
+    private static final int NOPAGE = 0;
+    private static final int MAXLEAFENTRIES = (PAGESIZE - NODEHEADERSIZE) / ENTRYSIZE;
+    private static final int MAXINNERKEYS = (PAGESIZE - NODEHEADERSIZE - Integer.BYTES) / ENTRYSIZE;
+    private static final int BULKFILLPERCENT = 90;
+    private static final int CACHEDPAGES = 256;
+
+    private final FileChannel channel;
+    private final Map<Integer, ByteBuffer> pages = new LinkedHashMap<>(CACHEDPAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ByteBuffer> eldest) {
+            return size() > CACHEDPAGES;
+        }
+    };
+    private int root;
+    private int height;
+    private int pageCount;
+    private long entryCount;
+    private long stamp;
+    private boolean clean;
+
+    /**
+     * The result of splitting a page: the smallest key of the new page and the new page itself.
+     */
+    private record Split(long key, int page) {
+    }
+
+    /**
+     * Walks the entries of a key range in ascending key order.
+     * The tree must not be changed while a cursor is in use.
+     */
+    public final class Cursor {
+        private final long to;
+        private int page;
+        private int index;
+        private long key;
+        private int value;
+
+        private Cursor(int page, int index, long to) {
+            this.page = page;
+            this.index = index;
+            this.to = to;
+        }
+
+        /**
+         * Moves to the next entry of the range.
+         * @return true if the cursor is on an entry, false if the range is exhausted
+         * @throws IOException if a page cannot be read
+         */
+        public boolean next() throws IOException {
+            if (page == NOPAGE) {
+                return false;
+            }
+            ByteBuffer node = page(page);
+            index++;
+            while (index >= count(node)) {
+                page = node.getInt(NEXTFIELD);
+                index = 0;
+                if (page == NOPAGE) {
+                    return false;
+                }
+                node = page(page);
+            }
+            key = leafKey(node, index);
+            if (key > to) {
+                page = NOPAGE;
+                return false;
+            }
+            value = leafValue(node, index);
+            return true;
+        }
+
+        /**
+         * Retrieves the key of the current entry.
+         * @return the key
+         */
+        public long key() {
+            return key;
+        }
+
+        /**
+         * Retrieves the value of the current entry.
+         * @return the value
+         */
+        public int value() {
+            return value;
+        }
+    }
+
+    private BPlusTree(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(PAGESIZE);
+        readFully(header, 0);
+        long size = channel.size();
+        if (size < PAGESIZE || size % PAGESIZE != 0 || header.getInt(MAGICOFFSET) != MAGIC) {
+            throw new IOException("Not a B+-tree index file");
+        }
+        if (header.getShort(VERSIONOFFSET) != VERSION || header.getInt(PAGESIZEOFFSET) != PAGESIZE) {
+            throw new IOException("Unsupported B+-tree index version " + header.getShort(VERSIONOFFSET));
+        }
+        this.root = header.getInt(ROOTOFFSET);
+        this.height = header.getInt(HEIGHTOFFSET);
+        this.pageCount = header.getInt(PAGECOUNTOFFSET);
+        this.entryCount = header.getLong(ENTRYCOUNTOFFSET);
+        this.stamp = header.getLong(STAMPOFFSET);
+        this.clean = header.get(CLEANOFFSET) != 0;
+        if (pageCount * (long) PAGESIZE > size || root <= NOPAGE || root >= pageCount || height < 1) {
+            throw new IOException("Corrupt B+-tree index header");
+        }
+    }
+
+    /**
+     * Opens an existing tree for reading and updating.
+     * @param file the index file
+     * @return the opened tree
+     * @throws IOException if the file cannot be read or is not an index in the supported format
+     */
+    public static BPlusTree open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new BPlusTree(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Builds a tree from entries sorted by key and opens it.
+     * This method performs the following steps:
+     * 1. Spreads the entries evenly over as few leaves as hold them at the bulk fill factor and
+     *    writes the leaves one after another, each linked to the next.
+     * 2. Builds each level of inner nodes over the level below in the same way, taking the
+     *    smallest key of every child but the first as a separator, until one root remains.
+     * 3. Writes the header and moves the new file over the old one, so a reader never sees a
+     *    half-built tree. The new file is a temporary file with a unique name, so concurrent
+     *    builds never write into each other's file, and it is deleted if the build fails.
+     * @param file the index file to write
+     * @param keys the keys, in strictly ascending order
+     * @param values the value of each key
+     * @param count the number of entries
+     * @param stamp the stamp to store in the header
+     * @return the opened tree
+     * @throws IOException if the file cannot be written
+     */
+    public static BPlusTree bulkLoad(Path file, long[] keys, int[] values, int count, long stamp) throws IOException {
+        for (int i = 1; i < count; ++i) {
+            if (keys[i - 1] >= keys[i]) {
+                throw new IllegalArgumentException("Keys must be strictly ascending at entry " + i);
+            }
+        }
+        Path temporary = TemporaryFiles.createNextTo(file);
+        boolean moved = false;
+        try {
+            build(temporary, keys, values, count, stamp);
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        return open(file);
+    }
+
+    /**
+     * Writes the leaves, the inner levels and the header of a bulk-loaded tree into a new file.
+     */
+    private static void build(Path temporary, long[] keys, int[] values, int count, long stamp) throws IOException {
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            ByteBuffer node = ByteBuffer.allocate(PAGESIZE);
+            int levelFirst = 1;
+            int levelCount = Math.max(1, ceilDiv(count, MAXLEAFENTRIES * BULKFILLPERCENT / 100));
+            long[] smallestKeys = new long[levelCount];
+            for (int leaf = 0; leaf < levelCount; ++leaf) {
+                int start = (int) ((long) count * leaf / levelCount);
+                int end = (int) ((long) count * (leaf + 1) / levelCount);
+                clearNode(node, LEAF, end - start);
+                node.putInt(NEXTFIELD, leaf + 1 < levelCount ? levelFirst + leaf + 1 : NOPAGE);
+                for (int i = start; i < end; ++i) {
+                    setLeafEntry(node, i - start, keys[i], values[i]);
+                }
+                smallestKeys[leaf] = start < end ? keys[start] : 0;
+                writeFully(channel, node, levelFirst + leaf);
+            }
+            int height = 1;
+            int fanout = MAXINNERKEYS * BULKFILLPERCENT / 100 + 1;
+            while (levelCount > 1) {
+                int parentFirst = levelFirst + levelCount;
+                int parentCount = ceilDiv(levelCount, fanout);
+                long[] parentKeys = new long[parentCount];
+                for (int parent = 0; parent < parentCount; ++parent) {
+                    int start = (int) ((long) levelCount * parent / parentCount);
+                    int end = (int) ((long) levelCount * (parent + 1) / parentCount);
+                    clearNode(node, INNER, end - start - 1);
+                    setInnerChild(node, 0, levelFirst + start);
+                    for (int child = start + 1; child < end; ++child) {
+                        setInnerKey(node, child - start - 1, smallestKeys[child]);
+                        setInnerChild(node, child - start, levelFirst + child);
+                    }
+                    parentKeys[parent] = smallestKeys[start];
+                    writeFully(channel, node, parentFirst + parent);
+                }
+                levelFirst = parentFirst;
+                levelCount = parentCount;
+                smallestKeys = parentKeys;
+                height++;
+            }
+            writeFully(channel, header(levelFirst, height, levelFirst + 1, count, stamp, true), 0);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Retrieves the number of entries.
+     * @return the number of keys in the tree
+     */
+    public long size() {
+        return entryCount;
+    }
+
+    /**
+     * Retrieves the stamp stored with the tree when it was built or last closed.
+     * @return the stamp
+     */
+    public long stamp() {
+        return stamp;
+    }
+
+    /**
+     * Checks whether the tree was closed cleanly after its last change.
+     * @return true if the file is complete, false if it may have been left half-updated
+     */
+    public boolean isClean() {
+        return clean;
+    }
+
+    /**
+     * Looks up the value of a key.
+     * @param key the key
+     * @return the value, or MISSING if the key is not in the tree
+     * @throws IOException if a page cannot be read
+     */
+    public int get(long key) throws IOException {
+        ByteBuffer leaf = page(leafFor(key));
+        int index = lowerBound(leaf, key);
+        return index < count(leaf) && leafKey(leaf, index) == key ? leafValue(leaf, index) : MISSING;
+    }
+
+    /**
+     * Adds a key or replaces its value.
+     * @param key the key
+     * @param value the value
+     * @return true if the key was added, false if its value was replaced
+     * @throws IOException if a page cannot be read or written
+     */
+    public boolean put(long key, int value) throws IOException {
+        markChanged();
+        long before = entryCount;
+        Split split = insert(root, height, key, value);
+        if (split != null) {
+            int newRoot = pageCount++;
+            ByteBuffer node = ByteBuffer.allocate(PAGESIZE);
+            clearNode(node, INNER, 1);
+            setInnerChild(node, 0, root);
+            setInnerKey(node, 0, split.key());
+            setInnerChild(node, 1, split.page());
+            write(newRoot, node);
+            root = newRoot;
+            height++;
+        }
+        return entryCount > before;
+    }
+
+    /**
+     * Removes a key. The page that held it is left underfull rather than merged.
+     * @param key the key
+     * @return true if the key was removed, false if it was not in the tree
+     * @throws IOException if a page cannot be read or written
+     */
+    public boolean remove(long key) throws IOException {
+        int page = leafFor(key);
+        ByteBuffer leaf = page(page);
+        int index = lowerBound(leaf, key);
+        int count = count(leaf);
+        if (index >= count || leafKey(leaf, index) != key) {
+            return false;
+        }
+        markChanged();
+        moveEntries(leaf, index + 1, index, count - index - 1);
+        leaf.putShort(COUNTFIELD, (short) (count - 1));
+        write(page, leaf);
+        entryCount--;
+        return true;
+    }
+
+    /**
+     * Opens a cursor over the entries whose keys lie in a range, both ends included.
+     * @param from the smallest key of the range
+     * @param to the largest key of the range
+     * @return a cursor placed before the first entry of the range
+     * @throws IOException if a page cannot be read
+     */
+    public Cursor range(long from, long to) throws IOException {
+        int page = leafFor(from);
+        return new Cursor(page, lowerBound(page(page), from) - 1, to);
+    }
+
+    /**
+     * Marks the tree clean with a new stamp and closes the file.
+     * @param newStamp the stamp to store in the header
+     * @throws IOException if the header cannot be written
+     */
+    public void close(long newStamp) throws IOException {
+        try {
+            writeFully(channel, header(root, height, pageCount, entryCount, newStamp, true), 0);
+            channel.force(true);
+            stamp = newStamp;
+            clean = true;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Marks the tree clean, keeping its stamp, and closes the file.
+     * @throws IOException if the header cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        close(stamp);
+    }
+
+    /**
+     * Inserts an entry into the subtree under a page.
+     * @return the split of the page if it overflowed, or null if it did not
+     */
+    private Split insert(int page, int level, long key, int value) throws IOException {
+        ByteBuffer node = page(page);
+        int count = count(node);
+        if (level == 1) {
+            int index = lowerBound(node, key);
+            if (index < count && leafKey(node, index) == key) {
+                setLeafEntry(node, index, key, value);
+                write(page, node);
+                return null;
+            }
+            entryCount++;
+            if (count < MAXLEAFENTRIES) {
+                moveEntries(node, index, index + 1, count - index);
+                setLeafEntry(node, index, key, value);
+                node.putShort(COUNTFIELD, (short) (count + 1));
+                write(page, node);
+                return null;
+            }
+            return splitLeaf(page, node, index, key, value);
+        }
+        int childIndex = upperBound(node, key);
+        Split split = insert(innerChild(node, childIndex), level - 1, key, value);
+        if (split == null) {
+            return null;
+        }
+        node = page(page);
+        if (count < MAXINNERKEYS) {
+            for (int i = count; i > childIndex; --i) {
+                setInnerKey(node, i, innerKey(node, i - 1));
+                setInnerChild(node, i + 1, innerChild(node, i));
+            }
+            setInnerKey(node, childIndex, split.key());
+            setInnerChild(node, childIndex + 1, split.page());
+            node.putShort(COUNTFIELD, (short) (count + 1));
+            write(page, node);
+            return null;
+        }
+        return splitInner(page, node, childIndex, split);
+    }
+
+    /**
+     * Splits a full leaf into two halves while inserting an entry, linking the new right half
+     * after the old page.
+     */
+    private Split splitLeaf(int page, ByteBuffer node, int index, long key, int value) throws IOException {
+        int total = MAXLEAFENTRIES + 1;
+        long[] keys = new long[total];
+        int[] values = new int[total];
+        for (int i = 0, from = 0; i < total; ++i) {
+            if (i == index) {
+                keys[i] = key;
+                values[i] = value;
+            } else {
+                keys[i] = leafKey(node, from);
+                values[i] = leafValue(node, from++);
+            }
+        }
+        int half = total / 2;
+        int right = pageCount++;
+        ByteBuffer rightNode = ByteBuffer.allocate(PAGESIZE);
+        clearNode(rightNode, LEAF, total - half);
+        rightNode.putInt(NEXTFIELD, node.getInt(NEXTFIELD));
+        for (int i = half; i < total; ++i) {
+            setLeafEntry(rightNode, i - half, keys[i], values[i]);
+        }
+        for (int i = 0; i < half; ++i) {
+            setLeafEntry(node, i, keys[i], values[i]);
+        }
+        node.putShort(COUNTFIELD, (short) half);
+        node.putInt(NEXTFIELD, right);
+        write(right, rightNode);
+        write(page, node);
+        return new Split(keys[half], right);
+    }
+
+    /**
+     * Splits a full inner node while inserting a separator, moving the middle key up.
+     */
+    private Split splitInner(int page, ByteBuffer node, int childIndex, Split inserted) throws IOException {
+        int total = MAXINNERKEYS + 1;
+        long[] keys = new long[total];
+        int[] children = new int[total + 1];
+        children[0] = innerChild(node, 0);
+        for (int i = 0, from = 0; i < total; ++i) {
+            if (i == childIndex) {
+                keys[i] = inserted.key();
+                children[i + 1] = inserted.page();
+            } else {
+                keys[i] = innerKey(node, from);
+                children[i + 1] = innerChild(node, ++from);
+            }
+        }
+        int middle = total / 2;
+        int right = pageCount++;
+        ByteBuffer rightNode = ByteBuffer.allocate(PAGESIZE);
+        clearNode(rightNode, INNER, total - middle - 1);
+        setInnerChild(rightNode, 0, children[middle + 1]);
+        for (int i = middle + 1; i < total; ++i) {
+            setInnerKey(rightNode, i - middle - 1, keys[i]);
+            setInnerChild(rightNode, i - middle, children[i + 1]);
+        }
+        setInnerChild(node, 0, children[0]);
+        for (int i = 0; i < middle; ++i) {
+            setInnerKey(node, i, keys[i]);
+            setInnerChild(node, i + 1, children[i + 1]);
+        }
+        node.putShort(COUNTFIELD, (short) middle);
+        write(right, rightNode);
+        write(page, node);
+        return new Split(keys[middle], right);
+    }
+
+    private int leafFor(long key) throws IOException {
+        int page = root;
+        for (int level = height; level > 1; --level) {
+            ByteBuffer node = page(page);
+            page = innerChild(node, upperBound(node, key));
+        }
+        return page;
+    }
+
+    /**
+     * Finds the first entry of a leaf whose key is not less than a key.
+     */
+    private static int lowerBound(ByteBuffer leaf, long key) {
+        int low = 0;
+        int high = count(leaf);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (leafKey(leaf, mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Counts the separators of an inner node that are not greater than a key, which is the
+     * index of the child that holds the key.
+     */
+    private static int upperBound(ByteBuffer inner, long key) {
+        int low = 0;
+        int high = count(inner);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (innerKey(inner, mid) <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private ByteBuffer page(int page) throws IOException {
+        ByteBuffer node = pages.get(page);
+        if (node == null) {
+            node = ByteBuffer.allocate(PAGESIZE);
+            readFully(node, (long) page * PAGESIZE);
+            pages.put(page, node);
+        }
+        return node;
+    }
+
+    private void write(int page, ByteBuffer node) throws IOException {
+        pages.put(page, node);
+        writeFully(channel, node, page);
+    }
+
+    /**
+     * Marks the header unclean and forces it to disk before the first change after opening.
+     */
+    private void markChanged() throws IOException {
+        if (clean) {
+            writeFully(channel, header(root, height, pageCount, entryCount, stamp, false), 0);
+            channel.force(false);
+            clean = false;
+        }
+    }
+
+    private void readFully(ByteBuffer node, long position) throws IOException {
+        node.clear();
+        while (node.hasRemaining()) {
+            if (channel.read(node, position + node.position()) < 0) {
+                throw new IOException("Truncated B+-tree index file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer node, int page) throws IOException {
+        ByteBuffer source = node.duplicate().clear();
+        while (source.hasRemaining()) {
+            channel.write(source, (long) page * PAGESIZE + source.position());
+        }
+    }
+
+    private static ByteBuffer header(int root, int height, int pageCount, long entryCount, long stamp, boolean clean) {
+        ByteBuffer header = ByteBuffer.allocate(PAGESIZE);
+        header.putInt(MAGICOFFSET, MAGIC);
+        header.putShort(VERSIONOFFSET, VERSION);
+        header.putInt(PAGESIZEOFFSET, PAGESIZE);
+        header.putInt(ROOTOFFSET, root);
+        header.putInt(HEIGHTOFFSET, height);
+        header.putInt(PAGECOUNTOFFSET, pageCount);
+        header.putLong(ENTRYCOUNTOFFSET, entryCount);
+        header.putLong(STAMPOFFSET, stamp);
+        header.put(CLEANOFFSET, (byte) (clean ? 1 : 0));
+        return header;
+    }
+
+    private static void clearNode(ByteBuffer node, byte type, int count) {
+        Arrays.fill(node.array(), (byte) 0);
+        node.put(TYPEFIELD, type);
+        node.putShort(COUNTFIELD, (short) count);
+        node.putInt(NEXTFIELD, NOPAGE);
+    }
+
+    private static int count(ByteBuffer node) {
+        return node.getShort(COUNTFIELD);
+    }
+
+    private static long leafKey(ByteBuffer leaf, int index) {
+        return leaf.getLong(NODEHEADERSIZE + index * ENTRYSIZE);
+    }
+
+    private static int leafValue(ByteBuffer leaf, int index) {
+        return leaf.getInt(NODEHEADERSIZE + index * ENTRYSIZE + Long.BYTES);
+    }
+
+    private static void setLeafEntry(ByteBuffer leaf, int index, long key, int value) {
+        leaf.putLong(NODEHEADERSIZE + index * ENTRYSIZE, key);
+        leaf.putInt(NODEHEADERSIZE + index * ENTRYSIZE + Long.BYTES, value);
+    }
+
+    private static void moveEntries(ByteBuffer leaf, int from, int to, int count) {
+        byte[] bytes = leaf.array();
+        System.arraycopy(bytes, NODEHEADERSIZE + from * ENTRYSIZE, bytes, NODEHEADERSIZE + to * ENTRYSIZE,
+                count * ENTRYSIZE);
+    }
+
+    private static long innerKey(ByteBuffer inner, int index) {
+        return inner.getLong(NODEHEADERSIZE + Integer.BYTES + index * ENTRYSIZE);
+    }
+
+    private static void setInnerKey(ByteBuffer inner, int index, long key) {
+        inner.putLong(NODEHEADERSIZE + Integer.BYTES + index * ENTRYSIZE, key);
+    }
+
+    private static int innerChild(ByteBuffer inner, int index) {
+        return inner.getInt(NODEHEADERSIZE + index * ENTRYSIZE);
+    }
+
+    private static void setInnerChild(ByteBuffer inner, int index, int page) {
+        inner.putInt(NODEHEADERSIZE + index * ENTRYSIZE, page);
+    }
+
+    private static int ceilDiv(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+}
@@ -0,0 +1,439 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a script of commands against a StudentService without a console, for scripted runs and
+ * for embedding the system in another program. The script holds one command per line:
+ *   register ID NAME
+ *   delete ID
+ *   set-marks ID MARK1 ... MARKN
+ *   rename ID NAME
+ *   store [FILE]
+ *   load [FILE]
+ *   report [average|name]
+ * Names run to the end of the line. The StudentService rejects names that would break the text
+ * format of store and load, such as names containing ", Module 1: ". Blank lines and lines starting with "#" are skipped. store
+ * and load use the text format of the console menu, and the default file when none is given.
+ * The script runs as a two-stage pipeline. A parser thread reads the lines, parses and validates
+ * them like input at the menu and hands them over in batches through a bounded queue, so the
+ * next batch is parsed while the current one is applied and a script of any length is never held
+ * in memory at once. The calling thread applies the batches in script order, and a run of
+ * consecutive set-marks commands is applied with a single repository call, like a mark sheet.
+ * Commands that succeed write nothing. A command that fails writes one line with its line number
+ * and the reason, a report writes its rows, store and load write what they stored or loaded, and
+ * a closing line counts the commands. The output is buffered and flushed once at the end, also
+ * when the run stops early, so the lines written before a failure are not lost.
+ * The runner never exits the JVM: a failure to read the script is thrown to the caller.
+ */
+public final class BatchRunner {
+    private static final int BATCHSIZE = 4096;
+    private static final int QUEUEDBATCHES = 4;
+    private static final int OUTPUTBUFFERSIZE = 1 << 16;
+    private static final List<Command> ENDOFSCRIPT = Collections.emptyList();
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private final StudentService service;
+    private final Path defaultFile;
+    private final int[] keys = new int[BATCHSIZE];
+    private final int[][] moduleMarks = new int[BATCHSIZE][];
+    private final boolean[] applied = new boolean[BATCHSIZE];
+    private BufferedWriter out;
+    private int commandCount;
+    private int appliedCount;
+    private int failedCount;
+
+    /**
+     * The outcome of a script.
+     * @param commands the number of commands in the script
+     * @param applied the number of commands that succeeded
+     * @param failed the number of commands that were invalid or failed
+     */
+    public record Result(int commands, int applied, int failed) {
+    }
+
+    /**
+     * The commands of a script.
+     */
+    private enum Verb {
+        REGISTER("register"),
+        DELETE("delete"),
+        SET_MARKS("set-marks"),
+        RENAME("rename"),
+        STORE("store"),
+        LOAD("load"),
+        REPORT("report");
+
+        private final String word;
+
+        Verb(String word) {
+            this.word = word;
+        }
+
+        private static Verb of(String word) {
+            for (Verb verb : values()) {
+                if (verb.word.equals(word)) {
+                    return verb;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * One parsed line of a script. A command whose error is not null failed validation and is
+     * only reported.
+     */
+    private record Command(int line, Verb verb, String id, String argument, int[] marks, String error) {
+
+        private static Command invalid(int line, String error) {
+            return new Command(line, null, null, null, null, error);
+        }
+    }
+
+    /**
+     * Constructs a new runner over the specified service.
+     * @param service the service the commands are applied to
+     * @param defaultFile the text file store and load use when a command names none
+     */
+    public BatchRunner(StudentService service, Path defaultFile) {
+        this.service = service;
+        this.defaultFile = defaultFile;
+    }
+
+    /**
+     * Runs every command of a script.
+     * This method performs the following steps:
+     * 1. Starts a parser thread that reads the script, parses and validates each line and queues
+     *    the commands in batches of BATCHSIZE.
+     * 2. Takes the batches off the queue in order and applies them on the calling thread.
+     * 3. Writes the outcome of the failed commands, reports and file operations to a buffer, and
+     *    a closing count once the script ends.
+     * 4. Flushes the output, even if the script stops early. The output is not closed.
+     * The repository is only touched from the calling thread.
+     * @param script the commands to run
+     * @param output the destination of the results
+     * @return the counts of commands run, applied and failed
+     * @throws IOException if the script cannot be read or the output cannot be written
+     */
+    public Result run(Reader script, Writer output) throws IOException {
+        out = new BufferedWriter(output, OUTPUTBUFFERSIZE);
+        commandCount = 0;
+        appliedCount = 0;
+        failedCount = 0;
+        BlockingQueue<List<Command>> batches = new ArrayBlockingQueue<>(QUEUEDBATCHES);
+        ExecutorService parser = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "sms-batch-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<?> parsing = parser.submit(() -> {
+                parse(script, batches);
+                return null;
+            });
+            for (List<Command> batch = take(batches); batch != ENDOFSCRIPT; batch = take(batches)) {
+                apply(batch);
+            }
+            await(parsing);
+            out.write("Ran " + commandCount + " commands: " + appliedCount + " applied, " + failedCount + " failed.");
+            out.newLine();
+        } finally {
+            parser.shutdownNow();
+            out.flush();
+        }
+        return new Result(commandCount, appliedCount, failedCount);
+    }
+
+    /**
+     * Reads and parses the script into batches on the parser thread. The end of the script is
+     * queued even when reading fails, so the applying thread never waits forever.
+     */
+    private static void parse(Reader script, BlockingQueue<List<Command>> batches) throws IOException, InterruptedException {
+        try {
+            BufferedReader reader = script instanceof BufferedReader buffered ? buffered : new BufferedReader(script);
+            List<Command> batch = new ArrayList<>(BATCHSIZE);
+            int line = 0;
+            for (String text = reader.readLine(); text != null; text = reader.readLine()) {
+                line++;
+                Command command = parseLine(line, text.strip());
+                if (command == null) {
+                    continue;
+                }
+                batch.add(command);
+                if (batch.size() == BATCHSIZE) {
+                    batches.put(batch);
+                    batch = new ArrayList<>(BATCHSIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batches.put(batch);
+            }
+        } finally {
+            batches.put(ENDOFSCRIPT);
+        }
+    }
+
+    /**
+     * Parses and validates one line.
+     * @return the command, or null if the line is blank or a comment
+     */
+    private static Command parseLine(int line, String text) {
+        if (text.isEmpty() || text.startsWith("#")) {
+            return null;
+        }
+        String[] words = WHITESPACE.split(text, 2);
+        Verb verb = Verb.of(words[0].toLowerCase(Locale.ROOT));
+        String rest = words.length > 1 ? words[1] : "";
+        if (verb == null) {
+            return Command.invalid(line, "unknown command " + words[0]);
+        }
+        switch (verb) {
+            case STORE:
+            case LOAD:
+                return new Command(line, verb, null, rest, null, null);
+            case REPORT:
+                String order = rest.isEmpty() ? "average" : rest.toLowerCase(Locale.ROOT);
+                if (!order.equals("average") && !order.equals("name")) {
+                    return Command.invalid(line, "report order must be average or name");
+                }
+                return new Command(line, verb, null, order, null, null);
+            default:
+                break;
+        }
+        String[] arguments = WHITESPACE.split(rest, 2);
+        String id = arguments[0];
+        if (!StudentId.isValid(id)) {
+            return Command.invalid(line, id.isEmpty() ? "missing student ID" : "invalid student ID " + id);
+        }
+        String argument = arguments.length > 1 ? arguments[1] : "";
+        switch (verb) {
+            case REGISTER:
+            case RENAME:
+                return argument.isEmpty() ? Command.invalid(line, "missing name")
+                        : new Command(line, verb, id, argument, null, null);
+            case DELETE:
+                return argument.isEmpty() ? new Command(line, verb, id, null, null, null)
+                        : Command.invalid(line, "unexpected text after student ID");
+            default:
+                return parseMarks(line, id, argument);
+        }
+    }
+
+    private static Command parseMarks(int line, String id, String argument) {
+        String[] words = argument.isEmpty() ? new String[0] : WHITESPACE.split(argument);
+        if (words.length != MarkTable.MODULECOUNT) {
+            return Command.invalid(line, "expected " + MarkTable.MODULECOUNT + " marks");
+        }
+        int[] marks = new int[words.length];
+        for (int i = 0; i < words.length; ++i) {
+            try {
+                marks[i] = Integer.parseInt(words[i]);
+            } catch (NumberFormatException e) {
+                marks[i] = -1;
+            }
+            if (!StudentService.isValidMark(marks[i])) {
+                return Command.invalid(line, "invalid mark " + words[i]);
+            }
+        }
+        return new Command(line, Verb.SET_MARKS, id, null, marks, null);
+    }
+
+    /**
+     * Applies a batch in order, setting the marks of each run of consecutive set-marks commands
+     * with one repository call.
+     */
+    private void apply(List<Command> batch) throws IOException {
+        int index = 0;
+        while (index < batch.size()) {
+            Command command = batch.get(index);
+            if (command.verb() == Verb.SET_MARKS) {
+                int end = index;
+                while (end < batch.size() && batch.get(end).verb() == Verb.SET_MARKS) {
+                    end++;
+                }
+                applyMarks(batch, index, end);
+                index = end;
+            } else {
+                applyOne(command);
+                index++;
+            }
+        }
+    }
+
+    private void applyMarks(List<Command> batch, int start, int end) throws IOException {
+        int count = end - start;
+        for (int i = 0; i < count; ++i) {
+            Command command = batch.get(start + i);
+            keys[i] = StudentId.parse(command.id());
+            moduleMarks[i] = command.marks();
+        }
+        boolean saved = true;
+        try {
+            service.setMarks(keys, moduleMarks, count, applied);
+        } catch (UncheckedIOException e) {
+            saved = false;
+        }
+        for (int i = 0; i < count; ++i) {
+            Command command = batch.get(start + i);
+            if (!saved) {
+                report(command, reasonOf(command, StudentService.Outcome.STORAGE_ERROR));
+            } else {
+                report(command, applied[i] ? null : reasonOf(command, StudentService.Outcome.NOT_FOUND));
+            }
+            moduleMarks[i] = null;
+        }
+    }
+
+    private void applyOne(Command command) throws IOException {
+        if (command.error() != null) {
+            report(command, command.error());
+            return;
+        }
+        switch (command.verb()) {
+            case REGISTER:
+                report(command, service.register(command.id(), command.argument()));
+                break;
+            case DELETE:
+                report(command, service.delete(command.id()));
+                break;
+            case RENAME:
+                report(command, service.rename(command.id(), command.argument()));
+                break;
+            case STORE:
+                store(command);
+                break;
+            case LOAD:
+                load(command);
+                break;
+            default:
+                StudentReport.Order order = command.argument().equals("name") ? StudentReport.Order.NAME
+                        : StudentReport.Order.AVERAGE;
+                new StudentReport(service, order, StudentReport.DETAILS)
+                        .write(ReportSink.lines(out), 0, Integer.MAX_VALUE);
+                report(command, (String) null);
+        }
+    }
+
+    /**
+     * Writes every registered student to a text file, highest average first, like the console menu.
+     */
+    private void store(Command command) throws IOException {
+        Path file = fileOf(command);
+        try (StudentExporter exporter = new StudentExporter(file)) {
+            for (Student student : service.studentsByAverage()) {
+                exporter.write(student);
+            }
+            long stored = exporter.commit();
+            writeLine(command, "stored " + stored + " students into " + file);
+            report(command, (String) null);
+        } catch (IOException e) {
+            report(command, "error writing " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads students from a text file, like the console menu.
+     */
+    private void load(Command command) throws IOException {
+        Path file = fileOf(command);
+        try {
+            StudentLoader.Result result = StudentLoader.load(file, service.repository());
+            for (String problem : result.problems()) {
+                out.write(file + ": " + problem);
+                out.newLine();
+            }
+            writeLine(command, "loaded " + result.loaded() + " students from " + file + ", skipped "
+                    + result.duplicates() + " already registered and " + result.malformed() + " malformed lines");
+            report(command, (String) null);
+        } catch (IOException e) {
+            report(command, "error loading " + file + ": " + e.getMessage());
+        }
+    }
+
+    private Path fileOf(Command command) {
+        return command.argument().isEmpty() ? defaultFile : Path.of(command.argument());
+    }
+
+    private void report(Command command, StudentService.Outcome outcome) throws IOException {
+        report(command, outcome == StudentService.Outcome.OK ? null : reasonOf(command, outcome));
+    }
+
+    /**
+     * Counts a command and writes the reason it failed, if it did.
+     * @param reason why the command failed, or null if it succeeded
+     */
+    private void report(Command command, String reason) throws IOException {
+        commandCount++;
+        if (reason == null) {
+            appliedCount++;
+        } else {
+            failedCount++;
+            writeLine(command, reason);
+        }
+    }
+
+    private void writeLine(Command command, String text) throws IOException {
+        out.write("Line " + command.line() + ": " + text);
+        out.newLine();
+    }
+
+    private static String reasonOf(Command command, StudentService.Outcome outcome) {
+        switch (outcome) {
+            case INVALID_ID:
+                return "invalid student ID " + command.id();
+            case INVALID_NAME:
+                return "name " + command.argument() + " cannot be stored";
+            case INVALID_MARKS:
+                return "invalid module marks";
+            case NOT_FOUND:
+                return "student " + command.id() + " is not registered";
+            case ALREADY_REGISTERED:
+                return "student " + command.id() + " is already registered";
+            case STORAGE_ERROR:
+                return "the change to student " + command.id() + " could not be saved";
+            default:
+                return "no seats available for student " + command.id();
+        }
+    }
+
+    private static List<Command> take(BlockingQueue<List<Command>> batches) throws IOException {
+        try {
+            return batches.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running commands", e);
+        }
+    }
+
+    private static void await(Future<?> parsing) throws IOException {
+        try {
+            parsing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running commands", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IOException("Failed to parse commands", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,400 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores students for many concurrent users, keeping recent versions of every student so that
+ * readers can work on a consistent point-in-time view while writers carry on.
+ * Lookups read a ConcurrentHashMap and never take a lock. Mutations lock only the stripe
+ * their student ID hashes to, so clerks working on different students do not wait for each
+ * other. Seats are reserved with an atomic counter. Published students are never modified:
+ * a rename or a mark update publishes an updated copy, so a reader always sees a student's
+ * name, marks and grade from the same update.
+ * Every change is committed as a new version at the head of the student's version chain and
+ * stamped with the next value of a commit clock. A Snapshot only records the clock when it is
+ * opened, which is O(1) whatever the size of the cohort, and then reads every student as the
+ * newest version no later than that clock. Versions older than what the oldest open snapshot can
+ * see are unlinked as soon as the student is written again, or when that snapshot is closed.
+ */
+public class ConcurrentStudentRepository implements StudentRepository {
+    private static final int STRIPES = 64;
+    private static final long NOREADER = Long.MAX_VALUE;
+    private final int capacity;
+    private final ConcurrentHashMap<Integer, Version> chains = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final AtomicInteger studentCount = new AtomicInteger();
+    private final Object commitLock = new Object();
+    private final TreeMap<Long, Integer> openSnapshots = new TreeMap<>();
+    private final ConcurrentLinkedQueue<Integer> pendingReclaims = new ConcurrentLinkedQueue<>();
+    private volatile long clock;
+    private int committedSize;
+
+    /**
+     * One committed state of a student. A version whose student is null records a deletion.
+     */
+    private static final class Version {
+        final Student student;
+        final long version;
+        volatile Version older;
+
+        Version(Student student, long version, Version older) {
+            this.student = student;
+            this.version = version;
+            this.older = older;
+        }
+    }
+
+    /**
+     * A read-only, point-in-time view of the repository.
+     * The view holds exactly the students that were registered when it was opened, with the names
+     * and marks they had then, however long it is read and whatever writers do meanwhile.
+     * Closing it lets the repository reclaim the versions only it could see.
+     */
+    public final class Snapshot implements StudentRepository.Snapshot {
+        private final long version;
+        private final int size;
+        private boolean closed;
+
+        private Snapshot(long version, int size) {
+            this.version = version;
+            this.size = size;
+        }
+
+        /**
+         * Retrieves the commit clock value this view reads at.
+         * @return the version of the view
+         */
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public int capacity() {
+            return capacity;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean add(Student student) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+
+        @Override
+        public Student find(int key) {
+            return visibleAt(chains.get(key), version);
+        }
+
+        @Override
+        public Student remove(int key) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+
+        @Override
+        public boolean rename(int key, String name) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+
+        @Override
+        public boolean setMarks(int key, int[] moduleMarks) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+
+        @Override
+        public int setMarks(int[] keys, int[][] moduleMarks, int count, boolean[] applied) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+
+        /**
+         * Copies the students of this view into a new array.
+         * @return the students registered when the view was opened
+         */
+        @Override
+        public Student[] toArray() {
+            List<Student> students = new ArrayList<>(size);
+            for (Version head : chains.values()) {
+                Student student = visibleAt(head, version);
+                if (student != null) {
+                    students.add(student);
+                }
+            }
+            return students.toArray(new Student[0]);
+        }
+
+        @Override
+        public void close() {
+            synchronized (commitLock) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                openSnapshots.computeIfPresent(version, (key, count) -> count == 1 ? null : count - 1);
+            }
+            reclaim();
+        }
+    }
+
+    /**
+     * Constructs a new empty repository with the specified capacity.
+     * @param capacity the maximum number of students the repository can hold
+     */
+    public ConcurrentStudentRepository(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        for (int i = 0; i < STRIPES; ++i) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int size() {
+        return studentCount.get();
+    }
+
+    @Override
+    public boolean add(Student student) {
+        int key = StudentId.parse(student.getId());
+        if (key == StudentId.INVALID) {
+            return false;
+        }
+        ReentrantLock lock = stripeOf(key);
+        lock.lock();
+        try {
+            if (find(key) != null || !reserveSeat()) {
+                return false;
+            }
+            commit(key, student);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Student find(int key) {
+        Version head = chains.get(key);
+        return head == null ? null : head.student;
+    }
+
+    @Override
+    public boolean contains(int key) {
+        return find(key) != null;
+    }
+
+    @Override
+    public Student remove(int key) {
+        ReentrantLock lock = stripeOf(key);
+        lock.lock();
+        try {
+            if (find(key) == null) {
+                return null;
+            }
+            studentCount.decrementAndGet();
+            return commit(key, null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean rename(int key, String name) {
+        ReentrantLock lock = stripeOf(key);
+        lock.lock();
+        try {
+            Student current = find(key);
+            if (current == null) {
+                return false;
+            }
+            commit(key, copyOf(current, name, current.getModule()));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean setMarks(int key, int[] moduleMarks) {
+        ReentrantLock lock = stripeOf(key);
+        lock.lock();
+        try {
+            Student current = find(key);
+            if (current == null) {
+                return false;
+            }
+            Student updated = new Student(current.getId(), current.getName());
+            updated.getModule().setModuleMarks(moduleMarks);
+            commit(key, updated);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens a point-in-time view of the registered students.
+     * Opening a view only records the commit clock, so it takes the same time for any cohort size
+     * and never makes writers wait for more than the commit of a single change.
+     * @return a view of the students as they are now, to be closed when it is no longer read
+     */
+    @Override
+    public Snapshot snapshot() {
+        synchronized (commitLock) {
+            openSnapshots.merge(clock, 1, Integer::sum);
+            return new Snapshot(clock, committedSize);
+        }
+    }
+
+    /**
+     * Takes a consistent snapshot of the registered students.
+     * The result holds every student exactly as they were at one instant, even while
+     * other threads keep registering, deleting and updating students.
+     * @return the students registered when the snapshot started
+     */
+    @Override
+    public Student[] toArray() {
+        try (Snapshot snapshot = snapshot()) {
+            return snapshot.toArray();
+        }
+    }
+
+    /**
+     * Counts the versions still linked into the chain of one student, to check that versions no
+     * snapshot can see are reclaimed.
+     * @param key the student ID key
+     * @return the number of versions kept, including a deletion, or 0 if none is kept
+     */
+    int versionCount(int key) {
+        int count = 0;
+        for (Version version = chains.get(key); version != null; version = version.older) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Commits a new state of a student as the head of its version chain and stamps it with the
+     * next value of the commit clock. The clock is advanced only once the new head is in place,
+     * so a snapshot that reads the clock finds every version up to it. Must be called with the
+     * key's stripe locked.
+     * @param key the student ID key
+     * @param student the new state of the student, or null to delete the student
+     * @return the previous state of the student, or null if it was not registered
+     */
+    private Student commit(int key, Student student) {
+        Version head = chains.get(key);
+        Student previous = head == null ? null : head.student;
+        Version committed;
+        long oldestReader;
+        synchronized (commitLock) {
+            committed = new Version(student, clock + 1, head);
+            chains.put(key, committed);
+            committedSize += (student != null ? 1 : 0) - (previous != null ? 1 : 0);
+            clock = committed.version;
+            oldestReader = openSnapshots.isEmpty() ? NOREADER : openSnapshots.firstKey();
+        }
+        prune(key, committed, oldestReader);
+        return previous;
+    }
+
+    /**
+     * Unlinks the versions of one student that no open snapshot can see any more.
+     * Every snapshot reads at or after the oldest reader, so it never looks past the newest version
+     * no later than the oldest reader, and everything older than that version is dropped. A
+     * deleted student whose deletion every reader sees is removed from the map altogether. Chains
+     * that still hold older versions for a snapshot are queued to be pruned again when it closes.
+     * Must be called with the key's stripe locked.
+     */
+    private void prune(int key, Version head, long oldestReader) {
+        Version keep = head;
+        while (keep.version > oldestReader && keep.older != null) {
+            keep = keep.older;
+        }
+        keep.older = null;
+        if (keep != head) {
+            pendingReclaims.add(key);
+        } else if (head.student == null) {
+            chains.remove(key, head);
+        }
+    }
+
+    /**
+     * Prunes the version chains that were kept for snapshots, now that a snapshot has closed.
+     * Chains still needed by an older snapshot are queued again.
+     */
+    private void reclaim() {
+        for (int pending = pendingReclaims.size(); pending > 0; --pending) {
+            Integer key = pendingReclaims.poll();
+            if (key == null) {
+                return;
+            }
+            ReentrantLock lock = stripeOf(key);
+            lock.lock();
+            try {
+                Version head = chains.get(key);
+                if (head != null) {
+                    long oldestReader;
+                    synchronized (commitLock) {
+                        oldestReader = openSnapshots.isEmpty() ? NOREADER : openSnapshots.firstKey();
+                    }
+                    prune(key, head, oldestReader);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Finds the state of a student at a version of the repository.
+     * @param head the newest version of the student, or null if the student has none
+     * @param version the commit clock value to read at
+     * @return the student as they were at that version, or null if they were not registered then
+     */
+    private static Student visibleAt(Version head, long version) {
+        for (Version candidate = head; candidate != null; candidate = candidate.older) {
+            if (candidate.version <= version) {
+                return candidate.student;
+            }
+        }
+        return null;
+    }
+
+    private boolean reserveSeat() {
+        while (true) {
+            int count = studentCount.get();
+            if (count >= capacity) {
+                return false;
+            }
+            if (studentCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private ReentrantLock stripeOf(int key) {
+        int h = key * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static Student copyOf(Student student, String name, Module module) {
+        Student copy = new Student(student.getId(), name);
+        if (module.getGrade() != null) {
+            copy.getModule().setModuleMarks(module.getModuleMarks());
+        }
+        return copy;
+    }
+}
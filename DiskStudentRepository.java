@@ -0,0 +1,574 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the registry on disk and keeps only a bounded working set of students in memory.
+ * The students live in a StudentSnapshot file, which is mapped and searched by ID without being
+ * loaded, and in an append-only delta file that records every student changed since the snapshot
+ * was written. Only a primitive index from student ID key to the latest delta record is kept on
+ * the heap. Students that are looked up or changed are held in a StudentCache: lookups of the
+ * working set never touch the disk, and a student changed by a rename or new marks is replaced in
+ * the cache by an updated copy, marked dirty and written to the delta file only when it is evicted
+ * or the repository is flushed. Students handed out are never modified, so a reader always sees a
+ * student's name, marks and grade from the same update.
+ * Deletions are written to the delta file at once.
+ * Every record written to the delta file is also applied to a StudentIndex, which answers range
+ * queries by ID and by average mark from two B+-tree files next to the snapshot. The index is
+ * stamped with the snapshot checksum and the delta file length when the repository is closed,
+ * and is rebuilt when it no longer matches them.
+ * Every delta record is framed by its length and a CRC32, so a record torn by a crash is
+ * detected and cut off when the file is opened. compact writes a fresh snapshot of the whole
+ * registry and empties the delta file.
+ * The repository is safe to use from several threads; every operation takes its monitor.
+ */
+public class DiskStudentRepository implements StudentRepository, Closeable {
+    private static final int MAGIC = 0x534D5344;
+    private static final short VERSION = 1;
+    private static final int HEADERSIZE = 8;
+    private static final int FRAMESIZE = 8;
+    private static final int MAXRECORDSIZE = 64 * 1024;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int DELETED = Integer.MAX_VALUE;
+    private final int capacity;
+    private final Path snapshotFile;
+    private final Path idIndexFile;
+    private final Path averageIndexFile;
+    private final FileChannel delta;
+    private final StudentCache cache;
+    private final IntIndexMap recordsByKey = new IntIndexMap(16);
+    private final ByteBuffer record = ByteBuffer.allocate(MAXRECORDSIZE);
+    private final CRC32 crc = new CRC32();
+    private StudentSnapshot snapshot;
+    private StudentIndex index;
+    private int studentCount;
+
+    /**
+     * Opens a disk-backed repository, creating the delta file if it does not exist.
+     * This method performs the following steps:
+     * 1. Maps the snapshot file, if it exists, and verifies its checksum.
+     * 2. Reads the delta file from start to end, pointing the index at the latest record of every
+     *    student and counting the registered students.
+     * 3. Cuts off a torn record at the end of the delta file.
+     * 4. Opens the index files next to the snapshot, or rebuilds them from the snapshot and the
+     *    delta file if they are missing or do not match the files.
+     * @param snapshotFile the snapshot holding the registry as last compacted
+     * @param deltaFile the file of changes since the snapshot was written
+     * @param capacity the maximum number of students the repository can hold
+     * @param cacheSize the maximum number of students kept in memory
+     * @param policy how the cache chooses the student to evict
+     * @throws IOException if a file cannot be read or written, or is not in the expected format
+     */
+    public DiskStudentRepository(Path snapshotFile, Path deltaFile, int capacity, int cacheSize,
+                                 StudentCache.Policy policy) throws IOException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        this.snapshotFile = snapshotFile;
+        this.idIndexFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".id.idx");
+        this.averageIndexFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".avg.idx");
+        this.cache = new StudentCache(cacheSize, policy, this::append);
+        this.snapshot = Files.exists(snapshotFile) ? StudentSnapshot.open(snapshotFile, true) : null;
+        this.studentCount = snapshot == null ? 0 : snapshot.size();
+        this.delta = FileChannel.open(deltaFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (delta.size() == 0) {
+            writeHeader();
+        } else {
+            long end = replay();
+            delta.truncate(end);
+        }
+        this.index = StudentIndex.open(idIndexFile, averageIndexFile, indexStamp());
+        if (index == null) {
+            rebuildIndex();
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public synchronized int size() {
+        return studentCount;
+    }
+
+    @Override
+    public synchronized boolean add(Student student) {
+        int key = StudentId.parse(student.getId());
+        if (key == StudentId.INVALID || studentCount >= capacity || contains(key)) {
+            return false;
+        }
+        try {
+            cache.put(key, student, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        studentCount++;
+        return true;
+    }
+
+    /**
+     * Finds a student, reading it from disk into the cache if it is not cached.
+     */
+    @Override
+    public synchronized Student find(int key) {
+        Student student = cache.get(key);
+        if (student != null) {
+            return student;
+        }
+        try {
+            student = load(key);
+            if (student != null) {
+                cache.put(key, student, false);
+            }
+            return student;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checks whether a student is registered from the index and the snapshot, without reading
+     * the student into the cache.
+     */
+    @Override
+    public synchronized boolean contains(int key) {
+        if (cache.peek(key) != null) {
+            return true;
+        }
+        int position = recordsByKey.get(key);
+        if (position != IntIndexMap.MISSING) {
+            return position != DELETED;
+        }
+        return snapshot != null && snapshot.indexOf(key) >= 0;
+    }
+
+    @Override
+    public synchronized Student remove(int key) {
+        Student removed = find(key);
+        if (removed == null) {
+            return null;
+        }
+        cache.remove(key);
+        try {
+            begin(DELETE, key);
+            recordsByKey.put(key, DELETED);
+            writeRecord();
+            index.remove(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        studentCount--;
+        return removed;
+    }
+
+    @Override
+    public synchronized boolean rename(int key, String name) {
+        Student student = find(key);
+        if (student == null) {
+            return false;
+        }
+        Student updated = new Student(student.getId(), name);
+        if (student.getModule().getGrade() != null) {
+            updated.getModule().setModuleMarks(student.getModule().getModuleMarks());
+        }
+        publish(key, updated);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean setMarks(int key, int[] moduleMarks) {
+        Student student = find(key);
+        if (student == null) {
+            return false;
+        }
+        Student updated = new Student(student.getId(), student.getName());
+        updated.getModule().setModuleMarks(moduleMarks);
+        publish(key, updated);
+        return true;
+    }
+
+    /**
+     * Reads every registered student, writing the dirty students back first.
+     * The students come from the cache when they are cached and are read from disk otherwise,
+     * without being added to the cache.
+     */
+    @Override
+    public synchronized Student[] toArray() {
+        try {
+            flush();
+            List<Student> students = new ArrayList<>(studentCount);
+            if (snapshot != null) {
+                for (int index = 0; index < snapshot.size(); ++index) {
+                    int key = snapshot.key(index);
+                    if (!recordsByKey.containsKey(key)) {
+                        Student cached = cache.peek(key);
+                        students.add(cached != null ? cached : snapshot.student(index));
+                    }
+                }
+            }
+            long position = HEADERSIZE;
+            long end = delta.size();
+            while (position < end) {
+                int length = readRecord(position);
+                int key = record.getInt(1);
+                if (record.get(0) == PUT && recordsByKey.get(key) == position) {
+                    Student cached = cache.peek(key);
+                    students.add(cached != null ? cached : studentOf(record));
+                }
+                position += FRAMESIZE + length;
+            }
+            return students.toArray(new Student[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Iterates over the students in a range of IDs, reading only that range of the ID index.
+     * The dirty students are written back first, so the index is up to date, and the keys of the
+     * range are collected before returning, so later changes cannot disturb the index walk.
+     * Students removed while the iteration is in progress are skipped.
+     */
+    @Override
+    public synchronized Iterator<Student> studentsWithIdBetween(int fromKey, int toKey) {
+        flushForQuery();
+        return studentsOf(collect(index.keysWithIdBetween(fromKey, toKey)));
+    }
+
+    /**
+     * Iterates over the students in a band of averages, reading only that range of the average
+     * index. The dirty students are written back first, so the index is up to date, and the keys
+     * of the band are collected before returning, so later changes cannot disturb the index walk.
+     * Students removed while the iteration is in progress are skipped.
+     */
+    @Override
+    public synchronized Iterator<Student> studentsWithAverageBetween(double min, double max) {
+        flushForQuery();
+        return studentsOf(collect(index.keysWithAverageBetween(min, max)));
+    }
+
+    /**
+     * Retrieves the cache in front of the disk, for example to read its hit and miss counters.
+     * @return the student cache
+     */
+    public StudentCache cache() {
+        return cache;
+    }
+
+    /**
+     * Writes every dirty student in the cache to the delta file and forces the file to disk.
+     * @throws IOException if the delta file cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        cache.flush();
+        delta.force(false);
+    }
+
+    /**
+     * Folds the delta file into a fresh snapshot of the whole registry and empties the delta file.
+     * Writing the snapshot reads every student once.
+     * @return the number of students in the new snapshot
+     * @throws IOException if the snapshot cannot be written or the delta file cannot be reset
+     */
+    public synchronized int compact() throws IOException {
+        int written = StudentSnapshot.write(snapshotFile, this);
+        snapshot = StudentSnapshot.open(snapshotFile, false);
+        delta.truncate(0);
+        writeHeader();
+        delta.force(false);
+        recordsByKey.clear();
+        index.close();
+        index = StudentIndex.build(idIndexFile, averageIndexFile, snapshot, indexStamp());
+        return written;
+    }
+
+    /**
+     * Writes the dirty students back, stamps and closes the index and closes the delta file.
+     * @throws IOException if the delta file or the index cannot be written or closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+            index.close(indexStamp());
+        } finally {
+            delta.close();
+        }
+    }
+
+    /**
+     * Reads the latest state of a student from the delta file or the snapshot.
+     * @return a new Student, or null if the student is not registered
+     */
+    private Student load(int key) throws IOException {
+        int position = recordsByKey.get(key);
+        if (position == DELETED) {
+            return null;
+        }
+        if (position != IntIndexMap.MISSING) {
+            readRecord(position);
+            return studentOf(record);
+        }
+        return snapshot == null ? null : snapshot.find(key);
+    }
+
+    /**
+     * Appends the current state of a student to the delta file. Used by the cache to write back
+     * dirty students.
+     */
+    private void append(int key, Student student) throws IOException {
+        begin(PUT, key);
+        byte[] name = student.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > record.remaining() - Short.BYTES - MarkTable.MODULECOUNT - 1) {
+            throw new IOException("Name of student " + student.getId() + " is too long");
+        }
+        record.putShort((short) name.length);
+        record.put(name);
+        Module module = student.getModule();
+        record.put(MarkTable.gradeCodeOf(module.getGrade()));
+        for (int i = 0; i < MarkTable.MODULECOUNT; ++i) {
+            record.put((byte) module.getMark(i));
+        }
+        recordsByKey.put(key, writeRecord());
+        index.put(key, student);
+    }
+
+    private void begin(byte operation, int key) {
+        record.clear();
+        record.position(FRAMESIZE);
+        record.put(operation);
+        record.putInt(key);
+    }
+
+    /**
+     * Frames the record in the buffer and appends it to the delta file.
+     * @return the position the record was written at
+     */
+    private int writeRecord() throws IOException {
+        long position = delta.size();
+        int payloadLength = record.position() - FRAMESIZE;
+        if (position + FRAMESIZE + payloadLength > DELETED) {
+            throw new IOException("Delta file is full; compact the repository");
+        }
+        crc.reset();
+        crc.update(record.array(), FRAMESIZE, payloadLength);
+        record.putInt(0, payloadLength);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        for (long at = position; record.hasRemaining(); ) {
+            at += delta.write(record, at);
+        }
+        return (int) position;
+    }
+
+    /**
+     * Reads the record at a position into the buffer, positioned at its payload.
+     * @return the payload length, or -1 if the record is incomplete or fails its checksum
+     */
+    private int readRecord(long position) throws IOException {
+        record.clear().limit(FRAMESIZE);
+        if (readFully(position) < FRAMESIZE) {
+            return -1;
+        }
+        int payloadLength = record.getInt(0);
+        int checksum = record.getInt(4);
+        if (payloadLength < 5 || payloadLength > record.capacity()) {
+            return -1;
+        }
+        record.clear().limit(payloadLength);
+        if (readFully(position + FRAMESIZE) < payloadLength) {
+            return -1;
+        }
+        crc.reset();
+        crc.update(record.array(), 0, payloadLength);
+        if ((int) crc.getValue() != checksum) {
+            return -1;
+        }
+        record.flip();
+        return payloadLength;
+    }
+
+    private int readFully(long position) throws IOException {
+        int total = 0;
+        while (record.hasRemaining()) {
+            int read = delta.read(record, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static Student studentOf(ByteBuffer payload) {
+        int key = payload.getInt(1);
+        payload.position(5);
+        byte[] name = new byte[payload.getShort()];
+        payload.get(name);
+        Student student = new Student(StudentId.format(key), new String(name, StandardCharsets.UTF_8));
+        byte grade = payload.get();
+        int[] moduleMarks = new int[MarkTable.MODULECOUNT];
+        for (int i = 0; i < moduleMarks.length; ++i) {
+            moduleMarks[i] = payload.get();
+        }
+        if (grade != MarkTable.NOGRADE) {
+            student.getModule().setModuleMarks(moduleMarks);
+        }
+        return student;
+    }
+
+    /**
+     * Bulk-loads the index from the snapshot and applies the records of the delta file in order.
+     */
+    private void rebuildIndex() throws IOException {
+        index = StudentIndex.build(idIndexFile, averageIndexFile, snapshot, indexStamp());
+        long position = HEADERSIZE;
+        long end = delta.size();
+        while (position < end) {
+            int length = readRecord(position);
+            int key = record.getInt(1);
+            if (record.get(0) == PUT) {
+                index.put(key, studentOf(record));
+            } else {
+                index.remove(key);
+            }
+            position += FRAMESIZE + length;
+        }
+    }
+
+    /**
+     * Identifies the files the index matches by the snapshot checksum and the delta file length.
+     */
+    private long indexStamp() throws IOException {
+        int checksum = snapshot == null ? 0 : snapshot.checksum();
+        return ((long) checksum << 32) | delta.size();
+    }
+
+    /**
+     * Replaces the cached state of a student with an updated copy and marks it dirty.
+     * The student was just found, so it is cached and nothing is evicted.
+     */
+    private void publish(int key, Student updated) {
+        try {
+            cache.put(key, updated, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flushForQuery() {
+        try {
+            flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads every key of an index range into an array. Must be called with the monitor held.
+     */
+    private static int[] collect(PrimitiveIterator.OfInt keys) {
+        int[] collected = new int[16];
+        int count = 0;
+        while (keys.hasNext()) {
+            if (count == collected.length) {
+                collected = Arrays.copyOf(collected, count * 2);
+            }
+            collected[count++] = keys.nextInt();
+        }
+        return Arrays.copyOf(collected, count);
+    }
+
+    /**
+     * Reads the students of a sequence of keys, from the cache when they are cached and from
+     * disk otherwise, without adding them to the cache. Keys whose student has been removed
+     * meanwhile are skipped.
+     */
+    private Iterator<Student> studentsOf(int[] keys) {
+        return new Iterator<>() {
+            private int position;
+            private Student next;
+
+            @Override
+            public boolean hasNext() {
+                synchronized (DiskStudentRepository.this) {
+                    try {
+                        while (next == null && position < keys.length) {
+                            int key = keys[position++];
+                            Student cached = cache.peek(key);
+                            next = cached != null ? cached : load(key);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return next != null;
+                }
+            }
+
+            @Override
+            public Student next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Student student = next;
+                next = null;
+                return student;
+            }
+        };
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADERSIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) MarkTable.MODULECOUNT).flip();
+        while (header.hasRemaining()) {
+            delta.write(header, header.position());
+        }
+    }
+
+    /**
+     * Indexes every complete record of the delta file and counts the registered students.
+     * @return the file position just after the last complete record
+     */
+    private long replay() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADERSIZE);
+        delta.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADERSIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not a student delta file");
+        }
+        if (header.getShort() != VERSION || header.getShort() != MarkTable.MODULECOUNT) {
+            throw new IOException("Unsupported student delta file version");
+        }
+        long position = HEADERSIZE;
+        while (true) {
+            int length = readRecord(position);
+            if (length < 0) {
+                return position;
+            }
+            int key = record.getInt(1);
+            boolean wasRegistered = contains(key);
+            boolean isRegistered = record.get(0) == PUT;
+            recordsByKey.put(key, isRegistered ? (int) position : DELETED);
+            studentCount += (isRegistered ? 1 : 0) - (wasRegistered ? 1 : 0);
+            position += FRAMESIZE + length;
+        }
+    }
+}
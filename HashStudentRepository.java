@@ -0,0 +1,162 @@
+import java.util.Arrays;
+
+/**
+ * Stores students in a dense, growable array with a primitive hash index from student ID key
+ * to array slot. Lookups, inserts and deletes by ID all run in constant time. Deleting a student
+ * moves the last student into the freed slot instead of shifting the rest of the array.
+ * The marks of every registered student live in a shared MarkTable whose rows line up with the slots,
+ * and a Leaderboard listening to that table keeps the students ranked by average mark.
+ * SummaryStatistics listening to the same table keep the cohort statistics up to date.
+ * A NameIndex follows registrations, deletions and renames to keep the students ordered by name.
+ */
+public class HashStudentRepository implements StudentRepository {
+    private static final int INITIALSLOTS = 16;
+    private final int capacity;
+    private Student[] students;
+    private int studentCount;
+    private final IntIndexMap slotsByKey;
+    private final MarkTable markTable;
+    private final Leaderboard leaderboard;
+    private final SummaryStatistics statistics;
+    private final NameIndex nameIndex = new NameIndex();
+
+    /**
+     * Constructs a new empty repository with the specified capacity.
+     * Storage starts small and grows on demand up to the capacity.
+     * @param capacity the maximum number of students the repository can hold
+     */
+    public HashStudentRepository(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        int slots = Math.min(capacity, INITIALSLOTS);
+        this.capacity = capacity;
+        this.students = new Student[slots];
+        this.slotsByKey = new IntIndexMap(slots);
+        this.markTable = new MarkTable(slots);
+        this.leaderboard = new Leaderboard();
+        this.statistics = new SummaryStatistics();
+        markTable.addListener(leaderboard);
+        markTable.addListener(statistics);
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int size() {
+        return studentCount;
+    }
+
+    @Override
+    public boolean add(Student student) {
+        int key = StudentId.parse(student.getId());
+        if (key == StudentId.INVALID || studentCount >= capacity || slotsByKey.containsKey(key)) {
+            return false;
+        }
+        if (studentCount == students.length) {
+            grow();
+        }
+        int slot = studentCount++;
+        students[slot] = student;
+        slotsByKey.put(key, slot);
+        student.getModule().attach(markTable);
+        nameIndex.add(key, student.getName());
+        return true;
+    }
+
+    @Override
+    public Student find(int key) {
+        int slot = slotsByKey.get(key);
+        return slot == IntIndexMap.MISSING ? null : students[slot];
+    }
+
+    @Override
+    public boolean contains(int key) {
+        return slotsByKey.containsKey(key);
+    }
+
+    @Override
+    public Student remove(int key) {
+        int slot = slotsByKey.remove(key);
+        if (slot == IntIndexMap.MISSING) {
+            return null;
+        }
+        Student removed = students[slot];
+        nameIndex.remove(key, removed.getName());
+        removed.getModule().detach();
+        markTable.removeRow(slot);
+        int last = --studentCount;
+        if (slot != last) {
+            students[slot] = students[last];
+            students[slot].getModule().moveTo(slot);
+            slotsByKey.put(markTable.key(slot), slot);
+        }
+        students[last] = null;
+        return removed;
+    }
+
+    @Override
+    public boolean rename(int key, String name) {
+        int slot = slotsByKey.get(key);
+        if (slot == IntIndexMap.MISSING) {
+            return false;
+        }
+        Student student = students[slot];
+        nameIndex.rename(key, student.getName(), name);
+        student.setName(name);
+        return true;
+    }
+
+    @Override
+    public int setMarks(int[] keys, int[][] moduleMarks, int count, boolean[] applied) {
+        int[] rows = new int[count];
+        int[][] rowMarks = new int[count][];
+        int rowCount = 0;
+        for (int i = 0; i < count; ++i) {
+            int slot = slotsByKey.get(keys[i]);
+            applied[i] = slot != IntIndexMap.MISSING;
+            if (applied[i]) {
+                rows[rowCount] = slot;
+                rowMarks[rowCount++] = moduleMarks[i];
+            }
+        }
+        markTable.setMarks(rows, rowMarks, rowCount);
+        return rowCount;
+    }
+
+    @Override
+    public Student[] toArray() {
+        return Arrays.copyOf(students, studentCount);
+    }
+
+    @Override
+    public MarkTable markTable() {
+        return markTable;
+    }
+
+    @Override
+    public Leaderboard leaderboard() {
+        return leaderboard;
+    }
+
+    @Override
+    public SummaryStatistics statistics() {
+        return statistics;
+    }
+
+    @Override
+    public NameIndex nameIndex() {
+        return nameIndex;
+    }
+
+    /**
+     * Doubles the backing array, never exceeding the configured capacity.
+     */
+    private void grow() {
+        int newLength = (int) Math.min(capacity, Math.max(INITIALSLOTS, students.length * 2L));
+        students = Arrays.copyOf(students, newLength);
+    }
+}
@@ -0,0 +1,169 @@
+import java.util.Arrays;
+
+/**
+ * Maps non-negative int keys to int values using open addressing with linear probing.
+ * Keys and values live in two flat primitive arrays, so lookups never box or allocate.
+ * Removal uses backward-shift deletion, which keeps probe chains short without tombstones.
+ * A free slot holds the key -1, so negative keys are never stored: put rejects them, and
+ * get and remove report them as missing without probing.
+ */
+public class IntIndexMap {
+    /**
+     * The value returned by {@link #get(int)} and {@link #remove(int)} for a missing key.
+     */
+    public static final int MISSING = -1;
+    private static final int FREE = -1;
+    private static final int MINTABLESIZE = 16;
+    private static final float LOADFACTOR = 0.5f;
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    /**
+     * Constructs a new empty map sized for the expected number of keys.
+     * @param expectedSize the number of keys the map should hold without resizing
+     */
+    public IntIndexMap(int expectedSize) {
+        int tableSize = MINTABLESIZE;
+        while (tableSize * LOADFACTOR < expectedSize) {
+            tableSize <<= 1;
+        }
+        allocate(tableSize);
+    }
+
+    /**
+     * Retrieves the number of keys in the map.
+     * @return the number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the value mapped to the given key.
+     * @param key the key to look up
+     * @return the mapped value, or MISSING if the key is not in the map or is negative
+     */
+    public int get(int key) {
+        if (key < 0) {
+            return MISSING;
+        }
+        for (int i = slotOf(key); ; i = (i + 1) & mask) {
+            int k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == FREE) {
+                return MISSING;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the given key is in the map.
+     * @param key the key to look up
+     * @return true if the key is in the map, false otherwise
+     */
+    public boolean containsKey(int key) {
+        return get(key) != MISSING;
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any previous value.
+     * @param key the non-negative key
+     * @param value the value to store
+     * @return the previous value, or MISSING if the key was not in the map
+     */
+    public int put(int key, int value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Keys must not be negative: " + key);
+        }
+        int i = slotOf(key);
+        while (keys[i] != FREE) {
+            if (keys[i] == key) {
+                int previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Removes the given key from the map.
+     * @param key the key to remove
+     * @return the value that was mapped to the key, or MISSING if the key was not in the map or is negative
+     */
+    public int remove(int key) {
+        if (key < 0) {
+            return MISSING;
+        }
+        int i = slotOf(key);
+        while (keys[i] != key) {
+            if (keys[i] == FREE) {
+                return MISSING;
+            }
+            i = (i + 1) & mask;
+        }
+        int removed = values[i];
+        // Shift later entries of the probe chain back into the hole.
+        int hole = i;
+        for (int j = (hole + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+            int home = slotOf(keys[j]);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = FREE;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Removes every key from the map.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    private int slotOf(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void allocate(int tableSize) {
+        keys = new int[tableSize];
+        values = new int[tableSize];
+        Arrays.fill(keys, FREE);
+        mask = tableSize - 1;
+        resizeThreshold = (int) (tableSize * LOADFACTOR);
+    }
+
+    private void rehash(int tableSize) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(tableSize);
+        for (int i = 0; i < oldKeys.length; ++i) {
+            int key = oldKeys[i];
+            if (key != FREE) {
+                int j = slotOf(key);
+                while (keys[j] != FREE) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = key;
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,271 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Makes every mutation of a repository durable by writing it to a StudentJournal.
+ * Each change is written to the journal before it is applied, so a change that could not be
+ * journaled is never made: the mutation throws an UncheckedIOException and the repository is left
+ * as it was.
+ * On open, the last snapshot is loaded and the journal is replayed on top of it. After every
+ * compactEvery records, the whole repository is written to a fresh snapshot and the journal
+ * is emptied, so the cost of durability follows the number of changes rather than the cohort size.
+ * Replaying a journal over a snapshot that already contains some of its changes is safe, since
+ * every record sets the final state of one student.
+ * Mutations are serialised, so the journal records them in the order they were applied even when
+ * several threads share the repository; lookups go straight to the delegate.
+ */
+public class JournaledStudentRepository implements StudentRepository, Closeable {
+    private final StudentRepository delegate;
+    private final StudentJournal journal;
+    private final Path snapshotFile;
+    private final int compactEvery;
+
+    /**
+     * Restores a repository from a snapshot and a journal and starts journaling its mutations.
+     * @param delegate the empty repository to restore into and to journal
+     * @param journalFile the journal file, created if it does not exist
+     * @param snapshotFile the snapshot file used for compaction, loaded first if it exists
+     * @param syncEvery the number of records to append between forcing the journal to disk
+     * @param compactEvery the number of records after which the journal is compacted into a snapshot
+     * @throws IOException if the snapshot or the journal cannot be read
+     */
+    public JournaledStudentRepository(StudentRepository delegate, Path journalFile, Path snapshotFile,
+                                      int syncEvery, int compactEvery) throws IOException {
+        if (Files.exists(snapshotFile)) {
+            StudentSnapshot.open(snapshotFile, true).loadInto(delegate);
+        }
+        this.delegate = delegate;
+        this.journal = new StudentJournal(journalFile, syncEvery, delegate);
+        this.snapshotFile = snapshotFile;
+        this.compactEvery = Math.max(1, compactEvery);
+    }
+
+    @Override
+    public int capacity() {
+        return delegate.capacity();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public synchronized boolean add(Student student) {
+        int key = StudentId.parse(student.getId());
+        if (key == StudentId.INVALID || delegate.contains(key) || delegate.isFull()) {
+            return false;
+        }
+        try {
+            journal.logRegister(student);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!delegate.add(student)) {
+            try {
+                journal.logDelete(key);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return false;
+        }
+        compactIfNeeded();
+        return true;
+    }
+
+    @Override
+    public Student find(int key) {
+        return delegate.find(key);
+    }
+
+    @Override
+    public boolean contains(int key) {
+        return delegate.contains(key);
+    }
+
+    @Override
+    public synchronized Student remove(int key) {
+        if (!delegate.contains(key)) {
+            return null;
+        }
+        try {
+            journal.logDelete(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Student removed = delegate.remove(key);
+        compactIfNeeded();
+        return removed;
+    }
+
+    @Override
+    public synchronized boolean rename(int key, String name) {
+        if (!delegate.contains(key)) {
+            return false;
+        }
+        try {
+            journal.logRename(key, name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        delegate.rename(key, name);
+        compactIfNeeded();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean setMarks(int key, int[] moduleMarks) {
+        if (!delegate.contains(key)) {
+            return false;
+        }
+        MarkTable.checkMarks(moduleMarks);
+        try {
+            journal.logMarks(key, moduleMarks);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        delegate.setMarks(key, moduleMarks);
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Sets the marks of many students, journaling the batch as a group that is forced to disk once
+     * before any of it is applied.
+     */
+    @Override
+    public synchronized int setMarks(int[] keys, int[][] moduleMarks, int count, boolean[] applied) {
+        for (int i = 0; i < count; ++i) {
+            applied[i] = delegate.contains(keys[i]);
+            if (applied[i]) {
+                MarkTable.checkMarks(moduleMarks[i]);
+            }
+        }
+        try {
+            journal.logMarks(keys, moduleMarks, count, applied);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int appliedCount = delegate.setMarks(keys, moduleMarks, count, applied);
+        compactIfNeeded();
+        return appliedCount;
+    }
+
+    @Override
+    public Student[] toArray() {
+        return delegate.toArray();
+    }
+
+    @Override
+    public MarkTable markTable() {
+        return delegate.markTable();
+    }
+
+    @Override
+    public Leaderboard leaderboard() {
+        return delegate.leaderboard();
+    }
+
+    @Override
+    public SummaryStatistics statistics() {
+        return delegate.statistics();
+    }
+
+    @Override
+    public SummaryStatistics.Verification verifyStatistics() {
+        return delegate.verifyStatistics();
+    }
+
+    @Override
+    public NameIndex nameIndex() {
+        return delegate.nameIndex();
+    }
+
+    @Override
+    public SummaryEngine.CohortSummary summary() {
+        return delegate.summary();
+    }
+
+    @Override
+    public Iterator<Student> studentsByAverage(int fromRank) {
+        return delegate.studentsByAverage(fromRank);
+    }
+
+    @Override
+    public Iterator<Student> studentsByName(int fromRank) {
+        return delegate.studentsByName(fromRank);
+    }
+
+    @Override
+    public Iterator<Student> studentsWithIdBetween(int fromKey, int toKey) {
+        return delegate.studentsWithIdBetween(fromKey, toKey);
+    }
+
+    @Override
+    public Iterator<Student> studentsWithAverageBetween(double min, double max) {
+        return delegate.studentsWithAverageBetween(min, max);
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        return delegate.snapshot();
+    }
+
+    @Override
+    public <T extends StudentRepository> T unwrap(Class<T> type) {
+        T unwrapped = StudentRepository.super.unwrap(type);
+        return unwrapped != null ? unwrapped : delegate.unwrap(type);
+    }
+
+    /**
+     * Writes the whole repository to the snapshot file and empties the journal.
+     * A disk-backed delegate already keeps its students in a snapshot of its own, so its
+     * delta file is folded into that snapshot instead.
+     * @throws IOException if the snapshot cannot be written or the journal cannot be reset
+     */
+    public synchronized void compact() throws IOException {
+        journal.sync();
+        DiskStudentRepository disk = delegate.unwrap(DiskStudentRepository.class);
+        if (disk != null) {
+            disk.compact();
+        } else {
+            StudentSnapshot.write(snapshotFile, delegate);
+        }
+        journal.reset();
+    }
+
+    /**
+     * Forces the remaining journal records to disk and closes the journal, then closes the
+     * delegate if it holds resources of its own, such as the files of a disk-backed repository.
+     * @throws IOException if the journal or the delegate cannot be synced or closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            journal.close();
+        } finally {
+            if (delegate instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    /**
+     * Compacts the journal once it holds compactEvery records. The change that triggered it is
+     * already applied and journaled, so a failed compaction leaves the journal as it is and is
+     * tried again after the next change.
+     */
+    private void compactIfNeeded() {
+        if (journal.recordCount() >= compactEvery) {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.err.println("Could not compact the journal: " + e.getMessage());
+            }
+        }
+    }
+}
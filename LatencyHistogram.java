@@ -0,0 +1,121 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records durations in nanoseconds into a fixed set of buckets, in the style of an HDR histogram.
+ * Each power of two is split into SUBBUCKETS equal buckets, so every bucket is at most 1/16 of
+ * its values wide: a percentile read from the histogram is within about 6% of the true value,
+ * from nanoseconds up to years, with a fixed 960 buckets. Recording a value is a bucket index
+ * computed with a few shifts and one atomic increment, with no allocation and no lock, so many
+ * threads can record into the same histogram.
+ */
+public class LatencyHistogram {
+    private static final int SUBBUCKETBITS = 4;
+    private static final int SUBBUCKETS = 1 << SUBBUCKETBITS;
+    private static final int BUCKETCOUNT = (Long.SIZE - SUBBUCKETBITS) * SUBBUCKETS;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETCOUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one duration.
+     * @param nanos the duration in nanoseconds; negative durations are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Retrieves the number of recorded durations.
+     * @return the number of durations
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Retrieves the longest recorded duration.
+     * @return the longest duration in nanoseconds, or 0 if none was recorded
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Calculates the mean of the recorded durations.
+     * @return the mean duration in nanoseconds, or 0 if none was recorded
+     */
+    public double mean() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : sum.sum() / (double) recorded;
+    }
+
+    /**
+     * Finds a percentile of the recorded durations with the nearest-rank method.
+     * @param percent the percentile, from 0 to 100
+     * @return the upper bound of the bucket holding the percentile, never above the longest duration,
+     *         or 0 if none was recorded
+     */
+    public long percentile(double percent) {
+        long recorded = 0;
+        long[] snapshot = new long[BUCKETCOUNT];
+        for (int bucket = 0; bucket < BUCKETCOUNT; ++bucket) {
+            snapshot[bucket] = counts.get(bucket);
+            recorded += snapshot[bucket];
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * recorded));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETCOUNT; ++bucket) {
+            seen += snapshot[bucket];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(bucket), max());
+            }
+        }
+        return max();
+    }
+
+    /**
+     * Clears every recorded duration.
+     * Durations recorded while the histogram is being cleared may be partly kept.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKETCOUNT; ++bucket) {
+            counts.set(bucket, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Finds the bucket of a value. Values below SUBBUCKETS get a bucket each; above that, the
+     * position of the highest set bit picks the power of two and the next SUBBUCKETBITS bits
+     * pick the bucket within it.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUBBUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUBBUCKETBITS)) & (SUBBUCKETS - 1);
+        return (exponent - SUBBUCKETBITS + 1) * SUBBUCKETS + subBucket;
+    }
+
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUBBUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUBBUCKETS - 1;
+        long lowest = (long) (SUBBUCKETS + bucket % SUBBUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
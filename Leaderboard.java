@@ -0,0 +1,395 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Keeps students ordered by average mark, highest first, as an order-statistics tree.
+ * Entries are keyed on (credit-weighted total, student ID), with equal averages ordered by
+ * ascending ID; the average is a non-decreasing function of the credit-weighted total.
+ * The tree is a treap whose nodes also count the size of their subtree, so inserts,
+ * removals, rank lookups and selection by rank all run in O(log n). Registered as a
+ * MarkTable listener, it follows registrations, deletions and mark updates as they happen.
+ */
+public class Leaderboard implements MarkTable.Listener {
+    private static final int MAXTOTAL = MarkTable.MAXWEIGHTEDTOTAL;
+    private IntIndexMap totalsByKey = new IntIndexMap(16);
+    private Node root;
+    private int seed = 0x2545F491;
+    private Node splitLeft;
+    private Node splitRight;
+
+    private static final class Node {
+        final long entry;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(long entry, int priority) {
+            this.entry = entry;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Retrieves the number of students on the leaderboard.
+     * @return the number of students
+     */
+    public int size() {
+        return totalsByKey.size();
+    }
+
+    /**
+     * Adds a student to the leaderboard, replacing any previous entry for the same student.
+     * @param key the student ID key
+     * @param total the student's credit-weighted total, from 0 to MarkTable.MAXWEIGHTEDTOTAL
+     */
+    public void add(int key, int total) {
+        if (total < 0 || total > MAXTOTAL) {
+            throw new IllegalArgumentException("Total out of range: " + total);
+        }
+        int previousTotal = totalsByKey.put(key, total);
+        if (previousTotal != IntIndexMap.MISSING) {
+            root = delete(root, entryOf(previousTotal, key));
+        }
+        root = insert(root, new Node(entryOf(total, key), nextPriority()));
+    }
+
+    /**
+     * Removes a student from the leaderboard.
+     * @param key the student ID key
+     * @return true if the student was on the leaderboard, false otherwise
+     */
+    public boolean remove(int key) {
+        int total = totalsByKey.remove(key);
+        if (total == IntIndexMap.MISSING) {
+            return false;
+        }
+        root = delete(root, entryOf(total, key));
+        return true;
+    }
+
+    /**
+     * Finds the rank of a student.
+     * @param key the student ID key
+     * @return the zero-based rank, 0 being the highest average, or -1 if the student is not on the leaderboard
+     */
+    public int rankOf(int key) {
+        int total = totalsByKey.get(key);
+        return total == IntIndexMap.MISSING ? -1 : countBefore(entryOf(total, key));
+    }
+
+    /**
+     * Retrieves the student at the given rank.
+     * @param rank the zero-based rank, 0 being the highest average
+     * @return the student ID key at that rank
+     */
+    public int keyAt(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " out of " + size());
+        }
+        Node node = root;
+        while (true) {
+            int leftSize = sizeOf(node.left);
+            if (rank < leftSize) {
+                node = node.left;
+            } else if (rank == leftSize) {
+                return keyOf(node.entry);
+            } else {
+                rank -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the students whose average mark lies in the given range.
+     * The band of averages is turned into a band of weighted totals by a binary search, and its
+     * size into two rank lookups, so only the students in the band are visited: the query runs
+     * in O(log n + k) for k students in the range.
+     * @param low the lowest average to include
+     * @param high the highest average to include
+     * @return the student ID keys in the range, highest average first
+     */
+    public int[] inAverageRange(double low, double high) {
+        int lowestTotal = MarkTable.firstWeightedTotalAbove(low, false);
+        int highestTotal = MarkTable.firstWeightedTotalAbove(high, true) - 1;
+        if (lowestTotal > highestTotal) {
+            return new int[0];
+        }
+        long from = entryOf(highestTotal, 0);
+        long end = entryOf(lowestTotal - 1, 0);
+        int[] keys = new int[countBefore(end) - countBefore(from)];
+        collect(root, from, end - 1, keys, new int[1]);
+        return keys;
+    }
+
+    /**
+     * Visits every student on the leaderboard, highest average first.
+     * @param action the action to run for each student ID key
+     */
+    public void forEach(IntConsumer action) {
+        visit(root, action);
+    }
+
+    /**
+     * Iterates over the students on the leaderboard, highest average first, without copying them out.
+     * The leaderboard must not be modified while the iteration is in progress.
+     * @return an iterator over the student ID keys
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Iterates over the students on the leaderboard from a given rank, highest average first.
+     * Reaching the starting rank takes O(log n), so a page deep into the ranking costs no more
+     * than the first one. The leaderboard must not be modified while the iteration is in progress.
+     * @param fromRank the zero-based rank of the first student to return
+     * @return an iterator over the student ID keys
+     */
+    public PrimitiveIterator.OfInt iterator(int fromRank) {
+        return new PrimitiveIterator.OfInt() {
+            private final ArrayDeque<Node> path = new ArrayDeque<>();
+
+            {
+                int rank = fromRank;
+                for (Node node = root; node != null; ) {
+                    int leftSize = sizeOf(node.left);
+                    if (rank <= leftSize) {
+                        path.push(node);
+                        node = node.left;
+                    } else {
+                        rank -= leftSize + 1;
+                        node = node.right;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public int nextInt() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = path.pop();
+                descendLeft(node.right);
+                return keyOf(node.entry);
+            }
+
+            private void descendLeft(Node node) {
+                for (; node != null; node = node.left) {
+                    path.push(node);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void rowAdded(MarkTable table, int row) {
+        add(table.key(row), table.weightedTotal(row));
+    }
+
+    @Override
+    public void rowRemoved(MarkTable table, int row) {
+        remove(table.key(row));
+    }
+
+    @Override
+    public void tableRewritten(MarkTable table) {
+        rebuild(table);
+    }
+
+    /**
+     * Replaces the contents of the leaderboard with every row of a mark table.
+     * The entries are sorted once and the tree is built from them in linear time,
+     * which is much faster than inserting them one by one.
+     * @param table the table whose rows to rank
+     */
+    public void rebuild(MarkTable table) {
+        int rowCount = table.rowCount();
+        IntIndexMap totals = new IntIndexMap(Math.max(16, rowCount));
+        long[] entries = new long[rowCount];
+        for (int row = 0; row < rowCount; ++row) {
+            int key = table.key(row);
+            int total = table.weightedTotal(row);
+            totals.put(key, total);
+            entries[row] = entryOf(total, key);
+        }
+        Arrays.sort(entries);
+        totalsByKey = totals;
+        root = build(entries);
+    }
+
+    /**
+     * Builds a treap from sorted entries with a stack, giving every node a fresh random priority.
+     * Each new node becomes the right child of the last node on the stack with a higher priority
+     * and takes the popped nodes as its left subtree.
+     */
+    private Node build(long[] entries) {
+        Node[] stack = new Node[Math.max(1, entries.length)];
+        int depth = 0;
+        for (long entry : entries) {
+            Node node = new Node(entry, nextPriority());
+            Node last = null;
+            while (depth > 0 && stack[depth - 1].priority < node.priority) {
+                last = stack[--depth];
+            }
+            node.left = last;
+            if (depth > 0) {
+                stack[depth - 1].right = node;
+            }
+            stack[depth++] = node;
+        }
+        Node tree = depth == 0 ? null : stack[0];
+        updateSizes(tree);
+        return tree;
+    }
+
+    private static int updateSizes(Node node) {
+        if (node == null) {
+            return 0;
+        }
+        node.size = 1 + updateSizes(node.left) + updateSizes(node.right);
+        return node.size;
+    }
+
+    private static long entryOf(int total, int key) {
+        return ((long) (MAXTOTAL - total) << 32) | (key & 0xFFFFFFFFL);
+    }
+
+    private static int keyOf(long entry) {
+        return (int) entry;
+    }
+
+    private static int sizeOf(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + sizeOf(node.left) + sizeOf(node.right);
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private int countBefore(long entry) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.entry < entry) {
+                count += sizeOf(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    private Node insert(Node tree, Node node) {
+        if (tree == null) {
+            return node;
+        }
+        if (node.priority > tree.priority) {
+            split(tree, node.entry);
+            node.left = splitLeft;
+            node.right = splitRight;
+            update(node);
+            return node;
+        }
+        if (node.entry < tree.entry) {
+            tree.left = insert(tree.left, node);
+        } else {
+            tree.right = insert(tree.right, node);
+        }
+        update(tree);
+        return tree;
+    }
+
+    private Node delete(Node tree, long entry) {
+        if (tree == null) {
+            return null;
+        }
+        if (tree.entry == entry) {
+            return merge(tree.left, tree.right);
+        }
+        if (entry < tree.entry) {
+            tree.left = delete(tree.left, entry);
+        } else {
+            tree.right = delete(tree.right, entry);
+        }
+        update(tree);
+        return tree;
+    }
+
+    /**
+     * Splits a tree into the entries below the given entry (splitLeft) and the rest (splitRight).
+     */
+    private void split(Node tree, long entry) {
+        if (tree == null) {
+            splitLeft = null;
+            splitRight = null;
+        } else if (tree.entry < entry) {
+            split(tree.right, entry);
+            tree.right = splitLeft;
+            update(tree);
+            splitLeft = tree;
+        } else {
+            split(tree.left, entry);
+            tree.left = splitRight;
+            update(tree);
+            splitRight = tree;
+        }
+    }
+
+    private Node merge(Node lower, Node upper) {
+        if (lower == null) {
+            return upper;
+        }
+        if (upper == null) {
+            return lower;
+        }
+        if (lower.priority > upper.priority) {
+            lower.right = merge(lower.right, upper);
+            update(lower);
+            return lower;
+        }
+        upper.left = merge(lower, upper.left);
+        update(upper);
+        return upper;
+    }
+
+    private void collect(Node node, long from, long to, int[] keys, int[] count) {
+        if (node == null || count[0] == keys.length) {
+            return;
+        }
+        if (node.entry > from) {
+            collect(node.left, from, to, keys, count);
+        }
+        if (node.entry >= from && node.entry <= to && count[0] < keys.length) {
+            keys[count[0]++] = keyOf(node.entry);
+        }
+        if (node.entry < to) {
+            collect(node.right, from, to, keys, count);
+        }
+    }
+
+    private void visit(Node node, IntConsumer action) {
+        if (node != null) {
+            visit(node.left, action);
+            action.accept(keyOf(node.entry));
+            visit(node.right, action);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Imports module marks in bulk from a CSV mark sheet with one "id,module1,...,moduleN" row per line,
+ * one mark for every module of the catalogue.
+ * An optional header row starting with "id" is skipped, as are blank lines. Every row is validated
+ * like marks entered at the menu: the ID must be a valid student ID and each mark a whole number
+ * from 0 to 100. Rows that fail validation, or name a student who is not registered, are skipped
+ * and listed in the report with their line numbers.
+ * The file is read in large chunks. Each chunk is parsed into a batch, and every batch is applied
+ * to the repository with a single call, so the grades and indexes are brought up to date once per
+ * batch. With a parallelism above one, chunks are parsed on several threads at the same time while
+ * earlier batches are being applied; batches are still applied one at a time and in file order,
+ * so a student listed twice ends up with the marks of the later row. Each batch is kept once it
+ * is applied: if the repository cannot save a batch, the import stops there, and the result
+ * holds the counts of the batches before it and the lines of the batch that failed.
+ */
+public final class MarkImporter {
+    private static final int CHUNKSIZE = 1 << 20;
+    private static final byte[] HEADERLABEL = "id".getBytes(StandardCharsets.US_ASCII);
+
+    private final StudentRepository repository;
+    private final List<Problem> problems = new ArrayList<>();
+    private int lineBase;
+    private int applied;
+    private int notFound;
+    private int invalid;
+    private Failure failure;
+
+    private MarkImporter(StudentRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Represents the outcome of an import.
+     * @param applied the number of rows whose marks were set
+     * @param notFound the number of rows skipped because no student has the ID
+     * @param invalid the number of rows skipped because the ID or the marks are not valid
+     * @param problems one description per skipped row, with its line number, in file order
+     * @param failure the batch the repository could not save, or null if every row was imported;
+     *        the counts and problems cover only the rows before it
+     */
+    public record Result(int applied, int notFound, int invalid, List<String> problems, Failure failure) {
+
+        /**
+         * Writes the description of every skipped row to a text file, one per line.
+         * @param file the report file to write
+         * @throws IOException if the file cannot be written
+         */
+        public void writeReport(Path file) throws IOException {
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (String problem : problems) {
+                    writer.write(problem);
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /**
+     * A batch the repository could not save, which stopped the import. Its rows may have been
+     * applied in part, depending on the repository, and the rows after it were not read.
+     * @param fromLine the first line of the batch
+     * @param toLine the last line of the batch
+     * @param cause the error that stopped the repository from saving the batch
+     */
+    public record Failure(int fromLine, int toLine, IOException cause) {
+    }
+
+    /**
+     * A skipped row: its line number, relative to its batch until the batch is applied.
+     */
+    private record Problem(int line, String reason) {
+    }
+
+    /**
+     * The valid rows of one chunk of the file, ready to be applied, and the rows that failed validation.
+     */
+    private static final class Batch {
+        private int[] keys = new int[1024];
+        private int[][] moduleMarks = new int[1024][];
+        private int[] lines = new int[1024];
+        private int count;
+        private int lineCount;
+        private final List<Problem> problems = new ArrayList<>();
+
+        private void add(int key, int[] marks, int line) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                moduleMarks = Arrays.copyOf(moduleMarks, count * 2);
+                lines = Arrays.copyOf(lines, count * 2);
+            }
+            keys[count] = key;
+            moduleMarks[count] = marks;
+            lines[count++] = line;
+        }
+    }
+
+    /**
+     * Imports every row of a mark sheet into the repository.
+     * This method performs the following steps:
+     * 1. Reads the file in chunks that end on a line break.
+     * 2. Parses and validates each chunk into a batch, on up to parallelism threads at a time.
+     * 3. Applies the batches to the repository in file order, one call per batch, and stops at
+     *    the first batch the repository cannot save.
+     * 4. Collects the skipped rows into the report, in file order.
+     * The repository is only touched from the calling thread.
+     * @param file the CSV mark sheet to read
+     * @param repository the repository holding the students whose marks are set
+     * @param parallelism the number of threads that parse chunks; 1 parses on the calling thread
+     * @return the outcome of the import, with the batch that stopped it if the repository could not save one
+     * @throws IOException if the file cannot be read; the batches read before the error stay applied
+     */
+    public static Result importMarks(Path file, StudentRepository repository, int parallelism) throws IOException {
+        MarkImporter importer = new MarkImporter(repository);
+        if (parallelism <= 1) {
+            importer.readChunks(file, null, 0);
+        } else {
+            ExecutorService parsers = Executors.newFixedThreadPool(parallelism, task -> {
+                Thread thread = new Thread(task, "sms-mark-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                importer.readChunks(file, parsers, parallelism * 2);
+            } finally {
+                parsers.shutdownNow();
+            }
+        }
+        List<String> report = new ArrayList<>(importer.problems.size());
+        for (Problem problem : importer.problems) {
+            report.add("Line " + problem.line() + ": " + problem.reason());
+        }
+        return new Result(importer.applied, importer.notFound, importer.invalid, Collections.unmodifiableList(report),
+                importer.failure);
+    }
+
+    private void readChunks(Path file, ExecutorService parsers, int maxPending) throws IOException {
+        ArrayDeque<Future<Batch>> pending = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNKSIZE);
+            boolean firstChunk = true;
+            boolean endOfFile = false;
+            while (!endOfFile && failure == null) {
+                endOfFile = channel.read(buffer) < 0;
+                byte[] bytes = buffer.array();
+                int limit = buffer.position();
+                int chunkEnd = endOfFile ? limit : lastLineEnd(bytes, limit);
+                if (chunkEnd < 0) {
+                    if (limit == bytes.length) {
+                        // The line does not fit in the buffer: grow it and keep reading.
+                        buffer = ByteBuffer.allocate(bytes.length * 2).put(bytes, 0, limit);
+                    }
+                    continue;
+                }
+                byte[] chunk = Arrays.copyOf(bytes, chunkEnd);
+                boolean skipHeader = firstChunk;
+                firstChunk = false;
+                if (parsers == null) {
+                    apply(parse(chunk, skipHeader));
+                } else {
+                    pending.add(parsers.submit(() -> parse(chunk, skipHeader)));
+                    if (pending.size() >= maxPending) {
+                        apply(await(pending.poll()));
+                    }
+                }
+                System.arraycopy(bytes, chunkEnd, bytes, 0, limit - chunkEnd);
+                buffer.position(limit - chunkEnd);
+            }
+            while (!pending.isEmpty() && failure == null) {
+                apply(await(pending.poll()));
+            }
+        } finally {
+            for (Future<Batch> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Sets the marks of the valid rows of a batch with one repository call and records the skipped
+     * rows. If the repository cannot save the batch, records the failure instead, which stops the import.
+     */
+    private void apply(Batch batch) {
+        if (failure != null) {
+            return;
+        }
+        boolean[] updated = new boolean[batch.count];
+        if (batch.count > 0) {
+            try {
+                applied += repository.setMarks(batch.keys, batch.moduleMarks, batch.count, updated);
+            } catch (UncheckedIOException e) {
+                failure = new Failure(lineBase + 1, lineBase + batch.lineCount, e.getCause());
+                return;
+            }
+        }
+        List<Problem> batchProblems = new ArrayList<>(batch.problems);
+        invalid += batch.problems.size();
+        if (batch.count > 0) {
+            for (int i = 0; i < batch.count; ++i) {
+                if (!updated[i]) {
+                    notFound++;
+                    batchProblems.add(new Problem(batch.lines[i],
+                            "student " + StudentId.format(batch.keys[i]) + " is not registered"));
+                }
+            }
+            batchProblems.sort(Comparator.comparingInt(Problem::line));
+        }
+        for (Problem problem : batchProblems) {
+            problems.add(new Problem(lineBase + problem.line(), problem.reason()));
+        }
+        lineBase += batch.lineCount;
+    }
+
+    private static Batch await(Future<Batch> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing marks", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IOException("Failed to parse marks", e.getCause());
+        }
+    }
+
+    /**
+     * Parses every line of a chunk. Line numbers in the batch start at 1 for the first line of the chunk.
+     */
+    private static Batch parse(byte[] bytes, boolean skipHeader) {
+        Batch batch = new Batch();
+        int lineStart = 0;
+        for (int i = 0; i <= bytes.length; ++i) {
+            if (i == bytes.length || bytes[i] == '\n') {
+                if (i > lineStart || i < bytes.length) {
+                    batch.lineCount++;
+                    parseLine(bytes, lineStart, i, batch, skipHeader && batch.lineCount == 1);
+                }
+                lineStart = i + 1;
+            }
+        }
+        return batch;
+    }
+
+    private static void parseLine(byte[] bytes, int start, int end, Batch batch, boolean mayBeHeader) {
+        int line = batch.lineCount;
+        start = skipSpaces(bytes, start, end);
+        while (end > start && (bytes[end - 1] == '\r' || bytes[end - 1] == ' ' || bytes[end - 1] == '\t')) {
+            end--;
+        }
+        if (start == end || (mayBeHeader && startsWithIgnoreCase(bytes, start, end, HEADERLABEL))) {
+            return;
+        }
+        int fieldEnd = fieldEnd(bytes, start, end);
+        int key = parseId(bytes, start, trimEnd(bytes, start, fieldEnd));
+        if (key == StudentId.INVALID) {
+            batch.problems.add(new Problem(line, "invalid student ID"));
+            return;
+        }
+        int[] marks = new int[MarkTable.MODULECOUNT];
+        int pos = fieldEnd;
+        for (int module = 0; module < marks.length; ++module) {
+            if (pos >= end) {
+                batch.problems.add(new Problem(line, "missing marks for module " + (module + 1)));
+                return;
+            }
+            int markStart = skipSpaces(bytes, pos + 1, end);
+            pos = fieldEnd(bytes, markStart, end);
+            int mark = parseMark(bytes, markStart, trimEnd(bytes, markStart, pos));
+            if (mark == Integer.MIN_VALUE) {
+                batch.problems.add(new Problem(line, "marks for module " + (module + 1) + " are not a whole number"));
+                return;
+            }
+            if (!StudentService.isValidMark(mark)) {
+                batch.problems.add(new Problem(line, "marks for module " + (module + 1) + " out of range"));
+                return;
+            }
+            marks[module] = mark;
+        }
+        if (pos < end) {
+            batch.problems.add(new Problem(line, "expected " + MarkTable.MODULECOUNT + " marks but found more"));
+            return;
+        }
+        batch.add(key, marks, line);
+    }
+
+    private static int parseId(byte[] bytes, int start, int end) {
+        if (end - start != 8 || bytes[start] != 'w') {
+            return StudentId.INVALID;
+        }
+        int key = 0;
+        for (int i = start + 1; i < end; ++i) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return StudentId.INVALID;
+            }
+            key = key * 10 + digit;
+        }
+        return key;
+    }
+
+    /**
+     * Parses an optionally signed whole number of up to 9 digits.
+     * @return the number, or Integer.MIN_VALUE if the field is not a whole number
+     */
+    private static int parseMark(byte[] bytes, int start, int end) {
+        boolean negative = start < end && bytes[start] == '-';
+        int pos = negative ? start + 1 : start;
+        if (pos == end || end - pos > 9) {
+            return Integer.MIN_VALUE;
+        }
+        int mark = 0;
+        for (; pos < end; ++pos) {
+            int digit = bytes[pos] - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.MIN_VALUE;
+            }
+            mark = mark * 10 + digit;
+        }
+        return negative ? -mark : mark;
+    }
+
+    private static int fieldEnd(byte[] bytes, int pos, int end) {
+        while (pos < end && bytes[pos] != ',') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipSpaces(byte[] bytes, int pos, int end) {
+        while (pos < end && (bytes[pos] == ' ' || bytes[pos] == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int trimEnd(byte[] bytes, int start, int end) {
+        while (end > start && (bytes[end - 1] == ' ' || bytes[end - 1] == '\t')) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean startsWithIgnoreCase(byte[] bytes, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; ++i) {
+            if ((bytes[start + i] | 0x20) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lastLineEnd(byte[] bytes, int limit) {
+        for (int i = limit - 1; i >= 0; --i) {
+            if (bytes[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+}
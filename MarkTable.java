@@ -0,0 +1,532 @@
+import java.util.Arrays;
+
+/**
+ * Stores module marks and grades for many students in a columnar layout.
+ * The modules are those of the active ModuleCatalogue. Each module has its own contiguous
+ * column holding one byte per mark, grades are kept as byte codes and the student ID key of
+ * every row is kept alongside, so cohort-wide scans run as tight loops over primitive arrays
+ * instead of chasing Module objects, and a student with twelve modules takes a few dozen bytes.
+ * The total and the credit-weighted total of every row are stored in their own columns as well,
+ * and are kept in step with the marks and the grade by setMarks, the only way to change the marks
+ * of a row. Reading a total, an average or a grade therefore never recomputes anything.
+ * Listeners are told about every row that is added, removed or changed, so indexes
+ * over the marks can be kept up to date incrementally. Large batches of mark updates
+ * are reported once for the whole table instead.
+ */
+public class MarkTable {
+    /**
+     * The number of modules each student takes, as configured in the active ModuleCatalogue.
+     */
+    public static final int MODULECOUNT = ModuleCatalogue.active().size();
+    /**
+     * The highest mark of a module.
+     */
+    public static final int MAXMARK = 100;
+    /**
+     * The highest credit-weighted total: every module at MAXMARK, times its credits.
+     */
+    public static final int MAXWEIGHTEDTOTAL = MAXMARK * ModuleCatalogue.active().totalCredits();
+    /**
+     * The grade code of a row whose marks have not been set yet.
+     */
+    public static final byte NOGRADE = 0;
+    public static final byte FAIL = 1;
+    public static final byte PASS = 2;
+    public static final byte MERIT = 3;
+    public static final byte DISTINCTION = 4;
+    private static final String[] GRADENAMES = {null, "Fail", "Pass", "Merit", "Distinction"};
+    private static final int[] CREDITS = new int[MODULECOUNT];
+    private static final double[] AVERAGES = new double[MAXWEIGHTEDTOTAL + 1];
+    private static final byte[] MARKGRADES = new byte[MAXMARK + 1];
+    private static final int MINROWS = 1;
+    private static final int BULKFRACTION = 8;
+    private int[] keys;
+    private final byte[][] marks;
+    private int[] totals;
+    private int[] weightedTotals;
+    private byte[] grades;
+    private int rowCount;
+    private Listener[] listeners = new Listener[0];
+
+    static {
+        for (int module = 0; module < MODULECOUNT; ++module) {
+            CREDITS[module] = ModuleCatalogue.active().credits(module);
+        }
+        int totalCredits = ModuleCatalogue.active().totalCredits();
+        for (int weightedTotal = 0; weightedTotal < AVERAGES.length; ++weightedTotal) {
+            double markAverage = weightedTotal / (double) totalCredits;
+            AVERAGES[weightedTotal] = Math.ceil(markAverage * 100) / 100.0;
+        }
+        for (int mark = 0; mark <= MAXMARK; ++mark) {
+            MARKGRADES[mark] = gradeOf(mark);
+        }
+    }
+
+    /**
+     * Receives notifications about the contents of the rows of a MarkTable.
+     * A change to the marks or grade of a row is reported as the removal of the old
+     * contents followed by the addition of the new contents. Moving a row to another
+     * index is not reported.
+     */
+    public interface Listener {
+        /**
+         * Called after a row has been added or its new contents have been written.
+         * @param table the table holding the row
+         * @param row the index of the row
+         */
+        void rowAdded(MarkTable table, int row);
+
+        /**
+         * Called before a row is removed or its contents are overwritten.
+         * @param table the table holding the row
+         * @param row the index of the row
+         */
+        void rowRemoved(MarkTable table, int row);
+
+        /**
+         * Called after the marks and grades of many rows were rewritten at once without
+         * reporting each row. The listener should rebuild its state from the whole table.
+         * @param table the table whose rows were rewritten
+         */
+        void tableRewritten(MarkTable table);
+    }
+
+    /**
+     * Constructs a new empty table with room for the specified number of rows.
+     * The table grows on demand when more rows are added.
+     * @param initialRows the number of rows to allocate up front
+     */
+    public MarkTable(int initialRows) {
+        int rows = Math.max(MINROWS, initialRows);
+        this.keys = new int[rows];
+        this.marks = new byte[MODULECOUNT][rows];
+        this.totals = new int[rows];
+        this.weightedTotals = new int[rows];
+        this.grades = new byte[rows];
+    }
+
+    /**
+     * Registers a listener to be told about every later change to the rows of this table.
+     * @param listener the listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners = Arrays.copyOf(listeners, listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+    }
+
+    /**
+     * Retrieves the number of rows in the table.
+     * @return the number of rows
+     */
+    public int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Appends a row with zero marks and no grade.
+     * @param key the student ID key the row belongs to
+     * @return the index of the new row
+     */
+    public int addRow(int key) {
+        if (rowCount == keys.length) {
+            grow();
+        }
+        int row = rowCount++;
+        keys[row] = key;
+        for (byte[] column : marks) {
+            column[row] = 0;
+        }
+        totals[row] = 0;
+        weightedTotals[row] = 0;
+        grades[row] = NOGRADE;
+        fireRowAdded(row);
+        return row;
+    }
+
+    /**
+     * Appends a copy of a row of another table.
+     * @param source the table to copy from
+     * @param sourceRow the row to copy
+     * @return the index of the new row
+     */
+    public int insertRow(MarkTable source, int sourceRow) {
+        if (rowCount == keys.length) {
+            grow();
+        }
+        int row = rowCount++;
+        copyRow(source, sourceRow, row);
+        fireRowAdded(row);
+        return row;
+    }
+
+    /**
+     * Removes a row by moving the last row into its place.
+     * @param row the index of the row to remove
+     * @return the index the last row was moved from, or -1 if the removed row was the last one
+     */
+    public int removeRow(int row) {
+        checkRow(row);
+        fireRowRemoved(row);
+        int last = --rowCount;
+        if (row == last) {
+            return -1;
+        }
+        copyRow(this, last, row);
+        return last;
+    }
+
+    /**
+     * Copies the marks, grade and key of a row from another table into a row of this table.
+     * @param source the table to copy from
+     * @param sourceRow the row to copy from
+     * @param row the row of this table to copy into
+     */
+    public void copyRow(MarkTable source, int sourceRow, int row) {
+        checkRow(row);
+        keys[row] = source.keys[sourceRow];
+        for (int module = 0; module < MODULECOUNT; ++module) {
+            marks[module][row] = source.marks[module][sourceRow];
+        }
+        totals[row] = source.totals[sourceRow];
+        weightedTotals[row] = source.weightedTotals[sourceRow];
+        grades[row] = source.grades[sourceRow];
+    }
+
+    /**
+     * Retrieves the student ID key of a row.
+     * @param row the row index
+     * @return the student ID key
+     */
+    public int key(int row) {
+        checkRow(row);
+        return keys[row];
+    }
+
+    /**
+     * Retrieves one mark of a row.
+     * @param row the row index
+     * @param module the module index, from 0 to MODULECOUNT - 1
+     * @return the mark of the module
+     */
+    public int mark(int row, int module) {
+        checkRow(row);
+        return marks[module][row];
+    }
+
+    /**
+     * Retrieves the sum of the marks of a row, as stored when the marks were set.
+     * @param row the row index
+     * @return the total mark
+     */
+    public int total(int row) {
+        checkRow(row);
+        return totals[row];
+    }
+
+    /**
+     * Retrieves the credit-weighted total of a row: the sum of every mark times the credits of its module.
+     * Students are ranked by this total, since the average is a non-decreasing function of it.
+     * @param row the row index
+     * @return the credit-weighted total
+     */
+    public int weightedTotal(int row) {
+        checkRow(row);
+        return weightedTotals[row];
+    }
+
+    /**
+     * Retrieves the credit-weighted average mark of a row, rounded up to two decimal places.
+     * @param row the row index
+     * @return the average mark
+     */
+    public double average(int row) {
+        checkRow(row);
+        return AVERAGES[weightedTotals[row]];
+    }
+
+    /**
+     * Retrieves the grade of one module of a row, graded on that module's mark alone.
+     * @param row the row index
+     * @param module the module index, from 0 to MODULECOUNT - 1
+     * @return the grade code of the module, or NOGRADE if the marks of the row have not been set
+     */
+    public byte moduleGradeCode(int row, int module) {
+        checkRow(row);
+        return grades[row] == NOGRADE ? NOGRADE : MARKGRADES[marks[module][row]];
+    }
+
+    /**
+     * Sets every mark of a row and recalculates its grade.
+     * @param row the row index
+     * @param moduleMarks the marks to set, one per module, each from 0 to MAXMARK
+     * @throws IllegalArgumentException if the number of marks is wrong or a mark is out of range
+     */
+    public void setMarks(int row, int[] moduleMarks) {
+        checkRow(row);
+        checkMarks(moduleMarks);
+        fireRowRemoved(row);
+        int total = 0;
+        int weightedTotal = 0;
+        for (int module = 0; module < MODULECOUNT; ++module) {
+            marks[module][row] = (byte) moduleMarks[module];
+            total += moduleMarks[module];
+            weightedTotal += moduleMarks[module] * CREDITS[module];
+        }
+        totals[row] = total;
+        weightedTotals[row] = weightedTotal;
+        grades[row] = gradeOf(AVERAGES[weightedTotal]);
+        fireRowAdded(row);
+    }
+
+    /**
+     * Sets the marks of many rows and recalculates their grades.
+     * Small batches are applied and reported row by row. When the batch covers a large part
+     * of the table, the marks are written column by column, the grades are recalculated in
+     * one pass and listeners are told once that the table was rewritten, which costs less
+     * than keeping their indexes up to date one row at a time.
+     * @param rows the row indexes; a row listed twice takes the marks of its last entry
+     * @param moduleMarks the marks to set for each row, one array of MODULECOUNT marks per row
+     * @param count the number of rows to update
+     * @throws IllegalArgumentException if the number of marks is wrong or a mark is out of range
+     */
+    public void setMarks(int[] rows, int[][] moduleMarks, int count) {
+        for (int i = 0; i < count; ++i) {
+            checkRow(rows[i]);
+            checkMarks(moduleMarks[i]);
+        }
+        if (listeners.length == 0 || (long) count * BULKFRACTION < rowCount) {
+            for (int i = 0; i < count; ++i) {
+                setMarks(rows[i], moduleMarks[i]);
+            }
+            return;
+        }
+        for (int module = 0; module < MODULECOUNT; ++module) {
+            byte[] column = marks[module];
+            for (int i = 0; i < count; ++i) {
+                column[rows[i]] = (byte) moduleMarks[i][module];
+            }
+        }
+        for (int i = 0; i < count; ++i) {
+            int row = rows[i];
+            int total = 0;
+            int weightedTotal = 0;
+            for (int module = 0; module < MODULECOUNT; ++module) {
+                total += marks[module][row];
+                weightedTotal += marks[module][row] * CREDITS[module];
+            }
+            totals[row] = total;
+            weightedTotals[row] = weightedTotal;
+            grades[row] = gradeOf(AVERAGES[weightedTotal]);
+        }
+        for (Listener listener : listeners) {
+            listener.tableRewritten(this);
+        }
+    }
+
+    /**
+     * Recalculates the grade of a row from its current marks.
+     * @param row the row index
+     */
+    public void updateGrade(int row) {
+        checkRow(row);
+        byte grade = gradeOf(AVERAGES[weightedTotals[row]]);
+        if (grades[row] != grade) {
+            fireRowRemoved(row);
+            grades[row] = grade;
+            fireRowAdded(row);
+        }
+    }
+
+    /**
+     * Retrieves the grade code of a row.
+     * @param row the row index
+     * @return one of NOGRADE, FAIL, PASS, MERIT or DISTINCTION
+     */
+    public byte gradeCode(int row) {
+        checkRow(row);
+        return grades[row];
+    }
+
+    /**
+     * Exposes the mark column of a module for read-only scans over rows 0 to rowCount() - 1.
+     * The array is replaced when the table grows, so it must not be kept across changes.
+     * @param module the module index, from 0 to MODULECOUNT - 1
+     * @return the backing column of the module, one byte per mark
+     */
+    byte[] column(int module) {
+        return marks[module];
+    }
+
+    /**
+     * Exposes the grade code column for read-only scans over rows 0 to rowCount() - 1.
+     * The array is replaced when the table grows, so it must not be kept across changes.
+     * @return the backing grade column
+     */
+    byte[] gradeColumn() {
+        return grades;
+    }
+
+    /**
+     * Exposes the total column for read-only scans over rows 0 to rowCount() - 1.
+     * The array is replaced when the table grows, so it must not be kept across changes.
+     * @return the backing total column
+     */
+    int[] totalColumn() {
+        return totals;
+    }
+
+    /**
+     * Exposes the credit-weighted total column for read-only scans over rows 0 to rowCount() - 1.
+     * The array is replaced when the table grows, so it must not be kept across changes.
+     * @return the backing credit-weighted total column
+     */
+    int[] weightedTotalColumn() {
+        return weightedTotals;
+    }
+
+    /**
+     * Counts the rows whose marks are at or above the threshold in every module.
+     * @param threshold the minimum mark required in each module
+     * @return the number of matching rows
+     */
+    public int countAllAtLeast(int threshold) {
+        int count = 0;
+        for (int row = 0; row < rowCount; ++row) {
+            count += allAtLeast(row, threshold) ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether the marks of a row are at or above the threshold in every module.
+     * @param row the row index
+     * @param threshold the minimum mark required in each module
+     * @return true if every mark of the row reaches the threshold
+     */
+    boolean allAtLeast(int row, int threshold) {
+        boolean passed = true;
+        for (byte[] column : marks) {
+            passed &= column[row] >= threshold;
+        }
+        return passed;
+    }
+
+    /**
+     * Looks up the credit-weighted average mark for the given credit-weighted total, rounded up
+     * to two decimal places. The averages of every possible total are calculated once, when the
+     * class is loaded.
+     * @param weightedTotal the sum of the module marks times their credits, from 0 to MAXWEIGHTEDTOTAL
+     * @return the average mark
+     */
+    public static double averageOf(int weightedTotal) {
+        return AVERAGES[weightedTotal];
+    }
+
+    /**
+     * Finds the smallest credit-weighted total whose average is above a bound, or not below it.
+     * Averages never fall as the total rises, so the total is found by a binary search over the
+     * precalculated averages, and a band of averages maps to one band of totals.
+     * @param bound the average to compare with
+     * @param strictlyAbove true to find the first average greater than the bound, false for the
+     *        first average not less than it
+     * @return the weighted total, or MAXWEIGHTEDTOTAL + 1 if no average qualifies
+     */
+    public static int firstWeightedTotalAbove(double bound, boolean strictlyAbove) {
+        int low = 0;
+        int high = MAXWEIGHTEDTOTAL + 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            double average = AVERAGES[mid];
+            if (strictlyAbove ? average > bound : average >= bound) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Determines the grade code for an average mark.
+     * @param average the average mark
+     * @return DISTINCTION from 80, MERIT from 70, PASS from 40 and FAIL below that
+     */
+    public static byte gradeOf(double average) {
+        if (average >= 80) {
+            return DISTINCTION;
+        } else if (average >= 70) {
+            return MERIT;
+        } else if (average >= 40) {
+            return PASS;
+        }
+        return FAIL;
+    }
+
+    /**
+     * Retrieves the display name of a grade code.
+     * @param gradeCode the grade code
+     * @return the grade name, or null for NOGRADE
+     */
+    public static String gradeName(byte gradeCode) {
+        return GRADENAMES[gradeCode];
+    }
+
+    /**
+     * Looks up the grade code of a grade name.
+     * @param gradeName the grade name, or null for no grade
+     * @return the matching grade code
+     */
+    public static byte gradeCodeOf(String gradeName) {
+        for (byte code = FAIL; code < GRADENAMES.length; ++code) {
+            if (GRADENAMES[code].equals(gradeName)) {
+                return code;
+            }
+        }
+        return NOGRADE;
+    }
+
+    private void fireRowAdded(int row) {
+        for (Listener listener : listeners) {
+            listener.rowAdded(this, row);
+        }
+    }
+
+    private void fireRowRemoved(int row) {
+        for (Listener listener : listeners) {
+            listener.rowRemoved(this, row);
+        }
+    }
+
+    /**
+     * Checks that there is one mark per module and that every mark is in range.
+     * @param moduleMarks the marks to check
+     * @throws IllegalArgumentException if the number of marks is wrong or a mark is out of range
+     */
+    static void checkMarks(int[] moduleMarks) {
+        if (moduleMarks.length != MODULECOUNT) {
+            throw new IllegalArgumentException("Expected " + MODULECOUNT + " marks but got " + moduleMarks.length);
+        }
+        for (int mark : moduleMarks) {
+            if (mark < 0 || mark > MAXMARK) {
+                throw new IllegalArgumentException("Mark out of range: " + mark);
+            }
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + rowCount);
+        }
+    }
+
+    private void grow() {
+        int newLength = Math.max(MINROWS, keys.length * 2);
+        keys = Arrays.copyOf(keys, newLength);
+        for (int module = 0; module < MODULECOUNT; ++module) {
+            marks[module] = Arrays.copyOf(marks[module], newLength);
+        }
+        totals = Arrays.copyOf(totals, newLength);
+        weightedTotals = Arrays.copyOf(weightedTotals, newLength);
+        grades = Arrays.copyOf(grades, newLength);
+    }
+}
@@ -1,71 +1,169 @@
-import java.util.Arrays;
+import java.util.Objects;
 
 /**
- * Represents a module with module marks and associated grade for a student.
+ * Represents the modules of a student, with a mark for every module of the active
+ * ModuleCatalogue, the student's overall grade and a grade per module.
+ * A module is a view onto one row of a MarkTable. Until its student is added to a
+ * repository that keeps marks in a shared table, the module keeps its row in a
+ * private single-row table, which is only created once marks are set: a module without
+ * marks holds no table at all and reads as zero marks and no grade, so registering a
+ * student into a shared table allocates no row storage of its own.
+ * The marks can only be changed through setModuleMarks, which also updates the stored
+ * total and grade, so the total, average and grade read from a module are always those
+ * of its current marks and are never recalculated on read. getMark reads one mark without
+ * copying the marks into a new array.
  */
 public class Module {
-    private int[] moduleMarks;
-    private String grade;
+    private MarkTable table;
+    private int row;
     Student student;
 
     /**
      * Constructs a new Module object for the specified student.
-     * Initializes module marks array with three elements.
+     * The module starts with a zero mark for every module and no grade, without a row.
      * @param student the student associated with this module
      */
     public Module(Student student) {
         this.student = student;
-        this.moduleMarks = new int[3];
     }
 
     /**
-     * Retrieves the module marks.
-     * @return the array of module marks
+     * Retrieves the mark of one module.
+     * @param module the module index, from 0 to MarkTable.MODULECOUNT - 1
+     * @return the mark of the module
+     */
+    public int getMark(int module) {
+        if (table == null) {
+            Objects.checkIndex(module, MarkTable.MODULECOUNT);
+            return 0;
+        }
+        return table.mark(row, module);
+    }
+
+    /**
+     * Retrieves the grade of one module, graded on that module's mark alone.
+     * @param module the module index, from 0 to MarkTable.MODULECOUNT - 1
+     * @return the grade of the module, or null if the marks have not been set
+     */
+    public String getModuleGrade(int module) {
+        if (table == null) {
+            Objects.checkIndex(module, MarkTable.MODULECOUNT);
+            return null;
+        }
+        return MarkTable.gradeName(table.moduleGradeCode(row, module));
+    }
+
+    /**
+     * Retrieves a copy of the module marks.
+     * Changing the returned array does not change the marks; use setModuleMarks for that.
+     * @return a new array holding the module marks
      */
     public int[] getModuleMarks() {
+        int[] moduleMarks = new int[MarkTable.MODULECOUNT];
+        if (table == null) {
+            return moduleMarks;
+        }
+        for (int module = 0; module < moduleMarks.length; ++module) {
+            moduleMarks[module] = table.mark(row, module);
+        }
         return moduleMarks;
     }
 
     /**
-     * Sets the module marks and calculates the grade.
-     * @param moduleMarks the array of module marks to set
+     * Sets the module marks and updates the stored total and grade.
+     * The marks are copied, so later changes to the array do not affect the module.
+     * @param moduleMarks the array of module marks to set, one per module of the catalogue, each from 0 to 100
+     * @throws IllegalArgumentException if the number of marks is wrong or a mark is out of range
      */
     public void setModuleMarks(int[] moduleMarks) {
-        this.moduleMarks = moduleMarks;
-        calculateGrade();
+        if (table == null) {
+            MarkTable own = new MarkTable(1);
+            own.setMarks(own.addRow(StudentId.parse(student.getId())), moduleMarks);
+            table = own;
+            row = 0;
+            return;
+        }
+        table.setMarks(row, moduleMarks);
     }
 
     /**
      * Retrieves the grade of the module.
-     * @return the grade of the module
+     * @return the grade of the module, or null if the marks have not been set
      */
     public String getGrade() {
-        return grade;
+        return table == null ? null : MarkTable.gradeName(table.gradeCode(row));
     }
 
     /**
      * Calculates the grade based on the average of module marks.
+     * The grade is already updated whenever the marks are set, so this only has an effect
+     * on a module whose marks were set before it had a grade.
      */
     public void calculateGrade() {
-        double average = calculateAverage();
-        if (average >= 80) {
-            grade = "Distinction";
-        } else if (average >= 70) {
-            grade = "Merit";
-        } else if (average >= 40) {
-            grade = "Pass";
-        } else {
-            grade = "Fail";
+        if (table != null) {
+            table.updateGrade(row);
         }
     }
 
     /**
-     * Calculates the average of module marks.
+     * Retrieves the sum of module marks, stored when the marks were set.
+     * @return the total of module marks
+     */
+    public int calculateTotal() {
+        return table == null ? 0 : table.total(row);
+    }
+
+    /**
+     * Retrieves the sum of module marks each multiplied by the credits of its module.
+     * @return the credit-weighted total of module marks
+     */
+    public int calculateWeightedTotal() {
+        return table == null ? 0 : table.weightedTotal(row);
+    }
+
+    /**
+     * Retrieves the credit-weighted average of module marks, rounded up to two decimal places.
      * @return the average of module marks
      */
     public double calculateAverage() {
-        int total = Arrays.stream(moduleMarks).sum();
-        double markAverage = total / 3.0;
-        return Math.ceil(markAverage * 100) / 100.0;
+        return table == null ? MarkTable.averageOf(0) : table.average(row);
+    }
+
+    /**
+     * Moves this module's marks and grade into a new row appended to a shared table.
+     * A module without marks gets a fresh row with zero marks and no grade.
+     * @param target the table to move into
+     * @return the row of the target table that this module now views
+     */
+    int attach(MarkTable target) {
+        row = table == null ? target.addRow(StudentId.parse(student.getId())) : target.insertRow(table, row);
+        table = target;
+        return row;
+    }
+
+    /**
+     * Copies this module's marks and grade out of its shared table into a new private row.
+     * Used when the student is removed from a repository but may still be referenced.
+     * A module whose marks were never set drops its row instead.
+     */
+    void detach() {
+        if (table.gradeCode(row) == MarkTable.NOGRADE) {
+            table = null;
+            row = 0;
+            return;
+        }
+        MarkTable own = new MarkTable(1);
+        int ownRow = own.addRow(table.key(row));
+        own.copyRow(table, row, ownRow);
+        table = own;
+        row = ownRow;
+    }
+
+    /**
+     * Points this module at a different row of its current table after rows were moved.
+     * @param newRow the row this module now views
+     */
+    void moveTo(int newRow) {
+        row = newRow;
     }
 }
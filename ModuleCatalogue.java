@@ -0,0 +1,151 @@
+/**
+ * Represents the modules of a programme: their names and credit weights.
+ * Every student takes every module of the catalogue. A student's average is weighted by
+ * credits, so a 20-credit module counts twice as much as a 10-credit one; with equal credits
+ * the average is the plain mean of the marks.
+ * The catalogue in use is read once from the "sms.modules" system property, which holds either
+ * a number of modules, for example "6", or a comma-separated list of modules with optional
+ * credits, for example "Programming:20,Databases:10,Networks:10". Without the property the
+ * catalogue holds three modules of one credit each, named "Module 1" to "Module 3". The property
+ * is only read the first time the catalogue in use is needed, so an application can check it
+ * with parse first and report a bad value before any class that depends on the catalogue loads.
+ */
+public final class ModuleCatalogue {
+    /**
+     * The highest number of modules a catalogue can hold.
+     */
+    public static final int MAXMODULES = 32;
+    /**
+     * The highest number of credits a single module can carry.
+     */
+    public static final int MAXCREDITS = 120;
+    /**
+     * The system property that configures the catalogue used by the application.
+     */
+    public static final String PROPERTY = "sms.modules";
+    private static final int DEFAULTMODULES = 3;
+    private final String[] names;
+    private final int[] credits;
+    private final int totalCredits;
+
+    private ModuleCatalogue(String[] names, int[] credits) {
+        if (names.length == 0 || names.length > MAXMODULES) {
+            throw new IllegalArgumentException("A catalogue needs 1 to " + MAXMODULES + " modules, not " + names.length);
+        }
+        int sum = 0;
+        for (int i = 0; i < credits.length; ++i) {
+            if (credits[i] < 1 || credits[i] > MAXCREDITS) {
+                throw new IllegalArgumentException("Credits of " + names[i] + " must be from 1 to " + MAXCREDITS);
+            }
+            sum += credits[i];
+        }
+        this.names = names;
+        this.credits = credits;
+        this.totalCredits = sum;
+    }
+
+    /**
+     * Creates a catalogue of modules named "Module 1" to "Module n", each worth one credit.
+     * @param count the number of modules
+     * @return the catalogue
+     */
+    public static ModuleCatalogue uniform(int count) {
+        if (count < 1 || count > MAXMODULES) {
+            throw new IllegalArgumentException("A catalogue needs 1 to " + MAXMODULES + " modules, not " + count);
+        }
+        String[] names = new String[count];
+        int[] credits = new int[count];
+        for (int i = 0; i < count; ++i) {
+            names[i] = "Module " + (i + 1);
+            credits[i] = 1;
+        }
+        return new ModuleCatalogue(names, credits);
+    }
+
+    /**
+     * Parses a catalogue specification.
+     * @param specification a number of modules, or a comma-separated list of "name" or "name:credits" entries
+     * @return the catalogue
+     * @throws IllegalArgumentException if the specification is not valid
+     */
+    public static ModuleCatalogue parse(String specification) {
+        String trimmed = specification.trim();
+        if (!trimmed.isEmpty() && trimmed.chars().allMatch(Character::isDigit)) {
+            return uniform(Integer.parseInt(trimmed));
+        }
+        String[] entries = trimmed.split(",");
+        String[] names = new String[entries.length];
+        int[] credits = new int[entries.length];
+        for (int i = 0; i < entries.length; ++i) {
+            String entry = entries[i].trim();
+            int colon = entry.lastIndexOf(':');
+            names[i] = (colon < 0 ? entry : entry.substring(0, colon)).trim();
+            if (names[i].isEmpty()) {
+                throw new IllegalArgumentException("Module " + (i + 1) + " has no name");
+            }
+            try {
+                credits[i] = colon < 0 ? 1 : Integer.parseInt(entry.substring(colon + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Credits of " + names[i] + " must be a whole number");
+            }
+        }
+        return new ModuleCatalogue(names, credits);
+    }
+
+    /**
+     * Retrieves the catalogue used by the application, configured through the "sms.modules" system
+     * property and read when this method is first called.
+     * If the property is not a valid specification, the first call throws ExceptionInInitializerError,
+     * so an application checks the property with parse before it uses the catalogue.
+     * @return the catalogue in use
+     */
+    public static ModuleCatalogue active() {
+        return Active.CATALOGUE;
+    }
+
+    /**
+     * Holds the catalogue in use, so that the property is parsed when it is first needed rather than
+     * when ModuleCatalogue loads.
+     */
+    private static final class Active {
+        private static final ModuleCatalogue CATALOGUE = fromProperty(System.getProperty(PROPERTY));
+    }
+
+    private static ModuleCatalogue fromProperty(String specification) {
+        return specification == null ? uniform(DEFAULTMODULES) : parse(specification);
+    }
+
+    /**
+     * Retrieves the number of modules.
+     * @return the number of modules
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Retrieves the name of a module.
+     * @param module the module index
+     * @return the module name
+     */
+    public String name(int module) {
+        return names[module];
+    }
+
+    /**
+     * Retrieves the credit weight of a module.
+     * @param module the module index
+     * @return the number of credits
+     */
+    public int credits(int module) {
+        return credits[module];
+    }
+
+    /**
+     * Retrieves the sum of the credits of every module.
+     * @return the total number of credits
+     */
+    public int totalCredits() {
+        return totalCredits;
+    }
+}
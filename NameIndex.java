@@ -0,0 +1,456 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Keeps students ordered by name so they can be listed, searched by prefix and searched by
+ * approximate spelling without sorting the cohort.
+ * Names are compared case-insensitively first, then exactly, with equal names ordered by ascending
+ * student ID. The index is a treap whose nodes also count the size of their subtree, so adding,
+ * removing and renaming a student and jumping to any position in name order all run in O(log n).
+ * A page of k students therefore takes O(log n + k), whatever the size of the cohort.
+ * Names sharing a prefix sit next to each other in this order, so a prefix search is two rank
+ * lookups, and the fuzzy search walks the names like a trie: it shares the edit-distance work
+ * between names with a common prefix and jumps over every name below a prefix that is already
+ * too far from the query.
+ */
+public class NameIndex {
+    /**
+     * The order of the index: case-insensitive, then exact.
+     */
+    public static final Comparator<String> NAMEORDER =
+            Comparator.comparing(NameIndex::fold).thenComparing(Comparator.naturalOrder());
+    private Node root;
+    private int seed = 0x6C8E9CF5;
+    private Node splitLeft;
+    private Node splitRight;
+
+    private static final class Node {
+        final String folded;
+        final String name;
+        final int key;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(String name, int key, int priority) {
+            this.folded = fold(name);
+            this.name = name;
+            this.key = key;
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Retrieves the number of students in the index.
+     * @return the number of students
+     */
+    public int size() {
+        return sizeOf(root);
+    }
+
+    /**
+     * Adds a student to the index.
+     * @param key the student ID key
+     * @param name the student's name
+     */
+    public void add(int key, String name) {
+        root = insert(root, new Node(name, key, nextPriority()));
+    }
+
+    /**
+     * Removes a student from the index.
+     * @param key the student ID key
+     * @param name the name the student was added under
+     * @return true if the student was in the index, false otherwise
+     */
+    public boolean remove(int key, String name) {
+        int before = size();
+        root = delete(root, fold(name), name, key);
+        return size() < before;
+    }
+
+    /**
+     * Moves a student to the position of a new name.
+     * @param key the student ID key
+     * @param oldName the name the student was added under
+     * @param newName the new name
+     */
+    public void rename(int key, String oldName, String newName) {
+        remove(key, oldName);
+        add(key, newName);
+    }
+
+    /**
+     * Retrieves a page of the students in name order.
+     * @param offset the number of students to skip
+     * @param limit the maximum number of students to return
+     * @return up to limit student ID keys, in name order
+     */
+    public int[] keysByName(int offset, int limit) {
+        return page(0, size(), offset, limit);
+    }
+
+    /**
+     * Counts the students whose name starts with a prefix, ignoring case.
+     * @param prefix the start of the name
+     * @return the number of matching students
+     */
+    public int countWithPrefix(String prefix) {
+        String folded = fold(prefix);
+        return countThrough(folded) - countBelow(folded);
+    }
+
+    /**
+     * Retrieves a page of the students whose name starts with a prefix, ignoring case.
+     * @param prefix the start of the name
+     * @param offset the number of matching students to skip
+     * @param limit the maximum number of students to return
+     * @return up to limit student ID keys, in name order
+     */
+    public int[] keysWithPrefix(String prefix, int offset, int limit) {
+        String folded = fold(prefix);
+        return page(countBelow(folded), countThrough(folded), offset, limit);
+    }
+
+    /**
+     * Retrieves a page of the students whose name is within an edit distance of a query, ignoring case.
+     * The edit distance counts the single-character insertions, deletions and substitutions
+     * needed to turn one name into the other.
+     * This method performs the following steps:
+     * 1. Walks the names in order, keeping one row of the edit-distance table per character of the current name.
+     * 2. Reuses the rows of the characters the name shares with the previous name.
+     * 3. As soon as every entry of a row exceeds maxDistance, jumps past every name that starts with the
+     *    characters seen so far, since none of them can come closer.
+     * 4. Collects the names whose full distance is at most maxDistance until the page is full.
+     * @param query the name to look for
+     * @param maxDistance the largest edit distance to accept
+     * @param offset the number of matching students to skip
+     * @param limit the maximum number of students to return
+     * @return up to limit student ID keys, in name order
+     */
+    public int[] keysNear(String query, int maxDistance, int offset, int limit) {
+        checkPage(offset, limit);
+        String target = fold(query);
+        int[][] rows = {firstRow(target.length())};
+        int[] keys = new int[Math.min(limit, size())];
+        int found = 0;
+        int skipped = 0;
+        String previous = "";
+        int computed = 0;
+        Cursor cursor = new Cursor();
+        cursor.seek(0);
+        while (found < keys.length && cursor.hasNext()) {
+            Node node = cursor.peek();
+            String name = node.folded;
+            if (rows.length <= name.length()) {
+                rows = Arrays.copyOf(rows, Math.max(name.length() + 1, rows.length * 2));
+            }
+            int depth = Math.min(computed, commonPrefix(previous, name));
+            boolean pruned = false;
+            while (depth < name.length() && !pruned) {
+                if (rows[depth + 1] == null) {
+                    rows[depth + 1] = new int[target.length() + 1];
+                }
+                pruned = nextRow(rows[depth], rows[depth + 1], name.charAt(depth), target) > maxDistance;
+                depth++;
+            }
+            previous = name;
+            computed = depth;
+            if (pruned) {
+                cursor.seek(countThrough(name.substring(0, depth)));
+            } else {
+                if (rows[depth][target.length()] <= maxDistance && skipped++ >= offset) {
+                    keys[found++] = node.key;
+                }
+                cursor.next();
+            }
+        }
+        return Arrays.copyOf(keys, found);
+    }
+
+    /**
+     * Iterates over the students in name order without copying them out.
+     * The index must not be modified while the iteration is in progress.
+     * @return an iterator over the student ID keys
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Iterates over the students in name order from a given position, without copying them out.
+     * Reaching the starting position takes O(log n). The index must not be modified while the
+     * iteration is in progress.
+     * @param fromRank the zero-based position of the first student to return
+     * @return an iterator over the student ID keys
+     */
+    public PrimitiveIterator.OfInt iterator(int fromRank) {
+        Cursor cursor = new Cursor();
+        cursor.seek(fromRank);
+        return new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                if (!cursor.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return cursor.next().key;
+            }
+        };
+    }
+
+    /**
+     * Calculates the case-insensitive edit distance between two names.
+     * @param first the first name
+     * @param second the second name
+     * @return the number of single-character insertions, deletions and substitutions between the names
+     */
+    public static int editDistance(String first, String second) {
+        String source = fold(first);
+        String target = fold(second);
+        int[] row = firstRow(target.length());
+        int[] next = new int[row.length];
+        for (int i = 0; i < source.length(); ++i) {
+            nextRow(row, next, source.charAt(i), target);
+            int[] swap = row;
+            row = next;
+            next = swap;
+        }
+        return row[target.length()];
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static int[] firstRow(int length) {
+        int[] row = new int[length + 1];
+        for (int j = 0; j <= length; ++j) {
+            row[j] = j;
+        }
+        return row;
+    }
+
+    /**
+     * Fills the edit-distance row for one more character of a name.
+     * @return the smallest entry of the new row
+     */
+    private static int nextRow(int[] row, int[] next, char c, String target) {
+        next[0] = row[0] + 1;
+        int smallest = next[0];
+        for (int j = 1; j <= target.length(); ++j) {
+            int substitution = row[j - 1] + (target.charAt(j - 1) == c ? 0 : 1);
+            next[j] = Math.min(substitution, Math.min(row[j], next[j - 1]) + 1);
+            smallest = Math.min(smallest, next[j]);
+        }
+        return smallest;
+    }
+
+    private static int commonPrefix(String first, String second) {
+        int length = Math.min(first.length(), second.length());
+        int i = 0;
+        while (i < length && first.charAt(i) == second.charAt(i)) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static void checkPage(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+    }
+
+    /**
+     * Copies out a page of the keys ranked from (inclusive) to to (exclusive).
+     */
+    private int[] page(int from, int to, int offset, int limit) {
+        checkPage(offset, limit);
+        int start = (int) Math.min(to, (long) from + offset);
+        int[] keys = new int[(int) Math.min(limit, (long) to - start)];
+        Cursor cursor = new Cursor();
+        cursor.seek(start);
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = cursor.next().key;
+        }
+        return keys;
+    }
+
+    /**
+     * Counts the names that sort below a folded prefix.
+     */
+    private int countBelow(String folded) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.folded.compareTo(folded) < 0) {
+                count += sizeOf(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the names that sort below a folded prefix or start with it.
+     */
+    private int countThrough(String folded) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (node.folded.compareTo(folded) < 0 || node.folded.startsWith(folded)) {
+                count += sizeOf(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Walks the index in name order from any rank, keeping the path of nodes still to visit.
+     */
+    private final class Cursor {
+        private final ArrayDeque<Node> path = new ArrayDeque<>();
+
+        void seek(int rank) {
+            path.clear();
+            Node node = root;
+            while (node != null) {
+                int leftSize = sizeOf(node.left);
+                if (rank <= leftSize) {
+                    path.push(node);
+                    node = node.left;
+                } else {
+                    rank -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        Node peek() {
+            return path.peek();
+        }
+
+        Node next() {
+            Node node = path.pop();
+            for (Node child = node.right; child != null; child = child.left) {
+                path.push(child);
+            }
+            return node;
+        }
+    }
+
+    private static int compare(Node node, String folded, String name, int key) {
+        int order = node.folded.compareTo(folded);
+        if (order == 0) {
+            order = node.name.compareTo(name);
+        }
+        return order != 0 ? order : Integer.compare(node.key, key);
+    }
+
+    private static int sizeOf(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + sizeOf(node.left) + sizeOf(node.right);
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private Node insert(Node tree, Node node) {
+        if (tree == null) {
+            return node;
+        }
+        if (node.priority > tree.priority) {
+            split(tree, node);
+            node.left = splitLeft;
+            node.right = splitRight;
+            update(node);
+            return node;
+        }
+        if (compare(tree, node.folded, node.name, node.key) > 0) {
+            tree.left = insert(tree.left, node);
+        } else {
+            tree.right = insert(tree.right, node);
+        }
+        update(tree);
+        return tree;
+    }
+
+    private Node delete(Node tree, String folded, String name, int key) {
+        if (tree == null) {
+            return null;
+        }
+        int order = compare(tree, folded, name, key);
+        if (order == 0) {
+            return merge(tree.left, tree.right);
+        }
+        if (order > 0) {
+            tree.left = delete(tree.left, folded, name, key);
+        } else {
+            tree.right = delete(tree.right, folded, name, key);
+        }
+        update(tree);
+        return tree;
+    }
+
+    /**
+     * Splits a tree into the nodes below the given node (splitLeft) and the rest (splitRight).
+     */
+    private void split(Node tree, Node node) {
+        if (tree == null) {
+            splitLeft = null;
+            splitRight = null;
+        } else if (compare(tree, node.folded, node.name, node.key) < 0) {
+            split(tree.right, node);
+            tree.right = splitLeft;
+            update(tree);
+            splitLeft = tree;
+        } else {
+            split(tree.left, node);
+            tree.left = splitRight;
+            update(tree);
+            splitRight = tree;
+        }
+    }
+
+    private Node merge(Node lower, Node upper) {
+        if (lower == null) {
+            return upper;
+        }
+        if (upper == null) {
+            return lower;
+        }
+        if (lower.priority > upper.priority) {
+            lower.right = merge(lower.right, upper);
+            update(lower);
+            return lower;
+        }
+        upper.left = merge(lower, upper.left);
+        update(upper);
+        return upper;
+    }
+}
@@ -0,0 +1,302 @@
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records how often and how fast the operations of the application run.
+ * For every operation it counts the runs, the runs that missed the student they looked for
+ * and the runs that failed, records their durations in a LatencyHistogram, and adds up the
+ * bytes read and written by the operations that touch files. A caller takes a timestamp with
+ * start before the operation and hands it to record afterwards.
+ * When metrics are disabled, start returns without reading the clock and record returns at
+ * once, so the instrumentation costs one predictable branch per operation.
+ * The metrics can be registered as a platform MXBean and read over JMX.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+    /**
+     * The name the metrics are registered under in the platform MBean server.
+     */
+    public static final String OBJECTNAME = "sms:type=OperationMetrics";
+    private static final double NANOSPERMICRO = 1000.0;
+    private final boolean enabled;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+    /**
+     * The operations that are measured.
+     */
+    public enum Operation {
+        REGISTER("Register student"),
+        DELETE("Delete student"),
+        FIND("Find student"),
+        STORE("Store student details"),
+        LOAD("Load student details"),
+        LIST_BY_NAME("List students by name"),
+        RENAME("Add student name"),
+        SET_MARKS("Add module marks"),
+        SUMMARY("Generate summary"),
+        REPORT("Generate complete report"),
+        TOP_STUDENTS("View top students"),
+        STORE_SNAPSHOT("Store snapshot"),
+        LOAD_SNAPSHOT("Load snapshot"),
+        IMPORT_MARKS("Import module marks"),
+        SEARCH("Search students by name"),
+        RANGE("Find students in a range");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Retrieves the name of the operation as shown in the menu.
+         * @return the operation name
+         */
+        public String label() {
+            return label;
+        }
+    }
+
+    /**
+     * The way an operation ended.
+     */
+    public enum Result {
+        SUCCESS,
+        MISS,
+        FAILURE
+    }
+
+    /**
+     * Holds the counters and latency histogram of one operation.
+     */
+    public static final class OperationStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+
+        /**
+         * Retrieves the durations of the runs.
+         * @return the latency histogram, in nanoseconds
+         */
+        public LatencyHistogram latency() {
+            return latency;
+        }
+
+        /**
+         * Retrieves the number of runs.
+         * @return the number of runs
+         */
+        public long count() {
+            return latency.count();
+        }
+
+        /**
+         * Retrieves the number of runs that did not find the student they looked for.
+         * @return the number of misses
+         */
+        public long misses() {
+            return misses.sum();
+        }
+
+        /**
+         * Retrieves the number of runs that failed.
+         * @return the number of failures
+         */
+        public long failures() {
+            return failures.sum();
+        }
+
+        /**
+         * Retrieves the number of bytes read from files.
+         * @return the bytes read
+         */
+        public long bytesRead() {
+            return bytesRead.sum();
+        }
+
+        /**
+         * Retrieves the number of bytes written to files.
+         * @return the bytes written
+         */
+        public long bytesWritten() {
+            return bytesWritten.sum();
+        }
+
+        private void reset() {
+            latency.reset();
+            misses.reset();
+            failures.reset();
+            bytesRead.reset();
+            bytesWritten.reset();
+        }
+    }
+
+    /**
+     * Constructs a new set of metrics.
+     * @param enabled true to record operations, false to ignore every call
+     */
+    public OperationMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes the timestamp an operation starts at.
+     * @return the current time in nanoseconds, or 0 if metrics are disabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records one run of an operation.
+     * @param operation the operation that ran
+     * @param start the timestamp returned by start before the operation
+     * @param result the way the operation ended
+     */
+    public void record(Operation operation, long start, Result result) {
+        if (!enabled) {
+            return;
+        }
+        OperationStats operationStats = stats.get(operation);
+        operationStats.latency.record(System.nanoTime() - start);
+        if (result == Result.MISS) {
+            operationStats.misses.increment();
+        } else if (result == Result.FAILURE) {
+            operationStats.failures.increment();
+        }
+    }
+
+    /**
+     * Records one run of an operation of the StudentService.
+     * NOT_FOUND counts as a miss and every outcome other than OK as a failure.
+     * @param operation the operation that ran
+     * @param start the timestamp returned by start before the operation
+     * @param outcome the outcome of the operation
+     */
+    public void record(Operation operation, long start, StudentService.Outcome outcome) {
+        record(operation, start, outcome == StudentService.Outcome.OK ? Result.SUCCESS
+                : outcome == StudentService.Outcome.NOT_FOUND ? Result.MISS : Result.FAILURE);
+    }
+
+    /**
+     * Adds to the bytes an operation read from files.
+     * @param operation the operation that read
+     * @param bytes the number of bytes read
+     */
+    public void addBytesRead(Operation operation, long bytes) {
+        if (enabled) {
+            stats.get(operation).bytesRead.add(bytes);
+        }
+    }
+
+    /**
+     * Adds to the bytes an operation wrote to files.
+     * @param operation the operation that wrote
+     * @param bytes the number of bytes written
+     */
+    public void addBytesWritten(Operation operation, long bytes) {
+        if (enabled) {
+            stats.get(operation).bytesWritten.add(bytes);
+        }
+    }
+
+    /**
+     * Retrieves the counters and latency histogram of one operation.
+     * @param operation the operation
+     * @return the statistics of the operation
+     */
+    public OperationStats stats(Operation operation) {
+        return stats.get(operation);
+    }
+
+    /**
+     * Registers these metrics in the platform MBean server under OBJECTNAME.
+     * @throws JMException if the metrics cannot be registered, for example because the name is taken
+     */
+    public void registerMBean() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECTNAME));
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return collect(OperationStats::count);
+    }
+
+    @Override
+    public Map<String, Long> getMisses() {
+        return collect(OperationStats::misses);
+    }
+
+    @Override
+    public Map<String, Long> getFailures() {
+        return collect(OperationStats::failures);
+    }
+
+    @Override
+    public Map<String, Double> getMedianMicros() {
+        return collectMicros(operationStats -> operationStats.latency.percentile(50));
+    }
+
+    @Override
+    public Map<String, Double> getP99Micros() {
+        return collectMicros(operationStats -> operationStats.latency.percentile(99));
+    }
+
+    @Override
+    public Map<String, Double> getMaxMicros() {
+        return collectMicros(operationStats -> operationStats.latency.max());
+    }
+
+    @Override
+    public Map<String, Long> getBytesRead() {
+        return collect(OperationStats::bytesRead);
+    }
+
+    @Override
+    public Map<String, Long> getBytesWritten() {
+        return collect(OperationStats::bytesWritten);
+    }
+
+    @Override
+    public void reset() {
+        for (OperationStats operationStats : stats.values()) {
+            operationStats.reset();
+        }
+    }
+
+    private Map<String, Long> collect(ToLongFunction<OperationStats> value) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        stats.forEach((operation, operationStats) -> {
+            if (operationStats.count() > 0) {
+                values.put(operation.name(), value.applyAsLong(operationStats));
+            }
+        });
+        return values;
+    }
+
+    private Map<String, Double> collectMicros(ToDoubleFunction<OperationStats> nanos) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        stats.forEach((operation, operationStats) -> {
+            if (operationStats.count() > 0) {
+                values.put(operation.name(), nanos.applyAsDouble(operationStats) / NANOSPERMICRO);
+            }
+        });
+        return values;
+    }
+}
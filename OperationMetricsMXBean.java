@@ -0,0 +1,67 @@
+import java.util.Map;
+
+/**
+ * Exposes the OperationMetrics of the application over JMX, for example to JConsole.
+ * Every map is keyed by operation name and only holds the operations that have run.
+ */
+public interface OperationMetricsMXBean {
+
+    /**
+     * Checks whether operations are being recorded.
+     * @return true if metrics are enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Retrieves the number of times each operation ran.
+     * @return the counts by operation
+     */
+    Map<String, Long> getCounts();
+
+    /**
+     * Retrieves the number of times each operation did not find the student it looked for.
+     * @return the misses by operation
+     */
+    Map<String, Long> getMisses();
+
+    /**
+     * Retrieves the number of times each operation failed, for example on invalid input or an I/O error.
+     * @return the failures by operation
+     */
+    Map<String, Long> getFailures();
+
+    /**
+     * Retrieves the median duration of each operation.
+     * @return the median in microseconds by operation
+     */
+    Map<String, Double> getMedianMicros();
+
+    /**
+     * Retrieves the 99th percentile duration of each operation.
+     * @return the 99th percentile in microseconds by operation
+     */
+    Map<String, Double> getP99Micros();
+
+    /**
+     * Retrieves the longest duration of each operation.
+     * @return the longest duration in microseconds by operation
+     */
+    Map<String, Double> getMaxMicros();
+
+    /**
+     * Retrieves the number of bytes read from files by each operation.
+     * @return the bytes read by operation
+     */
+    Map<String, Long> getBytesRead();
+
+    /**
+     * Retrieves the number of bytes written to files by each operation.
+     * @return the bytes written by operation
+     */
+    Map<String, Long> getBytesWritten();
+
+    /**
+     * Clears every counter and histogram.
+     */
+    void reset();
+}
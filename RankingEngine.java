@@ -0,0 +1,167 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Ranks students by their average mark, highest first.
+ * Each student's credit-weighted total is read once into a primitive key array, and an index
+ * array is sorted by those keys. Since the average is a non-decreasing function of the
+ * credit-weighted total, sorting by it gives the same order as sorting by average. Students with equal averages
+ * keep the order they were given in.
+ */
+public final class RankingEngine {
+    private static final int MAXTOTAL = MarkTable.MAXWEIGHTEDTOTAL;
+
+    /**
+     * The sorting algorithm used to order the keys.
+     */
+    public enum Mode {
+        /** Picks COUNTING when the cohort is at least as large as the key range, MERGE otherwise. */
+        AUTO,
+        /** Stable bottom-up merge sort, O(n log n). */
+        MERGE,
+        /** Stable counting sort over the totals 0 to MarkTable.MAXWEIGHTEDTOTAL, O(n). */
+        COUNTING
+    }
+
+    private RankingEngine() {
+    }
+
+    /**
+     * Ranks the students of a repository by average mark, highest first.
+     * @param repository the repository whose students are ranked
+     * @param mode the sorting algorithm to use
+     * @return a ranked view over the registered students
+     */
+    public static RankedView rankByAverage(StudentRepository repository, Mode mode) {
+        return rankByAverage(repository.toArray(), mode);
+    }
+
+    /**
+     * Ranks the given students by average mark, highest first.
+     * The array is not reordered and the students are not copied.
+     * @param students the students to rank
+     * @param mode the sorting algorithm to use
+     * @return a ranked view over the students
+     */
+    public static RankedView rankByAverage(Student[] students, Mode mode) {
+        int[] keys = new int[students.length];
+        for (int i = 0; i < students.length; ++i) {
+            keys[i] = students[i].getModule().calculateWeightedTotal();
+        }
+        return new RankedView(students, sortDescending(keys, mode));
+    }
+
+    /**
+     * Sorts indices into the key array so that the keys are in descending order.
+     * Indices with equal keys stay in ascending order.
+     * @param keys the credit-weighted totals to sort by, each between 0 and MarkTable.MAXWEIGHTEDTOTAL
+     * @param mode the sorting algorithm to use
+     * @return the indices of the keys, highest key first
+     */
+    public static int[] sortDescending(int[] keys, Mode mode) {
+        if (mode == Mode.AUTO) {
+            mode = keys.length >= MAXTOTAL + 1 ? Mode.COUNTING : Mode.MERGE;
+        }
+        return mode == Mode.COUNTING ? countingSort(keys) : mergeSort(keys);
+    }
+
+    private static int[] countingSort(int[] keys) {
+        int[] starts = new int[MAXTOTAL + 2];
+        for (int key : keys) {
+            if (key < 0 || key > MAXTOTAL) {
+                throw new IllegalArgumentException("Total out of range: " + key);
+            }
+            starts[MAXTOTAL - key + 1]++;
+        }
+        for (int bucket = 1; bucket < starts.length; ++bucket) {
+            starts[bucket] += starts[bucket - 1];
+        }
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            order[starts[MAXTOTAL - keys[i]]++] = i;
+        }
+        return order;
+    }
+
+    private static int[] mergeSort(int[] keys) {
+        int n = keys.length;
+        int[] order = new int[n];
+        int[] buffer = new int[n];
+        for (int i = 0; i < n; ++i) {
+            order[i] = i;
+        }
+        for (int width = 1; width < n; width *= 2) {
+            for (int low = 0; low < n - width; low += 2 * width) {
+                int mid = low + width;
+                int high = Math.min(low + 2 * width, n);
+                if (keys[order[mid - 1]] >= keys[order[mid]]) {
+                    continue;
+                }
+                int left = low;
+                int right = mid;
+                int out = low;
+                while (left < mid && right < high) {
+                    buffer[out++] = keys[order[left]] >= keys[order[right]] ? order[left++] : order[right++];
+                }
+                while (left < mid) {
+                    buffer[out++] = order[left++];
+                }
+                while (right < high) {
+                    buffer[out++] = order[right++];
+                }
+                System.arraycopy(buffer, low, order, low, high - low);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Represents students in rank order without copying or reordering the underlying array.
+     */
+    public static final class RankedView implements Iterable<Student> {
+        private final Student[] students;
+        private final int[] order;
+
+        private RankedView(Student[] students, int[] order) {
+            this.students = students;
+            this.order = order;
+        }
+
+        /**
+         * Retrieves the number of ranked students.
+         * @return the number of students
+         */
+        public int size() {
+            return order.length;
+        }
+
+        /**
+         * Retrieves the student at the given rank.
+         * @param rank the zero-based rank, 0 being the highest average
+         * @return the student at that rank
+         */
+        public Student get(int rank) {
+            return students[order[rank]];
+        }
+
+        @Override
+        public Iterator<Student> iterator() {
+            return new Iterator<>() {
+                private int rank;
+
+                @Override
+                public boolean hasNext() {
+                    return rank < order.length;
+                }
+
+                @Override
+                public Student next() {
+                    if (rank >= order.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return students[order[rank++]];
+                }
+            };
+        }
+    }
+}
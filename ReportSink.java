@@ -0,0 +1,33 @@
+import java.io.IOException;
+
+/**
+ * Represents the destination of a report, receiving it one row at a time.
+ * A sink may end the report early by refusing a row, so a report stops producing rows as
+ * soon as nobody wants them. The row passed in is a buffer that the report reuses for the
+ * next row: a sink must copy out whatever it wants to keep before returning.
+ */
+@FunctionalInterface
+public interface ReportSink {
+
+    /**
+     * Receives one row of the report.
+     * @param row the formatted row, without a line separator; only valid until this method returns
+     * @return true to receive further rows, false to end the report
+     * @throws IOException if the row cannot be written
+     */
+    boolean accept(CharSequence row) throws IOException;
+
+    /**
+     * Creates a sink that writes each row as a line of text, for example to the console,
+     * to a Writer opened on a file or to a StringBuilder holding an HTTP response.
+     * @param out the destination of the lines
+     * @return a sink that accepts every row
+     */
+    static ReportSink lines(Appendable out) {
+        String lineSeparator = System.lineSeparator();
+        return row -> {
+            out.append(row).append(lineSeparator);
+            return true;
+        };
+    }
+}
@@ -0,0 +1,530 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Partitions the registered students across several shards by a hash of their student ID key,
+ * so that a large institution can be spread over several repositories that each hold a part of
+ * the cohort. An operation on one student goes straight to the shard that owns its key.
+ * Operations on the whole cohort scatter to every shard and gather the results: summaries are
+ * computed on all shards in parallel and their counts added up, and the listings by average
+ * and by name and the range listings by ID and by average are a k-way merge of the shards' own
+ * ordered streams, so no student is sorted or copied again. Seats are counted across all shards against one shared capacity.
+ * A snapshot opens one snapshot per shard, one after the other, so every shard is read as it was
+ * at a single instant of its own.
+ * The shards can be any repositories. inProcess creates a cluster of shards in this JVM, which
+ * runs the whole scatter-gather path on one machine without a network.
+ */
+public class ShardedStudentRepository implements StudentRepository, Closeable {
+    /**
+     * The order of the listing by average: highest credit-weighted total first, then ascending ID,
+     * which is the order of a Leaderboard.
+     */
+    private static final Comparator<Student> AVERAGEORDER =
+            Comparator.comparingInt((Student student) -> -student.getModule().calculateWeightedTotal())
+                    .thenComparingInt(student -> StudentId.parse(student.getId()));
+    /**
+     * The order of the listing by name: the order of a NameIndex.
+     */
+    private static final Comparator<Student> NAMEORDER =
+            Comparator.comparing(Student::getName, NameIndex.NAMEORDER)
+                    .thenComparingInt(student -> StudentId.parse(student.getId()));
+    /**
+     * The order of the range listing by ID.
+     */
+    private static final Comparator<Student> IDORDER = Comparator.comparingInt(student -> StudentId.parse(student.getId()));
+    /**
+     * The order of the range listing by average: lowest credit-weighted total first, then ascending
+     * ID, which is the order of a StudentIndex.
+     */
+    private static final Comparator<Student> RISINGAVERAGEORDER =
+            Comparator.comparingInt((Student student) -> student.getModule().calculateWeightedTotal())
+                    .thenComparingInt(student -> StudentId.parse(student.getId()));
+    private final StudentRepository[] shards;
+    private final int capacity;
+    private final AtomicInteger studentCount = new AtomicInteger();
+
+    /**
+     * Constructs a new repository over the given shards.
+     * The shards may already hold students, but every student must be in the shard its key hashes to.
+     * @param shards the repositories that hold the students, at least one
+     * @param capacity the maximum number of students all shards together can hold
+     */
+    public ShardedStudentRepository(StudentRepository[] shards, int capacity) {
+        if (shards.length == 0) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.shards = shards.clone();
+        this.capacity = capacity;
+        for (StudentRepository shard : shards) {
+            studentCount.addAndGet(shard.size());
+        }
+    }
+
+    /**
+     * Creates a cluster of empty shards in this JVM.
+     * Every shard may grow up to the whole capacity, so an uneven spread of IDs never turns a
+     * student away while seats remain.
+     * @param shardCount the number of shards
+     * @param capacity the maximum number of students all shards together can hold
+     * @param concurrent true to use ConcurrentStudentRepository shards that several users can change
+     *        at the same time, false to use HashStudentRepository shards
+     * @return the sharded repository
+     */
+    public static ShardedStudentRepository inProcess(int shardCount, int capacity, boolean concurrent) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        StudentRepository[] shards = new StudentRepository[shardCount];
+        for (int i = 0; i < shardCount; ++i) {
+            shards[i] = concurrent ? new ConcurrentStudentRepository(capacity) : new HashStudentRepository(capacity);
+        }
+        return new ShardedStudentRepository(shards, capacity);
+    }
+
+    /**
+     * Retrieves the number of shards.
+     * @return the number of shards
+     */
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Retrieves the shard that owns a student ID key.
+     * The key is mixed before it is reduced to a shard, so consecutive IDs of one intake are
+     * spread evenly over the shards.
+     * @param key the student ID key, as returned by StudentId.parse
+     * @return the index of the shard, from 0 to shardCount() - 1
+     */
+    public int shardOf(int key) {
+        int h = key * 0x9E3779B9;
+        return (int) (Integer.toUnsignedLong(h ^ (h >>> 16)) % shards.length);
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int size() {
+        return studentCount.get();
+    }
+
+    @Override
+    public boolean add(Student student) {
+        int key = StudentId.parse(student.getId());
+        if (key == StudentId.INVALID || !reserveSeat()) {
+            return false;
+        }
+        if (shards[shardOf(key)].add(student)) {
+            return true;
+        }
+        studentCount.decrementAndGet();
+        return false;
+    }
+
+    @Override
+    public Student find(int key) {
+        return shards[shardOf(key)].find(key);
+    }
+
+    @Override
+    public boolean contains(int key) {
+        return shards[shardOf(key)].contains(key);
+    }
+
+    @Override
+    public Student remove(int key) {
+        Student removed = shards[shardOf(key)].remove(key);
+        if (removed != null) {
+            studentCount.decrementAndGet();
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean rename(int key, String name) {
+        return shards[shardOf(key)].rename(key, name);
+    }
+
+    @Override
+    public boolean setMarks(int key, int[] moduleMarks) {
+        return shards[shardOf(key)].setMarks(key, moduleMarks);
+    }
+
+    /**
+     * Sets the marks of many students, handing each shard its part of the batch in one call.
+     */
+    @Override
+    public int setMarks(int[] keys, int[][] moduleMarks, int count, boolean[] applied) {
+        int[] batchSizes = new int[shards.length];
+        int[] owners = new int[count];
+        for (int i = 0; i < count; ++i) {
+            owners[i] = shardOf(keys[i]);
+            batchSizes[owners[i]]++;
+        }
+        int appliedCount = 0;
+        for (int shard = 0; shard < shards.length; ++shard) {
+            int size = batchSizes[shard];
+            if (size == 0) {
+                continue;
+            }
+            int[] batchKeys = new int[size];
+            int[][] batchMarks = new int[size][];
+            int[] positions = new int[size];
+            int next = 0;
+            for (int i = 0; i < count; ++i) {
+                if (owners[i] == shard) {
+                    batchKeys[next] = keys[i];
+                    batchMarks[next] = moduleMarks[i];
+                    positions[next++] = i;
+                }
+            }
+            boolean[] batchApplied = new boolean[size];
+            appliedCount += shards[shard].setMarks(batchKeys, batchMarks, size, batchApplied);
+            for (int i = 0; i < size; ++i) {
+                applied[positions[i]] = batchApplied[i];
+            }
+        }
+        return appliedCount;
+    }
+
+    /**
+     * Copies the registered students of every shard into a new array, shard by shard.
+     * Each shard's students are taken as that shard's toArray returns them.
+     */
+    @Override
+    public Student[] toArray() {
+        Student[][] parts = new Student[shards.length][];
+        int length = 0;
+        for (int shard = 0; shard < shards.length; ++shard) {
+            parts[shard] = shards[shard].toArray();
+            length += parts[shard].length;
+        }
+        Student[] students = new Student[length];
+        int next = 0;
+        for (Student[] part : parts) {
+            System.arraycopy(part, 0, students, next, part.length);
+            next += part.length;
+        }
+        return students;
+    }
+
+    /**
+     * Summarises every shard in parallel and adds up the counts.
+     * A shard with running statistics answers from them; any other shard is scanned.
+     * @return the statistics of the whole cohort
+     */
+    @Override
+    public SummaryEngine.CohortSummary summary() {
+        List<CompletableFuture<SummaryEngine.CohortSummary>> parts = new ArrayList<>(shards.length);
+        for (StudentRepository repository : shards) {
+            parts.add(CompletableFuture.supplyAsync(() -> {
+                SummaryEngine.CohortSummary summary = repository.summary();
+                return summary != null ? summary : SummaryEngine.summarize(repository, false);
+            }));
+        }
+        SummaryEngine.CohortSummary[] summaries = new SummaryEngine.CohortSummary[shards.length];
+        for (int shard = 0; shard < shards.length; ++shard) {
+            summaries[shard] = parts.get(shard).join();
+        }
+        return SummaryEngine.merge(summaries);
+    }
+
+    /**
+     * Checks every shard's running statistics against a rescan of that shard's own mark table.
+     * @return MISMATCHED if any shard's statistics differ from its rescan, otherwise UNAVAILABLE if
+     *         any shard keeps no running statistics, otherwise MATCHED
+     */
+    @Override
+    public SummaryStatistics.Verification verifyStatistics() {
+        SummaryStatistics.Verification result = SummaryStatistics.Verification.MATCHED;
+        for (StudentRepository shard : shards) {
+            SummaryStatistics.Verification verification = shard.verifyStatistics();
+            if (verification == SummaryStatistics.Verification.MISMATCHED) {
+                return verification;
+            }
+            if (verification == SummaryStatistics.Verification.UNAVAILABLE) {
+                result = verification;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merges the shards' students by average, highest first.
+     * Each shard streams its students off its leaderboard, or sorts them if it keeps none, and the
+     * streams are merged through a heap holding one student per shard, so every student costs
+     * O(log k) for k shards. Reaching fromRank walks past the students before it.
+     */
+    @Override
+    public Iterator<Student> studentsByAverage(int fromRank) {
+        List<Iterator<Student>> sources = new ArrayList<>(shards.length);
+        for (StudentRepository shard : shards) {
+            Iterator<Student> ranked = shard.studentsByAverage(0);
+            sources.add(ranked != null ? ranked : sorted(shard, AVERAGEORDER, student -> true));
+        }
+        return skip(new MergedIterator(sources, AVERAGEORDER), fromRank);
+    }
+
+    /**
+     * Merges the shards' students in name order.
+     * Each shard streams its students off its name index, or sorts them if it keeps none, and the
+     * streams are merged through a heap holding one student per shard. Reaching fromRank walks past
+     * the students before it.
+     */
+    @Override
+    public Iterator<Student> studentsByName(int fromRank) {
+        List<Iterator<Student>> sources = new ArrayList<>(shards.length);
+        for (StudentRepository shard : shards) {
+            Iterator<Student> ordered = shard.studentsByName(0);
+            sources.add(ordered != null ? ordered : sorted(shard, NAMEORDER, student -> true));
+        }
+        return skip(new MergedIterator(sources, NAMEORDER), fromRank);
+    }
+
+    /**
+     * Merges the shards' students in a range of IDs, in ID order.
+     * Each shard streams the range off its ID index, or sorts its students in the range if it keeps
+     * none, and the streams are merged through a heap holding one student per shard.
+     */
+    @Override
+    public Iterator<Student> studentsWithIdBetween(int fromKey, int toKey) {
+        List<Iterator<Student>> sources = new ArrayList<>(shards.length);
+        for (StudentRepository shard : shards) {
+            Iterator<Student> indexed = shard.studentsWithIdBetween(fromKey, toKey);
+            sources.add(indexed != null ? indexed : sorted(shard, IDORDER, student -> {
+                int key = StudentId.parse(student.getId());
+                return key >= fromKey && key <= toKey;
+            }));
+        }
+        return new MergedIterator(sources, IDORDER);
+    }
+
+    /**
+     * Merges the shards' students in a band of averages, lowest average first and in ID order
+     * among equal averages. Each shard streams the band off its average index, or sorts its
+     * students in the band if it keeps none, and the streams are merged through a heap holding
+     * one student per shard.
+     */
+    @Override
+    public Iterator<Student> studentsWithAverageBetween(double min, double max) {
+        List<Iterator<Student>> sources = new ArrayList<>(shards.length);
+        for (StudentRepository shard : shards) {
+            Iterator<Student> indexed = shard.studentsWithAverageBetween(min, max);
+            sources.add(indexed != null ? indexed : sorted(shard, RISINGAVERAGEORDER, student -> {
+                Module module = student.getModule();
+                return module.getGrade() != null && module.calculateAverage() >= min && module.calculateAverage() <= max;
+            }));
+        }
+        return new MergedIterator(sources, RISINGAVERAGEORDER);
+    }
+
+    /**
+     * Opens a snapshot of every shard and gathers them into one read-only view, which lists and
+     * summarises the shard views exactly as this repository does its shards.
+     * @return a view of the students, or null if any shard does not take snapshots
+     */
+    @Override
+    public StudentRepository.Snapshot snapshot() {
+        StudentRepository.Snapshot[] views = new StudentRepository.Snapshot[shards.length];
+        for (int shard = 0; shard < shards.length; ++shard) {
+            views[shard] = shards[shard].snapshot();
+            if (views[shard] == null) {
+                for (int opened = 0; opened < shard; ++opened) {
+                    views[opened].close();
+                }
+                return null;
+            }
+        }
+        return new Snapshot(views, capacity);
+    }
+
+    /**
+     * Closes every shard that holds resources.
+     * @throws IOException if a shard cannot be closed; the remaining shards are still closed
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (StudentRepository shard : shards) {
+            if (shard instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private boolean reserveSeat() {
+        while (true) {
+            int count = studentCount.get();
+            if (count >= capacity) {
+                return false;
+            }
+            if (studentCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Sorts a copy of the shard's students that pass a filter. Ties are broken by ID, as on a
+     * Leaderboard, NameIndex or StudentIndex, so the merged order does not depend on how the
+     * students are spread over the shards.
+     */
+    private static Iterator<Student> sorted(StudentRepository shard, Comparator<Student> order, Predicate<Student> filter) {
+        List<Student> students = new ArrayList<>();
+        for (Student student : shard.toArray()) {
+            if (filter.test(student)) {
+                students.add(student);
+            }
+        }
+        students.sort(order);
+        return students.iterator();
+    }
+
+    private static Iterator<Student> skip(Iterator<Student> students, int count) {
+        for (int skipped = 0; skipped < count && students.hasNext(); ++skipped) {
+            students.next();
+        }
+        return students;
+    }
+
+    /**
+     * A read-only view over one snapshot per shard. Changes are refused by the shard views, and
+     * closing the view closes all of them.
+     */
+    private static final class Snapshot extends ShardedStudentRepository implements StudentRepository.Snapshot {
+        private final StudentRepository.Snapshot[] views;
+
+        private Snapshot(StudentRepository.Snapshot[] views, int capacity) {
+            super(views, capacity);
+            this.views = views;
+        }
+
+        @Override
+        public boolean add(Student student) {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+
+        @Override
+        public void close() {
+            for (StudentRepository.Snapshot view : views) {
+                view.close();
+            }
+        }
+    }
+
+    /**
+     * Merges ordered streams of students into one ordered stream.
+     * The next student of every stream that is not exhausted sits in a binary min-heap, so the
+     * smallest is always at the root. Taking it and refilling the root from the same stream costs
+     * O(log k) comparisons for k streams.
+     */
+    private static final class MergedIterator implements Iterator<Student> {
+        private final List<Iterator<Student>> sources;
+        private final Comparator<Student> order;
+        private final Student[] heads;
+        private final int[] heap;
+        private int heapSize;
+
+        private MergedIterator(List<Iterator<Student>> sources, Comparator<Student> order) {
+            this.sources = sources;
+            this.order = order;
+            this.heads = new Student[sources.size()];
+            this.heap = new int[sources.size()];
+            for (int source = 0; source < heads.length; ++source) {
+                if (advance(source)) {
+                    heap[heapSize++] = source;
+                }
+            }
+            for (int i = heapSize / 2 - 1; i >= 0; --i) {
+                siftDown(i);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return heapSize > 0;
+        }
+
+        @Override
+        public Student next() {
+            if (heapSize == 0) {
+                throw new NoSuchElementException();
+            }
+            int source = heap[0];
+            Student student = heads[source];
+            if (!advance(source)) {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(0);
+            return student;
+        }
+
+        /**
+         * Moves a stream's head to its next student, skipping students that were removed while
+         * the stream was open.
+         * @return true if the stream has a new head, false if it is exhausted
+         */
+        private boolean advance(int source) {
+            Iterator<Student> stream = sources.get(source);
+            while (stream.hasNext()) {
+                Student student = stream.next();
+                if (student != null) {
+                    heads[source] = student;
+                    return true;
+                }
+            }
+            heads[source] = null;
+            return false;
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int smallest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < heapSize && isBefore(heap[left], heap[smallest])) {
+                    smallest = left;
+                }
+                if (right < heapSize && isBefore(heap[right], heap[smallest])) {
+                    smallest = right;
+                }
+                if (smallest == position) {
+                    return;
+                }
+                int swapped = heap[position];
+                heap[position] = heap[smallest];
+                heap[smallest] = swapped;
+                position = smallest;
+            }
+        }
+
+        private boolean isBefore(int first, int second) {
+            return order.compare(heads[first], heads[second]) < 0;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps a bounded number of students in memory in front of slower storage, evicting by recency
+ * or by frequency of use.
+ * Entries live in buckets of equal use count, each a list ordered by last use, and the buckets
+ * form a list ordered by count. Under LRU every entry stays in one bucket, so the victim is the
+ * least recently used student. Under LFU every use moves the entry to the next bucket, so the
+ * victim is the least recently used of the least often used students, and a burst of one-off
+ * lookups cannot push a frequently used student out. Lookups, insertions and evictions all run
+ * in O(1).
+ * A student changed in the cache is marked dirty and only written to storage when it is
+ * evicted or the cache is flushed. The cache counts hits, misses, evictions and write-backs.
+ */
+public class StudentCache {
+    private final int capacity;
+    private final Policy policy;
+    private final WriteBack writeBack;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private Bucket lowest;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long writeBacks;
+
+    /**
+     * The eviction policy of a cache.
+     */
+    public enum Policy {
+        /** Evicts the least recently used student. */
+        LRU,
+        /** Evicts the least often used student, the least recently used one among equals. */
+        LFU
+    }
+
+    /**
+     * Writes a dirty student back to storage.
+     */
+    @FunctionalInterface
+    public interface WriteBack {
+
+        /**
+         * Writes one student.
+         * @param key the student ID key
+         * @param student the student to write
+         * @throws IOException if the student cannot be written
+         */
+        void write(int key, Student student) throws IOException;
+    }
+
+    private static final class Entry {
+        final int key;
+        Student student;
+        boolean dirty;
+        Bucket bucket;
+        Entry newer;
+        Entry older;
+
+        Entry(int key, Student student) {
+            this.key = key;
+            this.student = student;
+        }
+    }
+
+    /**
+     * The entries used the same number of times, most recently used first.
+     */
+    private static final class Bucket {
+        final long uses;
+        Entry newest;
+        Entry oldest;
+        Bucket lower;
+        Bucket higher;
+
+        Bucket(long uses) {
+            this.uses = uses;
+        }
+    }
+
+    /**
+     * Constructs a new empty cache.
+     * @param capacity the maximum number of students kept in memory, at least one
+     * @param policy the eviction policy
+     * @param writeBack where dirty students are written when they are evicted or flushed
+     */
+    public StudentCache(int capacity, Policy policy, WriteBack writeBack) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.writeBack = writeBack;
+    }
+
+    /**
+     * Looks up a student and counts the lookup as a use.
+     * @param key the student ID key
+     * @return the cached student, or null if the student is not cached
+     */
+    public Student get(int key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        touch(entry);
+        return entry.student;
+    }
+
+    /**
+     * Looks up a student without counting it as a use or a hit.
+     * @param key the student ID key
+     * @return the cached student, or null if the student is not cached
+     */
+    public Student peek(int key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.student;
+    }
+
+    /**
+     * Adds or replaces a student, evicting another student first if the cache is full.
+     * @param key the student ID key
+     * @param student the student
+     * @param dirty true if the student differs from storage and must be written back
+     * @throws IOException if an evicted dirty student cannot be written back
+     */
+    public void put(int key, Student student, boolean dirty) throws IOException {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.student = student;
+            entry.dirty |= dirty;
+            touch(entry);
+            return;
+        }
+        if (entries.size() >= capacity) {
+            evict();
+        }
+        entry = new Entry(key, student);
+        entry.dirty = dirty;
+        entries.put(key, entry);
+        if (lowest == null || lowest.uses != 1) {
+            Bucket first = new Bucket(1);
+            first.higher = lowest;
+            if (lowest != null) {
+                lowest.lower = first;
+            }
+            lowest = first;
+        }
+        link(entry, lowest);
+    }
+
+    /**
+     * Drops a student from the cache without writing it back.
+     * @param key the student ID key
+     */
+    public void remove(int key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            unlink(entry);
+        }
+    }
+
+    /**
+     * Writes every dirty student back to storage. The students stay cached.
+     * @throws IOException if a student cannot be written back
+     */
+    public void flush() throws IOException {
+        for (Entry entry : entries.values()) {
+            if (entry.dirty) {
+                writeBack.write(entry.key, entry.student);
+                entry.dirty = false;
+                writeBacks++;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of cached students.
+     * @return the number of students in memory
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Retrieves the maximum number of cached students.
+     * @return the capacity of the cache
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Retrieves the eviction policy.
+     * @return the policy
+     */
+    public Policy policy() {
+        return policy;
+    }
+
+    /**
+     * Retrieves the number of lookups that found their student in the cache.
+     * @return the number of hits
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of lookups that did not find their student in the cache.
+     * @return the number of misses
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Retrieves the number of students evicted to make room for others.
+     * @return the number of evictions
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Retrieves the number of dirty students written back to storage.
+     * @return the number of write-backs
+     */
+    public long writeBacks() {
+        return writeBacks;
+    }
+
+    /**
+     * Records a use of an entry: under LFU it moves to the bucket of the next use count, under
+     * LRU it moves to the front of its bucket.
+     */
+    private void touch(Entry entry) {
+        Bucket bucket = entry.bucket;
+        if (policy == Policy.LRU) {
+            detach(entry);
+            link(entry, bucket);
+            return;
+        }
+        Bucket next = bucket.higher;
+        if (next == null || next.uses != bucket.uses + 1) {
+            next = new Bucket(bucket.uses + 1);
+            next.lower = bucket;
+            next.higher = bucket.higher;
+            if (bucket.higher != null) {
+                bucket.higher.lower = next;
+            }
+            bucket.higher = next;
+        }
+        unlink(entry);
+        link(entry, next);
+    }
+
+    /**
+     * Evicts the oldest entry of the lowest bucket, writing it back first if it is dirty.
+     */
+    private void evict() throws IOException {
+        Entry victim = lowest.oldest;
+        if (victim.dirty) {
+            writeBack.write(victim.key, victim.student);
+            writeBacks++;
+        }
+        entries.remove(victim.key);
+        unlink(victim);
+        evictions++;
+    }
+
+    private void link(Entry entry, Bucket bucket) {
+        entry.bucket = bucket;
+        entry.older = bucket.newest;
+        entry.newer = null;
+        if (bucket.newest != null) {
+            bucket.newest.newer = entry;
+        } else {
+            bucket.oldest = entry;
+        }
+        bucket.newest = entry;
+    }
+
+    /**
+     * Takes an entry out of its bucket, dropping the bucket if it is left empty.
+     */
+    private void unlink(Entry entry) {
+        Bucket bucket = entry.bucket;
+        detach(entry);
+        if (bucket.newest == null) {
+            if (bucket.lower != null) {
+                bucket.lower.higher = bucket.higher;
+            } else {
+                lowest = bucket.higher;
+            }
+            if (bucket.higher != null) {
+                bucket.higher.lower = bucket.lower;
+            }
+        }
+    }
+
+    /**
+     * Takes an entry out of the list of its bucket, leaving the bucket in place even if it is empty.
+     */
+    private void detach(Entry entry) {
+        Bucket bucket = entry.bucket;
+        if (entry.newer != null) {
+            entry.newer.older = entry.older;
+        } else {
+            bucket.newest = entry.older;
+        }
+        if (entry.older != null) {
+            entry.older.newer = entry.newer;
+        } else {
+            bucket.oldest = entry.newer;
+        }
+        entry.newer = null;
+        entry.older = null;
+    }
+}
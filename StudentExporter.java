@@ -0,0 +1,205 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams student records into a text file in the studentDetails.txt format.
+ * Records are formatted straight into one reusable byte buffer, with numbers written
+ * digit by digit, and the buffer is written to a FileChannel whenever it fills up.
+ * Everything goes to a temporary file next to the target, which replaces the target
+ * in one rename when the export is committed, so readers never see a half-written file.
+ * Every exporter creates a temporary file with a unique name, so concurrent exports to the
+ * same target never write into each other's file; the last one to commit wins. The target keeps
+ * its file permissions when it is replaced.
+ */
+public class StudentExporter implements Closeable {
+    private static final int BUFFERSIZE = 64 * 1024;
+    private static final int MAXFIXEDRECORD = 128 + MarkTable.MODULECOUNT * 16;
+    private static final byte[] IDLABEL = ascii("ID: ");
+    private static final byte[] NAMELABEL = ascii(", Name: ");
+    private static final byte[][] MODULELABELS = new byte[MarkTable.MODULECOUNT][];
+    private static final byte[] TOTALLABEL = ascii(", Total: ");
+    private static final byte[] AVERAGELABEL = ascii(", Average: ");
+    private static final byte[] GRADELABEL = ascii(", Grade: ");
+    private static final byte[] NOGRADETEXT = ascii("null");
+
+    static {
+        for (int module = 0; module < MODULELABELS.length; ++module) {
+            MODULELABELS[module] = ascii(", Module " + (module + 1) + ": ");
+        }
+    }
+
+    private final Path target;
+    private final Path temporary;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long recordCount;
+    private boolean committed;
+
+    /**
+     * Constructs a new exporter that will replace the given file when committed.
+     * @param target the file to export into
+     * @throws IOException if the temporary file cannot be created
+     */
+    public StudentExporter(Path target) throws IOException {
+        this.target = target;
+        this.temporary = TemporaryFiles.createNextTo(target);
+        try {
+            this.channel = FileChannel.open(temporary, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        this.buffer = ByteBuffer.allocateDirect(BUFFERSIZE);
+    }
+
+    /**
+     * Writes one student as a line of the form
+     * "ID: w1234567, Name: Jane, Module 1: 70, Module 2: 80, Module 3: 90, Total: 240, Average: 80.0, Grade: Distinction".
+     * @param student the student to write
+     * @throws IOException if the record cannot be written
+     */
+    public void write(Student student) throws IOException {
+        Module module = student.getModule();
+        ensureRemaining(MAXFIXEDRECORD);
+        buffer.put(IDLABEL);
+        putChars(student.getId());
+        buffer.put(NAMELABEL);
+        putChars(student.getName());
+        ensureRemaining(MAXFIXEDRECORD);
+        for (int i = 0; i < MODULELABELS.length; ++i) {
+            buffer.put(MODULELABELS[i]);
+            putInt(module.getMark(i));
+        }
+        buffer.put(TOTALLABEL);
+        putInt(module.calculateTotal());
+        buffer.put(AVERAGELABEL);
+        putAverage(module.calculateAverage());
+        buffer.put(GRADELABEL);
+        String grade = module.getGrade();
+        if (grade == null) {
+            buffer.put(NOGRADETEXT);
+        } else {
+            putChars(grade);
+        }
+        buffer.put((byte) '\n');
+        recordCount++;
+    }
+
+    /**
+     * Flushes the remaining records, forces them to disk and moves the file into place.
+     * @return the number of records written
+     * @throws IOException if the file cannot be written or moved
+     */
+    public long commit() throws IOException {
+        flush();
+        channel.force(false);
+        channel.close();
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+        return recordCount;
+    }
+
+    /**
+     * Closes the exporter. If the export was not committed, the temporary file is deleted
+     * and the target file is left untouched.
+     * @throws IOException if the temporary file cannot be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            channel.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void putChars(String text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; ++i) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                putUtf8(text.substring(i));
+                return;
+            }
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) c);
+        }
+    }
+
+    /**
+     * Slow path for text that is not plain ASCII.
+     */
+    private void putUtf8(String text) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int chunk = Math.min(bytes.remaining(), buffer.remaining());
+            buffer.put(bytes.array(), bytes.position(), chunk);
+            bytes.position(bytes.position() + chunk);
+        }
+    }
+
+    private void putInt(int value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * Writes an average with up to two decimals the way Double.toString prints it,
+     * for example "80.0", "72.5" or "66.67".
+     */
+    private void putAverage(double average) {
+        long hundredths = Math.round(average * 100);
+        putInt((int) (hundredths / 100));
+        buffer.put((byte) '.');
+        int fraction = (int) (hundredths % 100);
+        if (fraction % 10 == 0) {
+            buffer.put((byte) ('0' + fraction / 10));
+        } else {
+            buffer.put((byte) ('0' + fraction / 10));
+            buffer.put((byte) ('0' + fraction % 10));
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,622 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves the operations of a StudentService as a local HTTP/JSON API, using the JDK's built-in HTTP server.
+ * The server listens on the loopback address only and exposes the following endpoints:
+ * GET /seats, POST /students, GET /students?prefix=&amp;like=&amp;offset=&amp;limit=,
+ * GET /students?minAverage=&amp;maxAverage=&amp;offset=&amp;limit=,
+ * GET /students/{id}, GET /students/{id}/rank, DELETE /students/{id},
+ * PUT /students/{id}/name, PUT /students/{id}/marks, GET /summary, GET /statistics,
+ * GET /report?offset=&amp;limit= and GET /metrics.
+ * Each request runs on its own thread: a virtual thread when the Java runtime provides them,
+ * or a pooled platform thread otherwise. The operations are timed by the StudentService into
+ * the same OperationMetrics as the console menu, and /metrics reads them back.
+ */
+public class StudentHttpServer {
+    private static final int MAXBODYSIZE = 64 * 1024;
+    private static final int DEFAULTREPORTLIMIT = 100;
+    private static final int DEFAULTSEARCHDISTANCE = 2;
+    private static final Logger LOGGER = Logger.getLogger(StudentHttpServer.class.getName());
+    private final StudentService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a server for the specified service, bound to the specified port on the loopback address.
+     * @param service the service whose operations are served
+     * @param port the port to listen on
+     * @throws IOException if the port cannot be bound
+     */
+    public StudentHttpServer(StudentService service, int port) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts serving requests in the background.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server, waiting at most the specified number of seconds for the requests in progress.
+     * @param delaySeconds the maximum time to wait for the requests in progress
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * Retrieves the port the server listens on.
+     * @return the local port
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Creates the executor that runs the requests.
+     * A new virtual thread is started per request when the runtime supports them, so a request
+     * that waits on disk or on a lock does not hold a platform thread. Older runtimes fall back
+     * to a cached pool of daemon threads.
+     * @return the request executor
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "sms-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Routes a request to its endpoint and writes the response.
+     * This method performs the following steps:
+     * 1. Splits the request path into segments.
+     * 2. Selects the endpoint from the request method and the segments.
+     * 3. Writes the JSON response produced by the endpoint. An unexpected exception is logged with
+     *    the request and answered with status 500.
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response cannot be written
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/+");
+        try {
+            Response response = route(method, path, exchange);
+            if (response == null) {
+                response = new Response(404, error("No such endpoint"));
+            }
+            send(exchange, response);
+        } catch (IllegalArgumentException e) {
+            send(exchange, new Response(400, error(e.getMessage())));
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error handling " + method + " " + exchange.getRequestURI(), e);
+            send(exchange, new Response(500, error("Internal error")));
+        }
+    }
+
+    /**
+     * Runs the endpoint selected by the request method and path.
+     * @param method the request method
+     * @param path the segments of the request path
+     * @param exchange the HTTP exchange, for the request body and query
+     * @return the response, or null if no endpoint matches the request
+     * @throws IOException if the request body cannot be read
+     */
+    private Response route(String method, String[] path, HttpExchange exchange) throws IOException {
+        String resource = path[0];
+        if (path.length == 1) {
+            if (resource.equals("seats") && method.equals("GET")) {
+                return new Response(200, "{\"availableSeats\":" + service.availableSeats() + "}");
+            }
+            if (resource.equals("students") && method.equals("POST")) {
+                Map<String, Object> body = Json.parseObject(readBody(exchange));
+                String id = Json.stringField(body, "id");
+                return outcome(service.register(id, Json.stringField(body, "name")), id, 201);
+            }
+            if (resource.equals("students") && method.equals("GET")) {
+                URI uri = exchange.getRequestURI();
+                return queryString(uri, "minAverage") != null || queryString(uri, "maxAverage") != null
+                        ? studentsWithAverageBetween(uri) : studentsByName(uri);
+            }
+            if (resource.equals("summary") && method.equals("GET")) {
+                StudentService.Summary summary = service.summary();
+                return new Response(200, "{\"totalStudents\":" + summary.totalStudents()
+                        + ",\"passedAllModules\":" + summary.passedAllModules() + "}");
+            }
+            if (resource.equals("statistics") && method.equals("GET")) {
+                return new Response(200, statisticsJson(service.statistics()));
+            }
+            if (resource.equals("report") && method.equals("GET")) {
+                return report(exchange.getRequestURI());
+            }
+            if (resource.equals("metrics") && method.equals("GET")) {
+                return new Response(200, metricsJson());
+            }
+        } else if (resource.equals("students") && path.length <= 3) {
+            String id = path[1];
+            if (path.length == 2 && method.equals("GET")) {
+                if (StudentId.parse(id) == StudentId.INVALID) {
+                    return outcome(StudentService.Outcome.INVALID_ID, id, 200);
+                }
+                Student student = service.find(id);
+                return student == null ? outcome(StudentService.Outcome.NOT_FOUND, id, 200)
+                        : new Response(200, studentJson(student));
+            }
+            if (path.length == 3 && path[2].equals("rank") && method.equals("GET")) {
+                if (StudentId.parse(id) == StudentId.INVALID) {
+                    return outcome(StudentService.Outcome.INVALID_ID, id, 200);
+                }
+                int rank = service.rankOf(id);
+                return rank < 0 ? outcome(StudentService.Outcome.NOT_FOUND, id, 200)
+                        : new Response(200, "{\"id\":" + Json.quote(id) + ",\"rank\":" + (rank + 1)
+                                + ",\"total\":" + service.repository().size() + "}");
+            }
+            if (path.length == 2 && method.equals("DELETE")) {
+                return outcome(service.delete(id), id, 200);
+            }
+            if (path.length == 3 && path[2].equals("name") && method.equals("PUT")) {
+                Map<String, Object> body = Json.parseObject(readBody(exchange));
+                return outcome(service.rename(id, Json.stringField(body, "name")), id, 200);
+            }
+            if (path.length == 3 && path[2].equals("marks") && method.equals("PUT")) {
+                Map<String, Object> body = Json.parseObject(readBody(exchange));
+                return outcome(service.setMarks(id, Json.intArrayField(body, "marks")), id, 200);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lists a page of the students ranked by average marks, highest first.
+     * @param uri the request URI, with optional "offset" and "limit" query parameters
+     * @return the response holding the requested page and the total number of students
+     * @throws IOException never, as the page is collected in memory
+     */
+    private Response report(URI uri) throws IOException {
+        int offset = queryInt(uri, "offset", 0);
+        int limit = queryInt(uri, "limit", DEFAULTREPORTLIMIT);
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        StringBuilder json = new StringBuilder("{\"students\":[");
+        StudentReport report = new StudentReport(service, StudentReport.Order.AVERAGE,
+                (student, rank, row) -> row.append(rank > offset + 1 ? "," : "").append(studentJson(student)));
+        report.write(row -> {
+            json.append(row);
+            return true;
+        }, offset, limit);
+        json.append("],\"offset\":").append(offset).append(",\"total\":").append(service.repository().size()).append('}');
+        return new Response(200, json.toString());
+    }
+
+    /**
+     * Lists a page of the students in name order, ignoring case.
+     * With a "prefix" query parameter only the names starting with it are listed; with a "like"
+     * parameter only the names within "distance" (default 2) single-character edits of it.
+     * @param uri the request URI, with optional "prefix", "like", "distance", "offset" and "limit" query parameters
+     * @return the response holding the requested page
+     */
+    private Response studentsByName(URI uri) {
+        int offset = queryInt(uri, "offset", 0);
+        int limit = queryInt(uri, "limit", DEFAULTREPORTLIMIT);
+        String prefix = queryString(uri, "prefix");
+        String like = queryString(uri, "like");
+        Student[] page;
+        if (like != null) {
+            page = service.studentsNamedLike(like, queryInt(uri, "distance", DEFAULTSEARCHDISTANCE), offset, limit);
+        } else if (prefix != null) {
+            page = service.studentsWithNamePrefix(prefix, offset, limit);
+        } else {
+            page = service.studentsByName(offset, limit);
+        }
+        StringBuilder json = new StringBuilder("{\"students\":[");
+        for (int i = 0; i < page.length; ++i) {
+            json.append(i == 0 ? "" : ",").append(studentJson(page[i]));
+        }
+        json.append("],\"offset\":").append(offset);
+        if (like == null) {
+            json.append(",\"total\":").append(prefix == null ? service.repository().size() : service.countWithNamePrefix(prefix));
+        }
+        return new Response(200, json.append('}').toString());
+    }
+
+    /**
+     * Lists a page of the students whose average mark lies in a band, lowest average first.
+     * @param uri the request URI, with optional "minAverage" (default 0), "maxAverage" (default 100),
+     *        "offset" and "limit" query parameters
+     * @return the response holding the requested page
+     */
+    private Response studentsWithAverageBetween(URI uri) {
+        int offset = queryInt(uri, "offset", 0);
+        int limit = queryInt(uri, "limit", DEFAULTREPORTLIMIT);
+        Student[] page = service.studentsWithAverageBetween(queryDouble(uri, "minAverage", 0),
+                queryDouble(uri, "maxAverage", 100), offset, limit);
+        StringBuilder json = new StringBuilder("{\"students\":[");
+        for (int i = 0; i < page.length; ++i) {
+            json.append(i == 0 ? "" : ",").append(studentJson(page[i]));
+        }
+        return new Response(200, json.append("],\"offset\":").append(offset).append('}').toString());
+    }
+
+    private static String statisticsJson(SummaryEngine.CohortSummary summary) {
+        StringBuilder json = new StringBuilder("{\"totalStudents\":").append(summary.totalStudents())
+                .append(",\"gradedStudents\":").append(summary.gradedStudents())
+                .append(",\"passedAllModules\":").append(summary.passedAllModules())
+                .append(",\"passRate\":").append(summary.passRate())
+                .append(",\"grades\":{");
+        for (byte grade = MarkTable.FAIL; grade <= MarkTable.DISTINCTION; ++grade) {
+            json.append(grade == MarkTable.FAIL ? "" : ",").append(Json.quote(MarkTable.gradeName(grade)))
+                    .append(':').append(summary.gradeCount(grade));
+        }
+        json.append("},\"averagePercentiles\":{\"p25\":").append(summary.averagePercentile(25))
+                .append(",\"p50\":").append(summary.averagePercentile(50))
+                .append(",\"p75\":").append(summary.averagePercentile(75))
+                .append(",\"p90\":").append(summary.averagePercentile(90))
+                .append("},\"modules\":[");
+        SummaryEngine.ModuleStatistics[] modules = summary.modules();
+        for (int module = 0; module < modules.length; ++module) {
+            SummaryEngine.ModuleStatistics statistics = modules[module];
+            json.append(module == 0 ? "" : ",").append("{\"name\":").append(Json.quote(ModuleCatalogue.active().name(module)))
+                    .append(",\"credits\":").append(ModuleCatalogue.active().credits(module))
+                    .append(",\"min\":").append(statistics.min())
+                    .append(",\"max\":").append(statistics.max())
+                    .append(",\"mean\":").append(statistics.mean())
+                    .append(",\"standardDeviation\":").append(statistics.standardDeviation())
+                    .append(",\"passRate\":").append(statistics.passRate())
+                    .append(",\"median\":").append(statistics.percentile(50)).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private String metricsJson() {
+        OperationMetrics metrics = service.metrics();
+        StringBuilder json = new StringBuilder("{");
+        for (OperationMetrics.Operation operation : OperationMetrics.Operation.values()) {
+            OperationMetrics.OperationStats stats = metrics.stats(operation);
+            if (stats.count() == 0) {
+                continue;
+            }
+            LatencyHistogram latency = stats.latency();
+            json.append(json.length() == 1 ? "" : ",").append(Json.quote(operation.name()))
+                    .append(":{\"count\":").append(stats.count())
+                    .append(",\"misses\":").append(stats.misses())
+                    .append(",\"failures\":").append(stats.failures())
+                    .append(",\"meanMicros\":").append(latency.mean() / 1000)
+                    .append(",\"medianMicros\":").append(latency.percentile(50) / 1000.0)
+                    .append(",\"p99Micros\":").append(latency.percentile(99) / 1000.0)
+                    .append(",\"maxMicros\":").append(latency.max() / 1000.0).append('}');
+        }
+        return json.append('}').toString();
+    }
+
+    private static Response outcome(StudentService.Outcome outcome, String id, int successStatus) {
+        int status;
+        switch (outcome) {
+            case OK:
+                status = successStatus;
+                break;
+            case NOT_FOUND:
+                status = 404;
+                break;
+            case ALREADY_REGISTERED:
+            case NO_SEATS:
+                status = 409;
+                break;
+            case STORAGE_ERROR:
+                status = 503;
+                break;
+            case INVALID_ID:
+            case INVALID_NAME:
+            case INVALID_MARKS:
+            default:
+                status = 400;
+        }
+        return new Response(status, "{\"id\":" + Json.quote(id) + ",\"outcome\":" + Json.quote(outcome.name()) + "}");
+    }
+
+    private static String studentJson(Student student) {
+        Module module = student.getModule();
+        StringBuilder json = new StringBuilder("{\"id\":").append(Json.quote(student.getId()))
+                .append(",\"name\":").append(Json.quote(student.getName()))
+                .append(",\"marks\":[");
+        for (int i = 0; i < MarkTable.MODULECOUNT; ++i) {
+            json.append(i == 0 ? "" : ",").append(module.getMark(i));
+        }
+        json.append("],\"moduleGrades\":[");
+        for (int i = 0; i < MarkTable.MODULECOUNT; ++i) {
+            String moduleGrade = module.getModuleGrade(i);
+            json.append(i == 0 ? "" : ",").append(moduleGrade == null ? "null" : Json.quote(moduleGrade));
+        }
+        json.append("],\"total\":").append(module.calculateTotal())
+                .append(",\"average\":").append(module.calculateAverage())
+                .append(",\"grade\":").append(module.getGrade() == null ? "null" : Json.quote(module.getGrade()));
+        return json.append('}').toString();
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(message == null ? "Bad request" : message) + "}";
+    }
+
+    private static int queryInt(URI uri, String name, int defaultValue) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return defaultValue;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                try {
+                    return Integer.parseInt(parameter.substring(equals + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(name + " must be a number");
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    private static double queryDouble(URI uri, String name, double defaultValue) {
+        String value = queryString(uri, name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+
+    private static String queryString(URI uri, String name) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                return URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAXBODYSIZE + 1);
+            if (body.length > MAXBODYSIZE) {
+                throw new IllegalArgumentException("Request body is too large");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status(), body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * An HTTP status code with its JSON body.
+     */
+    private record Response(int status, String body) {
+    }
+
+    /**
+     * Reads and writes the small, flat JSON objects used by the API.
+     * Only objects whose values are strings, numbers, booleans, null or arrays of numbers are supported.
+     */
+    static final class Json {
+        private final String text;
+        private int position;
+
+        private Json(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Parses a flat JSON object.
+         * @param text the JSON text
+         * @return the fields of the object: Strings, Longs, Booleans, nulls or Lists of Longs
+         * @throws IllegalArgumentException if the text is not a supported JSON object
+         */
+        static Map<String, Object> parseObject(String text) {
+            Json parser = new Json(text);
+            Map<String, Object> fields = new HashMap<>();
+            parser.expect('{');
+            if (!parser.consume('}')) {
+                do {
+                    String name = parser.string();
+                    parser.expect(':');
+                    Object value = parser.value();
+                    if (value != null) {
+                        fields.put(name, value);
+                    }
+                } while (parser.consume(','));
+                parser.expect('}');
+            }
+            parser.skipWhitespace();
+            if (parser.position != text.length()) {
+                throw new IllegalArgumentException("Unexpected content after JSON object");
+            }
+            return fields;
+        }
+
+        static String stringField(Map<String, Object> fields, String name) {
+            Object value = fields.get(name);
+            if (!(value instanceof String)) {
+                throw new IllegalArgumentException("Field \"" + name + "\" must be a string");
+            }
+            return (String) value;
+        }
+
+        static int[] intArrayField(Map<String, Object> fields, String name) {
+            Object value = fields.get(name);
+            if (!(value instanceof List<?> list)) {
+                throw new IllegalArgumentException("Field \"" + name + "\" must be an array of numbers");
+            }
+            int[] numbers = new int[list.size()];
+            for (int i = 0; i < numbers.length; ++i) {
+                long number = (Long) list.get(i);
+                if (number < Integer.MIN_VALUE || number > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Field \"" + name + "\" holds a number out of range");
+                }
+                numbers[i] = (int) number;
+            }
+            return numbers;
+        }
+
+        /**
+         * Quotes a string as a JSON string literal.
+         * @param value the string to quote
+         * @return the JSON string literal
+         */
+        static String quote(String value) {
+            StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+            for (int i = 0; i < value.length(); ++i) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            return json.append('"').toString();
+        }
+
+        private Object value() {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == '"') {
+                return string();
+            }
+            if (consume('[')) {
+                List<Long> numbers = new ArrayList<>();
+                if (!consume(']')) {
+                    do {
+                        numbers.add(number());
+                    } while (consume(','));
+                    expect(']');
+                }
+                return numbers;
+            }
+            if (text.startsWith("true", position) || text.startsWith("false", position)
+                    || text.startsWith("null", position)) {
+                String literal = text.startsWith("false", position) ? "false" : text.substring(position, position + 4);
+                position += literal.length();
+                return literal.equals("null") ? null : Boolean.valueOf(literal);
+            }
+            return number();
+        }
+
+        private long number() {
+            skipWhitespace();
+            int start = position;
+            if (position < text.length() && text.charAt(position) == '-') {
+                position++;
+            }
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+            try {
+                return Long.parseLong(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a whole number at position " + start);
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n' -> value.append('\n');
+                    case 't' -> value.append('\t');
+                    case 'r' -> value.append('\r');
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) {
+                            throw new IllegalArgumentException("Bad unicode escape in JSON string");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Bad unicode escape in JSON string");
+                        }
+                        position += 4;
+                    }
+                    default -> value.append(escaped);
+                }
+            }
+            throw new IllegalArgumentException("Unterminated JSON string");
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) {
+                throw new IllegalArgumentException("Expected '" + c + "' at position " + position);
+            }
+        }
+
+        private boolean consume(char c) {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Encodes student IDs of the form "w" followed by 7 digits as primitive int keys.
+ * For example, "w0012345" is encoded as 12345. Parsing and validation do not allocate.
+ */
+public final class StudentId {
+    /**
+     * The key returned by {@link #parse(CharSequence)} for a malformed ID.
+     */
+    public static final int INVALID = -1;
+    /**
+     * The largest key a valid student ID can encode to.
+     */
+    public static final int MAXKEY = 9_999_999;
+    private static final char PREFIX = 'w';
+    private static final int DIGITS = 7;
+
+    private StudentId() {
+    }
+
+    /**
+     * Parses a student ID into its int key.
+     * A valid student ID is "w" followed by exactly 7 digits.
+     * @param id the student ID to parse
+     * @return the key of the ID, or INVALID if the ID is not valid
+     */
+    public static int parse(CharSequence id) {
+        if (id == null || id.length() != DIGITS + 1 || id.charAt(0) != PREFIX) {
+            return INVALID;
+        }
+        int key = 0;
+        for (int i = 1; i <= DIGITS; ++i) {
+            int digit = id.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            key = key * 10 + digit;
+        }
+        return key;
+    }
+
+    /**
+     * Checks if the given student ID is valid.
+     * @param id the student ID to validate
+     * @return true if the ID is "w" followed by 7 digits, false otherwise
+     */
+    public static boolean isValid(CharSequence id) {
+        return parse(id) != INVALID;
+    }
+
+    /**
+     * Formats an int key back into its student ID.
+     * @param key the key to format, between 0 and MAXKEY
+     * @return the student ID, for example "w0012345" for the key 12345
+     */
+    public static String format(int key) {
+        if (key < 0 || key > MAXKEY) {
+            throw new IllegalArgumentException("Not a student ID key: " + key);
+        }
+        char[] chars = new char[DIGITS + 1];
+        chars[0] = PREFIX;
+        for (int i = DIGITS; i >= 1; --i) {
+            chars[i] = (char) ('0' + key % 10);
+            key /= 10;
+        }
+        return new String(chars);
+    }
+}
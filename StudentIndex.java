@@ -0,0 +1,242 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Indexes persisted students by ID and by average mark in two on-disk B+-trees, so that a range
+ * of IDs, such as an intake year, or a band of averages can be read without loading the students.
+ * The ID tree maps every student ID key to the student's credit-weighted total of module marks,
+ * or NOMARKS if no marks were set. The average tree is keyed by the weighted total in the high
+ * half and the ID key in the low half, so every key is unique and students with the same average
+ * follow each other in ID order; its values are the ID keys. Averages rise with the weighted total,
+ * so a band of averages is a band of weighted totals and is read as one range of the average tree.
+ * When the marks of a student change, the ID tree supplies the old weighted total, so the old
+ * entry of the average tree is found and removed without a scan.
+ * Both trees are stamped when they are built and closed, so an owner can tell whether they still
+ * match the data they were built from.
+ */
+public final class StudentIndex implements Closeable {
+    private static final int NOMARKS = -1;
+    private final BPlusTree byId;
+    private final BPlusTree byAverage;
+
+    private StudentIndex(BPlusTree byId, BPlusTree byAverage) {
+        this.byId = byId;
+        this.byAverage = byAverage;
+    }
+
+    /**
+     * Opens an index that was closed cleanly with the given stamp.
+     * @param idFile the file of the ID tree
+     * @param averageFile the file of the average tree
+     * @param stamp the stamp the index must have been closed with
+     * @return the opened index, or null if either file is missing, unreadable, was not closed
+     *         cleanly or has a different stamp, in which case the index must be rebuilt
+     */
+    public static StudentIndex open(Path idFile, Path averageFile, long stamp) {
+        if (!Files.exists(idFile) || !Files.exists(averageFile)) {
+            return null;
+        }
+        BPlusTree byId = null;
+        try {
+            byId = BPlusTree.open(idFile);
+            BPlusTree byAverage = BPlusTree.open(averageFile);
+            if (byId.isClean() && byAverage.isClean() && byId.stamp() == stamp && byAverage.stamp() == stamp) {
+                return new StudentIndex(byId, byAverage);
+            }
+            byAverage.close();
+        } catch (IOException e) {
+            // An unreadable index is rebuilt like a stale one.
+        }
+        try {
+            if (byId != null) {
+                byId.close();
+            }
+        } catch (IOException e) {
+            // The stale tree is about to be replaced.
+        }
+        return null;
+    }
+
+    /**
+     * Builds the index by bulk-loading both trees from a snapshot, whose records are already
+     * sorted by ID. Only the keys, grades and marks of the records are read.
+     * @param idFile the file of the ID tree
+     * @param averageFile the file of the average tree
+     * @param snapshot the students to index, or null to build an empty index
+     * @param stamp the stamp to store with the trees
+     * @return the opened index
+     * @throws IOException if a tree cannot be written
+     */
+    public static StudentIndex build(Path idFile, Path averageFile, StudentSnapshot snapshot, long stamp)
+            throws IOException {
+        int count = snapshot == null ? 0 : snapshot.size();
+        long[] ids = new long[count];
+        int[] weightedTotals = new int[count];
+        long[] averageKeys = new long[count];
+        int marked = 0;
+        for (int i = 0; i < count; ++i) {
+            int key = snapshot.key(i);
+            ids[i] = key;
+            weightedTotals[i] = weightedTotalOf(snapshot.student(i));
+            if (weightedTotals[i] != NOMARKS) {
+                averageKeys[marked++] = averageKey(weightedTotals[i], key);
+            }
+        }
+        Arrays.sort(averageKeys, 0, marked);
+        int[] averageValues = new int[marked];
+        for (int i = 0; i < marked; ++i) {
+            averageValues[i] = (int) averageKeys[i];
+        }
+        BPlusTree byId = BPlusTree.bulkLoad(idFile, ids, weightedTotals, count, stamp);
+        try {
+            return new StudentIndex(byId, BPlusTree.bulkLoad(averageFile, averageKeys, averageValues, marked, stamp));
+        } catch (IOException e) {
+            byId.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves the number of indexed students.
+     * @return the number of students in the ID tree
+     */
+    public long size() {
+        return byId.size();
+    }
+
+    /**
+     * Adds a student to the index or brings their entry up to date.
+     * @param key the student ID key
+     * @param student the current state of the student
+     * @throws IOException if a tree cannot be read or written
+     */
+    public void put(int key, Student student) throws IOException {
+        int weightedTotal = weightedTotalOf(student);
+        int previous = byId.get(key);
+        if (previous == weightedTotal) {
+            return;
+        }
+        if (previous != BPlusTree.MISSING && previous != NOMARKS) {
+            byAverage.remove(averageKey(previous, key));
+        }
+        byId.put(key, weightedTotal);
+        if (weightedTotal != NOMARKS) {
+            byAverage.put(averageKey(weightedTotal, key), key);
+        }
+    }
+
+    /**
+     * Removes a student from the index.
+     * @param key the student ID key
+     * @throws IOException if a tree cannot be read or written
+     */
+    public void remove(int key) throws IOException {
+        int previous = byId.get(key);
+        if (previous == BPlusTree.MISSING) {
+            return;
+        }
+        if (previous != NOMARKS) {
+            byAverage.remove(averageKey(previous, key));
+        }
+        byId.remove(key);
+    }
+
+    /**
+     * Iterates over the ID keys of the indexed students in a range, in ascending order.
+     * The index must not be changed while the iteration is in progress.
+     * @param fromKey the smallest ID key of the range
+     * @param toKey the largest ID key of the range
+     * @return an iterator over the ID keys
+     */
+    public PrimitiveIterator.OfInt keysWithIdBetween(int fromKey, int toKey) {
+        try {
+            return keysOf(byId.range(fromKey, toKey), true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Iterates over the ID keys of the indexed students whose average mark lies in a range, by
+     * average from lowest to highest and by ID among equal averages. Students without marks are
+     * not included. The index must not be changed while the iteration is in progress.
+     * @param min the lowest average of the range
+     * @param max the highest average of the range
+     * @return an iterator over the ID keys
+     */
+    public PrimitiveIterator.OfInt keysWithAverageBetween(double min, double max) {
+        int lowest = MarkTable.firstWeightedTotalAbove(min, false);
+        int highest = MarkTable.firstWeightedTotalAbove(max, true) - 1;
+        try {
+            return keysOf(byAverage.range(averageKey(lowest, 0), averageKey(highest, StudentId.MAXKEY)), false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stamps both trees, marks them clean and closes them.
+     * @param stamp the stamp identifying the data the index now matches
+     * @throws IOException if a tree cannot be written or closed
+     */
+    public void close(long stamp) throws IOException {
+        try {
+            byId.close(stamp);
+        } finally {
+            byAverage.close(stamp);
+        }
+    }
+
+    /**
+     * Marks both trees clean, keeping their stamp, and closes them.
+     * @throws IOException if a tree cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        close(byId.stamp());
+    }
+
+    private static int weightedTotalOf(Student student) {
+        Module module = student.getModule();
+        return module.getGrade() == null ? NOMARKS : module.calculateWeightedTotal();
+    }
+
+    private static long averageKey(int weightedTotal, int key) {
+        return ((long) weightedTotal << 32) | key;
+    }
+
+    private static PrimitiveIterator.OfInt keysOf(BPlusTree.Cursor cursor, boolean fromKeys) {
+        return new PrimitiveIterator.OfInt() {
+            private boolean advanced;
+            private boolean found;
+
+            @Override
+            public boolean hasNext() {
+                if (!advanced) {
+                    try {
+                        found = cursor.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    advanced = true;
+                }
+                return found;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                advanced = false;
+                return fromKeys ? (int) cursor.key() : cursor.value();
+            }
+        };
+    }
+}
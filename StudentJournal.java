@@ -0,0 +1,351 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Appends one compact binary record per registry mutation to a write-ahead journal file.
+ * Each record is framed by its length and a CRC32 of its contents, so a record that was only
+ * partly written before a crash is detected and dropped on replay. Records are forced to disk
+ * in groups: the channel is synced once every syncEvery records and when the journal is closed.
+ */
+public class StudentJournal implements Closeable {
+    private static final int MAGIC = 0x534D534A;
+    private static final short VERSION = 1;
+    private static final int HEADERSIZE = 8;
+    private static final int FRAMESIZE = 8;
+    private static final byte REGISTER = 1;
+    private static final byte DELETE = 2;
+    private static final byte RENAME = 3;
+    private static final byte MARKS = 4;
+    private final FileChannel channel;
+    private final int syncEvery;
+    private final ByteBuffer record = ByteBuffer.allocate(64 * 1024);
+    private final CRC32 crc = new CRC32();
+    private int unsyncedRecords;
+    private int recordCount;
+
+    /**
+     * Opens a journal file, creating it if it does not exist, and replays its records into a repository.
+     * A torn record at the end of the file is cut off so that new records follow the last complete one.
+     * @param file the journal file
+     * @param syncEvery the number of records to append between forcing the file to disk
+     * @param repository the repository to replay the existing records into
+     * @throws IOException if the file cannot be read or written, or is not a journal
+     */
+    public StudentJournal(Path file, int syncEvery, StudentRepository repository) throws IOException {
+        this.syncEvery = Math.max(1, syncEvery);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            writeHeader();
+        } else {
+            long end = replay(repository);
+            channel.truncate(end);
+            channel.position(end);
+        }
+    }
+
+    /**
+     * Retrieves the number of records in the journal since it was created or last reset.
+     * @return the number of records
+     */
+    public int recordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Appends a record for a newly registered student, including its name and marks.
+     * @param student the registered student
+     * @throws IOException if the record cannot be written
+     */
+    public void logRegister(Student student) throws IOException {
+        begin(REGISTER, StudentId.parse(student.getId()));
+        putName(student.getName());
+        Module module = student.getModule();
+        record.put(MarkTable.gradeCodeOf(module.getGrade()));
+        for (int i = 0; i < MarkTable.MODULECOUNT; ++i) {
+            record.put((byte) module.getMark(i));
+        }
+        append();
+    }
+
+    /**
+     * Appends a record for a deleted student.
+     * @param key the student ID key
+     * @throws IOException if the record cannot be written
+     */
+    public void logDelete(int key) throws IOException {
+        begin(DELETE, key);
+        append();
+    }
+
+    /**
+     * Appends a record for a renamed student.
+     * @param key the student ID key
+     * @param name the new name
+     * @throws IOException if the record cannot be written
+     */
+    public void logRename(int key, String name) throws IOException {
+        begin(RENAME, key);
+        putName(name);
+        append();
+    }
+
+    /**
+     * Appends a record for new module marks.
+     * @param key the student ID key
+     * @param moduleMarks the new marks
+     * @throws IOException if the record cannot be written
+     */
+    public void logMarks(int key, int[] moduleMarks) throws IOException {
+        begin(MARKS, key);
+        putMarks(moduleMarks);
+        append();
+    }
+
+    /**
+     * Appends a record for new module marks for each selected entry of a batch and forces the
+     * group to disk once. If any record cannot be written or the group cannot be forced to disk,
+     * the whole group is cut off again.
+     * @param keys the student ID keys
+     * @param moduleMarks the new marks of each student
+     * @param count the number of entries of the batch
+     * @param selected which entries to journal
+     * @throws IOException if the records cannot be written
+     */
+    public void logMarks(int[] keys, int[][] moduleMarks, int count, boolean[] selected) throws IOException {
+        long start = channel.position();
+        int written = 0;
+        try {
+            for (int i = 0; i < count; ++i) {
+                if (selected[i]) {
+                    begin(MARKS, keys[i]);
+                    putMarks(moduleMarks[i]);
+                    write();
+                    written++;
+                }
+            }
+            if (written > 0) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            cutOff(start, e);
+            throw e;
+        }
+        recordCount += written;
+        if (written > 0) {
+            unsyncedRecords = 0;
+        }
+    }
+
+    /**
+     * Forces every appended record to disk.
+     * @throws IOException if the file cannot be synced
+     */
+    public void sync() throws IOException {
+        if (unsyncedRecords > 0) {
+            channel.force(false);
+            unsyncedRecords = 0;
+        }
+    }
+
+    /**
+     * Empties the journal once its records have been folded into a snapshot.
+     * @throws IOException if the file cannot be truncated
+     */
+    public void reset() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        writeHeader();
+        channel.force(false);
+        unsyncedRecords = 0;
+        recordCount = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void begin(byte operation, int key) {
+        record.clear();
+        record.position(FRAMESIZE);
+        record.put(operation);
+        record.putInt(key);
+    }
+
+    private void putName(String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > record.remaining() - Short.BYTES - MarkTable.MODULECOUNT - 1) {
+            throw new IOException("Name is too long for the journal: " + bytes.length + " bytes");
+        }
+        record.putShort((short) bytes.length);
+        record.put(bytes);
+    }
+
+    private void putMarks(int[] moduleMarks) {
+        for (int mark : moduleMarks) {
+            record.put((byte) mark);
+        }
+    }
+
+    /**
+     * Appends the current record and forces it to disk if syncEvery records are pending. If the
+     * record cannot be written or forced to disk, it is cut off again, so the journal never holds
+     * a change that its caller was told had failed.
+     */
+    private void append() throws IOException {
+        long start = channel.position();
+        boolean syncNow = unsyncedRecords + 1 >= syncEvery;
+        try {
+            write();
+            if (syncNow) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            cutOff(start, e);
+            throw e;
+        }
+        recordCount++;
+        unsyncedRecords = syncNow ? 0 : unsyncedRecords + 1;
+    }
+
+    /**
+     * Frames the current record with its length and CRC32 and writes it at the end of the file.
+     */
+    private void write() throws IOException {
+        int payloadLength = record.position() - FRAMESIZE;
+        crc.reset();
+        crc.update(record.array(), FRAMESIZE, payloadLength);
+        record.putInt(0, payloadLength);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    /**
+     * Truncates the file back to where a failed append started.
+     */
+    private void cutOff(long start, IOException failure) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADERSIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) MarkTable.MODULECOUNT).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.position(HEADERSIZE);
+    }
+
+    /**
+     * Applies every complete record in the file to the repository.
+     * @return the file position just after the last complete record
+     */
+    private long replay(StudentRepository repository) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADERSIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADERSIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not a student journal");
+        }
+        if (header.getShort() != VERSION || header.getShort() != MarkTable.MODULECOUNT) {
+            throw new IOException("Unsupported student journal version");
+        }
+        long position = HEADERSIZE;
+        ByteBuffer frame = ByteBuffer.allocate(FRAMESIZE);
+        while (true) {
+            frame.clear();
+            if (readFully(frame, position) < FRAMESIZE) {
+                return position;
+            }
+            int payloadLength = frame.getInt(0);
+            if (payloadLength < 5 || payloadLength > record.capacity() - FRAMESIZE) {
+                return position;
+            }
+            record.clear().limit(payloadLength);
+            if (readFully(record, position + FRAMESIZE) < payloadLength) {
+                return position;
+            }
+            crc.reset();
+            crc.update(record.array(), 0, payloadLength);
+            if ((int) crc.getValue() != frame.getInt(4)) {
+                return position;
+            }
+            record.flip();
+            apply(record, repository);
+            recordCount++;
+            position += FRAMESIZE + payloadLength;
+        }
+    }
+
+    private static void apply(ByteBuffer payload, StudentRepository repository) {
+        byte operation = payload.get();
+        int key = payload.getInt();
+        switch (operation) {
+            case REGISTER:
+                Student student = new Student(StudentId.format(key), getName(payload));
+                byte grade = payload.get();
+                int[] moduleMarks = getMarks(payload);
+                if (grade != MarkTable.NOGRADE) {
+                    student.getModule().setModuleMarks(moduleMarks);
+                }
+                repository.add(student);
+                break;
+            case DELETE:
+                repository.remove(key);
+                break;
+            case RENAME:
+                repository.rename(key, getName(payload));
+                break;
+            case MARKS:
+                repository.setMarks(key, getMarks(payload));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String getName(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getShort()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int[] getMarks(ByteBuffer payload) {
+        int[] moduleMarks = new int[MarkTable.MODULECOUNT];
+        for (int i = 0; i < moduleMarks.length; ++i) {
+            moduleMarks[i] = payload.get();
+        }
+        return moduleMarks;
+    }
+
+    private int readFully(ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads students from a text file in the studentDetails.txt format written by StudentExporter.
+ * The file is read in large chunks through a FileChannel and each line is parsed in place as
+ * bytes, without splitting it into Strings. Only the ID, name and module marks are read; the
+ * total and average are derived again from the marks. Malformed lines and IDs that are already
+ * registered are skipped and reported with their line numbers.
+ */
+public final class StudentLoader {
+    private static final int CHUNKSIZE = 1 << 20;
+    private static final int MAXREPORTEDPROBLEMS = 100;
+    private static final byte[] IDLABEL = ascii("ID: ");
+    private static final byte[] NAMELABEL = ascii(", Name: ");
+    private static final byte[][] MODULELABELS = new byte[MarkTable.MODULECOUNT][];
+    private static final byte[] TOTALLABEL = ascii(", Total: ");
+    private static final byte[] GRADELABEL = ascii(", Grade: ");
+    private static final byte[] NOGRADETEXT = ascii("null");
+    private static final String NAMEEND = ", Module 1: ";
+
+    static {
+        for (int module = 0; module < MODULELABELS.length; ++module) {
+            MODULELABELS[module] = ascii(", Module " + (module + 1) + ": ");
+        }
+    }
+
+    private final StudentRepository repository;
+    private final int[] moduleMarks = new int[MarkTable.MODULECOUNT];
+    private final List<String> problems = new ArrayList<>();
+    private int problemCount;
+    private int loaded;
+    private int duplicates;
+    private int malformed;
+    private boolean full;
+
+    private StudentLoader(StudentRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Represents the outcome of loading a file.
+     * @param loaded the number of students added to the repository
+     * @param duplicates the number of lines skipped because the ID was already registered
+     * @param malformed the number of lines skipped because they could not be parsed
+     * @param capacityReached true if loading stopped early because the repository was full
+     * @param problems descriptions of the skipped lines, with line numbers, up to a fixed limit
+     */
+    public record Result(int loaded, int duplicates, int malformed, boolean capacityReached, List<String> problems) {
+    }
+
+    /**
+     * Loads every student in the file into the repository.
+     * @param file the file to read
+     * @param repository the repository to add the students to
+     * @return the outcome of the load
+     * @throws IOException if the file cannot be read or the repository cannot save a student;
+     *         the students added before the failure stay registered
+     */
+    public static Result load(Path file, StudentRepository repository) throws IOException {
+        StudentLoader loader = new StudentLoader(repository);
+        try {
+            loader.read(file);
+        } catch (UncheckedIOException e) {
+            throw new IOException("Saving a student failed after " + loader.loaded + " were loaded: "
+                    + e.getCause().getMessage(), e.getCause());
+        }
+        return new Result(loader.loaded, loader.duplicates, loader.malformed, loader.full,
+                Collections.unmodifiableList(loader.problems));
+    }
+
+    /**
+     * Checks that a name can be written to the text format and read back unchanged. The name of a
+     * line runs up to the first ", Module 1: ", so a name must not contain that text, and it must
+     * not be empty or break the line.
+     * @param name the name to check
+     * @return true if load reads the name back as it was stored, false otherwise
+     */
+    public static boolean isLoadableName(String name) {
+        return !name.isEmpty() && !name.contains(NAMEEND) && name.indexOf('\n') < 0 && name.indexOf('\r') < 0;
+    }
+
+    private void read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNKSIZE);
+            byte[] bytes = buffer.array();
+            int lineNumber = 0;
+            boolean endOfFile = false;
+            while (!endOfFile && !full) {
+                endOfFile = channel.read(buffer) < 0;
+                int limit = buffer.position();
+                int lineStart = 0;
+                for (int i = 0; i < limit && !full; ++i) {
+                    if (bytes[i] == '\n') {
+                        parseLine(bytes, lineStart, i, ++lineNumber);
+                        lineStart = i + 1;
+                    }
+                }
+                if (endOfFile) {
+                    if (lineStart < limit && !full) {
+                        parseLine(bytes, lineStart, limit, ++lineNumber);
+                    }
+                } else if (lineStart == 0 && limit == bytes.length) {
+                    // The line does not fit in the buffer: grow it and keep reading.
+                    buffer = ByteBuffer.allocate(bytes.length * 2).put(bytes, 0, limit);
+                    bytes = buffer.array();
+                } else {
+                    System.arraycopy(bytes, lineStart, bytes, 0, limit - lineStart);
+                    buffer.position(limit - lineStart);
+                }
+            }
+        }
+    }
+
+    private void parseLine(byte[] bytes, int start, int end, int lineNumber) {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+        int pos = expect(bytes, start, end, IDLABEL);
+        int key = pos < 0 || pos + 8 > end ? StudentId.INVALID : parseId(bytes, pos);
+        if (key == StudentId.INVALID) {
+            reportMalformed(lineNumber, "invalid student ID");
+            return;
+        }
+        int nameStart = expect(bytes, pos + 8, end, NAMELABEL);
+        int nameEnd = nameStart < 0 ? -1 : indexOf(bytes, nameStart, end, MODULELABELS[0]);
+        if (nameEnd <= nameStart) {
+            reportMalformed(lineNumber, "missing student name");
+            return;
+        }
+        pos = nameEnd;
+        for (int module = 0; module < moduleMarks.length; ++module) {
+            pos = expect(bytes, pos, end, MODULELABELS[module]);
+            int markEnd = pos < 0 ? -1 : skipDigits(bytes, pos, end);
+            if (markEnd <= pos || markEnd - pos > 3) {
+                reportMalformed(lineNumber, "missing marks for module " + (module + 1));
+                return;
+            }
+            int mark = 0;
+            for (int i = pos; i < markEnd; ++i) {
+                mark = mark * 10 + bytes[i] - '0';
+            }
+            if (mark > 100) {
+                reportMalformed(lineNumber, "marks for module " + (module + 1) + " out of range");
+                return;
+            }
+            moduleMarks[module] = mark;
+            pos = markEnd;
+        }
+        if (expect(bytes, pos, end, TOTALLABEL) < 0) {
+            reportMalformed(lineNumber, "expected marks for " + MarkTable.MODULECOUNT + " modules");
+            return;
+        }
+        if (repository.contains(key)) {
+            duplicates++;
+            report(lineNumber, "student " + StudentId.format(key) + " is already registered");
+            return;
+        }
+        if (repository.isFull()) {
+            full = true;
+            report(lineNumber, "no available seats, stopped loading");
+            return;
+        }
+        Student student = new Student(StudentId.format(key), decode(bytes, nameStart, nameEnd));
+        if (!isUngraded(bytes, pos, end)) {
+            student.getModule().setModuleMarks(moduleMarks);
+        }
+        // Another writer may take the ID or the last seat between the checks above and the add.
+        if (repository.add(student)) {
+            loaded++;
+        } else if (repository.contains(key)) {
+            duplicates++;
+            report(lineNumber, "student " + StudentId.format(key) + " is already registered");
+        } else {
+            full = true;
+            report(lineNumber, "no available seats, stopped loading");
+        }
+    }
+
+    /**
+     * Checks if the line was written for a student whose marks were never set.
+     */
+    private static boolean isUngraded(byte[] bytes, int start, int end) {
+        int gradeStart = indexOf(bytes, start, end, GRADELABEL);
+        return gradeStart >= 0 && end - gradeStart - GRADELABEL.length == NOGRADETEXT.length
+                && expect(bytes, gradeStart + GRADELABEL.length, end, NOGRADETEXT) == end;
+    }
+
+    private static int parseId(byte[] bytes, int pos) {
+        if (bytes[pos] != 'w') {
+            return StudentId.INVALID;
+        }
+        int key = 0;
+        for (int i = pos + 1; i < pos + 8; ++i) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return StudentId.INVALID;
+            }
+            key = key * 10 + digit;
+        }
+        return key;
+    }
+
+    /**
+     * Checks that the bytes at pos match the label.
+     * @return the position after the label, or -1 if it does not match
+     */
+    private static int expect(byte[] bytes, int pos, int end, byte[] label) {
+        if (pos < 0 || end - pos < label.length) {
+            return -1;
+        }
+        for (int i = 0; i < label.length; ++i) {
+            if (bytes[pos + i] != label[i]) {
+                return -1;
+            }
+        }
+        return pos + label.length;
+    }
+
+    private static int indexOf(byte[] bytes, int start, int end, byte[] label) {
+        for (int i = start; i <= end - label.length; ++i) {
+            if (bytes[i] == label[0] && expect(bytes, i, end, label) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipDigits(byte[] bytes, int pos, int end) {
+        while (pos < end && bytes[pos] >= '0' && bytes[pos] <= '9') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static String decode(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            if (bytes[i] < 0) {
+                return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            }
+        }
+        return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private void reportMalformed(int lineNumber, String reason) {
+        malformed++;
+        report(lineNumber, reason);
+    }
+
+    private void report(int lineNumber, String reason) {
+        if (problemCount++ < MAXREPORTEDPROBLEMS) {
+            problems.add("Line " + lineNumber + ": " + reason);
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
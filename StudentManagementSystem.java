@@ -1,16 +1,51 @@
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.IntFunction;
+import javax.management.JMException;
 
 public class StudentManagementSystem {
-    private static final int MAXCAPACITY = 100;
-    private static Student[] students = new Student[MAXCAPACITY];
-    private static int studentCount = 0;
+    private static final int MAXCAPACITY = Integer.getInteger("sms.capacity", 100);
+    private static final int SHARDCOUNT = Integer.getInteger("sms.shards", 1);
+    private static final String SNAPSHOTFILE = "studentDetails.bin";
+    private static final String DELTAFILE = SNAPSHOTFILE + ".delta";
+    private static final int MAXPRINTEDPROBLEMS = 20;
+    private static final int SEARCHPAGESIZE = 20;
+    private static final int REPORTPAGESIZE = 50;
+    private static final int MAXSEARCHDISTANCE = 2;
+    private static final boolean VERIFYSTATISTICS = Boolean.getBoolean("sms.verifyStatistics");
+    private static final boolean METRICSENABLED = !"false".equalsIgnoreCase(System.getProperty("sms.metrics"));
+    private static final double NANOSPERMICRO = 1000.0;
+    private static StudentRepository students;
+    private static StudentService service;
+    private static OperationMetrics metrics;
     private static final String STUDENTIDTEXT = "Enter student ID: ";
     private static final String ERRORIDTEXT = "Invalid ID format.";
     private static final String ERRORSTUDENTTEXT = "Student not found.";
     private static final String ERRORSMARKTEXT = "Invalid module mark. Marks should be between 0 and 100.";
+    private static final String ERRORSAVETEXT = "The change could not be saved, so it was not made.";
+    private static final String ERRORNAMETEXT = "Invalid name. It cannot be stored in the student files.";
 
     public static void main(String[] args) {
+        if (!isModuleCatalogueValid()) {
+            System.exit(1);
+        }
+        boolean httpMode = args.length > 0 && args[0].equals("--http");
+        students = createRepository(httpMode || Boolean.getBoolean("sms.concurrent"));
+        metrics = new OperationMetrics(METRICSENABLED);
+        service = new StudentService(students, metrics);
+        if (METRICSENABLED) {
+            registerMetrics();
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(args.length > 1 ? args[1] : "-");
+            return;
+        }
+        if (httpMode) {
+            startHttpService(args.length > 1 ? Integer.parseInt(args[1]) : 8080);
+        }
+
         Scanner scanner = new Scanner(System.in);
         System.out.println("Welcome to Student Management System...");
 
@@ -40,13 +75,14 @@ public class StudentManagementSystem {
                         loadStudentDetails();
                         break;
                     case 7:
-                        viewStudentsSortedByName();
+                        viewStudentsSortedByName(scanner);
                         break;
                     case 8:
                         extraControls(scanner);
                         break;
                     case 0:
                         System.out.println("Exiting program...");
+                        closeRepository();
                         System.exit(0);
                         break;
                     default:
@@ -59,6 +95,151 @@ public class StudentManagementSystem {
         }
     }
 
+    /**
+     * Checks the module catalogue given in the "sms.modules" system property before any class
+     * that depends on it loads, and prints how to set the property if it is not valid.
+     * @return true if the property is not set or holds a valid catalogue, false otherwise
+     */
+    private static boolean isModuleCatalogueValid() {
+        String specification = System.getProperty(ModuleCatalogue.PROPERTY);
+        if (specification == null) {
+            return true;
+        }
+        try {
+            ModuleCatalogue.parse(specification);
+            return true;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid " + ModuleCatalogue.PROPERTY + " \"" + specification + "\": " + e.getMessage());
+            System.out.println("Usage: -D" + ModuleCatalogue.PROPERTY + "=N for N modules of one credit each, N from 1 to "
+                    + ModuleCatalogue.MAXMODULES + ", or -D" + ModuleCatalogue.PROPERTY
+                    + "=Name:credits,Name:credits,... with credits from 1 to " + ModuleCatalogue.MAXCREDITS);
+            return false;
+        }
+    }
+
+    /**
+     * Creates the student repository used by the application.
+     * When concurrent access is requested, through the "--http" argument or the
+     * "sms.concurrent" system property, the students are kept in a
+     * ConcurrentStudentRepository that several users can change at the same time.
+     * When the "sms.shards" system property asks for more than one shard, the students are
+     * partitioned by ID across that many shards of the same kind, all in this process, by a
+     * ShardedStudentRepository.
+     * When the "sms.storage" system property is "disk", the students are kept in the snapshot
+     * file and its delta file by a DiskStudentRepository, with only a cache of them in memory.
+     * When the "sms.journal" system property names a journal file, every change to the
+     * repository is journaled to that file. The previous session is then restored from the
+     * snapshot file and the journal before the menu is shown. The "sms.journal.syncEvery"
+     * and "sms.journal.compactEvery" system properties control how many changes are written
+     * between syncs to disk and between compactions into the snapshot.
+     * @param concurrent true if several users will change the repository at the same time
+     * @return the student repository
+     */
+    private static StudentRepository createRepository(boolean concurrent) {
+        StudentRepository repository;
+        if ("disk".equalsIgnoreCase(System.getProperty("sms.storage"))) {
+            repository = openDiskRepository();
+        } else if (SHARDCOUNT > 1) {
+            repository = ShardedStudentRepository.inProcess(SHARDCOUNT, MAXCAPACITY, concurrent);
+        } else {
+            repository = concurrent
+                    ? new ConcurrentStudentRepository(MAXCAPACITY)
+                    : new HashStudentRepository(MAXCAPACITY);
+        }
+        String journalFile = System.getProperty("sms.journal");
+        if (journalFile == null) {
+            return repository;
+        }
+        try {
+            return new JournaledStudentRepository(repository, Path.of(journalFile), Path.of(SNAPSHOTFILE),
+                    Integer.getInteger("sms.journal.syncEvery", 1), Integer.getInteger("sms.journal.compactEvery", 10_000));
+        } catch (IOException e) {
+            System.out.println("Error opening journal: " + e.getMessage());
+            System.exit(1);
+            return repository;
+        }
+    }
+
+    /**
+     * Opens the registry stored in the snapshot and delta files, keeping at most sms.cache.size
+     * students in memory and evicting by the sms.cache.policy, lru or lfu.
+     * If the files cannot be opened, an error message is printed and the program exits.
+     * @return the disk-backed repository
+     */
+    private static DiskStudentRepository openDiskRepository() {
+        StudentCache.Policy policy = StudentCache.Policy.valueOf(
+                System.getProperty("sms.cache.policy", "lru").toUpperCase(Locale.ROOT));
+        try {
+            return new DiskStudentRepository(Path.of(SNAPSHOTFILE), Path.of(DELTAFILE), MAXCAPACITY,
+                    Integer.getInteger("sms.cache.size", 10_000), policy);
+        } catch (IOException e) {
+            System.out.println("Error opening student files: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Registers the operation metrics as a JMX MBean, so they can be read with tools such as
+     * JConsole under the name OperationMetrics.OBJECTNAME. If the MBean cannot be registered,
+     * a message is printed and the metrics are still shown in the extra menu.
+     */
+    private static void registerMetrics() {
+        try {
+            metrics.registerMBean();
+        } catch (JMException e) {
+            System.out.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts the HTTP service on the given port, next to the console menu.
+     * Both work on the same StudentService, so changes made through one are seen by the other.
+     * @param port the local port to listen on
+     */
+    private static void startHttpService(int port) {
+        try {
+            new StudentHttpServer(service, port).start();
+            System.out.println("HTTP service listening on port " + port);
+        } catch (IOException e) {
+            System.out.println("Error starting HTTP service: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs a script of commands without the menu and returns instead of exiting, so the system
+     * can be driven from scripts or embedded in another program.
+     * The results are written to standard output and the repository is closed at the end.
+     * If the script cannot be read, an error message is printed.
+     * @param source the script file, or "-" to read the script from standard input
+     */
+    private static void runBatch(String source) {
+        try (Reader script = source.equals("-")
+                ? new InputStreamReader(System.in)
+                : Files.newBufferedReader(Path.of(source))) {
+            Writer output = new OutputStreamWriter(System.out);
+            new BatchRunner(service, Path.of("studentDetails.txt")).run(script, output);
+        } catch (IOException e) {
+            System.out.println("Error running commands: " + e.getMessage());
+        } finally {
+            closeRepository();
+        }
+    }
+
+    /**
+     * Closes the student repository if it holds resources such as a journal file,
+     * making sure every journaled or cached change has reached the disk.
+     */
+    private static void closeRepository() {
+        if (students instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                System.out.println("Error closing journal: " + e.getMessage());
+            }
+        }
+    }
+
     /**
      * Displays the menu options for the user.
      * The method prints the menu and prompts the user to enter their choice.
@@ -82,101 +263,99 @@ public class StudentManagementSystem {
     /**
      * Checks and displays the number of available seats.
      * This method calculates the available seats by subtracting the
-     * current number of registered students (studentCount) from the
-     * maximum capacity (MAXCAPACITY). It then prints the result.
+     * current number of registered students from the repository capacity
+     * (MAXCAPACITY, configurable through the "sms.capacity" system property).
+     * It then prints the result.
      */
     private static void checkAvailableSeats() {
-        int availableSeats = MAXCAPACITY - studentCount;
-        System.out.println("Available seats: " + availableSeats);
+        System.out.println("Available seats: " + service.availableSeats());
     }
 
     /**
      * Registers a new student if there are available seats.
      * This method performs the following steps:
      * 1. Checks if there are available seats. If not, it prints a message and returns.
-     * 2. Prompts the user for a student ID and validates it.
+     * 2. Prompts the user for a student ID and parses it into its int key, which also validates it.
      * 3. Checks if the student ID is already registered. If so, it prints a message and returns.
      * 4. Prompts the user for the student's name.
-     * 5. Creates a new Student object with the provided ID and name.
-     * 6. Adds the new student to the students array and increments the student count.
-     * 7. Prints a success message.
+     * 5. Registers the student through the StudentService.
+     * 6. Prints a message describing the outcome.
      * @param scanner the Scanner object to read user input
      */
     private static void registerStudent(Scanner scanner) {
-        if (studentCount >= MAXCAPACITY) {
+        if (students.isFull()) {
             System.out.println("No available seats.");
             return;
         }
         System.out.print(STUDENTIDTEXT);
         String id = scanner.next();
-        if (isNotValidId(id)) {
+        int key = StudentId.parse(id);
+        if (key == StudentId.INVALID) {
             System.out.println(ERRORIDTEXT);
             return;
         }
 
-        for (int i = 0; i < studentCount; ++i) {
-            if (students[i].getId().equals(id)) {
-                System.out.println("Student " + id + " has already been registered.");
-                return;
-            }
+        if (students.contains(key)) {
+            System.out.println("Student " + id + " has already been registered.");
+            return;
         }
         System.out.print("Enter student name: ");
         String name = scanner.next();
 
-        Student student = new Student(id, name);
-        students[studentCount++] = student;
-        System.out.println("Student registered successfully.");
-    }
-
-    /**
-     * Checks if the given student ID is not valid.
-     * A valid student ID must match the following pattern: "w" followed by 7 digits.
-     * For example, "w1234567" is a valid ID.
-     * @param id the student ID to be validated
-     * @return true if the ID is not valid, false otherwise
-     */
-    private static boolean isNotValidId(String id) {
-        return !id.matches("^w\\d{7}$");
+        StudentService.Outcome outcome = service.register(id, name);
+        switch (outcome) {
+            case OK:
+                System.out.println("Student registered successfully.");
+                break;
+            case ALREADY_REGISTERED:
+                System.out.println("Student " + id + " has already been registered.");
+                break;
+            case INVALID_NAME:
+                System.out.println(ERRORNAMETEXT);
+                break;
+            case STORAGE_ERROR:
+                System.out.println(ERRORSAVETEXT);
+                break;
+            default:
+                System.out.println("No available seats.");
+        }
     }
 
     /**
-     * Deletes a student from the students array based on the given student ID.
+     * Deletes a student from the student repository based on the given student ID.
      * This method performs the following steps:
      * 1. Prompts the user to enter a student ID to delete.
-     * 2. Validates the student ID. If not valid, prints an error message and returns.
-     * 3. Searches for the student with the matching ID in the students array.
-     * 4. If found, deletes the student from the array, shifts remaining elements, and decrements studentCount.
-     * 5. Prints a success message if the student is deleted.
-     * 6. Prints an error message if no student with the given ID is found.
+     * 2. Parses the student ID into its int key. If not valid, prints an error message and returns.
+     * 3. Deletes the student with the matching ID through the StudentService.
+     * 4. Prints a success message if the student is deleted.
+     * 5. Prints an error message if no student with the given ID is found.
      * @param scanner the Scanner object to read user input
      */
     private static void deleteStudent(Scanner scanner) {
         System.out.print("Enter student ID to delete: ");
         String id = scanner.next();
-        if (isNotValidId(id)) {
-            System.out.println(ERRORIDTEXT);
-            return;
-        }
-        for (int i = 0; i < studentCount; ++i) {
-            if (students[i].getId().equals(id)) {
-                students[i] = null;
-                studentCount--;
-                for (int j = i; j < studentCount; ++j) {
-                    students[j] = students[j + 1];
-                }
+        StudentService.Outcome outcome = service.delete(id);
+        switch (outcome) {
+            case OK:
                 System.out.println("Student " + id + " has been deleted.");
-                return;
-            }
+                break;
+            case INVALID_ID:
+                System.out.println(ERRORIDTEXT);
+                break;
+            case STORAGE_ERROR:
+                System.out.println(ERRORSAVETEXT);
+                break;
+            default:
+                System.out.println(ERRORSTUDENTTEXT);
         }
-        System.out.println(ERRORSTUDENTTEXT);
     }
 
     /**
      * Finds and displays student details based on the given student ID.
      * This method performs the following steps:
      * 1. Prompts the user to enter a student ID to find.
-     * 2. Validates the student ID. If not valid, prints an error message and returns.
-     * 3. Searches for the student with the matching ID in the students array.
+     * 2. Looks up the student with the matching ID through the StudentService.
+     * 3. If the student ID is not valid, prints an error message and returns.
      * 4. If found, prints the student's name and ID.
      * 5. If no student with the given ID is found, prints an error message.
      * @param scanner the Scanner object to read user input
@@ -184,48 +363,44 @@ public class StudentManagementSystem {
     private static void findStudent(Scanner scanner) {
         System.out.print("Enter student ID to find: ");
         String id = scanner.next();
-        if (isNotValidId(id)) {
+        Student student = service.find(id);
+        if (StudentId.parse(id) == StudentId.INVALID) {
             System.out.println(ERRORIDTEXT);
             return;
         }
-        for (int i = 0; i < studentCount; ++i) {
-            if (students[i].getId().equals(id)) {
-                System.out.println("Student found:");
-                System.out.println("Name: " + students[i].getName() + ", Id: " + students[i].getId());
-                return;
-            }
+        if (student != null) {
+            System.out.println("Student found:");
+            System.out.println("Name: " + student.getName() + ", Id: " + student.getId());
+            return;
         }
         System.out.println(ERRORSTUDENTTEXT);
     }
 
     /**
      * Stores student details into a text file.
-     * This method sorts the students by average marks using bubble sort, and then
-     * writes each student's details to a file named "studentDetails.txt". Each student's
-     * details include ID, name, marks for three modules, total marks, average marks,
-     * and grade.
-     * If an IOException occurs while writing the file, an error message is printed.
+     * This method streams the students, ranked by average marks with the highest first,
+     * into a file named "studentDetails.txt". Each student's details include ID, name,
+     * marks for three modules, total marks, average marks, and grade. The file is written
+     * through a StudentExporter, so it is only replaced once every record has been written.
+     * When other users can change the students meanwhile, the file is written from a snapshot,
+     * so it holds the students exactly as they were when storing started.
+     * If an IOException occurs while writing the file, an error message is printed and
+     * the previous file is kept.
      */
     private static void storeStudentDetails() {
-        try (FileWriter writer = new FileWriter("studentDetails.txt")) {
-            Student[] sortedStudents = Arrays.copyOf(students, studentCount);
-            bubbleSortByAverage(sortedStudents);
-
-            for (Student student : sortedStudents) {
-                Module module = student.getModule();
-                int totalModuleMarks = Arrays.stream(module.getModuleMarks()).sum();
-                writer.write("ID: " + student.getId() +
-                        ", Name: " + student.getName() +
-                        ", Module 1: " + module.getModuleMarks()[0] +
-                        ", Module 2: " + module.getModuleMarks()[1] +
-                        ", Module 3: " + module.getModuleMarks()[2] +
-                        ", Total: " + totalModuleMarks +
-                        ", Average: " + module.calculateAverage() +
-                        ", Grade: " + module.getGrade());
-                writer.write("\n");
+        long start = metrics.start();
+        Path file = Path.of("studentDetails.txt");
+        try (StudentRepository.Snapshot snapshot = openSnapshot();
+             StudentExporter exporter = new StudentExporter(file)) {
+            StudentService source = snapshot == null ? service : new StudentService(snapshot);
+            for (Student student : source.studentsByAverage()) {
+                exporter.write(student);
             }
+            exporter.commit();
+            recordFileOperation(OperationMetrics.Operation.STORE, start, file, false);
             System.out.println("Stored student details into a file.");
         } catch (IOException e) {
+            metrics.record(OperationMetrics.Operation.STORE, start, OperationMetrics.Result.FAILURE);
             System.out.println("Error writing file.");
         }
     }
@@ -234,52 +409,84 @@ public class StudentManagementSystem {
      * Loads student details from a text file into the application.
      * This method reads student details from a file named "studentDetails.txt". Each line
      * in the file represents a student's information including ID, name, module marks,
-     * total marks, average marks, and grade. It parses each line, extracts the necessary
-     * information, creates Student objects, and stores them in the students array.
-     * If an IOException or NumberFormatException occurs while reading or parsing the file,
-     * an error message is printed.
+     * total marks, average marks, and grade. The lines are parsed by a StudentLoader, which
+     * creates Student objects and adds them to the student repository. Lines that cannot be
+     * parsed and students whose ID is already registered are skipped, and each skipped line
+     * is reported with its line number. Loading stops when no seats are left.
+     * If an IOException occurs while reading the file or saving a student, an error message is
+     * printed; the students loaded before the failure stay registered.
      */
     private static void loadStudentDetails() {
-        try (BufferedReader reader = new BufferedReader(new FileReader("studentDetails.txt"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 8) {
-                    String id = parts[0].substring(4);
-                    String name = parts[1].substring(7);
-                    int[] moduleMarks = {
-                            Integer.parseInt(parts[2].substring(11)),
-                            Integer.parseInt(parts[3].substring(11)),
-                            Integer.parseInt(parts[4].substring(11))
-
-                    };
-
-                    Student student = new Student(id, name);
-                    student.getModule().setModuleMarks(moduleMarks);
-                    students[studentCount++] = student;
-                }
+        long start = metrics.start();
+        Path file = Path.of("studentDetails.txt");
+        try {
+            StudentLoader.Result result = StudentLoader.load(file, students);
+            recordFileOperation(OperationMetrics.Operation.LOAD, start, file, true);
+            for (String problem : result.problems()) {
+                System.out.println(problem);
             }
-            System.out.println("Student details loaded successfully.");
-        } catch (IOException | NumberFormatException e) {
+            if (result.duplicates() + result.malformed() > 0 || result.capacityReached()) {
+                System.out.println("Loaded " + result.loaded() + " students, skipped " + result.duplicates() +
+                        " already registered and " + result.malformed() + " malformed lines.");
+            } else {
+                System.out.println("Student details loaded successfully.");
+            }
+        } catch (IOException e) {
+            metrics.record(OperationMetrics.Operation.LOAD, start, OperationMetrics.Result.FAILURE);
             System.out.println("Error loading student details: " + e.getMessage());
         }
     }
 
     /**
      * Displays a list of students sorted by their names.
-     * This method creates a copy of the students array, sorts it alphabetically by
-     * student names, and then prints each student's name and ID. If no students are
-     * registered (studentCount is 0), it prints a message indicating that no students
-     * were found.
-     */
-    private static void viewStudentsSortedByName() {
-        Student[] sortedStudents = Arrays.copyOf(students, studentCount);
-        Arrays.sort(sortedStudents, Comparator.comparing(Student::getName));
-        if (studentCount == 0) {
+     * This method reads the registered students in alphabetical order of their names,
+     * ignoring case, from the name index kept by the repository, and prints each
+     * student's name and ID one page at a time. If no students are registered, it prints
+     * a message indicating that no students were found.
+     * @param scanner the Scanner object to read user input
+     */
+    private static void viewStudentsSortedByName(Scanner scanner) {
+        StudentReport report = new StudentReport(service, StudentReport.Order.NAME, StudentReport.NAMES);
+        if (printReport(report, OperationMetrics.Operation.LIST_BY_NAME, scanner) == 0) {
             System.out.println("No Student found.");
         }
-        for (Student student : sortedStudents) {
-            System.out.println("Name: " + student.getName() + ", Id: " + student.getId());
+    }
+
+    /**
+     * Prints a report to the console one page at a time.
+     * This method performs the following steps:
+     * 1. Prints the next REPORTPAGESIZE rows of the report.
+     * 2. If the page was full and students remain, asks the user whether to show more.
+     * 3. Repeats from step 1 until the report ends or the user declines.
+     * Each page is recorded in the metrics as one run of the given operation, so the time the
+     * user takes to answer is not counted.
+     * @param report the report to print
+     * @param operation the operation the pages are recorded as
+     * @param scanner the Scanner object to read user input
+     * @return the number of rows printed
+     */
+    private static int printReport(StudentReport report, OperationMetrics.Operation operation, Scanner scanner) {
+        ReportSink console = ReportSink.lines(System.out);
+        int printed = 0;
+        long start = 0;
+        try {
+            while (true) {
+                start = metrics.start();
+                int written = report.write(console, printed, REPORTPAGESIZE);
+                metrics.record(operation, start, OperationMetrics.Result.SUCCESS);
+                printed += written;
+                if (written < REPORTPAGESIZE || printed >= report.size()) {
+                    return printed;
+                }
+                System.out.print("Show more? (y/n): ");
+                if (!scanner.next().toLowerCase().startsWith("y")) {
+                    return printed;
+                }
+            }
+        } catch (IOException e) {
+            metrics.record(operation, start, OperationMetrics.Result.FAILURE);
+            System.out.println("Error printing report: " + e.getMessage());
+            return printed;
         }
     }
 
@@ -291,6 +498,13 @@ public class StudentManagementSystem {
      * - 'b': Add module marks for a student
      * - 'c': Generate a summary of student details
      * - 'd': Generate a complete report of student details
+     * - 'e': View the students with the highest averages
+     * - 'f': Store a binary snapshot of the student details
+     * - 'g': Load student details from the binary snapshot
+     * - 'h': Import module marks from a CSV mark sheet
+     * - 'i': Search students by name
+     * - 'j': View operation metrics
+     * - 'k': Find students in a range of IDs or averages
      * If an invalid choice is entered, it prints a message asking the user to try again.
      * @param scanner the Scanner object to read user input
      */
@@ -308,7 +522,28 @@ public class StudentManagementSystem {
                 generateSummary();
                 break;
             case 'd':
-                generateCompleteReport();
+                generateCompleteReport(scanner);
+                break;
+            case 'e':
+                viewTopStudents(scanner);
+                break;
+            case 'f':
+                storeSnapshot();
+                break;
+            case 'g':
+                loadSnapshot();
+                break;
+            case 'h':
+                importMarks(scanner);
+                break;
+            case 'i':
+                searchStudentsByName(scanner);
+                break;
+            case 'j':
+                viewMetrics();
+                break;
+            case 'k':
+                findStudentsInRange(scanner);
                 break;
             default:
                 System.out.println("Invalid choice. Please try again.");
@@ -325,7 +560,14 @@ public class StudentManagementSystem {
                 a. Add student name
                 b. Add module marks
                 c. Generate summary
-                d. Generate complete report""");
+                d. Generate complete report
+                e. View top students
+                f. Store snapshot
+                g. Load snapshot
+                h. Import module marks
+                i. Search students by name
+                j. View metrics
+                k. Find students in a range""");
         System.out.print("Enter your choice: ");
     }
 
@@ -333,28 +575,43 @@ public class StudentManagementSystem {
      * Updates the name of a student based on the provided student ID.
      * This method performs the following steps:
      * 1. Prompts the user to enter a student ID.
-     * 2. Validates the student ID. If not valid, prints an error message and returns.
-     * 3. Searches for the student with the matching ID in the students array.
+     * 2. Parses the student ID into its int key. If not valid, prints an error message and returns.
+     * 3. Looks up the student with the matching ID in the student repository.
      * 4. If found, prompts the user to enter a new name for the student and updates the name.
      * 5. Prints a success message if the student's name is updated.
-     * 6. Prints an error message if no student with the given ID is found.
+     * 6. Prints an error message if no student with the given ID is found, including when the
+     *    student is deleted by another user before the update.
      * @param scanner the Scanner object to read user input
      */
     private static void addStudentName(Scanner scanner) {
         System.out.print(STUDENTIDTEXT);
         String id = scanner.next();
-        if (isNotValidId(id)) {
+        int key = StudentId.parse(id);
+        if (key == StudentId.INVALID) {
             System.out.println(ERRORIDTEXT);
             return;
         }
-        for (int i = 0; i < studentCount; ++i) {
-            if (students[i].getId().equals(id)) {
-                System.out.print("Enter new student name: ");
-                students[i].setName(scanner.next());
-                System.out.println("Student name updated successfully.");
-                return;
+        if (students.contains(key)) {
+            System.out.print("Enter new student name: ");
+            String name = scanner.next();
+            StudentService.Outcome outcome = service.rename(id, name);
+            switch (outcome) {
+                case OK:
+                    System.out.println("Student name updated successfully.");
+                    break;
+                case INVALID_NAME:
+                    System.out.println(ERRORNAMETEXT);
+                    break;
+                case STORAGE_ERROR:
+                    System.out.println(ERRORSAVETEXT);
+                    break;
+                default:
+                    System.out.println(ERRORSTUDENTTEXT);
+                    break;
             }
+            return;
         }
+        metrics.record(OperationMetrics.Operation.RENAME, metrics.start(), OperationMetrics.Result.MISS);
         System.out.println(ERRORSTUDENTTEXT);
     }
 
@@ -363,54 +620,51 @@ public class StudentManagementSystem {
      * Updates module marks for a student based on the provided student ID.
      * This method performs the following steps:
      * 1. Prompts the user to enter a student ID.
-     * 2. Validates the student ID. If not valid, prints an error message and returns.
-     * 3. Searches for the student with the matching ID in the students array.
-     * 4. If found, prompts the user to enter marks for three modules (Module 1, Module 2, Module 3).
+     * 2. Parses the student ID into its int key. If not valid, prints an error message and returns.
+     * 3. Looks up the student with the matching ID in the student repository.
+     * 4. If found, prompts the user to enter a mark for every module of the module catalogue.
      *    - Each module mark is validated to ensure it is within a valid range.
      * 5. Updates the module marks and recalculates the grade for the student's modules.
      * 6. Prints a success message if the module marks and grade are updated.
-     * 7. Prints an error message if no student with the given ID is found.
+     * 7. Prints an error message if no student with the given ID is found, including when the
+     *    student is deleted by another user before the update.
      * @param scanner the Scanner object to read user input
      */
     private static void addModuleMarks(Scanner scanner) {
         System.out.print(STUDENTIDTEXT);
         String id = scanner.next();
-        if (isNotValidId(id)) {
+        int key = StudentId.parse(id);
+        if (key == StudentId.INVALID) {
             System.out.println(ERRORIDTEXT);
             return;
         }
-        for (int i = 0; i < studentCount; ++i) {
-            if (students[i].getId().equals(id)) {
-                int[] marks = new int[3];
-                System.out.print("Enter marks for Module 1: ");
-                marks[0] = scanner.nextInt();
-                if (isNotValidMarks(marks[0])) {
-                    System.out.println(ERRORSMARKTEXT);
-                    return;
-                }
-
-                System.out.print("Enter marks for Module 2: ");
-                marks[1] = scanner.nextInt();
-                if (isNotValidMarks(marks[1])) {
-                    System.out.println(ERRORSMARKTEXT);
-                    return;
-                }
-
-                System.out.print("Enter marks for Module 3: ");
-                marks[2] = scanner.nextInt();
-                if (isNotValidMarks(marks[2])) {
+        if (students.contains(key)) {
+            int[] marks = new int[MarkTable.MODULECOUNT];
+            for (int module = 0; module < marks.length; ++module) {
+                System.out.print("Enter marks for " + ModuleCatalogue.active().name(module) + ": ");
+                marks[module] = scanner.nextInt();
+                if (isNotValidMarks(marks[module])) {
                     System.out.println(ERRORSMARKTEXT);
                     return;
                 }
-                scanner.nextLine();
-
-                students[i].getModule().setModuleMarks(marks);
-                students[i].getModule().calculateGrade();
+            }
+            scanner.nextLine();
 
-                System.out.println("Module marks and grade updated successfully.");
-                return;
+            StudentService.Outcome outcome = service.setMarks(id, marks);
+            switch (outcome) {
+                case OK:
+                    System.out.println("Module marks and grade updated successfully.");
+                    break;
+                case STORAGE_ERROR:
+                    System.out.println(ERRORSAVETEXT);
+                    break;
+                default:
+                    System.out.println(ERRORSTUDENTTEXT);
+                    break;
             }
+            return;
         }
+        metrics.record(OperationMetrics.Operation.SET_MARKS, metrics.start(), OperationMetrics.Result.MISS);
         System.out.println(ERRORSTUDENTTEXT);
     }
 
@@ -422,77 +676,349 @@ public class StudentManagementSystem {
      * @return true if the marks are not valid, false otherwise
      */
     private static boolean isNotValidMarks(int marks) {
-        return marks < 0 || marks > 100;
+        return !StudentService.isValidMark(marks);
     }
 
     private static void generateSummary() {
-        int totalStudents = studentCount;
-        int studentsPassedModule = 0;
-
-        for (int i = 0; i < studentCount; i++) {
-            Module module = students[i].getModule();
-            if (module.getModuleMarks()[0] >= 40 &&
-                    module.getModuleMarks()[1] >= 40 &&
-                    module.getModuleMarks()[2] >= 40) {
-                studentsPassedModule++;
+        SummaryEngine.CohortSummary summary = service.statistics();
+        if (VERIFYSTATISTICS) {
+            switch (service.verifyStatistics()) {
+                case MISMATCHED:
+                    System.out.println("Warning: running statistics do not match a full rescan.");
+                    break;
+                case UNAVAILABLE:
+                    System.out.println("Note: running statistics are not kept by this repository, so they were not verified.");
+                    break;
+                default:
+                    break;
             }
         }
 
-        System.out.println("Total student registrations: " + totalStudents);
-        System.out.println("Total students who scored more than 40 marks in module 1,2 and 3: " + studentsPassedModule);
+        System.out.println("Total student registrations: " + summary.totalStudents());
+        System.out.println("Total students who scored more than 40 marks in module " + moduleNumbers() + ": "
+                + summary.passedAllModules());
+        if (summary.gradedStudents() == 0) {
+            return;
+        }
+        SummaryEngine.ModuleStatistics[] modules = summary.modules();
+        for (int module = 0; module < modules.length; ++module) {
+            SummaryEngine.ModuleStatistics statistics = modules[module];
+            System.out.printf("%s: min %d, max %d, mean %.2f, std dev %.2f, pass rate %.1f%%, median %d%n",
+                    ModuleCatalogue.active().name(module), statistics.min(), statistics.max(), statistics.mean(), statistics.standardDeviation(),
+                    statistics.passRate() * 100, statistics.percentile(50));
+        }
+        System.out.println("Grades: Distinction " + summary.gradeCount(MarkTable.DISTINCTION)
+                + ", Merit " + summary.gradeCount(MarkTable.MERIT)
+                + ", Pass " + summary.gradeCount(MarkTable.PASS)
+                + ", Fail " + summary.gradeCount(MarkTable.FAIL)
+                + ", not graded " + summary.gradeCount(MarkTable.NOGRADE));
+        System.out.printf("Pass rate: %.1f%%, average percentiles: 25th %.2f, 50th %.2f, 75th %.2f, 90th %.2f%n",
+                summary.passRate() * 100, summary.averagePercentile(25), summary.averagePercentile(50),
+                summary.averagePercentile(75), summary.averagePercentile(90));
+    }
+
+    /**
+     * Lists the module numbers for the summary, for example "1,2 and 3".
+     * @return the numbers of every module of the catalogue
+     */
+    private static String moduleNumbers() {
+        StringBuilder numbers = new StringBuilder("1");
+        for (int module = 2; module <= MarkTable.MODULECOUNT; ++module) {
+            numbers.append(module == MarkTable.MODULECOUNT ? " and " : ",").append(module);
+        }
+        return numbers.toString();
+    }
+
+    /**
+     * Generates a complete report of the registered students, highest average first.
+     * Each row holds the student's ID, name, module marks, total, average and grade, or a note
+     * that the marks have not been set yet. The rows are read off the leaderboard and printed
+     * one page at a time. When other users can change the students meanwhile, every page is
+     * read from the same snapshot, so no student is skipped or shown twice between pages.
+     * @param scanner the Scanner object to read user input
+     */
+    private static void generateCompleteReport(Scanner scanner) {
+        try (StudentRepository.Snapshot snapshot = openSnapshot()) {
+            StudentService source = snapshot == null ? service : new StudentService(snapshot);
+            printReport(new StudentReport(source, StudentReport.Order.AVERAGE, StudentReport.DETAILS),
+                    OperationMetrics.Operation.REPORT, scanner);
+        }
+    }
+
+    /**
+     * Opens a point-in-time view of the students if other users can change them at the same time.
+     * @return a snapshot of the repository, or null if the repository does not take snapshots
+     */
+    private static StudentRepository.Snapshot openSnapshot() {
+        return students.snapshot();
+    }
+
+    /**
+     * Displays the students with the highest average marks.
+     * This method prompts the user for the number of students to show and prints
+     * each student's rank, name, ID and average, highest average first.
+     * @param scanner the Scanner object to read user input
+     */
+    private static void viewTopStudents(Scanner scanner) {
+        System.out.print("Enter number of students: ");
+        int count = scanner.nextInt();
+        scanner.nextLine();
+        StudentReport report = new StudentReport(service, StudentReport.Order.AVERAGE, StudentReport.RANKED);
+        long start = metrics.start();
+        try {
+            int written = report.write(ReportSink.lines(System.out), 0, Math.max(0, count));
+            metrics.record(OperationMetrics.Operation.TOP_STUDENTS, start, OperationMetrics.Result.SUCCESS);
+            if (written == 0) {
+                System.out.println("No Student found.");
+            }
+        } catch (IOException e) {
+            metrics.record(OperationMetrics.Operation.TOP_STUDENTS, start, OperationMetrics.Result.FAILURE);
+            System.out.println("Error printing report: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stores every registered student into a binary snapshot file.
+     * The snapshot file "studentDetails.bin" holds the same students as the text file but
+     * in a fixed-width binary layout that can be loaded without parsing.
+     * When the students are stored on disk, the snapshot is their own file, and storing it folds
+     * the delta file of changes into it.
+     * If an IOException occurs while writing the file, an error message is printed.
+     */
+    private static void storeSnapshot() {
+        long start = metrics.start();
+        try {
+            DiskStudentRepository disk = students.unwrap(DiskStudentRepository.class);
+            int stored = disk != null ? disk.compact() : StudentSnapshot.write(Path.of(SNAPSHOTFILE), students);
+            recordFileOperation(OperationMetrics.Operation.STORE_SNAPSHOT, start, Path.of(SNAPSHOTFILE), false);
+            System.out.println("Stored " + stored + " students into a snapshot.");
+        } catch (IOException e) {
+            metrics.record(OperationMetrics.Operation.STORE_SNAPSHOT, start, OperationMetrics.Result.FAILURE);
+            System.out.println("Error writing snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads student details from the binary snapshot file.
+     * The snapshot is mapped into memory and its checksum is verified before any student
+     * is added. Students whose ID is already registered are skipped, and loading stops
+     * when no seats are left.
+     * If an IOException occurs while reading the file or saving a student, an error message is
+     * printed; the students loaded before the failure stay registered.
+     */
+    private static void loadSnapshot() {
+        long start = metrics.start();
+        try {
+            StudentSnapshot snapshot = StudentSnapshot.open(Path.of(SNAPSHOTFILE), true);
+            int loaded = snapshot.loadInto(students);
+            recordFileOperation(OperationMetrics.Operation.LOAD_SNAPSHOT, start, Path.of(SNAPSHOTFILE), true);
+            System.out.println("Loaded " + loaded + " of " + snapshot.size() + " students from the snapshot.");
+        } catch (IOException e) {
+            metrics.record(OperationMetrics.Operation.LOAD_SNAPSHOT, start, OperationMetrics.Result.FAILURE);
+            System.out.println("Error loading snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Imports module marks for many students from a CSV mark sheet.
+     * This method performs the following steps:
+     * 1. Prompts the user for the name of the mark sheet, one "id,module1,...,moduleN" row per line.
+     * 2. Imports the rows through the StudentService, parsing the file on every available core.
+     * 3. Prints how many rows were applied and skipped, and the first skipped rows.
+     * 4. If rows were skipped, writes the full report next to the mark sheet with an ".errors" suffix.
+     * 5. If the marks of a batch could not be saved, prints the lines of that batch, and that the
+     *    rows before it were imported and the rows after it were not.
+     * If an IOException occurs while reading the file, an error message is printed.
+     * @param scanner the Scanner object to read user input
+     */
+    private static void importMarks(Scanner scanner) {
+        System.out.print("Enter mark sheet file name: ");
+        Path file = Path.of(scanner.next());
+        long start = metrics.start();
+        try {
+            MarkImporter.Result result = service.importMarks(file, Runtime.getRuntime().availableProcessors());
+            if (result.failure() == null) {
+                recordFileOperation(OperationMetrics.Operation.IMPORT_MARKS, start, file, true);
+            } else {
+                metrics.record(OperationMetrics.Operation.IMPORT_MARKS, start, OperationMetrics.Result.FAILURE);
+            }
+            System.out.println("Imported marks for " + result.applied() + " students, skipped " + result.notFound() +
+                    " unregistered and " + result.invalid() + " invalid rows.");
+            List<String> problems = result.problems();
+            for (int i = 0; i < Math.min(problems.size(), MAXPRINTEDPROBLEMS); ++i) {
+                System.out.println(problems.get(i));
+            }
+            if (!problems.isEmpty()) {
+                Path report = file.resolveSibling(file.getFileName() + ".errors");
+                result.writeReport(report);
+                System.out.println("Full report of skipped rows written to " + report);
+            }
+            MarkImporter.Failure failure = result.failure();
+            if (failure != null) {
+                System.out.println("Error saving the marks of lines " + failure.fromLine() + " to " + failure.toLine()
+                        + ": " + failure.cause().getMessage() + ". The rows before them were imported, those"
+                        + " lines may be imported in part, and the rows after them were not imported.");
+            }
+        } catch (IOException e) {
+            metrics.record(OperationMetrics.Operation.IMPORT_MARKS, start, OperationMetrics.Result.FAILURE);
+            System.out.println("Error importing marks: " + e.getMessage());
+        }
     }
 
     /**
-     * Generates a summary of student performance.
-     * This method calculates and prints the following information:
-     * - Total number of student registrations.
-     * - Number of students who scored 40 or more marks in all three modules (Module 1, Module 2, Module 3).
-     * The summary provides insights into the overall performance of students based on module marks criteria.
+     * Searches the registered students by name.
+     * This method performs the following steps:
+     * 1. Prompts the user for a name or the start of a name.
+     * 2. Prints the first students whose name starts with it, ignoring case, in name order,
+     *    followed by the number of matches when there are more than fit on one page.
+     * 3. If no name starts with it, prints the students whose name is within MAXSEARCHDISTANCE
+     *    single-character edits of it, to catch misspellings.
+     * @param scanner the Scanner object to read user input
      */
-    private static void generateCompleteReport() {
-        Student[] sortedStudents = Arrays.copyOf(students, studentCount);
-        bubbleSortByAverage(sortedStudents);
+    private static void searchStudentsByName(Scanner scanner) {
+        System.out.print("Enter name or start of name: ");
+        String query = scanner.next();
+        Student[] matches = service.studentsWithNamePrefix(query, 0, SEARCHPAGESIZE);
+        if (matches.length == 0) {
+            matches = service.studentsNamedLike(query, MAXSEARCHDISTANCE, 0, SEARCHPAGESIZE);
+        }
+        int total = service.countWithNamePrefix(query);
+        if (total == 0) {
+            if (matches.length == 0) {
+                System.out.println("No Student found.");
+                return;
+            }
+            System.out.println("No names start with " + query + ". Did you mean:");
+        }
+        for (Student student : matches) {
+            System.out.println("Name: " + student.getName() + ", Id: " + student.getId());
+        }
+        if (total > matches.length) {
+            System.out.println("Showing " + matches.length + " of " + total + " students.");
+        }
+    }
 
-        for (Student student : sortedStudents) {
-            Module module = student.getModule();
-            int totalModuleMarks = Arrays.stream(module.getModuleMarks()).sum();
-            if (module.getGrade() == null) {
-                System.out.println("ID: " + student.getId() +
-                        ", Name: " + student.getName() + ", Marks not updated yet.");
+    /**
+     * Lists the students whose ID or average mark lies in a range, one page at a time.
+     * This method performs the following steps:
+     * 1. Prompts the user to choose a range of IDs, such as an intake year, or of averages.
+     * 2. Prompts for the first and last ID, or the lowest and highest average.
+     * 3. Prints the next SEARCHPAGESIZE matching students through the StudentService, which reads
+     *    only the range from the on-disk index when the students are stored on disk.
+     * 4. If the page was full, asks the user whether to show more and repeats from step 3.
+     * @param scanner the Scanner object to read user input
+     */
+    private static void findStudentsInRange(Scanner scanner) {
+        System.out.print("Range of (i)ds or (a)verages: ");
+        char kind = scanner.next().toLowerCase().charAt(0);
+        IntFunction<Student[]> pageAt;
+        if (kind == 'i') {
+            System.out.print("Enter first student ID: ");
+            int fromKey = StudentId.parse(scanner.next());
+            System.out.print("Enter last student ID: ");
+            int toKey = StudentId.parse(scanner.next());
+            if (fromKey == StudentId.INVALID || toKey == StudentId.INVALID) {
+                System.out.println(ERRORIDTEXT);
+                return;
             }
-            else {
-                System.out.println("ID: " + student.getId() +
-                        ", Name: " + student.getName() +
-                        ", Module 1: " + module.getModuleMarks()[0] +
-                        ", Module 2: " + module.getModuleMarks()[1] +
-                        ", Module 3: " + module.getModuleMarks()[2] +
-                        ", Total: " + totalModuleMarks +
-                        ", Average: " + module.calculateAverage() +
-                        ", Grade: " + module.getGrade());
+            pageAt = offset -> service.studentsWithIdBetween(fromKey, toKey, offset, SEARCHPAGESIZE);
+        } else if (kind == 'a') {
+            System.out.print("Enter lowest average: ");
+            double min = scanner.nextDouble();
+            System.out.print("Enter highest average: ");
+            double max = scanner.nextDouble();
+            pageAt = offset -> service.studentsWithAverageBetween(min, max, offset, SEARCHPAGESIZE);
+        } else {
+            System.out.println("Invalid choice. Please try again.");
+            return;
+        }
+        int printed = 0;
+        while (true) {
+            Student[] matches = pageAt.apply(printed);
+            if (printed + matches.length == 0) {
+                System.out.println("No Student found.");
+                return;
+            }
+            for (Student student : matches) {
+                Module module = student.getModule();
+                System.out.println("Name: " + student.getName() + ", Id: " + student.getId()
+                        + (module.getGrade() == null ? "" : String.format(", Average: %.2f", module.calculateAverage())));
+            }
+            printed += matches.length;
+            if (matches.length < SEARCHPAGESIZE) {
+                return;
+            }
+            System.out.print("Show more? (y/n): ");
+            if (!scanner.next().toLowerCase().startsWith("y")) {
+                return;
             }
         }
     }
 
     /**
-     * Sorts an array of students based on the average marks using bubble sort.
-     * This method sorts the array of students in ascending order based on the average marks
-     * calculated from each student's module scores.
-     * @param students the array of Student objects to be sorted
+     * Records a successful run of an operation that read or wrote a whole file, along with
+     * the size of the file as the bytes read or written.
+     * @param operation the operation that ran
+     * @param start the timestamp taken before the operation
+     * @param file the file the operation read or wrote
+     * @param read true if the file was read, false if it was written
      */
-    private static void bubbleSortByAverage(Student[] students) {
-        int n = students.length;
-        for (int i = 0; i < n - 1; i++) {
-            for (int j = 0; j < n - i - 1; j++) {
-                Module module1 = students[j].getModule();
-                Module module2 = students[j + 1].getModule();
-                double average1 = module1.calculateAverage();
-                double average2 = module2.calculateAverage();
-                if (average1 < average2) {
-                    Student temp = students[j];
-                    students[j] = students[j + 1];
-                    students[j + 1] = temp;
-                }
+    private static void recordFileOperation(OperationMetrics.Operation operation, long start, Path file, boolean read) {
+        metrics.record(operation, start, OperationMetrics.Result.SUCCESS);
+        if (!metrics.isEnabled()) {
+            return;
+        }
+        try {
+            long bytes = Files.size(file);
+            if (read) {
+                metrics.addBytesRead(operation, bytes);
+            } else {
+                metrics.addBytesWritten(operation, bytes);
             }
+        } catch (IOException e) {
+            // The operation itself succeeded; only its byte count is missing.
+        }
+    }
+
+    /**
+     * Displays the metrics of every operation that has run since the program started.
+     * For each operation this method prints how many times it ran, missed the student it looked
+     * for and failed, the mean, median, 90th and 99th percentile and longest duration in
+     * microseconds, and the bytes it read and wrote. If metrics are disabled with
+     * -Dsms.metrics=false, it prints a message saying so.
+     */
+    private static void viewMetrics() {
+        if (!metrics.isEnabled()) {
+            System.out.println("Metrics are disabled. Start the program without -Dsms.metrics=false to enable them.");
+            return;
+        }
+        boolean any = false;
+        for (OperationMetrics.Operation operation : OperationMetrics.Operation.values()) {
+            OperationMetrics.OperationStats stats = metrics.stats(operation);
+            if (stats.count() == 0) {
+                continue;
+            }
+            any = true;
+            LatencyHistogram latency = stats.latency();
+            System.out.printf("%s: %d runs, %d misses, %d failures%n", operation.label(), stats.count(),
+                    stats.misses(), stats.failures());
+            System.out.printf("    mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us%n",
+                    latency.mean() / NANOSPERMICRO, latency.percentile(50) / NANOSPERMICRO,
+                    latency.percentile(90) / NANOSPERMICRO, latency.percentile(99) / NANOSPERMICRO,
+                    latency.max() / NANOSPERMICRO);
+            if (stats.bytesRead() + stats.bytesWritten() > 0) {
+                System.out.println("    " + stats.bytesRead() + " bytes read, " + stats.bytesWritten() + " bytes written");
+            }
+        }
+        if (!any) {
+            System.out.println("No operations recorded yet.");
+        }
+        DiskStudentRepository disk = students.unwrap(DiskStudentRepository.class);
+        if (disk != null) {
+            StudentCache cache = disk.cache();
+            System.out.printf("Student cache (%s): %d of %d students, %d hits, %d misses, %d evictions, %d write-backs%n",
+                    cache.policy(), cache.size(), cache.capacity(), cache.hits(), cache.misses(),
+                    cache.evictions(), cache.writeBacks());
         }
     }
 }
@@ -0,0 +1,146 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Produces a report of the registered students, one row per student, in rank or name order.
+ * Rows are produced lazily from a cursor over the leaderboard or the name index, starting at
+ * the requested offset, so a page costs the same wherever it lies in the cohort and nothing
+ * is copied or sorted. Every row is formatted into one reused buffer and handed to a
+ * ReportSink, and the report stops as soon as the page is full or the sink refuses a row.
+ * A sharded repository merges the cursors of its shards, and walks past the rows before the offset.
+ * Repositories without a leaderboard or name index are sorted once per page instead.
+ */
+public final class StudentReport {
+    private static final int ROWCAPACITY = 256;
+    private final StudentService service;
+    private final Order order;
+    private final Layout layout;
+    private final StringBuilder row = new StringBuilder(ROWCAPACITY);
+
+    /**
+     * The order of the rows of a report.
+     */
+    public enum Order {
+        AVERAGE,
+        NAME
+    }
+
+    /**
+     * Formats one student as a row of a report.
+     */
+    @FunctionalInterface
+    public interface Layout {
+
+        /**
+         * Appends the row of one student.
+         * @param student the student to format
+         * @param rank the one-based position of the student in the report order
+         * @param row the buffer to append the row to, empty when this method is called
+         */
+        void format(Student student, int rank, StringBuilder row);
+    }
+
+    /**
+     * Every detail of a student: ID, name, module marks, total, average and grade.
+     */
+    public static final Layout DETAILS = StudentReport::formatDetails;
+    /**
+     * The name and ID of a student.
+     */
+    public static final Layout NAMES = (student, rank, row) ->
+            row.append("Name: ").append(student.getName()).append(", Id: ").append(student.getId());
+    /**
+     * The rank, name, ID and average of a student.
+     */
+    public static final Layout RANKED = (student, rank, row) ->
+            row.append(rank).append(". Name: ").append(student.getName()).append(", Id: ").append(student.getId())
+                    .append(", Average: ").append(student.getModule().calculateAverage());
+
+    /**
+     * Constructs a new report over the students of a service.
+     * A report keeps its row buffer between calls, so it must not be written from two threads at once.
+     * @param service the service holding the registered students
+     * @param order the order of the rows
+     * @param layout the format of each row
+     */
+    public StudentReport(StudentService service, Order order, Layout layout) {
+        this.service = service;
+        this.order = order;
+        this.layout = layout;
+    }
+
+    /**
+     * Retrieves the number of students the report covers.
+     * @return the number of registered students in the report's repository
+     */
+    public int size() {
+        return service.repository().size();
+    }
+
+    /**
+     * Writes a page of the report to a sink.
+     * This method performs the following steps:
+     * 1. Opens a cursor positioned at the offset in the report order.
+     * 2. For each student, clears the row buffer, formats the student into it and passes it to the sink.
+     * 3. Stops when limit rows have been written, the cursor runs out or the sink refuses a row.
+     * @param sink the destination of the rows
+     * @param offset the number of students to skip
+     * @param limit the maximum number of rows to write, for example N for a top-N report
+     * @return the number of rows written
+     * @throws IOException if the sink cannot write a row
+     */
+    public int write(ReportSink sink, int offset, int limit) throws IOException {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        Iterator<Student> cursor = cursor(offset);
+        int written = 0;
+        while (written < limit && cursor.hasNext()) {
+            Student student = cursor.next();
+            if (student == null) {
+                continue;
+            }
+            row.setLength(0);
+            layout.format(student, offset + written + 1, row);
+            written++;
+            if (!sink.accept(row)) {
+                break;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Opens a cursor over the students in report order, positioned at the offset.
+     */
+    private Iterator<Student> cursor(int offset) {
+        StudentRepository students = service.repository();
+        Iterator<Student> ordered = order == Order.AVERAGE ? students.studentsByAverage(offset)
+                : students.studentsByName(offset);
+        if (ordered != null) {
+            return ordered;
+        }
+        Iterator<Student> sorted = order == Order.AVERAGE ? service.studentsByAverage().iterator()
+                : Arrays.asList(service.studentsByName()).iterator();
+        for (int skipped = 0; skipped < offset && sorted.hasNext(); ++skipped) {
+            sorted.next();
+        }
+        return sorted;
+    }
+
+    private static void formatDetails(Student student, int rank, StringBuilder row) {
+        Module module = student.getModule();
+        row.append("ID: ").append(student.getId()).append(", Name: ").append(student.getName());
+        if (module.getGrade() == null) {
+            row.append(", Marks not updated yet.");
+            return;
+        }
+        for (int i = 0; i < MarkTable.MODULECOUNT; ++i) {
+            row.append(", ").append(ModuleCatalogue.active().name(i)).append(": ").append(module.getMark(i));
+        }
+        row.append(", Total: ").append(module.calculateTotal())
+                .append(", Average: ").append(module.calculateAverage())
+                .append(", Grade: ").append(module.getGrade());
+    }
+}
@@ -0,0 +1,302 @@
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
+/**
+ * Represents a store of registered students that can be looked up by student ID.
+ */
+public interface StudentRepository {
+    /**
+     * A read-only, point-in-time view of a repository, opened by snapshot().
+     * The view holds the students as they were when it was opened, however long it is read and
+     * whatever writers do meanwhile. It can be handed to a StudentService or a StudentReport like
+     * any other repository; changing it throws UnsupportedOperationException. Closing it releases
+     * what the repository keeps for it, so it should be opened in a try-with-resources statement.
+     */
+    interface Snapshot extends StudentRepository, AutoCloseable {
+        /**
+         * Releases this view. Closing a view twice has no further effect.
+         */
+        @Override
+        void close();
+    }
+
+
+    /**
+     * Retrieves the maximum number of students this repository can hold.
+     * @return the configured capacity of the repository
+     */
+    int capacity();
+
+    /**
+     * Retrieves the number of students currently registered.
+     * @return the number of registered students
+     */
+    int size();
+
+    /**
+     * Checks whether the repository has reached its configured capacity.
+     * @return true if no more students can be added, false otherwise
+     */
+    default boolean isFull() {
+        return size() >= capacity();
+    }
+
+    /**
+     * Adds a student to the repository.
+     * @param student the student to add
+     * @return true if the student was added, false if the repository is full,
+     *         the student ID is not valid or a student with the same ID is already registered
+     */
+    boolean add(Student student);
+
+    /**
+     * Finds the student with the given ID key.
+     * @param key the student ID key, as returned by StudentId.parse
+     * @return the matching student, or null if no student has that ID
+     */
+    Student find(int key);
+
+    /**
+     * Finds the student with the given ID.
+     * @param id the student ID to look up
+     * @return the matching student, or null if the ID is not valid or no student has that ID
+     */
+    default Student find(String id) {
+        int key = StudentId.parse(id);
+        return key == StudentId.INVALID ? null : find(key);
+    }
+
+    /**
+     * Checks whether a student with the given ID key is registered.
+     * @param key the student ID key, as returned by StudentId.parse
+     * @return true if the student is registered, false otherwise
+     */
+    default boolean contains(int key) {
+        return find(key) != null;
+    }
+
+    /**
+     * Checks whether a student with the given ID is registered.
+     * @param id the student ID to look up
+     * @return true if the student is registered, false otherwise
+     */
+    default boolean contains(String id) {
+        int key = StudentId.parse(id);
+        return key != StudentId.INVALID && contains(key);
+    }
+
+    /**
+     * Removes the student with the given ID key.
+     * @param key the student ID key, as returned by StudentId.parse
+     * @return the removed student, or null if no student has that ID
+     */
+    Student remove(int key);
+
+    /**
+     * Removes the student with the given ID.
+     * @param id the student ID to remove
+     * @return the removed student, or null if the ID is not valid or no student has that ID
+     */
+    default Student remove(String id) {
+        int key = StudentId.parse(id);
+        return key == StudentId.INVALID ? null : remove(key);
+    }
+
+    /**
+     * Changes the name of the student with the given ID key.
+     * @param key the student ID key, as returned by StudentId.parse
+     * @param name the new name
+     * @return true if the student was renamed, false if no student has that ID
+     */
+    default boolean rename(int key, String name) {
+        Student student = find(key);
+        if (student == null) {
+            return false;
+        }
+        student.setName(name);
+        return true;
+    }
+
+    /**
+     * Sets the module marks of the student with the given ID key and recalculates the grade.
+     * @param key the student ID key, as returned by StudentId.parse
+     * @param moduleMarks the marks to set, one per module
+     * @return true if the marks were set, false if no student has that ID
+     */
+    default boolean setMarks(int key, int[] moduleMarks) {
+        Student student = find(key);
+        if (student == null) {
+            return false;
+        }
+        student.getModule().setModuleMarks(moduleMarks);
+        return true;
+    }
+
+    /**
+     * Sets the module marks of many students at once and recalculates their grades.
+     * Repositories that keep marks in a shared MarkTable write the whole batch into the table
+     * and bring their indexes up to date once for the batch rather than once per student.
+     * @param keys the student ID keys, as returned by StudentId.parse
+     * @param moduleMarks the marks to set for each key, one array of marks per key
+     * @param count the number of keys to update
+     * @param applied receives, for each key, true if the marks were set or false if no student has that ID
+     * @return the number of keys whose marks were set
+     */
+    default int setMarks(int[] keys, int[][] moduleMarks, int count, boolean[] applied) {
+        int appliedCount = 0;
+        for (int i = 0; i < count; ++i) {
+            applied[i] = setMarks(keys[i], moduleMarks[i]);
+            if (applied[i]) {
+                appliedCount++;
+            }
+        }
+        return appliedCount;
+    }
+
+    /**
+     * Copies the registered students into a new array.
+     * The students themselves are not copied, only the references to them.
+     * @return an array holding every registered student
+     */
+    Student[] toArray();
+
+    /**
+     * Retrieves the columnar mark table backing the registered students' modules, if any.
+     * Rows of the table are in no particular order and hold exactly the registered students.
+     * @return the mark table, or null if this repository does not keep marks in a shared table
+     */
+    default MarkTable markTable() {
+        return null;
+    }
+
+    /**
+     * Retrieves the leaderboard that ranks the registered students by average mark, if any.
+     * @return the leaderboard, or null if this repository does not maintain one
+     */
+    default Leaderboard leaderboard() {
+        return null;
+    }
+
+    /**
+     * Retrieves the running statistics of the registered students, if any.
+     * @return the statistics, or null if this repository does not maintain them
+     */
+    default SummaryStatistics statistics() {
+        return null;
+    }
+
+    /**
+     * Checks the running statistics this repository keeps against a full rescan of its mark table.
+     * @return MATCHED or MISMATCHED, or UNAVAILABLE if this repository keeps no running statistics
+     *         or no mark table to rescan
+     */
+    default SummaryStatistics.Verification verifyStatistics() {
+        SummaryStatistics statistics = statistics();
+        MarkTable markTable = markTable();
+        if (statistics == null || markTable == null) {
+            return SummaryStatistics.Verification.UNAVAILABLE;
+        }
+        return statistics.verify(markTable) ? SummaryStatistics.Verification.MATCHED : SummaryStatistics.Verification.MISMATCHED;
+    }
+
+    /**
+     * Retrieves the index that orders the registered students by name, if any.
+     * @return the name index, or null if this repository does not maintain one
+     */
+    default NameIndex nameIndex() {
+        return null;
+    }
+
+    /**
+     * Summarises the registered students from the statistics this repository keeps up to date, if any.
+     * @return the cohort statistics, or null if this repository does not maintain running statistics
+     */
+    default SummaryEngine.CohortSummary summary() {
+        SummaryStatistics statistics = statistics();
+        return statistics == null ? null : statistics.summary();
+    }
+
+    /**
+     * Iterates over the registered students by average mark, highest first, starting at a rank,
+     * if this repository keeps them in that order. The repository must not be modified while
+     * the iteration is in progress.
+     * @param fromRank the zero-based rank of the first student to return
+     * @return an iterator over the students, or null if this repository does not keep them ranked
+     */
+    default Iterator<Student> studentsByAverage(int fromRank) {
+        Leaderboard leaderboard = leaderboard();
+        return leaderboard == null ? null : studentsOf(leaderboard.iterator(fromRank));
+    }
+
+    /**
+     * Iterates over the registered students in name order, ignoring case, starting at a position,
+     * if this repository keeps them in that order. The repository must not be modified while
+     * the iteration is in progress.
+     * @param fromRank the zero-based position of the first student to return
+     * @return an iterator over the students, or null if this repository does not keep them ordered by name
+     */
+    default Iterator<Student> studentsByName(int fromRank) {
+        NameIndex nameIndex = nameIndex();
+        return nameIndex == null ? null : studentsOf(nameIndex.iterator(fromRank));
+    }
+
+    /**
+     * Iterates over the registered students whose ID key lies in a range, in ID order, if this
+     * repository keeps an index by ID. The repository must not be modified while the iteration
+     * is in progress.
+     * @param fromKey the smallest ID key of the range
+     * @param toKey the largest ID key of the range
+     * @return an iterator over the students, or null if this repository does not index them by ID
+     */
+    default Iterator<Student> studentsWithIdBetween(int fromKey, int toKey) {
+        return null;
+    }
+
+    /**
+     * Iterates over the registered students whose average mark lies in a range, lowest average
+     * first and in ID order among equal averages, if this repository keeps an index by average.
+     * Students without marks are not included. The repository must not be modified while the
+     * iteration is in progress.
+     * @param min the lowest average of the range
+     * @param max the highest average of the range
+     * @return an iterator over the students, or null if this repository does not index them by average
+     */
+    default Iterator<Student> studentsWithAverageBetween(double min, double max) {
+        return null;
+    }
+
+    /**
+     * Opens a point-in-time view of the registered students, if this repository can take one
+     * while other users keep changing it.
+     * @return a view of the students as they are now, to be closed when it is no longer read,
+     *         or null if this repository does not take snapshots
+     */
+    default Snapshot snapshot() {
+        return null;
+    }
+
+    /**
+     * Finds the repository of a given type behind this one, looking through repositories that
+     * wrap another, such as a journal, so that features of the underlying store stay reachable.
+     * @param type the class of repository to look for
+     * @param <T> the type of repository to look for
+     * @return this repository or one it wraps if it has the given type, or null if none does
+     */
+    default <T extends StudentRepository> T unwrap(Class<T> type) {
+        return type.isInstance(this) ? type.cast(this) : null;
+    }
+
+    private Iterator<Student> studentsOf(PrimitiveIterator.OfInt keys) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public Student next() {
+                return find(keys.nextInt());
+            }
+        };
+    }
+}
@@ -0,0 +1,608 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Provides the operations of the Student Management System on top of a StudentRepository.
+ * The console menu and the HTTP service are both clients of this class: they collect input,
+ * call an operation and present its outcome, while the validation rules and the queries
+ * live here. Every operation is timed into the service's OperationMetrics, so the runs made
+ * from the menu, the HTTP service and batch scripts all reach the same histograms and MBean.
+ */
+public class StudentService {
+    /**
+     * The longest name, in UTF-8 bytes, that the snapshot, journal and delta formats can store.
+     */
+    public static final int MAXNAMEBYTES = Short.MAX_VALUE;
+    private final StudentRepository students;
+    private final OperationMetrics metrics;
+
+    /**
+     * The result of an operation that changes the registry.
+     */
+    public enum Outcome {
+        OK,
+        INVALID_ID,
+        INVALID_NAME,
+        INVALID_MARKS,
+        NOT_FOUND,
+        ALREADY_REGISTERED,
+        NO_SEATS,
+        STORAGE_ERROR
+    }
+
+    /**
+     * Summarises the performance of the cohort.
+     * @param totalStudents the number of registered students
+     * @param passedAllModules the number of students with at least 40 marks in every module
+     */
+    public record Summary(int totalStudents, int passedAllModules) {
+    }
+
+    /**
+     * Constructs a new service over the specified repository that does not record metrics.
+     * @param students the repository holding the registered students
+     */
+    public StudentService(StudentRepository students) {
+        this(students, new OperationMetrics(false));
+    }
+
+    /**
+     * Constructs a new service over the specified repository that records its operations.
+     * @param students the repository holding the registered students
+     * @param metrics the metrics every operation is recorded into
+     */
+    public StudentService(StudentRepository students, OperationMetrics metrics) {
+        this.students = students;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Retrieves the metrics the operations of this service are recorded into.
+     * @return the operation metrics
+     */
+    public OperationMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Retrieves the repository this service works on.
+     * @return the student repository
+     */
+    public StudentRepository repository() {
+        return students;
+    }
+
+    /**
+     * Calculates the number of seats left for new registrations.
+     * @return the capacity of the repository minus the number of registered students
+     */
+    public int availableSeats() {
+        return students.capacity() - students.size();
+    }
+
+    /**
+     * Registers a new student.
+     * @param id the student ID, "w" followed by 7 digits
+     * @param name the student's name
+     * @return OK, INVALID_ID, INVALID_NAME, ALREADY_REGISTERED, NO_SEATS or STORAGE_ERROR
+     */
+    public Outcome register(String id, String name) {
+        long start = metrics.start();
+        Outcome outcome = add(id, name);
+        metrics.record(OperationMetrics.Operation.REGISTER, start, outcome);
+        return outcome;
+    }
+
+    private Outcome add(String id, String name) {
+        int key = StudentId.parse(id);
+        if (key == StudentId.INVALID) {
+            return Outcome.INVALID_ID;
+        }
+        if (!isValidName(name)) {
+            return Outcome.INVALID_NAME;
+        }
+        if (students.contains(key)) {
+            return Outcome.ALREADY_REGISTERED;
+        }
+        if (students.isFull()) {
+            return Outcome.NO_SEATS;
+        }
+        try {
+            if (students.add(new Student(id, name))) {
+                return Outcome.OK;
+            }
+        } catch (UncheckedIOException e) {
+            return Outcome.STORAGE_ERROR;
+        }
+        return students.contains(key) ? Outcome.ALREADY_REGISTERED : Outcome.NO_SEATS;
+    }
+
+    /**
+     * Deletes a student.
+     * @param id the student ID
+     * @return OK, INVALID_ID, NOT_FOUND or STORAGE_ERROR
+     */
+    public Outcome delete(String id) {
+        long start = metrics.start();
+        Outcome outcome = remove(id);
+        metrics.record(OperationMetrics.Operation.DELETE, start, outcome);
+        return outcome;
+    }
+
+    private Outcome remove(String id) {
+        int key = StudentId.parse(id);
+        if (key == StudentId.INVALID) {
+            return Outcome.INVALID_ID;
+        }
+        try {
+            return students.remove(key) != null ? Outcome.OK : Outcome.NOT_FOUND;
+        } catch (UncheckedIOException e) {
+            return Outcome.STORAGE_ERROR;
+        }
+    }
+
+    /**
+     * Finds a student.
+     * @param id the student ID
+     * @return the student, or null if the ID is not valid or no student has that ID
+     */
+    public Student find(String id) {
+        long start = metrics.start();
+        Student student = students.find(id);
+        metrics.record(OperationMetrics.Operation.FIND, start, student != null ? OperationMetrics.Result.SUCCESS
+                : StudentId.parse(id) == StudentId.INVALID ? OperationMetrics.Result.FAILURE : OperationMetrics.Result.MISS);
+        return student;
+    }
+
+    /**
+     * Changes the name of a student.
+     * @param id the student ID
+     * @param name the new name
+     * @return OK, INVALID_ID, INVALID_NAME, NOT_FOUND or STORAGE_ERROR
+     */
+    public Outcome rename(String id, String name) {
+        long start = metrics.start();
+        Outcome outcome = changeName(id, name);
+        metrics.record(OperationMetrics.Operation.RENAME, start, outcome);
+        return outcome;
+    }
+
+    private Outcome changeName(String id, String name) {
+        int key = StudentId.parse(id);
+        if (key == StudentId.INVALID) {
+            return Outcome.INVALID_ID;
+        }
+        if (!isValidName(name)) {
+            return Outcome.INVALID_NAME;
+        }
+        try {
+            return students.rename(key, name) ? Outcome.OK : Outcome.NOT_FOUND;
+        } catch (UncheckedIOException e) {
+            return Outcome.STORAGE_ERROR;
+        }
+    }
+
+    /**
+     * Sets the module marks of a student and recalculates the grade.
+     * @param id the student ID
+     * @param moduleMarks the marks to set, one per module, each from 0 to 100
+     * @return OK, INVALID_ID, INVALID_MARKS, NOT_FOUND or STORAGE_ERROR
+     */
+    public Outcome setMarks(String id, int[] moduleMarks) {
+        long start = metrics.start();
+        Outcome outcome = changeMarks(id, moduleMarks);
+        metrics.record(OperationMetrics.Operation.SET_MARKS, start, outcome);
+        return outcome;
+    }
+
+    private Outcome changeMarks(String id, int[] moduleMarks) {
+        int key = StudentId.parse(id);
+        if (key == StudentId.INVALID) {
+            return Outcome.INVALID_ID;
+        }
+        if (moduleMarks.length != MarkTable.MODULECOUNT) {
+            return Outcome.INVALID_MARKS;
+        }
+        for (int mark : moduleMarks) {
+            if (!isValidMark(mark)) {
+                return Outcome.INVALID_MARKS;
+            }
+        }
+        try {
+            return students.setMarks(key, moduleMarks) ? Outcome.OK : Outcome.NOT_FOUND;
+        } catch (UncheckedIOException e) {
+            return Outcome.STORAGE_ERROR;
+        }
+    }
+
+    /**
+     * Sets the module marks of many students with one repository call. The batch is recorded as
+     * one run of SET_MARKS.
+     * @param keys the student ID keys, as returned by StudentId.parse
+     * @param moduleMarks the marks to set for each key, each checked to be in range
+     * @param count the number of keys to update
+     * @param applied receives, for each key, true if the marks were set or false if no student has that ID
+     * @return the number of keys whose marks were set
+     * @throws UncheckedIOException if the repository could not save the batch, in which case no marks were set
+     */
+    public int setMarks(int[] keys, int[][] moduleMarks, int count, boolean[] applied) {
+        long start = metrics.start();
+        try {
+            int appliedCount = students.setMarks(keys, moduleMarks, count, applied);
+            metrics.record(OperationMetrics.Operation.SET_MARKS, start, OperationMetrics.Result.SUCCESS);
+            return appliedCount;
+        } catch (UncheckedIOException e) {
+            metrics.record(OperationMetrics.Operation.SET_MARKS, start, OperationMetrics.Result.FAILURE);
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the module marks of many students from a CSV mark sheet.
+     * @param file the mark sheet, one "id,module1,...,moduleN" row per line, with one mark for
+     *        every module of the catalogue
+     * @param parallelism the number of threads that parse the file
+     * @return the outcome of the import, with a report of the skipped rows and, if the marks of a
+     *         batch could not be saved, the lines of that batch; the batches before it stay applied
+     * @throws IOException if the file cannot be read
+     */
+    public MarkImporter.Result importMarks(Path file, int parallelism) throws IOException {
+        return MarkImporter.importMarks(file, students, parallelism);
+    }
+
+    /**
+     * Checks if a name can be stored and read back unchanged by every storage format: the text
+     * format of studentDetails.txt, and the snapshot, journal and delta formats, which hold at
+     * most MAXNAMEBYTES bytes of UTF-8.
+     * @param name the name to check
+     * @return true if the name is valid, false otherwise
+     */
+    public static boolean isValidName(String name) {
+        return name != null && StudentLoader.isLoadableName(name)
+                && (name.length() <= MAXNAMEBYTES / 3 || name.getBytes(StandardCharsets.UTF_8).length <= MAXNAMEBYTES);
+    }
+
+    /**
+     * Checks if a mark is valid.
+     * @param mark the mark to check
+     * @return true if the mark is from 0 to 100 inclusive, false otherwise
+     */
+    public static boolean isValidMark(int mark) {
+        return mark >= 0 && mark <= 100;
+    }
+
+    /**
+     * Counts the registered students and the students who scored at least 40 marks in every module.
+     * Reads the running statistics when the repository keeps them, and otherwise uses a columnar
+     * scan when the repository keeps a mark table.
+     * @return the summary of the cohort
+     */
+    public Summary summary() {
+        long start = metrics.start();
+        Summary summary = countPasses();
+        metrics.record(OperationMetrics.Operation.SUMMARY, start, OperationMetrics.Result.SUCCESS);
+        return summary;
+    }
+
+    private Summary countPasses() {
+        SummaryStatistics statistics = students.statistics();
+        if (statistics != null) {
+            return new Summary(statistics.studentCount(), statistics.passedAllModules());
+        }
+        MarkTable markTable = students.markTable();
+        if (markTable != null) {
+            return new Summary(students.size(), markTable.countAllAtLeast(SummaryEngine.PASSMARK));
+        }
+        SummaryEngine.CohortSummary summary = students.summary();
+        if (summary == null) {
+            summary = SummaryEngine.summarize(students.toArray(), false);
+        }
+        return new Summary(summary.totalStudents(), summary.passedAllModules());
+    }
+
+    /**
+     * Computes the full statistics of the cohort: per-module minimum, maximum, mean, standard
+     * deviation, pass rate and mark distribution, the grade distribution and percentiles.
+     * The figures are read from the running statistics when the repository keeps them, or gathered
+     * from its shards when it is sharded; otherwise the students are scanned in one pass split
+     * across the cores of the machine.
+     * @return the cohort statistics
+     */
+    public SummaryEngine.CohortSummary statistics() {
+        long start = metrics.start();
+        SummaryEngine.CohortSummary summary = students.summary();
+        if (summary == null) {
+            summary = SummaryEngine.summarize(students, true);
+        }
+        metrics.record(OperationMetrics.Operation.SUMMARY, start, OperationMetrics.Result.SUCCESS);
+        return summary;
+    }
+
+    /**
+     * Checks the running statistics against a full rescan of the registered students.
+     * A sharded repository checks each shard against its own mark table.
+     * @return MATCHED or MISMATCHED, or UNAVAILABLE if the repository keeps no running statistics
+     */
+    public SummaryStatistics.Verification verifyStatistics() {
+        return students.verifyStatistics();
+    }
+
+    /**
+     * Ranks the registered students by average marks, highest first.
+     * When the repository keeps its students ranked, for example on a leaderboard, the students
+     * are streamed off it in order and nothing is sorted or copied. Otherwise the ranking engine
+     * sorts the cohort.
+     * @return the registered students, highest average first
+     */
+    public Iterable<Student> studentsByAverage() {
+        if (students.studentsByAverage(0) == null) {
+            return RankingEngine.rankByAverage(students, RankingEngine.Mode.AUTO);
+        }
+        return () -> students.studentsByAverage(0);
+    }
+
+    /**
+     * Finds the rank of a student by average mark, highest first, with equal averages in ID order.
+     * When the repository keeps a leaderboard, the rank is read off it in O(log n). Otherwise the
+     * students ranked ahead of the student are counted.
+     * @param id the student ID
+     * @return the zero-based rank, 0 being the highest average, or -1 if the ID is not valid or
+     *         no student with this ID is registered
+     */
+    public int rankOf(String id) {
+        int key = StudentId.parse(id);
+        if (key == StudentId.INVALID) {
+            return -1;
+        }
+        Leaderboard leaderboard = students.leaderboard();
+        if (leaderboard != null) {
+            return leaderboard.rankOf(key);
+        }
+        Student student = students.find(key);
+        if (student == null) {
+            return -1;
+        }
+        int total = student.getModule().calculateWeightedTotal();
+        int rank = 0;
+        for (Student other : students.toArray()) {
+            int otherTotal = other.getModule().calculateWeightedTotal();
+            if (otherTotal > total || otherTotal == total && StudentId.parse(other.getId()) < key) {
+                ++rank;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Lists the registered students alphabetically by name, ignoring case.
+     * When the repository keeps its students in name order, the students are read off it in
+     * order and nothing is sorted. Otherwise a copy of the cohort is sorted.
+     * @return a new array of the registered students sorted by name
+     */
+    public Student[] studentsByName() {
+        return studentsByName(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lists a page of the registered students in name order, ignoring case.
+     * @param offset the number of students to skip
+     * @param limit the maximum number of students to return
+     * @return up to limit students sorted by name
+     */
+    public Student[] studentsByName(int offset, int limit) {
+        NameIndex nameIndex = students.nameIndex();
+        if (nameIndex != null) {
+            return studentsOf(nameIndex.keysByName(offset, limit));
+        }
+        return page(byName(), student -> true, offset, limit);
+    }
+
+    /**
+     * Counts the registered students whose name starts with a prefix, ignoring case.
+     * @param prefix the start of the name
+     * @return the number of matching students
+     */
+    public int countWithNamePrefix(String prefix) {
+        NameIndex nameIndex = students.nameIndex();
+        if (nameIndex != null) {
+            return nameIndex.countWithPrefix(prefix);
+        }
+        return page(byName(), student -> startsWithIgnoringCase(student.getName(), prefix),
+                0, Integer.MAX_VALUE).length;
+    }
+
+    /**
+     * Lists a page of the registered students whose name starts with a prefix, ignoring case.
+     * @param prefix the start of the name
+     * @param offset the number of matching students to skip
+     * @param limit the maximum number of students to return
+     * @return up to limit matching students sorted by name
+     */
+    public Student[] studentsWithNamePrefix(String prefix, int offset, int limit) {
+        long start = metrics.start();
+        return recordPage(OperationMetrics.Operation.SEARCH, start, offset, pageWithNamePrefix(prefix, offset, limit));
+    }
+
+    private Student[] pageWithNamePrefix(String prefix, int offset, int limit) {
+        NameIndex nameIndex = students.nameIndex();
+        if (nameIndex != null) {
+            return studentsOf(nameIndex.keysWithPrefix(prefix, offset, limit));
+        }
+        return page(byName(), student -> startsWithIgnoringCase(student.getName(), prefix), offset, limit);
+    }
+
+    /**
+     * Lists a page of the registered students whose name is spelled like the query, ignoring case.
+     * @param query the name to look for
+     * @param maxDistance the largest number of single-character edits between the query and a name
+     * @param offset the number of matching students to skip
+     * @param limit the maximum number of students to return
+     * @return up to limit matching students sorted by name
+     */
+    public Student[] studentsNamedLike(String query, int maxDistance, int offset, int limit) {
+        long start = metrics.start();
+        return recordPage(OperationMetrics.Operation.SEARCH, start, offset, pageNamedLike(query, maxDistance, offset, limit));
+    }
+
+    private Student[] pageNamedLike(String query, int maxDistance, int offset, int limit) {
+        NameIndex nameIndex = students.nameIndex();
+        if (nameIndex != null) {
+            return studentsOf(nameIndex.keysNear(query, maxDistance, offset, limit));
+        }
+        return page(byName(), student -> NameIndex.editDistance(student.getName(), query) <= maxDistance,
+                offset, limit);
+    }
+
+    /**
+     * Lists a page of the registered students whose ID lies in a range, such as an intake year,
+     * in ID order. When the repository indexes its students by ID, only the range is read from
+     * the index. Otherwise a copy of the cohort is sorted by ID and filtered.
+     * @param fromKey the smallest student ID key of the range
+     * @param toKey the largest student ID key of the range
+     * @param offset the number of matching students to skip
+     * @param limit the maximum number of students to return
+     * @return up to limit matching students sorted by ID
+     */
+    public Student[] studentsWithIdBetween(int fromKey, int toKey, int offset, int limit) {
+        long start = metrics.start();
+        return recordPage(OperationMetrics.Operation.RANGE, start, offset, pageWithIdBetween(fromKey, toKey, offset, limit));
+    }
+
+    private Student[] pageWithIdBetween(int fromKey, int toKey, int offset, int limit) {
+        Iterator<Student> indexed = students.studentsWithIdBetween(fromKey, toKey);
+        if (indexed != null) {
+            return page(indexed, student -> true, offset, limit);
+        }
+        Student[] sortedStudents = students.toArray();
+        Arrays.sort(sortedStudents, Comparator.comparingInt(student -> StudentId.parse(student.getId())));
+        return page(Arrays.asList(sortedStudents).iterator(), student -> {
+            int key = StudentId.parse(student.getId());
+            return key >= fromKey && key <= toKey;
+        }, offset, limit);
+    }
+
+    /**
+     * Lists a page of the registered students whose average mark lies in a range, lowest average
+     * first and in ID order among equal averages. Students without marks are not included. When
+     * the repository indexes its students by average, only the range is read from the index.
+     * When it keeps a leaderboard, the range is read off the leaderboard and put in rising order.
+     * Otherwise a copy of the cohort is sorted by average and filtered.
+     * @param min the lowest average of the range
+     * @param max the highest average of the range
+     * @param offset the number of matching students to skip
+     * @param limit the maximum number of students to return
+     * @return up to limit matching students sorted by average
+     */
+    public Student[] studentsWithAverageBetween(double min, double max, int offset, int limit) {
+        long start = metrics.start();
+        return recordPage(OperationMetrics.Operation.RANGE, start, offset, pageWithAverageBetween(min, max, offset, limit));
+    }
+
+    private Student[] pageWithAverageBetween(double min, double max, int offset, int limit) {
+        Iterator<Student> indexed = students.studentsWithAverageBetween(min, max);
+        if (indexed != null) {
+            return page(indexed, student -> true, offset, limit);
+        }
+        Leaderboard leaderboard = students.leaderboard();
+        if (leaderboard != null) {
+            Student[] ranked = studentsOf(leaderboard.inAverageRange(min, max));
+            return page(Arrays.asList(risingByAverage(ranked)).iterator(),
+                    student -> student.getModule().getGrade() != null, offset, limit);
+        }
+        Student[] sortedStudents = students.toArray();
+        Arrays.sort(sortedStudents, Comparator.comparingInt((Student student) -> student.getModule().calculateWeightedTotal())
+                .thenComparingInt(student -> StudentId.parse(student.getId())));
+        return page(Arrays.asList(sortedStudents).iterator(), student -> {
+            Module module = student.getModule();
+            return module.getGrade() != null && module.calculateAverage() >= min && module.calculateAverage() <= max;
+        }, offset, limit);
+    }
+
+    /**
+     * Records one run of a query that returns a page of students. A first page without any
+     * student counts as a miss.
+     */
+    private Student[] recordPage(OperationMetrics.Operation operation, long start, int offset, Student[] page) {
+        metrics.record(operation, start, page.length == 0 && offset == 0
+                ? OperationMetrics.Result.MISS : OperationMetrics.Result.SUCCESS);
+        return page;
+    }
+
+    /**
+     * Iterates over the registered students in name order, from the repository when it keeps them
+     * in that order and from a sorted copy of the cohort otherwise.
+     */
+    private Iterator<Student> byName() {
+        Iterator<Student> ordered = students.studentsByName(0);
+        if (ordered != null) {
+            return ordered;
+        }
+        Student[] sortedStudents = students.toArray();
+        Arrays.sort(sortedStudents, Comparator.comparing(Student::getName, NameIndex.NAMEORDER));
+        return Arrays.asList(sortedStudents).iterator();
+    }
+
+    /**
+     * Turns students ranked highest average first, ascending ID among equal averages, into lowest
+     * average first while keeping ascending ID among equal averages: the whole array is reversed,
+     * and then every run of equal averages is reversed back.
+     */
+    private static Student[] risingByAverage(Student[] ranked) {
+        reverse(ranked, 0, ranked.length);
+        int start = 0;
+        while (start < ranked.length) {
+            int total = ranked[start].getModule().calculateWeightedTotal();
+            int end = start + 1;
+            while (end < ranked.length && ranked[end].getModule().calculateWeightedTotal() == total) {
+                ++end;
+            }
+            reverse(ranked, start, end);
+            start = end;
+        }
+        return ranked;
+    }
+
+    private static void reverse(Student[] students, int from, int to) {
+        for (int i = from, j = to - 1; i < j; ++i, --j) {
+            Student swapped = students[i];
+            students[i] = students[j];
+            students[j] = swapped;
+        }
+    }
+
+    private Student[] studentsOf(int[] keys) {
+        Student[] found = new Student[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            found[i] = students.find(keys[i]);
+        }
+        return found;
+    }
+
+    private static Student[] page(Iterator<Student> sortedStudents, Predicate<Student> filter, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        List<Student> matches = new ArrayList<>();
+        int skipped = 0;
+        while (matches.size() < limit && sortedStudents.hasNext()) {
+            Student student = sortedStudents.next();
+            if (student != null && filter.test(student) && skipped++ >= offset) {
+                matches.add(student);
+            }
+        }
+        return matches.toArray(new Student[0]);
+    }
+
+    private static boolean startsWithIgnoringCase(String name, String prefix) {
+        return name.toLowerCase(Locale.ROOT).startsWith(prefix.toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,300 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the student registry as a versioned, fixed-width binary snapshot.
+ * The file starts with a header holding a magic number, the format version, the record
+ * count and a CRC32 checksum of the other header fields and everything after the header, so a
+ * damaged record count or heap size is caught as surely as a damaged record. The header is
+ * followed by one fixed-width record per student, sorted by student ID key, and a heap of UTF-8 names that
+ * the records point into. Only the marks and the grade are stored; totals and averages are
+ * derived again when needed. Files are written and read through a MappedByteBuffer, and an
+ * opened snapshot serves lookups by binary search without creating every Student up front.
+ */
+public final class StudentSnapshot {
+    /**
+     * The magic number at the start of every snapshot file, "SMSS" in ASCII.
+     */
+    public static final int MAGIC = 0x534D5353;
+    /**
+     * The version of the snapshot format, the only one this class writes and reads.
+     */
+    public static final short VERSION = 2;
+    private static final int HEADERSIZE = 32;
+    private static final int MAGICOFFSET = 0;
+    private static final int VERSIONOFFSET = 4;
+    private static final int MODULECOUNTOFFSET = 6;
+    private static final int RECORDSIZEOFFSET = 8;
+    private static final int RECORDCOUNTOFFSET = 12;
+    private static final int HEAPSIZEOFFSET = 16;
+    private static final int CHECKSUMOFFSET = 20;
+    private static final int KEYFIELD = 0;
+    private static final int NAMEOFFSETFIELD = 4;
+    private static final int NAMELENGTHFIELD = 8;
+    private static final int GRADEFIELD = 10;
+    private static final int MARKSFIELD = 11;
+    private static final int RECORDSIZE = (MARKSFIELD + MarkTable.MODULECOUNT + 3) & ~3;
+
+    private final MappedByteBuffer buffer;
+    private final int recordCount;
+
+    private StudentSnapshot(MappedByteBuffer buffer, int recordCount) {
+        this.buffer = buffer;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * Writes every student in the repository to a snapshot file.
+     * The snapshot is written to a temporary file with a unique name and moved over the target
+     * when complete, so concurrent writers never map or truncate each other's file. The temporary
+     * file is deleted if the snapshot cannot be written.
+     * @param file the snapshot file to write
+     * @param repository the repository whose students are written
+     * @return the number of students written
+     * @throws IOException if the file cannot be written
+     */
+    public static int write(Path file, StudentRepository repository) throws IOException {
+        Student[] students = repository.toArray();
+        long[] order = new long[students.length];
+        byte[][] names = new byte[students.length][];
+        long heapSize = 0;
+        for (int i = 0; i < students.length; ++i) {
+            order[i] = ((long) StudentId.parse(students[i].getId()) << 32) | i;
+            names[i] = students[i].getName().getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > Short.MAX_VALUE) {
+                throw new IOException("Name of student " + students[i].getId() + " is too long");
+            }
+            heapSize += names[i].length;
+        }
+        Arrays.sort(order);
+        long fileSize = HEADERSIZE + (long) students.length * RECORDSIZE + heapSize;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + fileSize + " bytes is too large to map");
+        }
+
+        Path temporary = TemporaryFiles.createNextTo(file);
+        boolean moved = false;
+        try {
+            writeTo(temporary, students, order, names, (int) heapSize);
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temporary);
+            }
+        }
+        return students.length;
+    }
+
+    /**
+     * Maps a new temporary file and writes the records, the name heap and the header into it.
+     */
+    private static void writeTo(Path temporary, Student[] students, long[] order, byte[][] names, int heapSize)
+            throws IOException {
+        long fileSize = HEADERSIZE + (long) students.length * RECORDSIZE + heapSize;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            int recordPosition = HEADERSIZE;
+            int namePosition = HEADERSIZE + students.length * RECORDSIZE;
+            for (long entry : order) {
+                Module module = students[(int) entry].getModule();
+                byte[] name = names[(int) entry];
+                buffer.putInt(recordPosition + KEYFIELD, (int) (entry >>> 32));
+                buffer.putInt(recordPosition + NAMEOFFSETFIELD, namePosition);
+                buffer.putShort(recordPosition + NAMELENGTHFIELD, (short) name.length);
+                buffer.put(recordPosition + GRADEFIELD, MarkTable.gradeCodeOf(module.getGrade()));
+                for (int i = 0; i < MarkTable.MODULECOUNT; ++i) {
+                    buffer.put(recordPosition + MARKSFIELD + i, (byte) module.getMark(i));
+                }
+                buffer.put(namePosition, name);
+                recordPosition += RECORDSIZE;
+                namePosition += name.length;
+            }
+            buffer.putInt(MAGICOFFSET, MAGIC);
+            buffer.putShort(VERSIONOFFSET, VERSION);
+            buffer.putShort(MODULECOUNTOFFSET, (short) MarkTable.MODULECOUNT);
+            buffer.putInt(RECORDSIZEOFFSET, RECORDSIZE);
+            buffer.putInt(RECORDCOUNTOFFSET, students.length);
+            buffer.putInt(HEAPSIZEOFFSET, heapSize);
+            buffer.putInt(CHECKSUMOFFSET, checksum(buffer));
+            buffer.force();
+        }
+    }
+
+    /**
+     * Maps a snapshot file for reading and checks its header.
+     * @param file the snapshot file to open
+     * @param verifyChecksum true to check the CRC32 of the whole file before returning
+     * @return the opened snapshot
+     * @throws IOException if the file cannot be read, is not a snapshot, was written in an
+     *         unsupported format or fails its checksum
+     */
+    public static StudentSnapshot open(Path file, boolean verifyChecksum) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADERSIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a student snapshot: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getInt(MAGICOFFSET) != MAGIC) {
+            throw new IOException("Not a student snapshot: " + file);
+        }
+        short version = buffer.getShort(VERSIONOFFSET);
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot format version " + version + ": " + file);
+        }
+        if (buffer.getShort(MODULECOUNTOFFSET) != MarkTable.MODULECOUNT) {
+            throw new IOException("Student snapshot holds " + buffer.getShort(MODULECOUNTOFFSET)
+                    + " modules but the module catalogue has " + MarkTable.MODULECOUNT + ": " + file);
+        }
+        if (buffer.getInt(RECORDSIZEOFFSET) != RECORDSIZE) {
+            throw new IOException("Student snapshot records are " + buffer.getInt(RECORDSIZEOFFSET)
+                    + " bytes long but " + RECORDSIZE + " were expected: " + file);
+        }
+        int recordCount = buffer.getInt(RECORDCOUNTOFFSET);
+        long expectedSize = HEADERSIZE + (long) recordCount * RECORDSIZE + buffer.getInt(HEAPSIZEOFFSET);
+        if (recordCount < 0 || expectedSize != buffer.capacity()) {
+            throw new IOException("Truncated student snapshot: " + file);
+        }
+        if (verifyChecksum && checksum(buffer) != buffer.getInt(CHECKSUMOFFSET)) {
+            throw new IOException("Checksum mismatch in student snapshot: " + file);
+        }
+        return new StudentSnapshot(buffer, recordCount);
+    }
+
+    /**
+     * Retrieves the number of students in the snapshot.
+     * @return the number of students
+     */
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * Retrieves the CRC32 checksum stored in the header, which identifies the contents of the snapshot.
+     * @return the stored checksum
+     */
+    public int checksum() {
+        return buffer.getInt(CHECKSUMOFFSET);
+    }
+
+    /**
+     * Retrieves the student ID key of a record.
+     * @param index the record index, records being sorted by key
+     * @return the student ID key
+     */
+    public int key(int index) {
+        return buffer.getInt(recordPosition(index) + KEYFIELD);
+    }
+
+    /**
+     * Finds the record index of a student by binary search over the sorted records.
+     * @param key the student ID key
+     * @return the record index, or -1 if the student is not in the snapshot
+     */
+    public int indexOf(int key) {
+        int low = 0;
+        int high = recordCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = key(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates the student stored in a record.
+     * @param index the record index
+     * @return a new Student with the stored name, marks and grade
+     */
+    public Student student(int index) {
+        int position = recordPosition(index);
+        byte[] name = new byte[buffer.getShort(position + NAMELENGTHFIELD)];
+        buffer.get(buffer.getInt(position + NAMEOFFSETFIELD), name);
+        Student student = new Student(StudentId.format(buffer.getInt(position + KEYFIELD)),
+                new String(name, StandardCharsets.UTF_8));
+        if (buffer.get(position + GRADEFIELD) != MarkTable.NOGRADE) {
+            int[] moduleMarks = new int[MarkTable.MODULECOUNT];
+            for (int i = 0; i < moduleMarks.length; ++i) {
+                moduleMarks[i] = buffer.get(position + MARKSFIELD + i);
+            }
+            student.getModule().setModuleMarks(moduleMarks);
+        }
+        return student;
+    }
+
+    /**
+     * Creates the student with the given ID key, reading only that student's record.
+     * @param key the student ID key
+     * @return a new Student, or null if the student is not in the snapshot
+     */
+    public Student find(int key) {
+        int index = indexOf(key);
+        return index < 0 ? null : student(index);
+    }
+
+    /**
+     * Adds every student in the snapshot to a repository.
+     * Students that are already registered are skipped, and loading stops when the repository is full.
+     * @param repository the repository to add the students to
+     * @return the number of students added
+     * @throws IOException if the repository cannot save a student; the students added before the
+     *         failure stay registered
+     */
+    public int loadInto(StudentRepository repository) throws IOException {
+        int loaded = 0;
+        try {
+            for (int index = 0; index < recordCount && !repository.isFull(); ++index) {
+                if (!repository.contains(key(index)) && repository.add(student(index))) {
+                    loaded++;
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw new IOException("Saving a student failed after " + loaded + " were loaded: "
+                    + e.getCause().getMessage(), e.getCause());
+        }
+        return loaded;
+    }
+
+    private int recordPosition(int index) {
+        if (index < 0 || index >= recordCount) {
+            throw new IndexOutOfBoundsException("Record " + index + " out of " + recordCount);
+        }
+        return HEADERSIZE + index * RECORDSIZE;
+    }
+
+    /**
+     * Calculates the CRC32 of a snapshot: every header field but the checksum itself, then the
+     * records and the name heap.
+     */
+    private static int checksum(MappedByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, CHECKSUMOFFSET));
+        crc.update(buffer.slice(CHECKSUMOFFSET + Integer.BYTES, HEADERSIZE - CHECKSUMOFFSET - Integer.BYTES));
+        crc.update(buffer.slice(HEADERSIZE, buffer.capacity() - HEADERSIZE));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,403 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes cohort statistics in one pass over the registered students.
+ * The pass only counts: for every module it builds a histogram of the marks, and it also
+ * counts the credit-weighted totals, the grades and the students who passed every module. Minimum, maximum,
+ * mean, standard deviation, pass rates and percentiles are all derived from those counts
+ * afterwards. Counting is exact and the counts of two partitions simply add up, so the pass
+ * can be split into partitions that run in parallel on a fork/join pool and the result is
+ * identical to the sequential pass, whatever the number of partitions.
+ * Marks are only counted for students whose marks have been set.
+ */
+public final class SummaryEngine {
+    /**
+     * The lowest mark that passes a module.
+     */
+    public static final int PASSMARK = 40;
+    private static final int MAXTOTAL = MarkTable.MAXWEIGHTEDTOTAL;
+    private static final int GRADECODES = MarkTable.DISTINCTION + 1;
+    private static final int SPLITTHRESHOLD = 1 << 16;
+
+    private SummaryEngine() {
+    }
+
+    /**
+     * Represents the statistics of one module.
+     * @param graded the number of students whose marks are counted
+     * @param histogram the number of students for each mark from 0 to 100
+     */
+    public record ModuleStatistics(int graded, int[] histogram) {
+
+        /**
+         * Retrieves the lowest mark.
+         * @return the lowest mark, or 0 if no marks are counted
+         */
+        public int min() {
+            for (int mark = 0; mark <= MarkTable.MAXMARK; ++mark) {
+                if (histogram[mark] > 0) {
+                    return mark;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Retrieves the highest mark.
+         * @return the highest mark, or 0 if no marks are counted
+         */
+        public int max() {
+            for (int mark = MarkTable.MAXMARK; mark >= 0; --mark) {
+                if (histogram[mark] > 0) {
+                    return mark;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Calculates the mean mark.
+         * @return the mean mark, or 0 if no marks are counted
+         */
+        public double mean() {
+            if (graded == 0) {
+                return 0;
+            }
+            long sum = 0;
+            for (int mark = 0; mark <= MarkTable.MAXMARK; ++mark) {
+                sum += (long) mark * histogram[mark];
+            }
+            return sum / (double) graded;
+        }
+
+        /**
+         * Calculates the population standard deviation of the marks.
+         * @return the standard deviation, or 0 if no marks are counted
+         */
+        public double standardDeviation() {
+            if (graded == 0) {
+                return 0;
+            }
+            double mean = mean();
+            double squares = 0;
+            for (int mark = 0; mark <= MarkTable.MAXMARK; ++mark) {
+                squares += histogram[mark] * (mark - mean) * (mark - mean);
+            }
+            return Math.sqrt(squares / graded);
+        }
+
+        /**
+         * Counts the students who scored at least PASSMARK.
+         * @return the number of students who passed the module
+         */
+        public int passed() {
+            int passed = 0;
+            for (int mark = PASSMARK; mark <= MarkTable.MAXMARK; ++mark) {
+                passed += histogram[mark];
+            }
+            return passed;
+        }
+
+        /**
+         * Calculates the share of the students who passed the module.
+         * @return the pass rate from 0 to 1, or 0 if no marks are counted
+         */
+        public double passRate() {
+            return graded == 0 ? 0 : passed() / (double) graded;
+        }
+
+        /**
+         * Counts the students whose mark in this module alone earns a grade.
+         * @param gradeCode one of FAIL, PASS, MERIT or DISTINCTION
+         * @return the number of students with that module grade
+         */
+        public int gradeCount(byte gradeCode) {
+            int count = 0;
+            for (int mark = 0; mark <= MarkTable.MAXMARK; ++mark) {
+                count += MarkTable.gradeOf(mark) == gradeCode ? histogram[mark] : 0;
+            }
+            return count;
+        }
+
+        /**
+         * Finds a percentile of the marks with the nearest-rank method.
+         * @param percent the percentile, from 0 to 100
+         * @return the lowest mark that at least percent of the students scored at or below, or 0 if no marks are counted
+         */
+        public int percentile(double percent) {
+            return percentileOf(histogram, graded, percent);
+        }
+    }
+
+    /**
+     * Represents the statistics of the whole cohort.
+     * @param totalStudents the number of registered students
+     * @param passedAllModules the number of students who scored at least PASSMARK in every module
+     * @param gradeCounts the number of students for each grade code, NOGRADE included
+     * @param modules the statistics of each module
+     * @param weightedTotalHistogram the number of graded students for each credit-weighted total
+     *        from 0 to MarkTable.MAXWEIGHTEDTOTAL
+     */
+    public record CohortSummary(int totalStudents, int passedAllModules, int[] gradeCounts,
+                                ModuleStatistics[] modules, int[] weightedTotalHistogram) {
+
+        /**
+         * Counts the students whose marks have been set.
+         * @return the number of graded students
+         */
+        public int gradedStudents() {
+            return totalStudents - gradeCounts[MarkTable.NOGRADE];
+        }
+
+        /**
+         * Counts the students with a grade.
+         * @param gradeCode one of NOGRADE, FAIL, PASS, MERIT or DISTINCTION
+         * @return the number of students with that grade
+         */
+        public int gradeCount(byte gradeCode) {
+            return gradeCounts[gradeCode];
+        }
+
+        /**
+         * Calculates the share of the graded students whose grade is Pass or better.
+         * @return the pass rate from 0 to 1, or 0 if no students are graded
+         */
+        public double passRate() {
+            int graded = gradedStudents();
+            return graded == 0 ? 0 : (graded - gradeCounts[MarkTable.FAIL]) / (double) graded;
+        }
+
+        /**
+         * Finds a percentile of the average marks with the nearest-rank method.
+         * @param percent the percentile, from 0 to 100
+         * @return the average mark at the percentile, or 0 if no students are graded
+         */
+        public double averagePercentile(double percent) {
+            return MarkTable.averageOf(percentileOf(weightedTotalHistogram, gradedStudents(), percent));
+        }
+    }
+
+    /**
+     * Summarises the students of a repository.
+     * The repository's mark table is scanned column by column when it keeps one; otherwise a
+     * snapshot of its students is scanned.
+     * @param repository the repository to summarise
+     * @param parallel true to split the pass across the common fork/join pool
+     * @return the cohort statistics
+     */
+    public static CohortSummary summarize(StudentRepository repository, boolean parallel) {
+        MarkTable markTable = repository.markTable();
+        if (markTable != null) {
+            return summarize(markTable, parallel);
+        }
+        return summarize(repository.toArray(), parallel);
+    }
+
+    /**
+     * Summarises every row of a mark table.
+     * The table must not be changed while it is being summarised.
+     * @param table the table to summarise
+     * @param parallel true to split the pass across the common fork/join pool
+     * @return the cohort statistics
+     */
+    public static CohortSummary summarize(MarkTable table, boolean parallel) {
+        return summarize(new SummaryTask(table, null, 0, table.rowCount()), parallel);
+    }
+
+    /**
+     * Summarises the given students.
+     * @param students the students to summarise
+     * @param parallel true to split the pass across the common fork/join pool
+     * @return the cohort statistics
+     */
+    public static CohortSummary summarize(Student[] students, boolean parallel) {
+        return summarize(new SummaryTask(null, students, 0, students.length), parallel);
+    }
+
+    /**
+     * Combines the statistics of disjoint parts of a cohort into the statistics of the whole cohort.
+     * The statistics are counts, so the result is identical to summarising the whole cohort in one pass.
+     * @param parts the statistics of each part, for example of each shard of a ShardedStudentRepository
+     * @return the statistics of all parts together
+     */
+    public static CohortSummary merge(CohortSummary... parts) {
+        Counts counts = new Counts();
+        for (CohortSummary part : parts) {
+            counts.students += part.totalStudents();
+            counts.passedAll += part.passedAllModules();
+            counts.graded += part.gradedStudents();
+            Counts.addAll(counts.gradeCounts, part.gradeCounts());
+            Counts.addAll(counts.totals, part.weightedTotalHistogram());
+            for (int module = 0; module < MarkTable.MODULECOUNT; ++module) {
+                Counts.addAll(counts.histograms[module], part.modules()[module].histogram());
+            }
+        }
+        return summaryOf(counts);
+    }
+
+    private static CohortSummary summarize(SummaryTask task, boolean parallel) {
+        return summaryOf(parallel ? ForkJoinPool.commonPool().invoke(task) : task.count());
+    }
+
+    private static CohortSummary summaryOf(Counts counts) {
+        ModuleStatistics[] modules = new ModuleStatistics[MarkTable.MODULECOUNT];
+        for (int module = 0; module < modules.length; ++module) {
+            modules[module] = new ModuleStatistics(counts.graded, counts.histograms[module]);
+        }
+        return new CohortSummary(counts.students, counts.passedAll, counts.gradeCounts, modules, counts.totals);
+    }
+
+    private static int percentileOf(int[] histogram, int count, double percent) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+        long seen = 0;
+        for (int value = 0; value < histogram.length; ++value) {
+            seen += histogram[value];
+            if (seen >= rank) {
+                return value;
+            }
+        }
+        return histogram.length - 1;
+    }
+
+    /**
+     * The counts collected from one partition of the cohort.
+     */
+    private static final class Counts {
+        private final int[][] histograms = new int[MarkTable.MODULECOUNT][MarkTable.MAXMARK + 1];
+        private final int[] totals = new int[MAXTOTAL + 1];
+        private final int[] gradeCounts = new int[GRADECODES];
+        private int students;
+        private int graded;
+        private int passedAll;
+
+        /**
+         * Counts rows of a mark table, one column at a time.
+         */
+        private void addRows(MarkTable table, int from, int to) {
+            byte[] grades = table.gradeColumn();
+            int[] rowTotals = table.weightedTotalColumn();
+            for (int module = 0; module < MarkTable.MODULECOUNT; ++module) {
+                byte[] column = table.column(module);
+                int[] histogram = histograms[module];
+                for (int row = from; row < to; ++row) {
+                    if (grades[row] != MarkTable.NOGRADE) {
+                        int mark = checkMark(column[row]);
+                        histogram[mark]++;
+                    }
+                }
+            }
+            for (int row = from; row < to; ++row) {
+                byte grade = grades[row];
+                gradeCounts[grade]++;
+                if (grade != MarkTable.NOGRADE) {
+                    totals[rowTotals[row]]++;
+                    passedAll += table.allAtLeast(row, PASSMARK) ? 1 : 0;
+                }
+            }
+            students += to - from;
+            graded += to - from - countUngraded(grades, from, to);
+        }
+
+        private void addStudents(Student[] cohort, int from, int to) {
+            for (int i = from; i < to; ++i) {
+                Module module = cohort[i].getModule();
+                byte grade = MarkTable.gradeCodeOf(module.getGrade());
+                gradeCounts[grade]++;
+                students++;
+                if (grade == MarkTable.NOGRADE) {
+                    continue;
+                }
+                boolean passed = true;
+                for (int m = 0; m < MarkTable.MODULECOUNT; ++m) {
+                    int mark = checkMark(module.getMark(m));
+                    histograms[m][mark]++;
+                    passed &= mark >= PASSMARK;
+                }
+                totals[module.calculateWeightedTotal()]++;
+                graded++;
+                passedAll += passed ? 1 : 0;
+            }
+        }
+
+        private void merge(Counts other) {
+            for (int module = 0; module < MarkTable.MODULECOUNT; ++module) {
+                addAll(histograms[module], other.histograms[module]);
+            }
+            addAll(totals, other.totals);
+            addAll(gradeCounts, other.gradeCounts);
+            students += other.students;
+            graded += other.graded;
+            passedAll += other.passedAll;
+        }
+
+        private static int countUngraded(byte[] grades, int from, int to) {
+            int ungraded = 0;
+            for (int row = from; row < to; ++row) {
+                ungraded += grades[row] == MarkTable.NOGRADE ? 1 : 0;
+            }
+            return ungraded;
+        }
+
+        private static int checkMark(int mark) {
+            if (mark < 0 || mark > MarkTable.MAXMARK) {
+                throw new IllegalStateException("Mark out of range: " + mark);
+            }
+            return mark;
+        }
+
+        private static void addAll(int[] into, int[] from) {
+            for (int i = 0; i < into.length; ++i) {
+                into[i] += from[i];
+            }
+        }
+    }
+
+    /**
+     * Counts a range of rows or students, splitting it in halves until the ranges are small
+     * enough to count directly.
+     */
+    private static final class SummaryTask extends RecursiveTask<Counts> {
+        private static final long serialVersionUID = 1L;
+        private final MarkTable table;
+        private final Student[] students;
+        private final int from;
+        private final int to;
+
+        private SummaryTask(MarkTable table, Student[] students, int from, int to) {
+            this.table = table;
+            this.students = students;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Counts compute() {
+            if (to - from <= SPLITTHRESHOLD) {
+                return count();
+            }
+            int middle = (from + to) >>> 1;
+            SummaryTask lower = new SummaryTask(table, students, from, middle);
+            lower.fork();
+            Counts counts = new SummaryTask(table, students, middle, to).compute();
+            counts.merge(lower.join());
+            return counts;
+        }
+
+        /**
+         * Counts the whole range on the calling thread.
+         */
+        private Counts count() {
+            Counts counts = new Counts();
+            if (table != null) {
+                counts.addRows(table, from, to);
+            } else {
+                counts.addStudents(students, from, to);
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.Arrays;
+
+/**
+ * Keeps the cohort statistics up to date as students are registered, deleted and given marks.
+ * Registered as a MarkTable listener, it adjusts running counts as rows are added, removed or
+ * changed: the number of students, the number per grade, the number who passed every module,
+ * and, for every module, a histogram of the marks from 0 to 100, with a histogram of the
+ * credit-weighted totals alongside. The means, standard deviations and percentiles of a summary
+ * are read off the fixed-size histograms, so every summary query is answered in constant time,
+ * without scanning the students. Marks are only
+ * counted for rows whose marks have been set, in the same way as SummaryEngine.
+ */
+public class SummaryStatistics implements MarkTable.Listener {
+    /**
+     * The outcome of checking running statistics against a full rescan.
+     */
+    public enum Verification {
+        /** The running statistics match the rescan. */
+        MATCHED,
+        /** The running statistics differ from the rescan. */
+        MISMATCHED,
+        /** No running statistics are kept, so there is nothing to check. */
+        UNAVAILABLE
+    }
+
+    private static final int MAXTOTAL = MarkTable.MAXWEIGHTEDTOTAL;
+    private final int[][] histograms = new int[MarkTable.MODULECOUNT][MarkTable.MAXMARK + 1];
+    private final int[] totals = new int[MAXTOTAL + 1];
+    private final int[] gradeCounts = new int[MarkTable.DISTINCTION + 1];
+    private int studentCount;
+    private int passedAll;
+
+    /**
+     * Retrieves the number of students counted.
+     * @return the number of students
+     */
+    public int studentCount() {
+        return studentCount;
+    }
+
+    /**
+     * Retrieves the number of graded students who scored at least SummaryEngine.PASSMARK in every module.
+     * @return the number of students who passed every module
+     */
+    public int passedAllModules() {
+        return passedAll;
+    }
+
+    /**
+     * Retrieves the number of students with a grade.
+     * @param gradeCode one of NOGRADE, FAIL, PASS, MERIT or DISTINCTION
+     * @return the number of students with that grade
+     */
+    public int gradeCount(byte gradeCode) {
+        return gradeCounts[gradeCode];
+    }
+
+    /**
+     * Creates a summary of the cohort from the running counts.
+     * Only the fixed-size histograms are copied, so this takes the same time for any cohort size.
+     * The result is identical to SummaryEngine.summarize over the same students.
+     * @return the cohort statistics
+     */
+    public SummaryEngine.CohortSummary summary() {
+        int graded = studentCount - gradeCounts[MarkTable.NOGRADE];
+        SummaryEngine.ModuleStatistics[] modules = new SummaryEngine.ModuleStatistics[MarkTable.MODULECOUNT];
+        for (int module = 0; module < modules.length; ++module) {
+            modules[module] = new SummaryEngine.ModuleStatistics(graded, histograms[module].clone());
+        }
+        return new SummaryEngine.CohortSummary(studentCount, passedAll, gradeCounts.clone(), modules, totals.clone());
+    }
+
+    /**
+     * Checks the running counts against a full rescan of a mark table.
+     * This method performs the following steps:
+     * 1. Summarises every row of the table with SummaryEngine.
+     * 2. Compares the student, grade and pass counts and every histogram with the running counts.
+     * @param table the table this accumulator listens to
+     * @return true if every running count matches the rescan, false otherwise
+     */
+    public boolean verify(MarkTable table) {
+        SummaryEngine.CohortSummary rescan = SummaryEngine.summarize(table, false);
+        if (rescan.totalStudents() != studentCount || rescan.passedAllModules() != passedAll
+                || !Arrays.equals(rescan.gradeCounts(), gradeCounts) || !Arrays.equals(rescan.weightedTotalHistogram(), totals)) {
+            return false;
+        }
+        for (int module = 0; module < MarkTable.MODULECOUNT; ++module) {
+            if (!Arrays.equals(rescan.modules()[module].histogram(), histograms[module])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void rowAdded(MarkTable table, int row) {
+        count(table, row, 1);
+    }
+
+    @Override
+    public void rowRemoved(MarkTable table, int row) {
+        count(table, row, -1);
+    }
+
+    /**
+     * Recounts every row of the table after a bulk update.
+     */
+    @Override
+    public void tableRewritten(MarkTable table) {
+        for (int[] histogram : histograms) {
+            Arrays.fill(histogram, 0);
+        }
+        Arrays.fill(totals, 0);
+        Arrays.fill(gradeCounts, 0);
+        studentCount = 0;
+        passedAll = 0;
+        for (int row = 0; row < table.rowCount(); ++row) {
+            count(table, row, 1);
+        }
+    }
+
+    /**
+     * Adds a row to the counts, or takes it away.
+     * @param sign 1 to add the row, -1 to take it away
+     */
+    private void count(MarkTable table, int row, int sign) {
+        byte grade = table.gradeCode(row);
+        studentCount += sign;
+        gradeCounts[grade] += sign;
+        if (grade == MarkTable.NOGRADE) {
+            return;
+        }
+        boolean passed = true;
+        for (int module = 0; module < MarkTable.MODULECOUNT; ++module) {
+            int mark = table.mark(row, module);
+            histograms[module][mark] += sign;
+            passed &= mark >= SummaryEngine.PASSMARK;
+        }
+        totals[table.weightedTotal(row)] += sign;
+        if (passed) {
+            passedAll += sign;
+        }
+    }
+}
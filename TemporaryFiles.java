@@ -0,0 +1,56 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * Creates the temporary files that writers fill and then move over their target in one rename.
+ * Every call creates a file with a unique name next to the target, so concurrent writers of the
+ * same target never write into each other's file.
+ */
+public final class TemporaryFiles {
+    /**
+     * The permissions given to a temporary file whose target does not exist yet, which are the
+     * permissions a new file gets under the usual umask of 022.
+     */
+    private static final Set<PosixFilePermission> NEWFILEPERMISSIONS = PosixFilePermissions.fromString("rw-r--r--");
+
+    private TemporaryFiles() {
+    }
+
+    /**
+     * Creates an empty temporary file in the directory of a target file.
+     * Files.createTempFile makes the file readable by its owner only on POSIX file systems, so
+     * the file is given the permissions of the existing target, or those of a new file if there
+     * is none, and the target keeps its permissions when the temporary file replaces it.
+     * @param target the file the temporary file will replace
+     * @return the path of the new temporary file
+     * @throws IOException if the file cannot be created or its permissions cannot be set; no
+     *         file is left behind
+     */
+    public static Path createNextTo(Path target) throws IOException {
+        Path temporary = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName() + ".", ".tmp");
+        try {
+            PosixFileAttributeView view = Files.getFileAttributeView(temporary, PosixFileAttributeView.class);
+            if (view != null) {
+                view.setPermissions(permissionsOf(target));
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        return temporary;
+    }
+
+    private static Set<PosixFilePermission> permissionsOf(Path target) throws IOException {
+        try {
+            return Files.getPosixFilePermissions(target);
+        } catch (NoSuchFileException e) {
+            return NEWFILEPERMISSIONS;
+        }
+    }
+}
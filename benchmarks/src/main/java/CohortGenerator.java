@@ -0,0 +1,86 @@
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic cohorts of students for the benchmarks.
+ * Every student gets a distinct, valid "w#######" ID, a pronounceable name and a random mark
+ * from 0 to 100 in every module. The IDs are spread over the whole ID space rather than
+ * numbered in order: the i-th ID of a cohort is i times STRIDE modulo the number of IDs, and
+ * since STRIDE shares no factor with that number, the first 10,000,000 IDs are all different.
+ * The same size and seed always give the same cohort.
+ */
+public final class CohortGenerator {
+    /**
+     * The number of distinct student IDs, and so the largest cohort that can be generated.
+     */
+    public static final int MAXCOHORT = StudentId.MAXKEY + 1;
+    private static final int STRIDE = 7_654_321;
+    private static final String[] SYLLABLES = {
+            "an", "be", "ca", "di", "el", "fa", "go", "ha", "is", "jo", "ka", "li", "ma", "ne", "or",
+            "pa", "ri", "sa", "ta", "ul", "va", "ye", "za"
+    };
+
+    private CohortGenerator() {
+    }
+
+    /**
+     * Retrieves the ID of the i-th student of any generated cohort.
+     * IDs from index size onwards are not used by a cohort of that size, which makes them
+     * suitable for registering new students in a benchmark.
+     * @param index the position of the student, from 0 to MAXCOHORT - 1
+     * @return the student ID
+     */
+    public static String id(int index) {
+        return StudentId.format((int) ((long) index * STRIDE % MAXCOHORT));
+    }
+
+    /**
+     * Generates a cohort of students with marks.
+     * @param size the number of students, from 0 to MAXCOHORT
+     * @param seed the seed of the names and marks
+     * @return the students, in generation order
+     */
+    public static Student[] generate(int size, long seed) {
+        if (size < 0 || size > MAXCOHORT) {
+            throw new IllegalArgumentException("Cohort size must be from 0 to " + MAXCOHORT + ": " + size);
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        Student[] students = new Student[size];
+        int[] marks = new int[MarkTable.MODULECOUNT];
+        for (int i = 0; i < size; ++i) {
+            students[i] = new Student(id(i), name(random));
+            for (int module = 0; module < marks.length; ++module) {
+                marks[module] = random.nextInt(MarkTable.MAXMARK + 1);
+            }
+            students[i].getModule().setModuleMarks(marks);
+        }
+        return students;
+    }
+
+    /**
+     * Generates a cohort and registers it in a new repository.
+     * @param size the number of students
+     * @param spareSeats the number of seats to leave free for registrations
+     * @param seed the seed of the names and marks
+     * @return the repository holding the cohort
+     */
+    public static HashStudentRepository populate(int size, int spareSeats, long seed) {
+        HashStudentRepository repository = new HashStudentRepository(size + spareSeats);
+        for (Student student : generate(size, seed)) {
+            repository.add(student);
+        }
+        return repository;
+    }
+
+    /**
+     * Builds a name of two to four syllables with a capital first letter.
+     */
+    private static String name(SplittableRandom random) {
+        StringBuilder name = new StringBuilder(8);
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; ++i) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * Keeps the original ranking of the Student Management System as a baseline for the benchmarks.
+ * The application used to sort students for its report and text file with this bubble sort,
+ * recomputing both averages on every comparison. It was replaced by RankingEngine and the
+ * Leaderboard, and is kept here unchanged so that they can be measured against it.
+ */
+public final class LegacyRanking {
+
+    private LegacyRanking() {
+    }
+
+    /**
+     * Sorts an array of Student objects based on their average marks in descending order.
+     * This method uses the bubble sort algorithm to sort the array of students by their average marks.
+     * @param students the array of Student objects to be sorted
+     */
+    public static void bubbleSortByAverage(Student[] students) {
+        int n = students.length;
+        for (int i = 0; i < n - 1; i++) {
+            for (int j = 0; j < n - i - 1; j++) {
+                Module module1 = students[j].getModule();
+                Module module2 = students[j + 1].getModule();
+                double average1 = module1.calculateAverage();
+                double average2 = module2.calculateAverage();
+                if (average1 < average2) {
+                    Student temp = students[j];
+                    students[j] = students[j + 1];
+                    students[j + 1] = temp;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+import bench.Workload;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Provides the workloads measured by the benchmarks, by name.
+ * Every workload generates its cohort with CohortGenerator from the same seed, so all of them
+ * measure the same students at a given cohort size.
+ */
+public final class Workloads {
+    private static final long SEED = 20240601L;
+
+    private Workloads() {
+    }
+
+    /**
+     * Creates a workload by name.
+     * @param name one of the workload names listed by the benchmark classes
+     * @return a new workload that has not been set up
+     * @throws IllegalArgumentException if no workload has that name
+     */
+    public static Workload create(String name) {
+        switch (name) {
+            case "find":
+                return new Find();
+            case "deleteAndRegister":
+                return new DeleteAndRegister();
+            case "bubbleSort":
+            case "mergeSort":
+            case "countingSort":
+                return new Sort(name);
+            case "leaderboard":
+                return new LeaderboardScan();
+            case "store":
+                return new Store();
+            case "load":
+                return new Load();
+            case "calculateAverage":
+            case "calculateGrade":
+                return new ModuleRead(name.equals("calculateGrade"));
+            case "summary":
+            case "statistics":
+            case "scan":
+            case "parallelScan":
+                return new Summary(name);
+            default:
+                throw new IllegalArgumentException("Unknown workload: " + name);
+        }
+    }
+
+    /**
+     * Looks up students by ID through the StudentService, cycling through the cohort.
+     */
+    private static final class Find implements Workload {
+        private StudentService service;
+        private String[] ids;
+        private int next;
+
+        @Override
+        public void setUp(int cohortSize) {
+            HashStudentRepository repository = CohortGenerator.populate(cohortSize, 0, SEED);
+            service = new StudentService(repository);
+            Student[] cohort = repository.toArray();
+            ids = new String[cohort.length];
+            for (int i = 0; i < cohort.length; ++i) {
+                ids[i] = cohort[i].getId();
+            }
+        }
+
+        @Override
+        public Object run() {
+            String id = ids[next];
+            next = next + 1 == ids.length ? 0 : next + 1;
+            return service.find(id);
+        }
+    }
+
+    /**
+     * Deletes a student and registers them again through the StudentService, cycling through
+     * the cohort. The cohort size stays constant, and this works even when the cohort uses
+     * every ID. A re-registered student has no marks, as after the menu's register option.
+     */
+    private static final class DeleteAndRegister implements Workload {
+        private StudentService service;
+        private Student[] cohort;
+        private int next;
+
+        @Override
+        public void setUp(int cohortSize) {
+            HashStudentRepository repository = CohortGenerator.populate(cohortSize, 0, SEED);
+            service = new StudentService(repository);
+            cohort = repository.toArray();
+        }
+
+        @Override
+        public Object run() {
+            Student student = cohort[next];
+            next = next + 1 == cohort.length ? 0 : next + 1;
+            service.delete(student.getId());
+            return service.register(student.getId(), student.getName());
+        }
+    }
+
+    /**
+     * Sorts a fresh copy of the cohort by average with the legacy bubble sort or RankingEngine.
+     */
+    private static final class Sort implements Workload {
+        private final String algorithm;
+        private Student[] cohort;
+
+        private Sort(String algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public void setUp(int cohortSize) {
+            cohort = CohortGenerator.populate(cohortSize, 0, SEED).toArray();
+        }
+
+        @Override
+        public Object run() {
+            switch (algorithm) {
+                case "bubbleSort":
+                    Student[] sorted = cohort.clone();
+                    LegacyRanking.bubbleSortByAverage(sorted);
+                    return sorted;
+                case "mergeSort":
+                    return RankingEngine.rankByAverage(cohort, RankingEngine.Mode.MERGE);
+                default:
+                    return RankingEngine.rankByAverage(cohort, RankingEngine.Mode.COUNTING);
+            }
+        }
+    }
+
+    /**
+     * Streams every student off the leaderboard, highest average first.
+     */
+    private static final class LeaderboardScan implements Workload {
+        private StudentService service;
+
+        @Override
+        public void setUp(int cohortSize) {
+            service = new StudentService(CohortGenerator.populate(cohortSize, 0, SEED));
+        }
+
+        @Override
+        public Object run() {
+            Student last = null;
+            for (Student student : service.studentsByAverage()) {
+                last = student;
+            }
+            return last;
+        }
+    }
+
+    /**
+     * Stores the cohort into a text file in rank order, as Store student details does.
+     */
+    private static final class Store implements Workload {
+        private StudentService service;
+        private Path directory;
+
+        @Override
+        public void setUp(int cohortSize) throws IOException {
+            service = new StudentService(CohortGenerator.populate(cohortSize, 0, SEED));
+            directory = Files.createTempDirectory("sms-store");
+        }
+
+        @Override
+        public Object run() throws IOException {
+            try (StudentExporter exporter = new StudentExporter(directory.resolve("studentDetails.txt"))) {
+                for (Student student : service.studentsByAverage()) {
+                    exporter.write(student);
+                }
+                return exporter.commit();
+            }
+        }
+
+        @Override
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(directory.resolve("studentDetails.txt"));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Loads a stored cohort into an empty repository, as Load student details does.
+     */
+    private static final class Load implements Workload {
+        private Path file;
+        private int cohortSize;
+
+        @Override
+        public void setUp(int cohortSize) throws IOException {
+            this.cohortSize = cohortSize;
+            StudentService service = new StudentService(CohortGenerator.populate(cohortSize, 0, SEED));
+            file = Files.createTempFile("sms-load", ".txt");
+            try (StudentExporter exporter = new StudentExporter(file)) {
+                for (Student student : service.studentsByAverage()) {
+                    exporter.write(student);
+                }
+                exporter.commit();
+            }
+        }
+
+        @Override
+        public Object run() throws IOException {
+            return StudentLoader.load(file, new HashStudentRepository(cohortSize));
+        }
+
+        @Override
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Reads the average of one student, or recalculates their grade, cycling through the cohort.
+     */
+    private static final class ModuleRead implements Workload {
+        private final boolean grade;
+        private Student[] cohort;
+        private int next;
+
+        private ModuleRead(boolean grade) {
+            this.grade = grade;
+        }
+
+        @Override
+        public void setUp(int cohortSize) {
+            cohort = CohortGenerator.populate(cohortSize, 0, SEED).toArray();
+        }
+
+        @Override
+        public Object run() {
+            Module module = cohort[next].getModule();
+            next = next + 1 == cohort.length ? 0 : next + 1;
+            if (grade) {
+                module.calculateGrade();
+                return module.getGrade();
+            }
+            return module.calculateAverage();
+        }
+    }
+
+    /**
+     * Computes the cohort summary from the running statistics or by rescanning the mark table.
+     */
+    private static final class Summary implements Workload {
+        private final String source;
+        private StudentService service;
+
+        private Summary(String source) {
+            this.source = source;
+        }
+
+        @Override
+        public void setUp(int cohortSize) {
+            service = new StudentService(CohortGenerator.populate(cohortSize, 0, SEED));
+        }
+
+        @Override
+        public Object run() {
+            switch (source) {
+                case "summary":
+                    return service.summary();
+                case "statistics":
+                    return service.statistics();
+                case "scan":
+                    return SummaryEngine.summarize(service.repository(), false);
+                default:
+                    return SummaryEngine.summarize(service.repository(), true);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the original bubble sort by average against the merge sort of RankingEngine.
+ * The bubble sort is quadratic, so it is only measured on small cohorts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LegacySortBenchmark extends WorkloadBenchmark {
+    @Param({"bubbleSort", "mergeSort"})
+    public String workload;
+    @Param({"100", "1000", "10000"})
+    public int cohortSize;
+
+    @Override
+    protected String workloadName() {
+        return workload;
+    }
+
+    @Override
+    protected int cohortSize() {
+        return cohortSize;
+    }
+}
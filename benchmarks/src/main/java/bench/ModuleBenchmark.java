@@ -0,0 +1,33 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures reading the average of one student and recalculating a grade, cycling through the
+ * students of the cohort so that the reads are not all served from one cache line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModuleBenchmark extends WorkloadBenchmark {
+    @Param({"calculateAverage", "calculateGrade"})
+    public String workload;
+    @Param({"100", "10000", "1000000"})
+    public int cohortSize;
+
+    @Override
+    protected String workloadName() {
+        return workload;
+    }
+
+    @Override
+    protected int cohortSize() {
+        return cohortSize;
+    }
+}
@@ -0,0 +1,34 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures storing the cohort into studentDetails.txt format and loading it back into an empty
+ * repository. A cohort of ten million students makes a file of about a gigabyte; add it with
+ * -p cohortSize=10000000 when the disk and heap allow.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PersistenceBenchmark extends WorkloadBenchmark {
+    @Param({"store", "load"})
+    public String workload;
+    @Param({"100", "10000", "1000000"})
+    public int cohortSize;
+
+    @Override
+    protected String workloadName() {
+        return workload;
+    }
+
+    @Override
+    protected int cohortSize() {
+        return cohortSize;
+    }
+}
@@ -0,0 +1,33 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures ranking the whole cohort by average: the merge and counting sorts of RankingEngine,
+ * which sort a fresh copy of the cohort, against streaming the students off the maintained leaderboard.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RankingBenchmark extends WorkloadBenchmark {
+    @Param({"mergeSort", "countingSort", "leaderboard"})
+    public String workload;
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int cohortSize;
+
+    @Override
+    protected String workloadName() {
+        return workload;
+    }
+
+    @Override
+    protected int cohortSize() {
+        return cohortSize;
+    }
+}
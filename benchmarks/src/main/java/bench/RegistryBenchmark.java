@@ -0,0 +1,33 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures looking up one student, and deleting and registering one student again, as the
+ * find, delete and register menu options do, in cohorts of up to ten million students.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RegistryBenchmark extends WorkloadBenchmark {
+    @Param({"find", "deleteAndRegister"})
+    public String workload;
+    @Param({"100", "10000", "1000000", "10000000"})
+    public int cohortSize;
+
+    @Override
+    protected String workloadName() {
+        return workload;
+    }
+
+    @Override
+    protected int cohortSize() {
+        return cohortSize;
+    }
+}
@@ -0,0 +1,42 @@
+package bench;
+
+/**
+ * Represents one operation of the Student Management System measured by a benchmark.
+ * JMH only accepts benchmarks in a named package, while the application classes live in the
+ * default package, which named packages cannot refer to. The workloads are therefore written
+ * in the default package against this interface and looked up by name once per trial; the
+ * measured call is then an ordinary interface call with a single implementation.
+ */
+public interface Workload {
+
+    /**
+     * Prepares the workload, for example by generating and registering a cohort.
+     * @param cohortSize the number of registered students
+     * @throws Exception if the workload cannot be prepared
+     */
+    void setUp(int cohortSize) throws Exception;
+
+    /**
+     * Runs the operation once.
+     * @return a result of the operation, consumed by JMH so that it is not optimised away
+     * @throws Exception if the operation fails
+     */
+    Object run() throws Exception;
+
+    /**
+     * Releases whatever setUp acquired, such as temporary files.
+     * @throws Exception if the resources cannot be released
+     */
+    default void tearDown() throws Exception {
+    }
+
+    /**
+     * Creates a workload by name, through the default-package class Workloads.
+     * @param name the name of the workload
+     * @return a new workload that has not been set up
+     * @throws ReflectiveOperationException if Workloads cannot be reached
+     */
+    static Workload create(String name) throws ReflectiveOperationException {
+        return (Workload) Class.forName("Workloads").getMethod("create", String.class).invoke(null, name);
+    }
+}
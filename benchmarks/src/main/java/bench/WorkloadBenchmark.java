@@ -0,0 +1,56 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Runs a named workload at a given cohort size.
+ * Each subclass declares the workloads and cohort sizes it covers as JMH parameters, along
+ * with its benchmark mode and time unit, and inherits the measured method.
+ */
+public abstract class WorkloadBenchmark {
+    private Workload target;
+
+    /**
+     * Retrieves the name of the workload to run, from the subclass's parameters.
+     * @return the workload name
+     */
+    protected abstract String workloadName();
+
+    /**
+     * Retrieves the number of registered students, from the subclass's parameters.
+     * @return the cohort size
+     */
+    protected abstract int cohortSize();
+
+    /**
+     * Creates and prepares the workload once per trial.
+     * @throws Exception if the workload cannot be prepared
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        target = Workload.create(workloadName());
+        target.setUp(cohortSize());
+    }
+
+    /**
+     * Releases the workload after the trial.
+     * @throws Exception if the workload cannot be released
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        target.tearDown();
+    }
+
+    /**
+     * Runs the workload once.
+     * @return the result of the workload
+     * @throws Exception if the workload fails
+     */
+    @Benchmark
+    public Object run() throws Exception {
+        return target.run();
+    }
+}
@@ -0,0 +1,119 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks BPlusTree against a TreeMap: enough entries are inserted into a bulk-loaded tree that
+ * leaves and inner nodes split and the root grows, and lookups and range scans must still find
+ * exactly the entries of the map, also after the file is closed and opened again.
+ */
+class BPlusTreeTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void insertsSplitPagesAndKeepEveryEntry() throws IOException {
+        Path file = directory.resolve("tree.idx");
+        TreeMap<Long, Integer> expected = new TreeMap<>();
+        long[] keys = new long[1_000];
+        int[] values = new int[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = i * 1_000L;
+            values[i] = i;
+            expected.put(keys[i], values[i]);
+        }
+        Random random = new Random(9);
+        try (BPlusTree tree = BPlusTree.bulkLoad(file, keys, values, keys.length, 1)) {
+            for (int step = 0; step < 150_000; ++step) {
+                long key = random.nextInt(2_000_000);
+                if (random.nextInt(5) == 0) {
+                    assertEquals(expected.remove(key) != null, tree.remove(key));
+                } else {
+                    int value = random.nextInt();
+                    assertEquals(expected.put(key, value) == null, tree.put(key, value));
+                }
+            }
+            assertEquals(expected.size(), tree.size());
+            assertFalse(tree.isClean());
+            checkContents(tree, expected, random);
+        }
+        try (BPlusTree reopened = BPlusTree.open(file)) {
+            assertTrue(reopened.isClean());
+            assertEquals(1, reopened.stamp());
+            checkContents(reopened, expected, random);
+        }
+    }
+
+    @Test
+    void bulkLoadSpansSeveralLevels() throws IOException {
+        int count = 500_000;
+        long[] keys = new long[count];
+        int[] values = new int[count];
+        for (int i = 0; i < count; ++i) {
+            keys[i] = 3L * i;
+            values[i] = -i;
+        }
+        try (BPlusTree tree = BPlusTree.bulkLoad(directory.resolve("bulk.idx"), keys, values, count, 7)) {
+            assertEquals(count, tree.size());
+            assertEquals(-12_345, tree.get(3L * 12_345));
+            assertEquals(BPlusTree.MISSING, tree.get(3L * 12_345 + 1));
+            BPlusTree.Cursor cursor = tree.range(-5, 10);
+            for (long key = 0; key <= 9; key += 3) {
+                assertTrue(cursor.next());
+                assertEquals(key, cursor.key());
+            }
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    void failedBulkLoadLeavesNoTemporaryFile() throws IOException {
+        Path file = directory.resolve("tree.idx");
+        long[] keys = {1, 2, 3, 4};
+        BPlusTree.bulkLoad(file, keys, new int[] {10, 20, 30, 40}, keys.length, 1).close();
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> BPlusTree.bulkLoad(file, keys, new int[2], keys.length, 2));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(file), files.toList());
+        }
+        try (BPlusTree tree = BPlusTree.open(file)) {
+            assertEquals(1, tree.stamp());
+            assertEquals(30, tree.get(3));
+        }
+    }
+
+    private static void checkContents(BPlusTree tree, TreeMap<Long, Integer> expected, Random random) throws IOException {
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), tree.get(entry.getKey()));
+        }
+        assertEquals(BPlusTree.MISSING, tree.get(-1));
+        for (int query = 0; query < 200; ++query) {
+            long from = random.nextInt(2_100_000) - 50_000;
+            long to = from + random.nextInt(40_000);
+            BPlusTree.Cursor cursor = tree.range(from, to);
+            for (Map.Entry<Long, Integer> entry : expected.subMap(from, true, to, true).entrySet()) {
+                assertTrue(cursor.next(), "range " + from + " to " + to);
+                assertEquals(entry.getKey(), cursor.key());
+                assertEquals(entry.getValue(), cursor.value());
+            }
+            assertFalse(cursor.next());
+        }
+        BPlusTree.Cursor all = tree.range(Long.MIN_VALUE, Long.MAX_VALUE);
+        int seen = 0;
+        while (all.next()) {
+            seen++;
+        }
+        assertEquals(expected.size(), seen);
+    }
+}
@@ -0,0 +1,152 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a BatchRunner applies a script in order, writes one line for each command that
+ * fails, and counts the commands it ran, including scripts longer than one batch and mark
+ * updates that cannot be saved.
+ */
+class BatchRunnerTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void appliesTheScriptAndReportsEachFailure() throws IOException {
+        HashStudentRepository repository = new HashStudentRepository(3);
+        Path file = directory.resolve("students.txt");
+        String script = String.join("\n",
+                "# register the cohort",
+                "register w0000001 Ann Lee",
+                "register w0000002 Ben",
+                "",
+                "register w0000001 Again",
+                "register x0000003 Cara",
+                "register w0000003 Cara, Module 1: 5",
+                "register w0000004",
+                "set-marks w0000001 " + marks(70),
+                "set-marks w0000002 " + marks(45),
+                "set-marks w0000009 " + marks(50),
+                "set-marks w0000002 " + marks(101),
+                "set-marks w0000002 50",
+                "rename w0000002 Bea",
+                "delete w0000009",
+                "delete w0000001 now",
+                "fly w0000001",
+                "report name",
+                "report sideways",
+                "store",
+                "register w0000005 Dan",
+                "register w0000006 Eve",
+                "register w0000007 Fay",
+                "delete w0000005",
+                "load " + file);
+        StringWriter output = new StringWriter();
+        BatchRunner.Result result = new BatchRunner(new StudentService(repository), file)
+                .run(new StringReader(script), output);
+
+        List<String> lines = List.of(output.toString().split(System.lineSeparator()));
+        List<String> expected = List.of(
+                "Line 5: student w0000001 is already registered",
+                "Line 6: invalid student ID x0000003",
+                "Line 7: name Cara, Module 1: 5 cannot be stored",
+                "Line 8: missing name",
+                "Line 11: student w0000009 is not registered",
+                "Line 12: invalid mark 101",
+                "Line 13: expected " + MarkTable.MODULECOUNT + " marks",
+                "Line 15: student w0000009 is not registered",
+                "Line 16: unexpected text after student ID",
+                "Line 17: unknown command fly");
+        assertEquals(expected, lines.subList(0, expected.size()));
+        List<String> report = lines.subList(expected.size(), expected.size() + 2);
+        assertTrue(report.get(0).contains("Ann Lee"), report.get(0));
+        assertTrue(report.get(1).contains("Bea"), report.get(1));
+        assertEquals(List.of(
+                "Line 19: report order must be average or name",
+                "Line 20: stored 2 students into " + file,
+                "Line 22: no seats available for student w0000006",
+                "Line 23: no seats available for student w0000007",
+                file + ": Line 1: student w0000001 is already registered",
+                file + ": Line 2: student w0000002 is already registered",
+                "Line 25: loaded 0 students from " + file + ", skipped 2 already registered and 0 malformed lines",
+                "Ran 23 commands: 10 applied, 13 failed."), lines.subList(expected.size() + 2, lines.size()));
+        assertEquals(new BatchRunner.Result(23, 10, 13), result);
+
+        assertEquals(2, repository.size());
+        assertEquals("Bea", repository.find("w0000002").getName());
+        assertArrayEquals(filled(70), repository.find("w0000001").getModule().getModuleMarks());
+        assertArrayEquals(filled(45), repository.find("w0000002").getModule().getModuleMarks());
+        assertFalse(repository.contains("w0000005"));
+    }
+
+    @Test
+    void runsScriptsLongerThanOneBatch() throws IOException {
+        HashStudentRepository repository = new HashStudentRepository(5_000);
+        Cohorts.fill(repository, 5_000, 4);
+        Student[] students = repository.toArray();
+        Random random = new Random(4);
+        StringBuilder script = new StringBuilder();
+        int[][] expected = new int[students.length][];
+        for (int i = 0; i < students.length; ++i) {
+            expected[i] = Cohorts.randomMarks(random);
+            script.append("set-marks ").append(students[i].getId());
+            for (int mark : expected[i]) {
+                script.append(' ').append(mark);
+            }
+            script.append(i % 1_000 == 0 ? "\r\n" : "\n");
+        }
+        StringWriter output = new StringWriter();
+        BatchRunner.Result result = new BatchRunner(new StudentService(repository), directory.resolve("students.txt"))
+                .run(new StringReader(script.toString()), output);
+        assertEquals(new BatchRunner.Result(students.length, students.length, 0), result);
+        assertEquals("Ran 5000 commands: 5000 applied, 0 failed." + System.lineSeparator(), output.toString());
+        for (int i = 0; i < students.length; ++i) {
+            assertArrayEquals(expected[i], repository.find(students[i].getId()).getModule().getModuleMarks());
+        }
+    }
+
+    @Test
+    void marksThatCannotBeSavedAreReported() throws IOException {
+        HashStudentRepository repository = new HashStudentRepository(10) {
+            @Override
+            public int setMarks(int[] keys, int[][] moduleMarks, int count, boolean[] applied) {
+                throw new UncheckedIOException(new IOException("disk full"));
+            }
+        };
+        String script = "register w0000001 Ann\nset-marks w0000001 " + marks(60) + "\nset-marks w0000002 " + marks(60) + "\n";
+        StringWriter output = new StringWriter();
+        BatchRunner.Result result = new BatchRunner(new StudentService(repository), directory.resolve("students.txt"))
+                .run(new StringReader(script), output);
+        assertEquals(new BatchRunner.Result(3, 1, 2), result);
+        assertEquals(List.of(
+                "Line 2: the change to student w0000001 could not be saved",
+                "Line 3: the change to student w0000002 could not be saved",
+                "Ran 3 commands: 1 applied, 2 failed."), List.of(output.toString().split(System.lineSeparator())));
+    }
+
+    private static int[] filled(int mark) {
+        int[] marks = new int[MarkTable.MODULECOUNT];
+        Arrays.fill(marks, mark);
+        return marks;
+    }
+
+    private static String marks(int mark) {
+        StringBuilder text = new StringBuilder();
+        for (int value : filled(mark)) {
+            text.append(text.length() == 0 ? "" : " ").append(value);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.Random;
+
+/**
+ * Builds random cohorts for the tests, from a seed so that every run sees the same students.
+ */
+final class Cohorts {
+    private static final String[] NAMES = {"Ann", "anna", "Annabel", "Ben", "Bea", "Cara", "carl", "Dan", "Eve", "Zoe"};
+
+    private Cohorts() {
+    }
+
+    /**
+     * Draws one mark per module, each from 0 to 100.
+     * @param random the source of randomness
+     * @return the marks
+     */
+    static int[] randomMarks(Random random) {
+        int[] marks = new int[MarkTable.MODULECOUNT];
+        for (int module = 0; module < marks.length; ++module) {
+            marks[module] = random.nextInt(MarkTable.MAXMARK + 1);
+        }
+        return marks;
+    }
+
+    /**
+     * Registers random students, with shared names and averages so that every ordering has ties
+     * to break, and leaves about one in ten of them without marks.
+     * @param repository the repository to register the students in
+     * @param count the number of students
+     * @param seed the seed of the cohort
+     */
+    static void fill(StudentRepository repository, int count, long seed) {
+        Random random = new Random(seed);
+        for (int added = 0; added < count; ) {
+            Student student = new Student(StudentId.format(1_000_000 + random.nextInt(9_000_000)),
+                    NAMES[random.nextInt(NAMES.length)] + (random.nextInt(4) == 0 ? "" : random.nextInt(50)));
+            if (random.nextInt(10) != 0) {
+                student.getModule().setModuleMarks(randomMarks(random));
+            }
+            if (repository.add(student)) {
+                added++;
+            }
+        }
+    }
+}
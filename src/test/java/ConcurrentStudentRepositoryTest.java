@@ -0,0 +1,67 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the snapshots of a ConcurrentStudentRepository keep seeing the students as they
+ * were when opened, and that the versions kept for them are reclaimed once they close.
+ */
+class ConcurrentStudentRepositoryTest {
+    private static final int KEY = StudentId.parse("w1234567");
+
+    @Test
+    void snapshotKeepsOldVersionsUntilClosed() {
+        ConcurrentStudentRepository repository = new ConcurrentStudentRepository(10);
+        repository.add(new Student("w1234567", "Ann"));
+        assertEquals(1, repository.versionCount(KEY));
+
+        ConcurrentStudentRepository.Snapshot snapshot = repository.snapshot();
+        repository.rename(KEY, "Anna");
+        repository.setMarks(KEY, marks(60));
+        repository.rename(KEY, "Annabel");
+        assertEquals(4, repository.versionCount(KEY));
+        assertEquals("Ann", snapshot.find(KEY).getName());
+        assertNull(snapshot.find(KEY).getModule().getGrade());
+        assertEquals("Annabel", repository.find(KEY).getName());
+
+        ConcurrentStudentRepository.Snapshot later = repository.snapshot();
+        repository.setMarks(KEY, marks(80));
+        snapshot.close();
+        assertEquals(2, repository.versionCount(KEY));
+        assertEquals(60 * MarkTable.MODULECOUNT, later.find(KEY).getModule().calculateTotal());
+        later.close();
+        assertEquals(1, repository.versionCount(KEY));
+        assertEquals(80 * MarkTable.MODULECOUNT, repository.find(KEY).getModule().calculateTotal());
+    }
+
+    @Test
+    void deletedStudentIsReclaimed() {
+        ConcurrentStudentRepository repository = new ConcurrentStudentRepository(10);
+        repository.add(new Student("w1234567", "Ann"));
+        repository.add(new Student("w7654321", "Ben"));
+
+        ConcurrentStudentRepository.Snapshot snapshot = repository.snapshot();
+        assertNotNull(repository.remove(KEY));
+        assertEquals(2, repository.versionCount(KEY));
+        assertEquals(2, snapshot.size());
+        assertEquals("Ann", snapshot.find(KEY).getName());
+        assertEquals(1, repository.size());
+        snapshot.close();
+        assertEquals(0, repository.versionCount(KEY));
+        assertNull(repository.find(KEY));
+
+        repository.add(new Student("w1234567", "Ann"));
+        assertNotNull(repository.remove(KEY));
+        assertEquals(0, repository.versionCount(KEY));
+        assertEquals(1, repository.toArray().length);
+    }
+
+    private static int[] marks(int mark) {
+        int[] marks = new int[MarkTable.MODULECOUNT];
+        Arrays.fill(marks, mark);
+        return marks;
+    }
+}
@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a DiskStudentRepository drops a record torn at the end of its delta file, and that
+ * the range queries it answers from its B+-tree indexes list the same students in the same order
+ * as the sort-and-filter path of an in-memory repository.
+ */
+class DiskStudentRepositoryTest {
+    private static final int CAPACITY = 10_000;
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornDeltaRecordIsDropped() throws IOException {
+        Path snapshot = directory.resolve("students.bin");
+        Path delta = directory.resolve("students.delta");
+        long completeLength;
+        long fullLength;
+        try (DiskStudentRepository repository = open(snapshot, delta)) {
+            Cohorts.fill(repository, 20, 1);
+            repository.flush();
+            completeLength = Files.size(delta);
+            Student last = new Student("w0000001", "Last");
+            last.getModule().setModuleMarks(Cohorts.randomMarks(new Random(2)));
+            repository.add(last);
+            repository.flush();
+            fullLength = Files.size(delta);
+        }
+        assertTrue(fullLength > completeLength + 1);
+        for (long tear = completeLength + 1; tear < fullLength; tear += 3) {
+            try (FileChannel channel = FileChannel.open(delta, StandardOpenOption.WRITE)) {
+                channel.truncate(tear);
+            }
+            try (DiskStudentRepository repository = open(snapshot, delta)) {
+                assertEquals(20, repository.size(), "tear at " + tear);
+                assertNull(repository.find("w0000001"));
+                assertEquals(completeLength, Files.size(delta));
+                assertEquals(20, repository.toArray().length);
+            }
+        }
+        try (DiskStudentRepository repository = open(snapshot, delta)) {
+            repository.add(new Student("w0000001", "Last"));
+        }
+        try (DiskStudentRepository repository = open(snapshot, delta)) {
+            assertEquals(21, repository.size());
+            assertNotNull(repository.find("w0000001"));
+        }
+    }
+
+    @Test
+    void indexedRangesMatchTheSortedScan() throws IOException {
+        HashStudentRepository memory = new HashStudentRepository(CAPACITY);
+        Cohorts.fill(memory, 2_000, 4);
+        StudentService baseline = new StudentService(memory);
+        try (DiskStudentRepository repository = open(directory.resolve("students.bin"), directory.resolve("students.delta"))) {
+            for (Student student : memory.toArray()) {
+                Student copy = new Student(student.getId(), student.getName());
+                if (student.getModule().getGrade() != null) {
+                    copy.getModule().setModuleMarks(marksOf(student));
+                }
+                repository.add(copy);
+            }
+            repository.compact();
+            StudentService service = new StudentService(repository);
+            int[][] idRanges = {{1_000_000, 9_999_999}, {2_000_000, 2_999_999}, {5_500_000, 5_500_000}};
+            for (int[] range : idRanges) {
+                assertArrayEquals(ids(baseline.studentsWithIdBetween(range[0], range[1], 0, CAPACITY)),
+                        ids(service.studentsWithIdBetween(range[0], range[1], 0, CAPACITY)));
+                assertArrayEquals(ids(baseline.studentsWithIdBetween(range[0], range[1], 17, 40)),
+                        ids(service.studentsWithIdBetween(range[0], range[1], 17, 40)));
+            }
+            double[][] averageRanges = {{0, 100}, {40, 70}, {66.5, 66.8}, {90, 10}};
+            for (double[] range : averageRanges) {
+                assertArrayEquals(ids(baseline.studentsWithAverageBetween(range[0], range[1], 0, CAPACITY)),
+                        ids(service.studentsWithAverageBetween(range[0], range[1], 0, CAPACITY)),
+                        "averages " + range[0] + " to " + range[1]);
+            }
+        }
+    }
+
+    private DiskStudentRepository open(Path snapshot, Path delta) throws IOException {
+        return new DiskStudentRepository(snapshot, delta, CAPACITY, 4, StudentCache.Policy.LRU);
+    }
+
+    private static int[] marksOf(Student student) {
+        int[] marks = new int[MarkTable.MODULECOUNT];
+        Arrays.setAll(marks, module -> student.getModule().getMark(module));
+        return marks;
+    }
+
+    private static String[] ids(Student[] students) {
+        return Arrays.stream(students).map(Student::getId).toArray(String[]::new);
+    }
+}
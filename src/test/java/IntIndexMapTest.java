@@ -0,0 +1,73 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks IntIndexMap against a HashMap, with enough removals that backward-shift deletion moves
+ * entries across long probe chains and around the end of the table.
+ */
+class IntIndexMapTest {
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        Random random = new Random(42);
+        IntIndexMap map = new IntIndexMap(16);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int step = 0; step < 200_000; ++step) {
+            int key = random.nextInt(2_000);
+            int value = random.nextInt(1_000_000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.getOrDefault(key, IntIndexMap.MISSING), map.put(key, value));
+                    expected.put(key, value);
+                    break;
+                case 1:
+                    Integer removed = expected.remove(key);
+                    assertEquals(removed == null ? IntIndexMap.MISSING : removed, map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.getOrDefault(key, IntIndexMap.MISSING), map.get(key));
+                    break;
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = 0; key < 2_000; ++key) {
+            assertEquals(expected.getOrDefault(key, IntIndexMap.MISSING), map.get(key));
+        }
+    }
+
+    @Test
+    void removalKeepsTheRestOfAFullTableReachable() {
+        IntIndexMap map = new IntIndexMap(1_000);
+        int count = 700;
+        for (int key = 0; key < count; ++key) {
+            map.put(key * 64, key);
+        }
+        for (int removed = 0; removed < count; removed += 2) {
+            assertEquals(removed, map.remove(removed * 64));
+            for (int key = removed + 1; key < count; ++key) {
+                if (key % 2 == 1 || key > removed) {
+                    assertEquals(key, map.get(key * 64), "key " + key * 64 + " after removing " + removed * 64);
+                }
+            }
+        }
+        assertEquals(count / 2, map.size());
+    }
+
+    @Test
+    void negativeKeysAreMissing() {
+        IntIndexMap map = new IntIndexMap(4);
+        map.put(0, 7);
+        assertEquals(IntIndexMap.MISSING, map.get(-1));
+        assertEquals(IntIndexMap.MISSING, map.remove(-1));
+        assertFalse(map.containsKey(-5));
+        assertTrue(map.containsKey(0));
+        assertThrows(IllegalArgumentException.class, () -> map.put(-1, 1));
+    }
+}
@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the Leaderboard treap against a list sorted by weighted total, highest first, with equal
+ * totals in ascending ID order, after random adds, updates and removals and after a bulk rebuild.
+ */
+class LeaderboardTest {
+
+    @Test
+    void ranksMatchASortedList() {
+        Random random = new Random(7);
+        Leaderboard leaderboard = new Leaderboard();
+        Map<Integer, Integer> totals = new HashMap<>();
+        for (int step = 0; step < 20_000; ++step) {
+            int key = random.nextInt(3_000);
+            if (random.nextInt(4) == 0) {
+                assertEquals(totals.remove(key) != null, leaderboard.remove(key));
+            } else {
+                int total = random.nextInt(MarkTable.MAXWEIGHTEDTOTAL + 1);
+                leaderboard.add(key, total);
+                totals.put(key, total);
+            }
+        }
+        List<Integer> ranked = ranked(totals);
+        assertEquals(ranked.size(), leaderboard.size());
+        for (int rank = 0; rank < ranked.size(); ++rank) {
+            assertEquals(ranked.get(rank), leaderboard.keyAt(rank));
+            assertEquals(rank, leaderboard.rankOf(ranked.get(rank)));
+        }
+        assertEquals(-1, leaderboard.rankOf(3_000));
+        int from = ranked.size() / 3;
+        PrimitiveIterator.OfInt iterator = leaderboard.iterator(from);
+        for (int rank = from; rank < ranked.size(); ++rank) {
+            assertEquals(ranked.get(rank), iterator.nextInt());
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void averageRangesMatchAFilteredList() {
+        Random random = new Random(11);
+        Leaderboard leaderboard = new Leaderboard();
+        Map<Integer, Integer> totals = new HashMap<>();
+        for (int key = 0; key < 5_000; ++key) {
+            int total = random.nextInt(MarkTable.MAXWEIGHTEDTOTAL + 1);
+            leaderboard.add(key, total);
+            totals.put(key, total);
+        }
+        List<Integer> ranked = ranked(totals);
+        double[][] ranges = {{0, 100}, {40, 70}, {69.99, 70.01}, {55.5, 55.5}, {80, 20}, {100, 100}};
+        for (double[] range : ranges) {
+            List<Integer> expected = new ArrayList<>();
+            for (int key : ranked) {
+                double average = MarkTable.averageOf(totals.get(key));
+                if (average >= range[0] && average <= range[1]) {
+                    expected.add(key);
+                }
+            }
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(),
+                    leaderboard.inAverageRange(range[0], range[1]), "averages " + range[0] + " to " + range[1]);
+        }
+    }
+
+    @Test
+    void rebuildMatchesIncrementalAdds() {
+        MarkTable table = new MarkTable(64);
+        Leaderboard incremental = new Leaderboard();
+        Random random = new Random(3);
+        for (int key = 0; key < 500; ++key) {
+            int row = table.addRow(key);
+            table.setMarks(row, Cohorts.randomMarks(random));
+            incremental.add(key, table.weightedTotal(row));
+        }
+        Leaderboard rebuilt = new Leaderboard();
+        rebuilt.rebuild(table);
+        assertEquals(incremental.size(), rebuilt.size());
+        for (int rank = 0; rank < incremental.size(); ++rank) {
+            assertEquals(incremental.keyAt(rank), rebuilt.keyAt(rank));
+        }
+    }
+
+    private static List<Integer> ranked(Map<Integer, Integer> totals) {
+        List<Integer> keys = new ArrayList<>(totals.keySet());
+        keys.sort(Comparator.comparing((Integer key) -> -totals.get(key)).thenComparing(key -> key));
+        return keys;
+    }
+}
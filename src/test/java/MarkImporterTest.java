@@ -0,0 +1,130 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks MarkImporter against a line-by-line reading of a mark sheet several chunks long, with rows
+ * that straddle the chunk boundaries, a header row, invalid and unregistered rows and students
+ * listed more than once, and checks that an import stopped by a failed save keeps the batches
+ * before it and reports the lines of the batch that failed.
+ */
+class MarkImporterTest {
+    private static final int STUDENTS = 500;
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void matchesALineByLineReading(int parallelism) throws IOException {
+        Random random = new Random(6);
+        StringBuilder sheet = new StringBuilder("ID, Module 1, Module 2, Module 3\r\n");
+        Map<String, int[]> expectedMarks = new HashMap<>();
+        List<String> expectedProblems = new ArrayList<>();
+        int expectedApplied = 0;
+        int line = 1;
+        while (sheet.length() < 3 * (1 << 20) + 1_000) {
+            line++;
+            String id = StudentId.format(random.nextInt(STUDENTS + 20));
+            int[] marks = Cohorts.randomMarks(random);
+            StringBuilder row = new StringBuilder(" ".repeat(random.nextInt(3))).append(id);
+            for (int mark : marks) {
+                row.append(random.nextBoolean() ? "," : " , ").append(mark);
+            }
+            switch (random.nextInt(40)) {
+                case 0:
+                    sheet.append(id).append(",1\n");
+                    expectedProblems.add("Line " + line + ": missing marks for module 2");
+                    continue;
+                case 1:
+                    sheet.append(row).append(",7\n");
+                    expectedProblems.add("Line " + line + ": expected " + MarkTable.MODULECOUNT + " marks but found more");
+                    continue;
+                case 2:
+                    sheet.append("w12x4567,1,2,3\n");
+                    expectedProblems.add("Line " + line + ": invalid student ID");
+                    continue;
+                case 3:
+                    sheet.append("\n");
+                    continue;
+                default:
+                    break;
+            }
+            sheet.append(row).append(random.nextBoolean() ? "\r\n" : "\n");
+            if (StudentId.parse(id) < STUDENTS) {
+                expectedMarks.put(id, marks);
+                expectedApplied++;
+            } else {
+                expectedProblems.add("Line " + line + ": student " + id + " is not registered");
+            }
+        }
+        Path file = directory.resolve("marks.csv");
+        Files.writeString(file, sheet, StandardCharsets.US_ASCII);
+
+        HashStudentRepository repository = registered(new HashStudentRepository(STUDENTS));
+        MarkImporter.Result result = MarkImporter.importMarks(file, repository, parallelism);
+        assertNull(result.failure());
+        assertEquals(expectedApplied, result.applied());
+        assertEquals(expectedProblems, result.problems());
+        assertEquals(expectedProblems.size(), result.notFound() + result.invalid());
+        for (Map.Entry<String, int[]> entry : expectedMarks.entrySet()) {
+            assertArrayEquals(entry.getValue(), repository.find(entry.getKey()).getModule().getModuleMarks(), entry.getKey());
+        }
+    }
+
+    @Test
+    void failedSaveKeepsTheBatchesBeforeIt() throws IOException {
+        StringBuilder sheet = new StringBuilder();
+        String row = ",50".repeat(MarkTable.MODULECOUNT) + "\n";
+        int rows = 0;
+        while (sheet.length() < 2 * (1 << 20) + 1_000) {
+            sheet.append(StudentId.format(rows++ % STUDENTS)).append(row);
+        }
+        Path file = directory.resolve("marks.csv");
+        Files.writeString(file, sheet, StandardCharsets.US_ASCII);
+        HashStudentRepository repository = registered(new HashStudentRepository(STUDENTS) {
+            private int batches;
+
+            @Override
+            public int setMarks(int[] keys, int[][] moduleMarks, int count, boolean[] applied) {
+                if (++batches == 2) {
+                    throw new UncheckedIOException(new IOException("disk full"));
+                }
+                return super.setMarks(keys, moduleMarks, count, applied);
+            }
+        });
+        MarkImporter.Result result = MarkImporter.importMarks(file, repository, 2);
+        MarkImporter.Failure failure = result.failure();
+        assertNotNull(failure);
+        assertEquals("disk full", failure.cause().getMessage());
+        // Every row has the same length, so every chunk holds as many whole rows as fit in 1 MiB.
+        int rowsPerBatch = (1 << 20) / (StudentId.format(0).length() + row.length());
+        assertEquals(rowsPerBatch, result.applied());
+        assertEquals(rowsPerBatch + 1, failure.fromLine());
+        assertEquals(2 * rowsPerBatch, failure.toLine());
+        assertTrue(result.problems().isEmpty());
+    }
+
+    private static HashStudentRepository registered(HashStudentRepository repository) {
+        for (int key = 0; key < STUDENTS; ++key) {
+            repository.add(new Student(StudentId.format(key), "Student " + key));
+        }
+        return repository;
+    }
+}
@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the NameIndex treap against a list sorted by NAMEORDER and then by ID, after random
+ * adds, renames and removals: paging, prefix search and the fuzzy search must pick the same
+ * students in the same order as a scan of the sorted list.
+ */
+class NameIndexTest {
+    private static final String[] STEMS = {"al", "Alan", "alana", "Bob", "bobby", "Chen", "chenoa", "Dee", "Émile", "zed"};
+
+    private record Entry(int key, String name) {
+    }
+
+    @Test
+    void searchesMatchASortedList() {
+        Random random = new Random(5);
+        NameIndex index = new NameIndex();
+        List<Entry> entries = new ArrayList<>();
+        for (int key = 0; key < 3_000; ++key) {
+            String name = STEMS[random.nextInt(STEMS.length)] + (random.nextBoolean() ? "" : Integer.toString(random.nextInt(30)));
+            index.add(key, name);
+            entries.add(new Entry(key, name));
+        }
+        for (int step = 0; step < 1_000; ++step) {
+            int position = random.nextInt(entries.size());
+            Entry entry = entries.get(position);
+            if (random.nextBoolean()) {
+                String newName = STEMS[random.nextInt(STEMS.length)] + random.nextInt(5);
+                index.rename(entry.key(), entry.name(), newName);
+                entries.set(position, new Entry(entry.key(), newName));
+            } else {
+                index.remove(entry.key(), entry.name());
+                entries.remove(position);
+            }
+        }
+        entries.sort(Comparator.comparing(Entry::name, NameIndex.NAMEORDER).thenComparingInt(Entry::key));
+        assertEquals(entries.size(), index.size());
+        assertArrayEquals(keys(entries, 0, entries.size()), index.keysByName(0, entries.size()));
+        assertArrayEquals(keys(entries, 100, 50), index.keysByName(100, 50));
+
+        for (String prefix : new String[] {"a", "AL", "alan", "bob", "é", "zed1", "x", ""}) {
+            List<Entry> matches = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (entry.name().toLowerCase(Locale.ROOT).startsWith(prefix.toLowerCase(Locale.ROOT))) {
+                    matches.add(entry);
+                }
+            }
+            assertEquals(matches.size(), index.countWithPrefix(prefix), "count of " + prefix);
+            assertArrayEquals(keys(matches, 0, matches.size()), index.keysWithPrefix(prefix, 0, entries.size()), "prefix " + prefix);
+            assertArrayEquals(keys(matches, 3, 7), index.keysWithPrefix(prefix, 3, 7), "page of " + prefix);
+        }
+
+        for (String query : new String[] {"alan", "Bobb", "chen1", "emile", "q"}) {
+            List<Entry> matches = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (NameIndex.editDistance(entry.name(), query) <= 2) {
+                    matches.add(entry);
+                }
+            }
+            assertArrayEquals(keys(matches, 0, matches.size()), index.keysNear(query, 2, 0, entries.size()), "near " + query);
+        }
+    }
+
+    private static int[] keys(List<Entry> entries, int offset, int limit) {
+        int from = Math.min(offset, entries.size());
+        int to = (int) Math.min((long) from + limit, entries.size());
+        return entries.subList(from, to).stream().mapToInt(Entry::key).toArray();
+    }
+}
@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks the k-way merges of a ShardedStudentRepository against the sequential paths of a single
+ * repository holding the same cohort: the rankings, name order and range queries must list the
+ * same students in the same order, and the merged summary must match a scan of every student.
+ * Also checks that the running statistics are verified shard by shard.
+ */
+class ShardedStudentRepositoryTest {
+    private static final int CAPACITY = 20_000;
+    private static final int COHORT = 5_000;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void mergesMatchTheSequentialPaths(boolean concurrent) {
+        ShardedStudentRepository sharded = ShardedStudentRepository.inProcess(4, CAPACITY, concurrent);
+        HashStudentRepository single = new HashStudentRepository(CAPACITY);
+        Cohorts.fill(sharded, COHORT, 11);
+        Cohorts.fill(single, COHORT, 11);
+        Student[] byId = single.toArray();
+        Arrays.sort(byId, Comparator.comparingInt(student -> StudentId.parse(student.getId())));
+
+        List<String> ranked = new ArrayList<>();
+        for (Student student : RankingEngine.rankByAverage(byId, RankingEngine.Mode.MERGE)) {
+            ranked.add(student.getId());
+        }
+        assertEquals(ranked, ids(sharded.studentsByAverage(0)));
+        assertEquals(ranked.subList(1_234, ranked.size()), ids(sharded.studentsByAverage(1_234)));
+
+        Student[] byName = byId.clone();
+        Arrays.sort(byName, Comparator.comparing(Student::getName, NameIndex.NAMEORDER)
+                .thenComparingInt(student -> StudentId.parse(student.getId())));
+        assertEquals(ids(Arrays.asList(byName).iterator()), ids(sharded.studentsByName(0)));
+
+        StudentService baseline = new StudentService(single);
+        StudentService service = new StudentService(sharded);
+        assertArrayEquals(names(baseline.studentsWithIdBetween(3_000_000, 4_500_000, 0, CAPACITY)),
+                names(service.studentsWithIdBetween(3_000_000, 4_500_000, 0, CAPACITY)));
+        assertArrayEquals(names(baseline.studentsWithIdBetween(0, Integer.MAX_VALUE, 100, 250)),
+                names(service.studentsWithIdBetween(0, Integer.MAX_VALUE, 100, 250)));
+        assertArrayEquals(names(baseline.studentsWithAverageBetween(45, 55, 0, CAPACITY)),
+                names(service.studentsWithAverageBetween(45, 55, 0, CAPACITY)));
+        assertArrayEquals(names(baseline.studentsWithAverageBetween(0, 100, 40, 80)),
+                names(service.studentsWithAverageBetween(0, 100, 40, 80)));
+
+        SummaryEngine.CohortSummary expected = SummaryEngine.summarize(byId, false);
+        SummaryEngine.CohortSummary actual = sharded.summary();
+        assertEquals(expected.totalStudents(), actual.totalStudents());
+        assertEquals(expected.passedAllModules(), actual.passedAllModules());
+        assertArrayEquals(expected.gradeCounts(), actual.gradeCounts());
+        assertArrayEquals(expected.weightedTotalHistogram(), actual.weightedTotalHistogram());
+        for (int module = 0; module < expected.modules().length; ++module) {
+            assertEquals(expected.modules()[module].graded(), actual.modules()[module].graded());
+            assertArrayEquals(expected.modules()[module].histogram(), actual.modules()[module].histogram());
+        }
+    }
+
+    @Test
+    void verifiesEachShardAgainstItsOwnTable() {
+        ShardedStudentRepository sharded = ShardedStudentRepository.inProcess(3, CAPACITY, false);
+        Cohorts.fill(sharded, COHORT, 12);
+        assertEquals(SummaryStatistics.Verification.MATCHED, new StudentService(sharded).verifyStatistics());
+
+        ShardedStudentRepository concurrent = ShardedStudentRepository.inProcess(3, CAPACITY, true);
+        Cohorts.fill(concurrent, COHORT, 12);
+        assertEquals(SummaryStatistics.Verification.UNAVAILABLE, concurrent.verifyStatistics());
+
+        SummaryStatistics stale = new SummaryStatistics();
+        StudentRepository[] shards = {new HashStudentRepository(CAPACITY), new ConcurrentStudentRepository(CAPACITY),
+            new HashStudentRepository(CAPACITY) {
+                @Override
+                public SummaryStatistics statistics() {
+                    return stale;
+                }
+            }};
+        ShardedStudentRepository mixed = new ShardedStudentRepository(shards, CAPACITY);
+        Cohorts.fill(mixed, COHORT, 12);
+        assertEquals(SummaryStatistics.Verification.MISMATCHED, mixed.verifyStatistics());
+    }
+
+    private static List<String> ids(Iterator<Student> students) {
+        List<String> ids = new ArrayList<>();
+        students.forEachRemaining(student -> ids.add(student.getId()));
+        return ids;
+    }
+
+    private static String[] names(Student[] students) {
+        return Arrays.stream(students).map(student -> student.getId() + " " + student.getName()).toArray(String[]::new);
+    }
+}
@@ -0,0 +1,126 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the order in which a StudentCache evicts under LRU and LFU, and that dirty students, and
+ * only those, are written back when they are evicted or flushed.
+ */
+class StudentCacheTest {
+    private final List<Integer> written = new ArrayList<>();
+    private final Map<Integer, Student> storage = new LinkedHashMap<>();
+
+    @Test
+    void lruEvictsTheLeastRecentlyUsed() throws IOException {
+        StudentCache cache = cache(3, StudentCache.Policy.LRU);
+        put(cache, 1, 2, 3);
+        assertNotNull(cache.get(1));
+        put(cache, 4);
+        assertCached(cache, 1, 3, 4);
+        assertNotNull(cache.get(3));
+        assertNotNull(cache.get(3));
+        put(cache, 5);
+        assertCached(cache, 3, 4, 5);
+        assertNull(cache.peek(1));
+
+        StudentCache model = cache(50, StudentCache.Policy.LRU);
+        Map<Integer, Boolean> recency = new LinkedHashMap<>(16, 0.75f, true);
+        Random random = new Random(23);
+        for (int i = 0; i < 20_000; ++i) {
+            int key = random.nextInt(120);
+            if (model.get(key) == null) {
+                if (recency.size() == model.capacity()) {
+                    recency.remove(recency.keySet().iterator().next());
+                }
+                model.put(key, student(key), false);
+            }
+            recency.put(key, Boolean.TRUE);
+            assertEquals(recency.size(), model.size());
+        }
+        for (int key : recency.keySet()) {
+            assertNotNull(model.peek(key), "student " + key);
+        }
+        assertEquals(20_000, model.hits() + model.misses());
+        assertEquals(model.misses() - model.size(), model.evictions());
+    }
+
+    @Test
+    void lfuEvictsTheLeastOftenUsedThenTheLeastRecentlyUsed() throws IOException {
+        StudentCache cache = cache(3, StudentCache.Policy.LFU);
+        put(cache, 1, 2, 3);
+        cache.get(1);
+        cache.get(1);
+        cache.get(2);
+        put(cache, 4);
+        assertCached(cache, 1, 2, 4);
+        // A run of one-off students only ever pushes out the one before it.
+        for (int key = 5; key < 10; ++key) {
+            put(cache, key);
+            assertCached(cache, 1, 2, key);
+        }
+        cache.get(9);
+        // 2 and 9 have both been used twice; 2 was used less recently.
+        put(cache, 10);
+        assertCached(cache, 1, 9, 10);
+        assertNull(cache.peek(2));
+        assertEquals(7, cache.evictions());
+    }
+
+    @Test
+    void dirtyStudentsAreWrittenBackOnEvictionAndFlush() throws IOException {
+        StudentCache cache = cache(2, StudentCache.Policy.LRU);
+        Student first = student(1);
+        Student changed = student(1);
+        cache.put(1, first, true);
+        cache.put(1, changed, false);
+        cache.put(2, student(2), false);
+        cache.put(3, student(3), true);
+        assertEquals(List.of(1), written);
+        assertSame(changed, storage.get(1));
+        cache.put(4, student(4), false);
+        assertEquals(List.of(1), written);
+
+        cache.put(5, student(5), true);
+        cache.remove(5);
+        cache.put(6, student(6), true);
+        assertEquals(List.of(1, 3), written);
+        cache.flush();
+        cache.flush();
+        assertEquals(List.of(1, 3, 6), written);
+        assertEquals(3, cache.writeBacks());
+        assertNull(storage.get(5));
+    }
+
+    private StudentCache cache(int capacity, StudentCache.Policy policy) {
+        return new StudentCache(capacity, policy, (key, student) -> {
+            written.add(key);
+            storage.put(key, student);
+        });
+    }
+
+    private static void put(StudentCache cache, int... keys) throws IOException {
+        for (int key : keys) {
+            cache.put(key, student(key), false);
+        }
+    }
+
+    private static void assertCached(StudentCache cache, int... keys) {
+        assertEquals(keys.length, cache.size());
+        for (int key : keys) {
+            assertNotNull(cache.peek(key), "student " + key);
+        }
+    }
+
+    private static Student student(int key) {
+        return new Student(StudentId.format(key), "Student " + key);
+    }
+}
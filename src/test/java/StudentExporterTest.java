@@ -0,0 +1,55 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a StudentExporter replaces its target only on commit, and that the target keeps its
+ * permissions when it is replaced.
+ */
+class StudentExporterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void targetKeepsItsPermissions() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Path file = directory.resolve("students.txt");
+        export(file);
+        assertEquals("rw-r--r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-rw----"));
+        export(file);
+        assertEquals("rw-rw----", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+    }
+
+    @Test
+    void uncommittedExportLeavesTheTargetAlone() throws IOException {
+        Path file = directory.resolve("students.txt");
+        export(file);
+        List<String> stored = Files.readAllLines(file);
+        try (StudentExporter exporter = new StudentExporter(file)) {
+            exporter.write(new Student("w0000002", "Ben"));
+        }
+        assertEquals(stored, Files.readAllLines(file));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(file), files.toList());
+        }
+        assertFalse(stored.isEmpty());
+    }
+
+    private static void export(Path file) throws IOException {
+        try (StudentExporter exporter = new StudentExporter(file)) {
+            exporter.write(new Student("w0000001", "Ann"));
+            exporter.commit();
+        }
+    }
+}
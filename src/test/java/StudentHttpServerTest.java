@@ -0,0 +1,118 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the JSON parser of StudentHttpServer, and the status codes and outcomes the server
+ * answers each endpoint with.
+ */
+class StudentHttpServerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HashStudentRepository repository;
+    private StudentHttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        repository = new HashStudentRepository(2);
+        server = new StudentHttpServer(new StudentService(repository), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void parsesFlatObjects() {
+        Map<String, Object> fields = StudentHttpServer.Json.parseObject(
+                " { \"id\" : \"w0000001\", \"name\":\"A\\\"n\\\\n\\u00e9\\n\", \"marks\":[1, -2,3], \"ok\":true, \"gone\":null, \"n\":-7 } ");
+        assertEquals("w0000001", StudentHttpServer.Json.stringField(fields, "id"));
+        assertEquals("A\"n\\né\n", StudentHttpServer.Json.stringField(fields, "name"));
+        assertArrayEquals(new int[] {1, -2, 3}, StudentHttpServer.Json.intArrayField(fields, "marks"));
+        assertEquals(Boolean.TRUE, fields.get("ok"));
+        assertFalse(fields.containsKey("gone"));
+        assertEquals(-7L, fields.get("n"));
+        assertTrue(StudentHttpServer.Json.parseObject("{}").isEmpty());
+        assertEquals("\"a\\\"b\\\\c\\u000a\"", StudentHttpServer.Json.quote("a\"b\\c\n"));
+    }
+
+    @Test
+    void rejectsUnsupportedJson() {
+        for (String text : List.of("", "[]", "{", "{\"a\":1", "{\"a\":1}x", "{\"a\":\"b}", "{\"a\":1.5}",
+                "{\"a\":\"\\u12\"}", "{a:1}", "{\"a\":[1,\"b\"]}", "{\"a\":tru}")) {
+            assertThrows(IllegalArgumentException.class, () -> StudentHttpServer.Json.parseObject(text), text);
+        }
+        Map<String, Object> fields = StudentHttpServer.Json.parseObject("{\"name\":1,\"marks\":[4294967296]}");
+        assertThrows(IllegalArgumentException.class, () -> StudentHttpServer.Json.stringField(fields, "name"));
+        assertThrows(IllegalArgumentException.class, () -> StudentHttpServer.Json.stringField(fields, "id"));
+        assertThrows(IllegalArgumentException.class, () -> StudentHttpServer.Json.intArrayField(fields, "marks"));
+    }
+
+    @Test
+    void answersEachOutcomeWithItsStatus() throws Exception {
+        assertResponse(201, "\"OK\"", send("POST", "/students", "{\"id\":\"w0000001\",\"name\":\"Ann\"}"));
+        assertResponse(409, "ALREADY_REGISTERED", send("POST", "/students", "{\"id\":\"w0000001\",\"name\":\"Ann\"}"));
+        assertResponse(400, "INVALID_ID", send("POST", "/students", "{\"id\":\"x0000002\",\"name\":\"Ben\"}"));
+        assertResponse(400, "INVALID_NAME", send("POST", "/students", "{\"id\":\"w0000002\",\"name\":\"\"}"));
+        assertResponse(400, "INVALID_NAME", send("POST", "/students", "{\"id\":\"w0000002\",\"name\":\"Ben\\nID: w0000003\"}"));
+        assertResponse(400, "INVALID_NAME", send("POST", "/students", "{\"id\":\"w0000002\",\"name\":\"Ben, Module 1: 5\"}"));
+        assertResponse(400, "must be a string", send("POST", "/students", "{\"id\":\"w0000002\"}"));
+        assertResponse(400, "Expected", send("POST", "/students", "{\"id\":"));
+        char[] longName = new char[StudentService.MAXNAMEBYTES / 2 + 1];
+        Arrays.fill(longName, 'é');
+        assertResponse(400, "INVALID_NAME", send("POST", "/students",
+                "{\"id\":\"w0000002\",\"name\":\"" + new String(longName) + "\"}"));
+        assertEquals(1, repository.size());
+
+        assertResponse(201, "\"OK\"", send("POST", "/students", "{\"id\":\"w0000002\",\"name\":\"Ben\"}"));
+        assertResponse(409, "NO_SEATS", send("POST", "/students", "{\"id\":\"w0000003\",\"name\":\"Cara\"}"));
+        assertResponse(200, "\"availableSeats\":0", send("GET", "/seats", null));
+
+        assertResponse(200, "\"name\":\"Ann\"", send("GET", "/students/w0000001", null));
+        assertResponse(404, "NOT_FOUND", send("GET", "/students/w0000009", null));
+        assertResponse(400, "INVALID_ID", send("GET", "/students/nope", null));
+        assertResponse(200, "\"OK\"", send("PUT", "/students/w0000001/name", "{\"name\":\"Anna\"}"));
+        assertResponse(400, "INVALID_NAME", send("PUT", "/students/w0000001/name", "{\"name\":\"\"}"));
+        assertResponse(404, "NOT_FOUND", send("PUT", "/students/w0000009/name", "{\"name\":\"Anna\"}"));
+        assertEquals("Anna", repository.find("w0000001").getName());
+
+        int[] marks = new int[MarkTable.MODULECOUNT];
+        Arrays.fill(marks, 70);
+        String markList = Arrays.toString(marks);
+        assertResponse(200, "\"OK\"", send("PUT", "/students/w0000001/marks", "{\"marks\":" + markList + "}"));
+        assertResponse(400, "INVALID_MARKS", send("PUT", "/students/w0000001/marks", "{\"marks\":[101]}"));
+        assertResponse(200, "\"rank\":1", send("GET", "/students/w0000001/rank", null));
+
+        assertResponse(200, "\"OK\"", send("DELETE", "/students/w0000002", null));
+        assertResponse(404, "NOT_FOUND", send("DELETE", "/students/w0000002", null));
+        assertResponse(404, "No such endpoint", send("GET", "/nothing", null));
+        assertResponse(404, "No such endpoint", send("PATCH", "/students", "{}"));
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.port() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void assertResponse(int status, String bodyPart, HttpResponse<String> response) {
+        assertEquals(status, response.statusCode(), response.body());
+        assertTrue(response.body().contains(bodyPart), response.body());
+    }
+}
@@ -0,0 +1,80 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a StudentJournal replays every complete record and cuts off a record torn at the
+ * end of the file, whether the tear falls in its frame or its payload, so that the records
+ * appended after reopening follow the last complete one.
+ */
+class StudentJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornTailIsDroppedAndOverwritten() throws IOException {
+        Path file = directory.resolve("journal.log");
+        long completeLength;
+        try (StudentJournal journal = new StudentJournal(file, 1, new HashStudentRepository(10))) {
+            journal.logRegister(new Student("w0000001", "Ann"));
+            journal.logMarks(StudentId.parse("w0000001"), marks(70));
+            journal.logRegister(new Student("w0000002", "Ben"));
+            completeLength = Files.size(file);
+            journal.logRename(StudentId.parse("w0000002"), "Benedict");
+        }
+        long fullLength = Files.size(file);
+        for (long tear = completeLength + 1; tear < fullLength; ++tear) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(tear);
+            }
+            HashStudentRepository replayed = new HashStudentRepository(10);
+            try (StudentJournal journal = new StudentJournal(file, 1, replayed)) {
+                assertEquals(3, journal.recordCount());
+                assertEquals(completeLength, Files.size(file), "tear at " + tear);
+                assertEquals("Ben", replayed.find("w0000002").getName());
+                assertEquals(70 * MarkTable.MODULECOUNT, replayed.find("w0000001").getModule().calculateTotal());
+                journal.logRename(StudentId.parse("w0000002"), "Benedict");
+            }
+        }
+        HashStudentRepository replayed = new HashStudentRepository(10);
+        try (StudentJournal journal = new StudentJournal(file, 1, replayed)) {
+            assertEquals(4, journal.recordCount());
+            assertEquals("Benedict", replayed.find("w0000002").getName());
+        }
+    }
+
+    @Test
+    void corruptRecordEndsTheReplay() throws IOException {
+        Path file = directory.resolve("journal.log");
+        long firstLength;
+        try (StudentJournal journal = new StudentJournal(file, 8, new HashStudentRepository(10))) {
+            journal.logRegister(new Student("w0000001", "Ann"));
+            firstLength = Files.size(file);
+            journal.logRegister(new Student("w0000002", "Ben"));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 0x55;
+        Files.write(file, bytes);
+        HashStudentRepository replayed = new HashStudentRepository(10);
+        try (StudentJournal journal = new StudentJournal(file, 8, replayed)) {
+            assertEquals(1, journal.recordCount());
+            assertEquals(firstLength, Files.size(file));
+        }
+        assertEquals(1, replayed.size());
+        assertNull(replayed.find("w0000002"));
+    }
+
+    private static int[] marks(int mark) {
+        int[] marks = new int[MarkTable.MODULECOUNT];
+        Arrays.fill(marks, mark);
+        return marks;
+    }
+}
@@ -0,0 +1,131 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that StudentLoader reads back exactly what StudentExporter writes, that it skips and
+ * reports malformed lines, that it counts only the students the repository accepts, and that a
+ * failure to save a student is reported as an IOException that keeps the students loaded before it.
+ */
+class StudentLoaderTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void loadsBackWhatTheExporterWrote() throws IOException {
+        HashStudentRepository stored = new HashStudentRepository(5_000);
+        Cohorts.fill(stored, 3_000, 3);
+        stored.add(new Student("w0000001", "Zoë Ødegård-Ñúñez"));
+        stored.add(new Student("w0000002", "名前 with, commas: and spaces"));
+        Path file = directory.resolve("students.txt");
+        try (StudentExporter exporter = new StudentExporter(file)) {
+            for (Student student : stored.toArray()) {
+                exporter.write(student);
+            }
+            exporter.commit();
+        }
+        HashStudentRepository loaded = new HashStudentRepository(5_000);
+        StudentLoader.Result result = StudentLoader.load(file, loaded);
+        assertEquals(stored.size(), result.loaded());
+        assertEquals(0, result.malformed() + result.duplicates());
+        for (Student student : stored.toArray()) {
+            Student copy = loaded.find(student.getId());
+            assertNotNull(copy, student.getId());
+            assertEquals(student.getName(), copy.getName());
+            assertEquals(student.getModule().getGrade(), copy.getModule().getGrade());
+            assertArrayEquals(student.getModule().getModuleMarks(), copy.getModule().getModuleMarks());
+        }
+
+        result = StudentLoader.load(file, loaded);
+        assertEquals(0, result.loaded());
+        assertEquals(stored.size(), result.duplicates());
+    }
+
+    @Test
+    void malformedLinesAreSkippedAndReported() throws IOException {
+        Path file = export("w0000001", "w0000002");
+        Files.writeString(file, "ID: x0000003, Name: Bad\n\nID: w0000004, Name: Short, Module 1: 50\n"
+                + "ID: w0000005, Name: High, Module 1: 101, Module 2: 1, Module 3: 1, Total: 103\n",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        HashStudentRepository repository = new HashStudentRepository(10);
+        StudentLoader.Result result = StudentLoader.load(file, repository);
+        assertEquals(2, result.loaded());
+        assertEquals(3, result.malformed());
+        assertEquals(List.of("Line 3: invalid student ID", "Line 5: missing marks for module 2",
+                "Line 6: marks for module 1 out of range"), result.problems());
+    }
+
+    @Test
+    void addsLostToAnotherWriterAreNotCounted() throws IOException {
+        Path file = export("w0000001", "w0000002", "w0000003");
+        HashStudentRepository racing = new HashStudentRepository(10) {
+            @Override
+            public boolean add(Student student) {
+                if (student.getId().equals("w0000002")) {
+                    super.add(new Student("w0000002", "Taken"));
+                }
+                return super.add(student);
+            }
+        };
+        StudentLoader.Result result = StudentLoader.load(file, racing);
+        assertEquals(2, result.loaded());
+        assertEquals(1, result.duplicates());
+        assertEquals("Taken", racing.find("w0000002").getName());
+
+        HashStudentRepository filling = new HashStudentRepository(2) {
+            @Override
+            public boolean add(Student student) {
+                if (student.getId().equals("w0000002")) {
+                    super.add(new Student("w0000009", "Seat"));
+                }
+                return super.add(student);
+            }
+        };
+        result = StudentLoader.load(file, filling);
+        assertEquals(1, result.loaded());
+        assertEquals(0, result.duplicates());
+        assertTrue(result.capacityReached());
+    }
+
+    @Test
+    void saveFailureKeepsTheStudentsLoadedBeforeIt() throws IOException {
+        Path file = export("w0000001", "w0000002", "w0000003");
+        HashStudentRepository failing = new HashStudentRepository(10) {
+            @Override
+            public boolean add(Student student) {
+                if (student.getId().equals("w0000003")) {
+                    throw new UncheckedIOException(new IOException("disk full"));
+                }
+                return super.add(student);
+            }
+        };
+        IOException e = assertThrows(IOException.class, () -> StudentLoader.load(file, failing));
+        assertEquals("disk full", e.getCause().getMessage());
+        assertEquals(2, failing.size());
+        assertFalse(failing.contains("w0000003"));
+    }
+
+    private Path export(String... ids) throws IOException {
+        Path file = directory.resolve("students.txt");
+        try (StudentExporter exporter = new StudentExporter(file)) {
+            for (String id : ids) {
+                exporter.write(new Student(id, "Student " + id));
+            }
+            exporter.commit();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,104 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a StudentSnapshot holds the students it was written from, and that open rejects a
+ * file whose header or contents were damaged.
+ */
+class StudentSnapshotTest {
+    @TempDir
+    Path directory;
+    private Path file;
+    private HashStudentRepository stored;
+
+    @BeforeEach
+    void writeSnapshot() throws IOException {
+        file = directory.resolve("students.bin");
+        stored = new HashStudentRepository(2_000);
+        Cohorts.fill(stored, 1_000, 8);
+        stored.add(new Student("w0000001", "Zoë"));
+        assertEquals(stored.size(), StudentSnapshot.write(file, stored));
+    }
+
+    @Test
+    void holdsTheStudentsItWasWrittenFrom() throws IOException {
+        StudentSnapshot snapshot = StudentSnapshot.open(file, true);
+        assertEquals(stored.size(), snapshot.size());
+        for (int index = 1; index < snapshot.size(); ++index) {
+            assertTrue(snapshot.key(index - 1) < snapshot.key(index));
+        }
+        for (Student student : stored.toArray()) {
+            Student copy = snapshot.find(StudentId.parse(student.getId()));
+            assertEquals(student.getName(), copy.getName());
+            assertEquals(student.getModule().getGrade(), copy.getModule().getGrade());
+            assertArrayEquals(student.getModule().getModuleMarks(), copy.getModule().getModuleMarks());
+        }
+        assertNull(snapshot.find(0));
+
+        HashStudentRepository loaded = new HashStudentRepository(2_000);
+        loaded.add(new Student("w0000001", "Already here"));
+        assertEquals(stored.size() - 1, snapshot.loadInto(loaded));
+        assertEquals("Already here", loaded.find("w0000001").getName());
+
+        StudentSnapshot.write(file, stored);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(file), files.toList());
+        }
+    }
+
+    @Test
+    void rejectsDamagedHeaders() throws IOException {
+        byte[] original = Files.readAllBytes(file);
+        assertRejected(original, 0, 'X', "Not a student snapshot");
+        assertRejected(original, 5, 1, "Unsupported snapshot format version 1");
+        assertRejected(original, 7, MarkTable.MODULECOUNT + 1, "modules but the module catalogue has");
+        assertRejected(original, 11, 64, "bytes long but");
+        assertRejected(original, 15, original[15] + 1, "Truncated student snapshot");
+        assertRejected(original, 19, original[19] - 1, "Truncated student snapshot");
+        assertRejected(original, 28, 1, "Checksum mismatch");
+        assertRejected(original, original.length - 1, original[original.length - 1] ^ 0x20, "Checksum mismatch");
+        Files.write(file, Arrays.copyOf(original, original.length - 1));
+        assertThrows(IOException.class, () -> StudentSnapshot.open(file, false));
+        Files.write(file, Arrays.copyOf(original, 16));
+        assertThrows(IOException.class, () -> StudentSnapshot.open(file, false));
+    }
+
+    @Test
+    void checksumCoversTheHeaderFields() throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
+        int recordSize = header.getInt(8);
+        int recordCount = header.getInt(12);
+        int heapSize = header.getInt(16);
+        // Moving one record's worth of bytes from the heap size to the record count keeps the file size right.
+        header.putInt(12, recordCount + 1);
+        header.putInt(16, heapSize - recordSize);
+        Files.write(file, bytes);
+        StudentSnapshot.open(file, false);
+        IOException e = assertThrows(IOException.class, () -> StudentSnapshot.open(file, true));
+        assertTrue(e.getMessage().startsWith("Checksum mismatch"), e.getMessage());
+    }
+
+    private void assertRejected(byte[] original, int offset, int value, String message) throws IOException {
+        byte[] damaged = original.clone();
+        damaged[offset] = (byte) value;
+        Files.write(file, damaged);
+        IOException e = assertThrows(IOException.class, () -> StudentSnapshot.open(file, true), message);
+        assertTrue(e.getMessage().contains(message), e.getMessage());
+    }
+}
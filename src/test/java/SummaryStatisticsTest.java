@@ -0,0 +1,73 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the running statistics of a HashStudentRepository stay equal to a full rescan as
+ * students are registered, deleted and given marks one by one and in batches, and that verify
+ * notices counts that have drifted from the table.
+ */
+class SummaryStatisticsTest {
+    private static final int CAPACITY = 10_000;
+
+    @Test
+    void runningCountsMatchARescan() {
+        HashStudentRepository repository = new HashStudentRepository(CAPACITY);
+        Cohorts.fill(repository, 6_000, 14);
+        Random random = new Random(14);
+        Student[] students = repository.toArray();
+        for (int i = 0; i < 1_000; ++i) {
+            repository.remove(students[random.nextInt(students.length)].getId());
+            Student student = students[random.nextInt(students.length)];
+            if (repository.contains(student.getId())) {
+                repository.setMarks(StudentId.parse(student.getId()), Cohorts.randomMarks(random));
+            }
+        }
+        students = repository.toArray();
+        int[] keys = new int[students.length / 2];
+        int[][] marks = new int[keys.length][];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = StudentId.parse(students[2 * i].getId());
+            marks[i] = Cohorts.randomMarks(random);
+        }
+        repository.setMarks(keys, marks, keys.length, new boolean[keys.length]);
+
+        SummaryStatistics statistics = repository.statistics();
+        assertTrue(statistics.verify(repository.markTable()));
+        assertEquals(repository.size(), statistics.studentCount());
+        assertSameSummary(SummaryEngine.summarize(repository.toArray(), false), statistics.summary());
+    }
+
+    @Test
+    void verifyNoticesDriftedCounts() {
+        HashStudentRepository repository = new HashStudentRepository(CAPACITY);
+        Cohorts.fill(repository, 500, 15);
+        SummaryStatistics detached = new SummaryStatistics();
+        assertFalse(detached.verify(repository.markTable()));
+        detached.tableRewritten(repository.markTable());
+        assertTrue(detached.verify(repository.markTable()));
+
+        Student student = repository.toArray()[0];
+        int[] marks = Cohorts.randomMarks(new Random(15));
+        marks[0] = marks[0] == MarkTable.MAXMARK ? 0 : marks[0] + 1;
+        repository.setMarks(StudentId.parse(student.getId()), marks);
+        assertTrue(repository.statistics().verify(repository.markTable()));
+        assertFalse(detached.verify(repository.markTable()));
+    }
+
+    private static void assertSameSummary(SummaryEngine.CohortSummary expected, SummaryEngine.CohortSummary actual) {
+        assertEquals(expected.totalStudents(), actual.totalStudents());
+        assertEquals(expected.passedAllModules(), actual.passedAllModules());
+        assertArrayEquals(expected.gradeCounts(), actual.gradeCounts());
+        assertArrayEquals(expected.weightedTotalHistogram(), actual.weightedTotalHistogram());
+        for (int module = 0; module < expected.modules().length; ++module) {
+            assertEquals(expected.modules()[module].graded(), actual.modules()[module].graded());
+            assertArrayEquals(expected.modules()[module].histogram(), actual.modules()[module].histogram());
+            assertEquals(expected.modules()[module].mean(), actual.modules()[module].mean(), 1e-9);
+        }
+    }
+}